@@ -38,9 +38,13 @@ import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.VBox;
+import maths.BuiltInFunction;
+import maths.Constant;
 import maths.Expression;
 import maths.Statement;
 import maths.auxiliary.Notation;
+import maths.auxiliary.Precision;
+import maths.auxiliary.Summation;
 
 /**
  * The set of Nodes that manages basic user input and memory.
@@ -201,16 +205,21 @@ public class CommandLine {
 		
 		if (text.isEmpty())	return;
 		
+		if (changedMode(text))	return;
+		
 		if (!errMsg.isEmpty()) {
 			history.appendText("\nSYNTAX ERROR: "+errMsg);
 			return;
 		}
 		
 		try {
+			if (math instanceof Expression)
+				math = BuiltInFunction.inPrecision((Expression) math, workspace);
 			final Statement ans = math.simplified(workspace);	// evaluate the expression
 			if (ans != null) {
 				if (ans instanceof Expression) {
-					history.appendText("\n\t= "+ans.toString());	// write the answer
+					history.appendText("\n\t= "+ans.toString()+((ans instanceof Constant) ?
+							((Constant) ans).errorString() : ""));	// write the answer, with its error if it's an estimate
 					graph.setPlot((Expression) ans);
 				}
 				else
@@ -226,6 +235,32 @@ public class CommandLine {
 	}
 	
 	
+	private boolean changedMode(String text) {	// "precision dd" or "summation naive" sets the mode for the rest of the session
+		final String[] words = text.trim().split("\\s+");
+		if (words.length != 2)
+			return false;
+		if (words[0].equalsIgnoreCase("precision")) {
+			if (Precision.forName(words[1]) == null)
+				history.appendText("\nERROR: I don't know a precision called "+words[1]+".");
+			else {
+				Precision.setMode(Precision.forName(words[1]));
+				history.appendText("\n\tprecision is now "+Precision.getMode().getCode());
+			}
+			return true;
+		}
+		if (words[0].equalsIgnoreCase("summation")) {
+			if (Summation.forName(words[1]) == null)
+				history.appendText("\nERROR: I don't know a summation called "+words[1]+".");
+			else {
+				Summation.setMode(Summation.forName(words[1]));
+				history.appendText("\n\tsummation is now "+Summation.getMode().name().toLowerCase());
+			}
+			return true;
+		}
+		return false;
+	}
+	
+	
 	private void update(String input) {	// called when something is typed
 		try {
 			currentMath = Notation.parseStatement(input);
@@ -27,7 +27,9 @@ import java.util.List;
 
 import javafx.scene.Node;
 import javafx.scene.layout.StackPane;
+import maths.BuiltInFunction;
 import maths.Constant;
+import maths.EGraph;
 import maths.Expression;
 import maths.Variable;
 import plots.HeightPlot;
@@ -68,7 +70,7 @@ public class Graph {
 	
 	public void setPlot(Expression exp) {
 		List<String> independents = exp.getInputs(workspace); // count the inputs
-		exp = exp.simplified(workspace);
+		exp = EGraph.optimized(exp.simplified(workspace));	// it gets evaluated at every point, so it's worth making fast
 		int dims = exp.shape()[0]*exp.shape()[1]; // and outputs
 		
 		Expression[] functions = null;
@@ -132,6 +134,8 @@ public class Graph {
 			}
 		}
 		if (functions != null) {
+			for (int i = 0; i < functions.length; i ++)
+				functions[i] = BuiltInFunction.inPrecision(functions[i], independents, workspace);	// recorded once, and played at every point
 			pane.getChildren().set(0, plot.getNode());
 			plot.plot(functions, independents, workspace);
 		}
@@ -48,7 +48,7 @@ public class OperationBar {
 			{"tan(","cot(","atan(","acot(","tanh(","coth(","atanh(","acoth("},
 			{"ln","log","log2","e^","10^","2^"},
 			{"\u221A", "\u00d7"},
-			{"\u03b4/\u03b4","\u222B","Tn"},
+			{"\u03b4/\u03b4","\u222B","taylor(","cheb("},
 			{},
 			{"\u2192","^","\u2022","\u2022\u2022"},
 			{"\u03B1","\u03B2","\u03B3","\u03B8","\u03BB","\u03D5","\u03C9"}
@@ -38,6 +38,8 @@ import javafx.scene.control.TableColumn.CellDataFeatures;
 import javafx.scene.control.TableView;
 import javafx.util.Callback;
 import maths.Expression;
+import maths.auxiliary.Precision;
+import maths.auxiliary.Summation;
 
 /**
  * A mapping of Strings to Expressions that remembers all stored data.
@@ -55,37 +57,15 @@ public class Workspace {
 	private Map<String, String[]> inputs;	// the inputs to each variable
 	private ObservableList<String> keys;	// the ordered list of Strings
 	private TableView<String> table;	// the nice display of all Strings and Expressions
+	private Precision precision;	// the precision everything here gets evaluated in, if something picked one
+	private Summation summation;	// and the way it adds things up
 	
 	
 	
 	public Workspace() {
 		outputs = new HashMap<String, Expression>();
 		inputs = new HashMap<String, String[]>();
-		keys = FXCollections.observableList(new ArrayList<String>());
-		table = new TableView<String>(keys);
-		
-		final TableColumn<String, String> names =
-				new TableColumn<String, String>("Variable");
-		names.setCellValueFactory(
-				new Callback<CellDataFeatures<String, String>, ObservableValue<String>>() {
-			public ObservableValue<String> call(CellDataFeatures<String, String> p) {
-				return new SimpleStringProperty(getCall(p.getValue()));
-			}
-		});
-		names.setPrefWidth(PREF_WIDTH1);
-		final TableColumn<String, String> values =
-				new TableColumn<String, String>("Value");
-		values.setCellValueFactory(
-				new Callback<CellDataFeatures<String, String>, ObservableValue<String>>() {
-			public ObservableValue<String> call(CellDataFeatures<String, String> p) {
-				return new SimpleStringProperty(get(p.getValue()).toString());
-			}
-		});
-		values.setPrefWidth(PREF_WIDTH2);
-		
-		table.getColumns().add(names);
-		table.getColumns().add(values);
-		table.setPrefHeight(PREF_HEIGHT);
+		keys = FXCollections.observableList(new ArrayList<String>());	// the table only gets built once something wants to show it
 	}
 	
 	
@@ -93,6 +73,8 @@ public class Workspace {
 		outputs = new HashMap<String, Expression>();
 		inputs = new HashMap<String, String[]>();
 		keys = FXCollections.observableList(new ArrayList<String>());
+		precision = w.precision;
+		summation = w.summation;
 		
 		for (String key: w.keys)	// workspaces instantiated this way have no Node
 			this.put(key, w.getArgs(key), w.get(key));
@@ -101,6 +83,32 @@ public class Workspace {
 	
 	
 	public Node getNode() {
+		if (table == null) {
+			table = new TableView<String>(keys);
+			
+			final TableColumn<String, String> names =
+					new TableColumn<String, String>("Variable");
+			names.setCellValueFactory(
+					new Callback<CellDataFeatures<String, String>, ObservableValue<String>>() {
+				public ObservableValue<String> call(CellDataFeatures<String, String> p) {
+					return new SimpleStringProperty(getCall(p.getValue()));
+				}
+			});
+			names.setPrefWidth(PREF_WIDTH1);
+			final TableColumn<String, String> values =
+					new TableColumn<String, String>("Value");
+			values.setCellValueFactory(
+					new Callback<CellDataFeatures<String, String>, ObservableValue<String>>() {
+				public ObservableValue<String> call(CellDataFeatures<String, String> p) {
+					return new SimpleStringProperty(get(p.getValue()).toString());
+				}
+			});
+			values.setPrefWidth(PREF_WIDTH2);
+			
+			table.getColumns().add(names);
+			table.getColumns().add(values);
+			table.setPrefHeight(PREF_HEIGHT);
+		}
 		return table;
 	}
 	
@@ -132,6 +140,16 @@ public class Workspace {
 	}
 	
 	
+	public Precision getPrecision() {	// the precision something picked for this, or null if it's the session's
+		return precision;
+	}
+	
+	
+	public Summation getSummation() {	// the summation something picked for this, or null if it's the session's
+		return summation;
+	}
+	
+	
 	public void put(String name, Expression val) {	// store a variable
 		put(name, null, val);
 	}
@@ -178,6 +196,19 @@ public class Workspace {
 	}
 	
 	
+	public Workspace localize(Precision newPrecision, Summation newSummation) { // clone this in another mode (null leaves a mode as it is)
+		if (newPrecision == null && newSummation == null)
+			return this;
+		
+		Workspace local = new Workspace(this);
+		if (newPrecision != null)
+			local.precision = newPrecision;
+		if (newSummation != null)
+			local.summation = newSummation;
+		return local;
+	}
+	
+	
 	public Workspace clone() {
 		return new Workspace(this);
 	}
@@ -3,10 +3,29 @@
  */
 package maths;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import gui.Workspace;
 import javafx.scene.image.Image;
+import maths.auxiliary.BigComplex;
+import maths.auxiliary.CSRMatrix;
+import maths.auxiliary.Combinatorics;
+import maths.auxiliary.Cubature;
+import maths.auxiliary.LinearAlgebra;
+import maths.auxiliary.LinearSolver;
+import maths.auxiliary.LookupTable;
+import maths.auxiliary.NumberTheory;
+import maths.auxiliary.Operator;
+import maths.auxiliary.Precision;
+import maths.auxiliary.Rational;
+import maths.auxiliary.SpecialFunctions;
+import maths.auxiliary.Summation;
+import maths.auxiliary.Tape;
 import util.ImgUtils;
 
 /**
@@ -21,11 +40,26 @@ public class BuiltInFunction extends Expression {
 			"atan","acsc","asec","acot","asinh","acosh","atanh","acsch","asech",
 			"acoth","arcsin","arccos","arctan","arccsc","arcsec","arccot",
 			"arcsinh","arccosh","arctanh","arccsch","arcsech","arccoth",
-			"re", "real", "im", "imag", "abs","arg"};
+			"re", "real", "im", "imag", "abs","arg",
+			"int", "integrate", "mean", "det", "solve", "trace", "eig", "eigvec",
+			"svd", "sparse", "full", "diag", "array", "reshape", "slice", "zeros",
+			"ones", "range", "sum", "prod", "min", "max", "naive", "pairwise",
+			"compensated", "double", "dd", "digits", "factorial", "perm", "comb",
+			"gamma", "lgamma", "isprime", "nextprime", "factor", "totient", "gcd", "lcm",
+			"modpow", "erf", "erfc", "erfi", "beta", "besselj", "bessely", "besseli",
+			"besselk", "airyai", "airybi", "taylor", "cheb", "diff", "antideriv", "roots",
+			"tabulate", "pchip", "rule"};
+	
+	private static final int DEFAULT_DIGITS = 50;	// how many digits to find if they don't say
+	private static final double MAX_EXACT_BITS = 1 << 26;	// how big a count can get before it's only worth estimating
+	private static final long MAX_COUNT = 1L << 62;	// how big a number can be counted up to without overflowing
+	private static final int MAX_ORDER = 10000;	// the most terms a Taylor series can have
+	private static final double TABLE_TOL = 1e-6;	// how closely a table must match its function if they don't say
 	
 	
 	private final String name;
 	private final Expression arg;
+	private final Tape tape;	// the argument, recorded once if this gets evaluated at every point of a plot
 	
 	
 	
@@ -39,23 +73,115 @@ public class BuiltInFunction extends Expression {
 	
 	
 	public BuiltInFunction(String n, Expression x) {
+		this(n, x, null);
+	}
+	
+	
+	private BuiltInFunction(String n, Expression x, Tape t) {
 		name = n;
 		arg = x;
+		tape = t;
+	}
+	
+	
+	
+	public static Expression inPrecision(Expression exp, Workspace heap) {	// wrap this so it gets evaluated in the heap's precision
+		if (Precision.of(heap) == Precision.DOUBLE)
+			return exp;
+		return new BuiltInFunction(Precision.of(heap).getCode(), exp);
+	}
+	
+	
+	public static Expression inPrecision(Expression exp, List<String> inputs, Workspace heap) {	// wrap this for a plot, recording it once with the plot's inputs
+		if (Precision.of(heap) == Precision.DOUBLE)
+			return exp;
+		Tape tape;
+		try {
+			tape = new Tape(inputs.toArray(new String[0]), heap);
+			tape.output(exp.compile(tape));
+		} catch (ArithmeticException e) {	// if it can't be recorded, it gets simplified at every point instead
+			tape = null;
+		}
+		return new BuiltInFunction(Precision.of(heap).getCode(), exp, tape);
 	}
 	
 	
 	
-	private String getCode() {	// get a code unique to each function
+	String getCode() {	// get a code unique to each function
 		String code = name.toLowerCase();
 		if (code.length() == 6 && code.startsWith("arc"))
 			return "a"+code.substring(3);
 		else if (code.equals("real") || code.equals("imag"))
 			return code.substring(0,2);
+		else if (code.equals("integrate"))
+			return "int";
 		else
 			return code;
 	}
 	
 	
+	Expression[] getArgs() {	// split the argument up if there is more than one
+		if (arg instanceof Vector)
+			return ((Vector) arg).getComponents();
+		else
+			return new Expression[] {arg};
+	}
+	
+	
+	private boolean isIntegral() {	// does this function integrate over a Locus?
+		final String code = getCode();
+		return code.equals("int") || code.equals("mean");
+	}
+	
+	
+	private boolean isSpectral() {	// does this function take apart a matrix (and maybe a count)?
+		final String code = getCode();
+		return code.equals("trace") || code.equals("eig") || code.equals("eigvec") || code.equals("svd");
+	}
+	
+	
+	private boolean isReducer() {	// does this function combine a list of things into one?
+		final String code = getCode();
+		return code.equals("sum") || code.equals("prod") || code.equals("min") || code.equals("max");
+	}
+	
+	
+	private boolean isArrayMaker() {	// does this function make or reshape an NDArray?
+		final String code = getCode();
+		return code.equals("array") || code.equals("reshape") || code.equals("slice")
+				|| code.equals("zeros") || code.equals("ones");
+	}
+	
+	
+	private boolean isNumberTheoretic() {	// does this function only make sense for integers?
+		final String code = getCode();
+		return code.equals("isprime") || code.equals("nextprime") || code.equals("factor")
+				|| code.equals("totient") || code.equals("gcd") || code.equals("lcm") || code.equals("modpow");
+	}
+	
+	
+	private boolean isBinarySpecial() {	// is this a special function of two numbers?
+		final String code = getCode();
+		return code.equals("beta") || code.startsWith("bessel");
+	}
+	
+	
+	private boolean isCalculus() {	// does this function work on an interpolant as a whole?
+		final String code = getCode();
+		return code.equals("diff") || code.equals("antideriv") || code.equals("roots");
+	}
+	
+	
+	private boolean isSummationMode() {	// does this function pick how its argument adds things up?
+		return Summation.forName(getCode()) != null;
+	}
+	
+	
+	private boolean isPrecisionMode() {	// does this function pick how many digits its argument gets?
+		return Precision.forName(getCode()) != null;
+	}
+	
+	
 	@Override
 	public int[] shape() {
 		return arg.get(0).shape();
@@ -70,6 +196,34 @@ public class BuiltInFunction extends Expression {
 	
 	@Override
 	public List<String> getInputs(Workspace heap) {
+		if (getCode().equals("solve") || getCode().equals("rule"))	// the unknowns get solved for, and patterns are never evaluated, so they are not inputs
+			return new ArrayList<String>();
+		if (isIntegral() && getArgs().length == 2) {	// the parameters of the region are not inputs
+			final Expression region = getArgs()[1].simplified(heap);
+			if (region instanceof Locus) {
+				final Locus locus = (Locus) region;
+				final List<String> params = Arrays.asList(locus.getParams());
+				final Workspace locHeap = (heap == null) ? null : heap.localize(params);
+				final List<String> inputs = getArgs()[0].getInputs(locHeap);
+				for (Expression bound: locus.getLowBounds())
+					inputs.addAll(bound.getInputs(locHeap));
+				for (Expression bound: locus.getUppBounds())
+					inputs.addAll(bound.getInputs(locHeap));
+				inputs.removeAll(params);
+				return inputs;
+			}
+		}
+		if (getCode().equals("roots")) {	// the roots don't depend on where you are
+			final Expression simp = arg.simplified(heap);
+			final List<String> inputs = arg.getInputs(heap);
+			if (simp instanceof Chebyshev)
+				inputs.remove(((Chebyshev) simp).getVariable());
+			else if (simp instanceof Polynomial)
+				inputs.remove(((Polynomial) simp).getVariable());
+			else if ((simp instanceof SparsePolynomial || simp instanceof Variable) && simp.getInputs(heap).size() == 1)
+				inputs.removeAll(simp.getInputs(heap));
+			return inputs;
+		}
 		return arg.getInputs(heap);
 	}
 	
@@ -82,9 +236,61 @@ public class BuiltInFunction extends Expression {
 	
 	@Override
 	public Expression simplified(Workspace heap) {
+		if (getCode().equals("rule"))
+			return ruled();
+		if (isIntegral())
+			return integrated(heap);
+		if (getCode().equals("solve"))
+			return solved(heap);
+		
+		if (isSpectral())
+			return decomposed(heap);
+		
+		if (getCode().equals("diag"))
+			return diagonal(heap);
+		if (isArrayMaker())
+			return arrayed(heap);
+		if (isReducer())
+			return reduced(heap);
+		if (getCode().equals("range"))
+			return ranged(heap);
+		if (getCode().equals("perm") || getCode().equals("comb"))
+			return counted(heap);
+		if (isNumberTheoretic())
+			return factored(heap);
+		if (isBinarySpecial())
+			return special(heap);
+		if (getCode().equals("taylor"))
+			return expanded(heap);
+		if (getCode().equals("cheb"))
+			return interpolated(heap);
+		if (isCalculus())
+			return transformed(heap);
+		if (getCode().equals("tabulate") || getCode().equals("pchip"))
+			return tabulated(heap);
+		
+		if (isSummationMode() || isPrecisionMode())
+			return evaluatedIn(heap);
+		if (getCode().equals("digits"))
+			return digits(heap);
+		
 		final Expression simp = arg.simplified(heap);
+		if (getCode().equals("det") && simp instanceof Matrix)
+			return ((Matrix) simp).determinant();
+		if (getCode().equals("det") && simp instanceof SparseMatrix)
+			return ((SparseMatrix) simp).toDense().determinant();
+		if (getCode().equals("sparse") && simp instanceof Matrix)
+			return SparseMatrix.of((Matrix) simp);
+		if (getCode().equals("full") && simp instanceof SparseMatrix)
+			return ((SparseMatrix) simp).toDense();
+		if ((getCode().equals("sparse") || getCode().equals("full")) && !(simp instanceof Constant))
+			return (simp instanceof Matrix || simp instanceof SparseMatrix) ? simp : new BuiltInFunction(name, simp);
+		if (simp instanceof NDArray && !getCode().equals("det"))	// arrays are done element by element
+			return ((NDArray) simp).apply(getCode());
+		if (simp instanceof Sequence && !getCode().equals("det"))	// and so are sequences, lazily
+			return ((Sequence) simp).mapped(name);
 		if (!(simp instanceof Constant))
-			return new BuiltInFunction(name, simp);
+			return Rules.rewritten(new BuiltInFunction(name, simp), heap);
 		
 		Constant x = (Constant) simp;
 		final String code = getCode();
@@ -144,11 +350,728 @@ public class BuiltInFunction extends Expression {
 			return x.abs();
 		else if (code.equals("arg"))
 			return x.arg();
+		else if (code.equals("factorial"))
+			return (whole(x) != null) ? count(whole(x), whole(x), false) : SpecialFunctions.gamma(x.plus(Constant.ONE));
+		else if (code.equals("gamma"))
+			return (whole(x) != null && whole(x) > 0) ? count(whole(x)-1, whole(x)-1, false) : SpecialFunctions.gamma(x);
+		else if (code.equals("lgamma"))
+			return SpecialFunctions.lgamma(x);
+		else if (code.equals("erf") || code.equals("erfc") || code.equals("erfi")
+				|| code.equals("airyai") || code.equals("airybi"))
+			return evaluated(x);
+		else if (code.equals("det") || code.equals("sparse") || code.equals("full"))
+			return x;
 		else
 			throw new IllegalArgumentException("Unrecognized func: "+code);
 	}
 	
 	
+	private Expression integrated(Workspace heap) {	// integrate or average over a Locus
+		final Expression[] args = getArgs();
+		if (args.length != 2 && getCode().equals("mean"))
+			return reduced(heap);	// the mean of a list of things
+		if (args.length != 2)
+			throw new ArithmeticException(name+" takes 2 arguments!");
+		final Expression region = args[1].simplified(heap);
+		if (!(region instanceof Locus) && getCode().equals("mean"))
+			return reduced(heap);	// the mean of a list of two things
+		if (!(region instanceof Locus))
+			throw new ArithmeticException(name+" must be taken over a region, like {x : 0<x<1}.");
+		final Locus locus = (Locus) region;
+		
+		if (!this.getInputs(heap).isEmpty()) {	// if there are unknowns, it can't be evaluated yet
+			final Workspace locHeap = (heap == null) ? null :
+					heap.localize(Arrays.asList(locus.getParams()));
+			return new BuiltInFunction(name,
+					new Vector(args[0].simplified(locHeap), region));
+		}
+		
+		Constant integral = exactIntegral(args[0], locus, heap);
+		if (integral == null) {	// the estimate comes with its error, which gets shown with it
+			final Cubature.Result result = Cubature.integrate(args[0], locus, heap);
+			integral = result.getValue().withError(result.getError());
+		}
+		if (getCode().equals("int"))
+			return integral;
+		
+		final Cubature.Result volume = Cubature.integrate(Constant.ONE, locus, heap);
+		final Constant mean = integral.times(volume.getValue().recip());	// the mean is the integral divided by the volume
+		final double size = volume.getValue().abs().getReal();
+		return mean.withError(integral.getError()/size
+				+ mean.abs().getReal()*volume.getError()/size);	// and its error comes from both of theirs
+	}
+	
+	
+	private static Constant exactIntegral(Expression integrand, Locus locus, Workspace heap) {	// integrate an interpolant from its coefficients, if that's what this is
+		if (locus.getParams().length != 1)
+			return null;
+		final Expression low = locus.getLowBounds()[0].simplified(heap);
+		final Expression upp = locus.getUppBounds()[0].simplified(heap);
+		if (!(low instanceof Constant) || !(upp instanceof Constant)
+				|| ((Constant) low).getImag() != 0 || ((Constant) upp).getImag() != 0)
+			return null;
+		final Expression simp;
+		try {
+			simp = integrand.simplified((heap == null) ? null :
+					heap.localize(Arrays.asList(locus.getParams())));
+		} catch (ArithmeticException e) {	// if it can't be simplified like this, it's certainly not an interpolant
+			return null;
+		}
+		if (!(simp instanceof Chebyshev) || !((Chebyshev) simp).getVariable().equals(locus.getParams()[0]))
+			return null;
+		return ((Chebyshev) simp).integral(((Constant) low).getReal(), ((Constant) upp).getReal());
+	}
+	
+	
+	private Expression decomposed(Workspace heap) {	// find the trace, eigenvalues, eigenvectors, or singular values
+		final Expression[] args = (arg instanceof Matrix || arg instanceof SparseMatrix) ?
+				new Expression[] {arg} : getArgs();
+		if (args.length > 2 || (args.length == 2 && getCode().equals("trace")))
+			throw new ArithmeticException(name+" takes too many arguments!");
+		final Expression simp = args[0].simplified(heap);
+		int k = 0;	// the number of eigenvalues they want (0 means all of them)
+		if (args.length == 2) {
+			final Expression count = args[1].simplified(heap);
+			if (!(count instanceof Constant))
+				return new BuiltInFunction(name, new Vector(simp, count));
+			final double kd = ((Constant) count).getReal();
+			if (kd != Math.floor(kd) || kd < 1 || ((Constant) count).getImag() != 0)
+				throw new ArithmeticException("The number of eigenvalues must be a positive integer.");
+			k = (int) kd;
+		}
+		
+		final String code = getCode();
+		if (simp instanceof Constant) {	// a scalar is its own 1*1 matrix
+			if (k > 1)
+				throw new ArithmeticException("A scalar has only 1 eigenvalue.");
+			if (code.equals("svd"))
+				return ((Constant) simp).abs();
+			else if (code.equals("eigvec"))
+				return Constant.ONE;
+			else
+				return simp;
+		}
+		if (simp instanceof SparseMatrix) {
+			final SparseMatrix sparse = (SparseMatrix) simp;
+			if (code.equals("trace"))
+				return sparse.trace();
+			else if (code.equals("eig"))
+				return sparse.eigenvalues(k);
+			else if (code.equals("eigvec"))
+				return sparse.eigenvectors(k);
+		}
+		final Expression dense = (simp instanceof SparseMatrix) ? ((SparseMatrix) simp).toDense() : simp;
+		if (!(dense instanceof Matrix))
+			return new BuiltInFunction(name, simp);
+		
+		final Matrix mat = (Matrix) dense;
+		if (code.equals("trace"))
+			return mat.trace();
+		if (!mat.isNumeric())	// the rest can only be done numerically
+			return new BuiltInFunction(name, (args.length == 2) ? new Vector(simp, args[1]) : simp);
+		if (code.equals("eig"))
+			return mat.eigenvalues(k);
+		else if (code.equals("eigvec"))
+			return mat.eigenvectors(k);
+		else {
+			final Vector sigma = mat.singularValues();
+			if (k == 0)
+				return sigma;
+			if (k > sigma.getComponents().length)
+				throw new ArithmeticException("This matrix doesn't have "+k+" singular values.");
+			return new Vector(Arrays.copyOf(sigma.getComponents(), k));
+		}
+	}
+	
+	
+	private Expression diagonal(Workspace heap) {	// build a sparse matrix with a vector along one of its diagonals
+		final Expression simp = arg.simplified(heap);
+		Expression diag = simp, offset = Constant.ZERO;
+		if (simp instanceof Matrix || simp instanceof SparseMatrix)
+			throw new ArithmeticException(name+" takes a vector, not a matrix.");
+		if (simp instanceof Vector && !((Vector) simp).isNumeric()) {
+			final Expression[] parts = ((Vector) simp).getComponents();
+			if (parts.length == 2 && parts[0] instanceof Vector && !(parts[1] instanceof Vector)) {	// diag(v, k) rather than diag(a, b)
+				diag = parts[0];
+				offset = parts[1];
+			}
+			for (Expression part: parts)
+				if (part != diag && part instanceof Vector)
+					throw new ArithmeticException("I can't tell whether "+this+" is a diagonal or a diagonal and an offset.");
+		}
+		if (!(diag instanceof Vector) || !(offset instanceof Constant) || !diag.getInputs(heap).isEmpty())
+			return new BuiltInFunction(name, simp);
+		
+		final double k = ((Constant) offset).getReal();
+		if (k != Math.rint(k) || ((Constant) offset).getImag() != 0)
+			throw new ArithmeticException("Diagonals are numbered by integers.");
+		return SparseMatrix.diagonal((Vector) diag, (int) k);
+	}
+	
+	
+	private Expression ranged(Workspace heap) {	// make a lazy list of evenly spaced numbers
+		final Expression[] args = getArgs();
+		if (args.length < 2 || args.length > 3)
+			throw new ArithmeticException("range takes a start, a stop, and maybe a step.");
+		return Sequence.range(args[0], args[1], (args.length == 3) ? args[2] : Constant.ONE)
+				.simplified(heap);
+	}
+	
+	
+	private Expression counted(Workspace heap) {	// count the permutations or combinations of k things out of n
+		final Expression[] args = getArgs();
+		if (args.length != 2)
+			throw new ArithmeticException(name+" takes 2 arguments!");
+		final Expression n = args[0].simplified(heap), k = args[1].simplified(heap);
+		if (!(n instanceof Constant) || !(k instanceof Constant))
+			return new BuiltInFunction(name, new Vector(n, k));
+		final Constant nc = (Constant) n, kc = (Constant) k;
+		final boolean choose = getCode().equals("comb");
+		if (whole(nc) != null && whole(kc) != null && (choose || whole(kc) >= 0))
+			return count(whole(nc), whole(kc), choose);
+		if (whole(nc) != null && whole(kc) != null) {	// n!/(n-k)! is 1/(n+1)(n+2)...(n-k) when k is negative
+			final Constant product = count(whole(nc) - whole(kc), -whole(kc), false);
+			if (product.getReal() == 0)
+				throw new ArithmeticException(name+" is undefined here.");
+			return product.recip();
+		}
+		
+		final Constant nPlusOne = nc.plus(Constant.ONE), rest = nc.plus(kc.negative()).plus(Constant.ONE);	// otherwise, it's a ratio of gamma functions
+		if (choose)
+			return SpecialFunctions.gammaRatio(new Constant[] {nPlusOne}, new Constant[] {kc.plus(Constant.ONE), rest});
+		else
+			return SpecialFunctions.gammaRatio(new Constant[] {nPlusOne}, new Constant[] {rest});
+	}
+	
+	
+	private static Long whole(Constant x) {	// x, if it's an integer small enough to count up to
+		if (x.getImag() != 0)
+			return null;
+		final Rational q = (x.getRatio() != null) ? x.getRatio() : Rational.of(x.getReal());
+		if (q == null || !q.isInteger() || q.bitLength() > 62)
+			return null;
+		return q.getNumerator().longValue();
+	}
+	
+	
+	private static Constant count(long n, long k, boolean choose) throws ArithmeticException {	// n!/(n-k)!, or that over k!, for k >= 0 unless choosing
+		if (n < 0 && !choose && n == k)
+			throw new ArithmeticException("The factorial of a negative integer is undefined.");
+		if ((choose && k < 0) || (n >= 0 && k > n))
+			return Constant.ZERO;
+		if (n < 0 && (k - n > MAX_COUNT || k - n < 0))
+			throw new ArithmeticException("That is too big to count.");
+		
+		final double[] terms;	// the gamma functions whose logs add up to the answer, and which way they go
+		if (n >= 0)
+			terms = choose ? new double[] {n+1, -(k+1), -(n-k+1)} : new double[] {n+1, -(n-k+1)};
+		else	// which are the same as for -n, just shifted, since (-n)(-n-1)... = (-1)^k n(n+1)...
+			terms = choose ? new double[] {k-n, -(k+1), n} : new double[] {k-n, n};
+		double ln = 0, error = 0;
+		for (double t: terms) {
+			final double l = SpecialFunctions.lgamma(Math.abs(t));
+			ln += Math.signum(t)*l;
+			error += Math.ulp(l)*8;
+		}
+		final boolean negative = n < 0 && k%2 != 0;
+		if (ln/Math.log(2) < MAX_EXACT_BITS) {
+			final Rational exact = Rational.of(choose ? Combinatorics.binomial(n, k) : Combinatorics.permutations(n, k));
+			return new Constant(exact);
+		}
+		
+		final int digits = (int) Math.floor(-Math.log10(error));	// otherwise, get whatever digits the logarithm has
+		final double log10 = ln/Math.log(10);
+		if (digits < 1 || log10 > Integer.MAX_VALUE/2)
+			throw new ArithmeticException("That is too big to count.");
+		final double exponent = Math.floor(log10);
+		final BigDecimal mantissa = new BigDecimal(Math.pow(10, log10 - exponent)).round(new MathContext(digits));
+		final BigDecimal estimate = mantissa.scaleByPowerOfTen((int) exponent);
+		return new Constant(new BigComplex(negative ? estimate.negate() : estimate, BigDecimal.ZERO));
+	}
+	
+	
+	private Expression special(Workspace heap) {	// find beta or a Bessel function, if both arguments are numbers
+		final Expression[] args = getArgs();
+		if (args.length != 2)
+			throw new ArithmeticException(name+" takes 2 arguments!");
+		final Expression a = args[0].simplified(heap), b = args[1].simplified(heap);
+		if (!(a instanceof Constant) || !(b instanceof Constant))
+			return new BuiltInFunction(name, new Vector(a, b));
+		if (getCode().startsWith("bessel") && ((Constant) a).getImag() != 0)
+			throw new ArithmeticException("The order of a Bessel function must be real.");
+		return evaluated((Constant) a, (Constant) b);
+	}
+	
+	
+	private Constant evaluated(Constant... x) throws ArithmeticException {	// play a special function on a little Tape, since only Tapes know how
+		final Tape tape = new Tape(new String[0], null);
+		final int[] r = new int[x.length];
+		for (int i = 0; i < x.length; i ++)
+			r[i] = tape.constant(x[i].getReal(), x[i].getImag());
+		tape.output((r.length == 1) ? tape.call(getCode(), r[0]) : tape.call(getCode(), r[0], r[1]));
+		final Constant y = tape.newFrame().evaluate().get(0);
+		if (Double.isNaN(y.getReal()) || Double.isNaN(y.getImag()))
+			throw new ArithmeticException(name+" is undefined here.");
+		return y;
+	}
+	
+	
+	private Expression expanded(Workspace heap) {	// find a Taylor polynomial by pushing power series through a Tape
+		final Expression[] args = getArgs();
+		if (args.length != 4)
+			throw new ArithmeticException(name+" takes a function, a variable, a point, and an order.");
+		if (!(args[1] instanceof Variable))
+			throw new ArithmeticException("The second argument of "+name+" must be a variable.");
+		final String var = ((Variable) args[1]).getName();
+		final Workspace locHeap = (heap == null) ? null : heap.localize(Arrays.asList(var));
+		final Expression point = args[2].simplified(heap), count = args[3].simplified(heap);
+		Tape tape;
+		try {
+			tape = new Tape(new String[] {var}, locHeap);
+			tape.output(args[0].compile(tape));
+		} catch (ArithmeticException e) {	// if it has other unknowns, it can't be expanded yet
+			tape = null;
+		}
+		if (tape == null || !(point instanceof Constant) || !(count instanceof Constant))
+			return new BuiltInFunction(name, new Vector(args[0].simplified(locHeap), args[1], point, count));
+		
+		final int n = integer(count, "The order of a Taylor series");
+		if (n < 0 || n > MAX_ORDER)
+			throw new ArithmeticException("The order of a Taylor series must be between 0 and "+MAX_ORDER+".");
+		if (((Constant) point).getImag() != 0)
+			throw new ArithmeticException("I can only find Taylor series about real numbers.");
+		final double[][] coefs = tape.series(((Constant) point).getReal()).get(n);
+		return new Polynomial(var, (Constant) point, coefs[0], coefs[1]);
+	}
+	
+	
+	private Expression interpolated(Workspace heap) {	// fit a Chebyshev series to a function on an interval
+		final Expression[] args = getArgs();
+		if (args.length != 4)
+			throw new ArithmeticException(name+" takes a function, a variable, and the ends of an interval.");
+		if (!(args[1] instanceof Variable))
+			throw new ArithmeticException("The second argument of "+name+" must be a variable.");
+		final String var = ((Variable) args[1]).getName();
+		final Workspace locHeap = (heap == null) ? null : heap.localize(Arrays.asList(var));
+		final Expression low = args[2].simplified(heap), upp = args[3].simplified(heap);
+		Tape tape;
+		try {
+			tape = new Tape(new String[] {var}, locHeap);
+			tape.output(EGraph.optimized(args[0]).compile(tape));	// it gets played at a lot of points, so it's worth making fast
+		} catch (ArithmeticException e) {	// if it has other unknowns, it can't be interpolated yet
+			tape = null;
+		}
+		if (tape == null || !(low instanceof Constant) || !(upp instanceof Constant))
+			return new BuiltInFunction(name, new Vector(args[0].simplified(locHeap), args[1], low, upp));
+		
+		if (((Constant) low).getImag() != 0 || ((Constant) upp).getImag() != 0)
+			throw new ArithmeticException("I can only interpolate between real numbers.");
+		return Chebyshev.fit(tape, ((Constant) low).getReal(), ((Constant) upp).getReal());
+	}
+	
+	
+	private Expression transformed(Workspace heap) {	// differentiate, antidifferentiate, or find the roots of an interpolant
+		final Expression simp = arg.simplified(heap);
+		final String code = getCode();
+		if (simp instanceof Chebyshev) {
+			final Chebyshev f = (Chebyshev) simp;
+			if (code.equals("diff"))
+				return f.derivative();
+			else if (code.equals("antideriv"))
+				return f.antiderivative();
+			else
+				return f.roots();
+		}
+		if (simp instanceof Polynomial && code.equals("diff"))
+			return ((Polynomial) simp).derivative();
+		if (simp instanceof Polynomial && code.equals("antideriv"))
+			return ((Polynomial) simp).antiderivative();
+		if (code.equals("roots")) {
+			if (simp instanceof Polynomial)
+				return ((Polynomial) simp).roots();
+			if (simp instanceof SparsePolynomial)
+				return ((SparsePolynomial) simp).roots();
+			if (simp instanceof Variable)
+				return new Set(Constant.ZERO);
+		}
+		if (simp instanceof Constant)
+			throw new ArithmeticException(name+" only works on "+
+					(code.equals("roots") ? "polynomials and interpolants from cheb." : "interpolants from cheb or taylor."));
+		return new BuiltInFunction(name, simp);	// it might be one once we know more
+	}
+	
+	
+	private Expression tabulated(Workspace heap) {	// trade a costly function for a table of its values over a region
+		final Expression[] args = getArgs();
+		if (args.length != 2 && args.length != 3)
+			throw new ArithmeticException(name+" takes a function, a region, and maybe a tolerance.");
+		final Expression region = args[1].simplified(heap);
+		if (!(region instanceof Locus))
+			throw new ArithmeticException(name+" must be taken over a region, like {x : 0<x<1}.");
+		final Locus locus = (Locus) region;
+		final String[] params = locus.getParams();
+		if (params.length > LookupTable.MAX_DIMS)
+			throw new ArithmeticException("I can only tabulate functions of up to "+LookupTable.MAX_DIMS+" variables.");
+		final Workspace locHeap = (heap == null) ? null : heap.localize(Arrays.asList(params));
+		final Expression exact = args[0].simplified(locHeap);
+		final Expression tol = (args.length == 3) ? args[2].simplified(heap) : new Constant(TABLE_TOL);
+		
+		final double[] low = new double[params.length], upp = new double[params.length];
+		for (int d = 0; d < params.length; d ++) {
+			final Expression a = locus.getLowBounds()[d].simplified(heap);
+			final Expression b = locus.getUppBounds()[d].simplified(heap);
+			if (!(a instanceof Constant) || !(b instanceof Constant))
+				return new BuiltInFunction(name, new Vector(exact, region, tol));
+			low[d] = ((Constant) a).getReal();
+			upp[d] = ((Constant) b).getReal();
+			if (((Constant) a).getImag() != 0 || ((Constant) b).getImag() != 0
+					|| !(low[d] < upp[d]) || Double.isInfinite(upp[d] - low[d]))
+				throw new ArithmeticException("A table's region must be bounded by real numbers.");
+		}
+		if (!(tol instanceof Constant))
+			return new BuiltInFunction(name, new Vector(exact, region, tol));
+		if (!(((Constant) tol).getReal() > 0) || ((Constant) tol).getImag() != 0)
+			throw new ArithmeticException("The tolerance of a table must be positive.");
+		
+		final Tape tape;
+		try {
+			tape = new Tape(params, locHeap);
+			tape.output(EGraph.optimized(exact).compile(tape));	// and so does this
+		} catch (ArithmeticException e) {	// if it has other unknowns, it can't be tabulated yet
+			return new BuiltInFunction(name, new Vector(exact, region, tol));
+		}
+		final LookupTable table = LookupTable.of(tape, low, upp, ((Constant) tol).getReal(), getCode().equals("pchip"));
+		return new Tabulated(name, exact, params, low, upp, ((Constant) tol).getReal(), table)
+				.simplified(heap);	// if the variables are already known, look them up
+	}
+	
+	
+	private Expression factored(Workspace heap) {	// do something to some integers that involves their prime factors
+		final String code = getCode();
+		final Expression simp = arg.simplified(heap);
+		final Expression[] args = (simp instanceof Vector) ? ((Vector) simp).getComponents() : new Expression[] {simp};
+		for (Expression a: args)
+			if (!(a instanceof Constant))
+				return new BuiltInFunction(name, simp);
+		if (code.equals("modpow") && args.length != 3)
+			throw new ArithmeticException(name+" takes a base, an exponent, and a modulus.");
+		if (!code.equals("modpow") && !code.equals("gcd") && !code.equals("lcm") && args.length != 1)
+			throw new ArithmeticException(name+" takes 1 argument!");
+		final BigInteger[] n = new BigInteger[args.length];
+		for (int i = 0; i < args.length; i ++)
+			n[i] = bigInteger((Constant) args[i], "The argument of "+name);
+		
+		if (code.equals("isprime"))
+			return NumberTheory.isPrime(n[0]) ? Constant.ONE : Constant.ZERO;
+		else if (code.equals("nextprime"))
+			return new Constant(Rational.of(NumberTheory.nextPrime(n[0])));
+		else if (code.equals("totient"))
+			return new Constant(Rational.of(NumberTheory.totient(n[0])));
+		else if (code.equals("factor")) {
+			final List<BigInteger> factors = NumberTheory.factor(n[0]);
+			final Expression[] comps = new Expression[factors.size()];
+			for (int i = 0; i < comps.length; i ++)
+				comps[i] = new Constant(Rational.of(factors.get(i)));
+			return (comps.length == 0) ? Constant.ONE : new Vector(comps);	// 1 is the empty product
+		}
+		else if (code.equals("modpow")) {
+			if (n[2].signum() <= 0)
+				throw new ArithmeticException("The modulus must be positive.");
+			if (n[1].signum() < 0 && !n[0].gcd(n[2]).equals(BigInteger.ONE))
+				throw new ArithmeticException(n[0]+" has no inverse mod "+n[2]+".");
+			return new Constant(Rational.of(n[0].modPow(n[1], n[2])));
+		}
+		else {
+			BigInteger result = n[0].abs();
+			for (int i = 1; i < n.length; i ++) {
+				final BigInteger gcd = result.gcd(n[i]);
+				if (code.equals("gcd"))
+					result = gcd;
+				else if (gcd.signum() != 0)
+					result = result.divide(gcd).multiply(n[i].abs());
+				else
+					result = BigInteger.ZERO;	// the only multiple of 0 is 0
+			}
+			return new Constant(Rational.of(result));
+		}
+	}
+	
+	
+	private static BigInteger bigInteger(Constant x, String what) throws ArithmeticException {	// read off an integer of any size
+		final Rational q = (x.getRatio() != null) ? x.getRatio() :
+				(x.getImag() == 0) ? Rational.of(x.getReal()) : null;
+		if (q == null || !q.isInteger())
+			throw new ArithmeticException(what+" must be an integer.");
+		return q.getNumerator();
+	}
+	
+	
+	private Expression reduced(Workspace heap) {	// add up, multiply, compare, or average a list of things
+		final String code = getCode();
+		final Expression simp = arg.simplified(heap);
+		final Sequence seq = (simp instanceof Sequence) ? (Sequence) simp :
+				(simp instanceof Locus) ? Sequence.over((Locus) simp) : null;
+		if (seq != null) {	// stream through a sequence
+			final Expression result = seq.reduce(code, heap);
+			return (result == null) ? new BuiltInFunction(name, simp) : result;
+		}
+		if (simp instanceof NDArray)
+			return ((NDArray) simp).reduce(code);
+		
+		final Expression[] terms = (simp instanceof Vector) ? ((Vector) simp).getComponents() :
+				new Expression[] {simp};
+		if (code.equals("min") || code.equals("max")) {
+			Constant best = null;
+			for (Expression term: terms) {
+				if (!(term instanceof Constant))
+					return new BuiltInFunction(name, simp);
+				final Constant c = (Constant) term;
+				if (c.getImag() != 0)
+					throw new ArithmeticException("Complex numbers can't be compared.");
+				if (best == null || (code.equals("min") ? c.getReal() < best.getReal() : c.getReal() > best.getReal()))
+					best = c;
+			}
+			return best;
+		}
+		Expression total = terms[0];
+		for (int i = 1; i < terms.length; i ++)
+			total = new Operation(code.equals("prod") ? Operator.MULTIPLY : Operator.ADD, total, terms[i]);
+		if (code.equals("mean"))
+			total = new Operation(Operator.DIVIDE, total, new Constant(Rational.of(terms.length)));
+		return total.simplified(heap);
+	}
+	
+	
+	private Expression arrayed(Workspace heap) {	// make an NDArray, or a new view of one
+		final String code = getCode();
+		final Expression simp = arg.simplified(heap);
+		if (!simp.getInputs(heap).isEmpty())
+			return new BuiltInFunction(name, simp);
+		final Expression[] args = (code.equals("array") || !(simp instanceof Vector)) ?
+				new Expression[] {simp} : ((Vector) simp).getComponents();
+		
+		if (code.equals("zeros") || code.equals("ones")) {
+			final int[] dims = new int[args.length];
+			for (int i = 0; i < args.length; i ++)
+				dims[i] = integer(args[i], "An array's size");
+			return NDArray.filled(dims, code.equals("ones") ? Constant.ONE : Constant.ZERO);
+		}
+		
+		final NDArray array = NDArray.of(args[0]);
+		if (array == null)
+			throw new ArithmeticException(name+" needs an array of numbers.");
+		if (code.equals("array"))
+			return array;
+		else if (code.equals("reshape")) {
+			final int[] dims = new int[args.length-1];
+			for (int i = 1; i < args.length; i ++)
+				dims[i-1] = integer(args[i], "An array's size");
+			return array.reshaped(dims);
+		}
+		else {
+			if (args.length < 4 || args.length > 5)
+				throw new ArithmeticException("slice takes an array, an axis, a start, a stop, and maybe a step.");
+			return array.slice(integer(args[1], "An axis"), integer(args[2], "An index"),
+					integer(args[3], "An index"), (args.length == 5) ? integer(args[4], "A step") : 1);
+		}
+	}
+	
+	
+	private static int integer(Expression x, String what) {	// read off an integer argument
+		if (!(x instanceof Constant) || ((Constant) x).getImag() != 0
+				|| ((Constant) x).getReal() != Math.rint(((Constant) x).getReal()))
+			throw new ArithmeticException(what+" must be an integer.");
+		return (int) ((Constant) x).getReal();
+	}
+	
+	
+	private Expression ruled() {	// teach Rules a new identity, as it was written
+		final Expression[] args = getArgs();
+		if (args.length != 2)
+			throw new ArithmeticException("rule needs a pattern and something to replace it with.");
+		Rules.add(args[0], args[1]);
+		return Expression.NULL;
+	}
+	
+	
+	private Expression solved(Workspace heap) {	// solve a system of equations for whatever in it isn't known yet (it's up to an assignment to remember the answer)
+		final Expression[] equations = getArgs();
+		if (equations.length == 2) {	// solve(A, b) solves Ax = b for x
+			final Expression a = equations[0].simplified(heap);
+			if (a instanceof Matrix || a instanceof SparseMatrix)
+				return solvedMatrix(a, equations[1].simplified(heap));
+		}
+		final List<String> unknowns = getInputsAll(equations, heap);
+		if (unknowns.isEmpty())
+			throw new ArithmeticException("There is nothing to solve for.");
+		
+		return new Vector(LinearSolver.solve(equations, unknowns.toArray(new String[0]), heap));
+	}
+	
+	
+	private Expression solvedMatrix(Expression a, Expression b) {	// solve a matrix equation without writing out the equations
+		final int n = a.shape()[0];
+		if (!(b instanceof Vector) || (a instanceof Matrix && !((Matrix) a).isNumeric()))
+			return new BuiltInFunction(name, new Vector(a, b));
+		if (n != a.shape()[1] || b.shape()[0] != n)
+			throw new ArithmeticException("There must be one equation for each unknown ("
+					+n+" equations, "+a.shape()[1]+" unknowns, "+b.shape()[0]+" values).");
+		
+		final double[] bRe = new double[n], bIm = new double[n];
+		for (int i = 0; i < n; i ++) {
+			final Expression comp = ((Vector) b).get(i);
+			if (!(comp instanceof Constant))
+				return new BuiltInFunction(name, new Vector(a, b));
+			bRe[i] = ((Constant) comp).getReal();
+			bIm[i] = ((Constant) comp).getImag();
+		}
+		final CSRMatrix csr = (a instanceof SparseMatrix) ? ((SparseMatrix) a).getCSR() :
+				CSRMatrix.fromDense(n, n, ((Matrix) a).getReal(), ((Matrix) a).getImag());
+		final double[][] x = LinearSolver.solve(csr, bRe, LinearAlgebra.isZero(bIm) ? null : bIm);
+		final Constant[] values = new Constant[n];
+		for (int i = 0; i < n; i ++)
+			values[i] = new Constant(x[0][i], (x[1] == null) ? 0 : x[1][i]);
+		return new Vector(values);
+	}
+	
+	
+	private Expression evaluatedIn(Workspace heap) {	// simplify the argument in the mode this function is named for
+		final Precision precision = Precision.forName(getCode());
+		final Workspace locHeap = ((heap == null) ? new Workspace() : heap).localize(
+				precision, Summation.forName(getCode()));	// the mode goes along with the heap, so every Tape inside gets it
+		if (precision != null && precision != Precision.DOUBLE) {
+			final Constant value = (tape != null) ? played(tape, locHeap) : played(locHeap);
+			if (value != null)
+				return value;
+		}
+		return arg.simplified(locHeap);	// anything that isn't just a number gets simplified, with any Tapes inside it in this mode
+	}
+	
+	
+	private Expression digits(Workspace heap) {	// evaluate the argument to some number of significant digits
+		final Expression[] args = getArgs();
+		if (args.length > 2)
+			throw new ArithmeticException(name+" takes too many arguments!");
+		int n = DEFAULT_DIGITS;
+		if (args.length == 2) {
+			final Expression count = args[1].simplified(heap);
+			if (!(count instanceof Constant))
+				return new BuiltInFunction(name, new Vector(args[0].simplified(heap), count));
+			final double nd = ((Constant) count).getReal();
+			if (nd != Math.floor(nd) || nd < 1 || nd > 1e6 || ((Constant) count).getImag() != 0)
+				throw new ArithmeticException("The number of digits must be a positive integer.");
+			n = (int) nd;
+		}
+		
+		Tape tape = recorded(args[0], heap);
+		if (tape == null) {
+			final Expression simp = args[0].simplified(heap);
+			if (simp instanceof Constant)	// some functions can't be recorded, but their values can
+				tape = recorded(simp, heap);
+			if (tape == null)	// if it has unknowns, it can't be evaluated yet
+				return new BuiltInFunction(name, (args.length == 2) ? new Vector(simp, args[1]) : simp);
+		}
+		return new Constant(tape.newPrecise().get(0, n));
+	}
+	
+	
+	private static Tape recorded(Expression exp, Workspace heap) {	// record exp on a Tape with no inputs, if it can be
+		try {
+			final Tape tape = new Tape(new String[0], heap);
+			tape.output(exp.compile(tape));
+			return tape;
+		} catch (ArithmeticException e) {	// if it can't be recorded, it isn't just a number
+			return null;
+		}
+	}
+	
+	
+	private Constant played(Workspace heap) {	// record the argument on a Tape with no inputs, and play it once
+		final Tape tape = recorded(arg, heap);
+		return (tape == null) ? null : tape.newFrame().evaluate().get(0);
+	}
+	
+	
+	private static Constant played(Tape tape, Workspace heap) {	// play a Tape that was recorded ahead of time, with its inputs from the heap
+		final String[] inputs = tape.getInputs();
+		final double[] x = new double[inputs.length];
+		for (int i = 0; i < inputs.length; i ++) {
+			final Expression value = (heap == null) ? null : heap.get(inputs[i]);
+			if (!(value instanceof Constant) || ((Constant) value).getImag() != 0)
+				return null;	// it was recorded for real numbers
+			x[i] = ((Constant) value).getReal();
+		}
+		return tape.newFrame().evaluate(x).get(0);
+	}
+	
+	
+	@Override
+	public int compile(Tape tape) {
+		if (isSummationMode()) {	// the mode gets baked into the Tape as it is recorded
+			final Summation old = tape.getSummation();
+			tape.setSummation(Summation.forName(getCode()));
+			try {
+				return arg.compile(tape);
+			} finally {
+				tape.setSummation(old);
+			}
+		}
+		if (isPrecisionMode() && tape.isWide() != (Precision.forName(getCode()) == Precision.DOUBLE_DOUBLE))
+			throw new ArithmeticException("I can't record "+this+" on a Tape in another precision.");	// a Tape only has one precision, which it picked when it was made
+		if (isPrecisionMode())
+			return arg.compile(tape);
+		if (getCode().equals("digits"))	// and it can't hold more digits than that
+			return getArgs()[0].compile(tape);
+		if (getCode().equals("tabulate") || getCode().equals("pchip")) {	// tables get recorded, if they can be made
+			final Expression f = simplified(tape.getHeap());
+			if (f instanceof Tabulated)
+				return f.compile(tape);
+			return getArgs()[0].compile(tape);
+		}
+		if (getCode().equals("taylor")) {	// the Taylor polynomial gets recorded, if it can be found
+			final Expression poly = simplified(tape.getHeap());
+			if (!(poly instanceof Polynomial))
+				throw new ArithmeticException(this+" cannot be evaluated numerically.");
+			return poly.compile(tape);
+		}
+		if (getCode().equals("cheb") || getCode().equals("diff") || getCode().equals("antideriv")) {	// and so do interpolants
+			final Expression f = simplified(tape.getHeap());
+			if (!(f instanceof Chebyshev) && !(f instanceof Polynomial))
+				throw new ArithmeticException(this+" cannot be evaluated numerically.");
+			return f.compile(tape);
+		}
+		if (isBinarySpecial()) {
+			final Expression[] args = getArgs();
+			if (args.length != 2)
+				throw new ArithmeticException(name+" takes 2 arguments!");
+			return tape.call(getCode(), args[0].compile(tape), args[1].compile(tape));
+		}
+		return tape.call(getCode(), arg.compile(tape));
+	}
+	
+	
+	@Override
+	protected Expression internedParts() {
+		final Expression iarg = Expression.interned(arg);
+		return (iarg == arg) ? this : new BuiltInFunction(name, iarg);
+	}
+	
+	
+	@Override
+	protected int hashed() {
+		return 31*name.hashCode() + arg.hashCode();
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)	return true;
+		if (!(obj instanceof BuiltInFunction) || obj.hashCode() != this.hashCode())	return false;
+		final BuiltInFunction that = (BuiltInFunction) obj;
+		return this.name.equals(that.name) && this.arg.equals(that.arg);
+	}
+	
+	
 	@Override
 	public Image toImage() {
 		return ImgUtils.call(name, arg.toImage());
@@ -157,6 +1080,18 @@ public class BuiltInFunction extends Expression {
 	
 	@Override
 	public String toString() {
+		if (getCode().equals("solve") && !(getArgs()[0] instanceof Matrix)) {	// write the equations the way they came in
+			String output = name+"(";
+			for (Expression eq: getArgs())
+				output += eq+" = 0, ";
+			return output.substring(0, output.length()-2)+")";
+		}
+		if (getCode().equals("diag") && arg instanceof Vector && !((Vector) arg).isNumeric()) {	// keep a nested diagonal apart from its offset
+			String output = name+"(";
+			for (Expression part: getArgs())
+				output += part+", ";
+			return output.substring(0, output.length()-2)+")";
+		}
 		return name+"("+arg+")";
 	}
 
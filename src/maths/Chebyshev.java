@@ -0,0 +1,254 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gui.Workspace;
+import javafx.scene.image.Image;
+import maths.auxiliary.ChebyshevSeries;
+import maths.auxiliary.Operator;
+import maths.auxiliary.Tape;
+import util.ImgUtils;
+
+/**
+ * A function of one variable on an interval, stood in for by the series of
+ * Chebyshev polynomials that interpolates it to machine precision, the way
+ * chebfun does it. However expensive the original function was, this costs
+ * about as much as its degree to evaluate, differentiate, integrate, or find
+ * the roots of. Outside the interval, it's just the polynomial.
+ *
+ * @author jkunimune
+ */
+public class Chebyshev extends Expression {
+
+	private final String var;
+	private final double low, upp;	// the interval it was fit on
+	private final double[] re, im;	// the coefficient of each Chebyshev polynomial, starting with T0
+	
+	
+	
+	public Chebyshev(String var, double low, double upp, double[] re, double[] im) {
+		this.var = var;
+		this.low = low;
+		this.upp = upp;
+		this.re = re;
+		this.im = im;
+	}
+	
+	
+	public static Chebyshev fit(Tape tape, double low, double upp) throws ArithmeticException {	// interpolate the first output of a Tape with one input
+		if (!(low < upp))
+			throw new ArithmeticException("The interval must go from a smaller number to a bigger one.");
+		final double[][] c = ChebyshevSeries.fit(tape, low, upp);
+		return new Chebyshev(tape.getInputs()[0], low, upp, c[0], c[1]);
+	}
+	
+	
+	
+	public int degree() {
+		return re.length - 1;
+	}
+	
+	
+	public String getVariable() {
+		return var;
+	}
+	
+	
+	public Chebyshev derivative() {
+		final double[][] d = ChebyshevSeries.derivative(re, im, 2/(upp - low));
+		return new Chebyshev(var, low, upp, d[0], d[1]);
+	}
+	
+	
+	public Chebyshev antiderivative() {	// the one that is zero at the bottom of the interval
+		final double[][] f = ChebyshevSeries.antiderivative(re, im, (upp - low)/2);
+		return new Chebyshev(var, low, upp, f[0], f[1]);
+	}
+	
+	
+	public Constant integral(double from, double to) {	// the integral from one point to another
+		final Chebyshev f = antiderivative();
+		final double[] a = f.at(from, 0), b = f.at(to, 0);
+		return new Constant(b[0] - a[0], b[1] - a[1]);
+	}
+	
+	
+	public Set roots() throws ArithmeticException {	// every real root in the interval
+		for (int k = 0; k < im.length; k ++)
+			if (im[k] != 0)
+				throw new ArithmeticException("I can only find the roots of real functions.");
+		final List<Expression> roots = new ArrayList<Expression>();
+		for (double t: ChebyshevSeries.roots(re))
+			roots.add(new Constant((low + upp)/2 + (upp - low)/2*t));
+		return new Set(roots);
+	}
+	
+	
+	private double[] at(double xr, double xi) {	// Clenshaw's recurrence, in doubles
+		final double s = 2/(upp - low);
+		return ChebyshevSeries.value(re, im, (xr - low)*s - 1, xi*s);
+	}
+	
+	
+	@Override
+	public int[] shape() {
+		final int[] out = {1,1};
+		return out;
+	}
+	
+	
+	@Override
+	protected Expression getComponent(int i, int j) {
+		return this;
+	}
+	
+	
+	@Override
+	public List<String> getInputs(Workspace heap) {
+		if (heap != null && heap.containsKey(var))
+			return heap.get(var).getInputs(heap);
+		final List<String> list = new ArrayList<String>();
+		list.add(var);
+		return list;
+	}
+	
+	
+	@Override
+	public Expression replaced(String[] oldStrs, String[] newStrs) {
+		for (int i = 0; i < oldStrs.length; i ++)
+			if (oldStrs[i].equals(var))
+				return new Chebyshev(newStrs[i], low, upp, re, im);
+		return this;
+	}
+	
+	
+	@Override
+	public Expression simplified(Workspace heap) {
+		if (heap == null || !heap.containsKey(var))
+			return this;
+		final Expression value = heap.get(var).simplified(heap);
+		if (value instanceof Constant) {
+			final double[] y = at(((Constant) value).getReal(), ((Constant) value).getImag());
+			return new Constant(y[0], y[1]);
+		}
+		if (value instanceof Variable)
+			return new Chebyshev(((Variable) value).getName(), low, upp, re, im);
+		final Expression twoT = new Operation(Operator.MULTIPLY, new Constant(4/(upp - low)),
+				new Operation(Operator.SUBTRACT, value, new Constant((low + upp)/2)));	// or Clenshaw's recurrence, symbolically
+		Expression b1 = Constant.ZERO, b2 = Constant.ZERO;
+		for (int k = re.length-1; k >= 1; k --) {
+			final Expression b0 = new Operation(Operator.ADD, new Operation(Operator.SUBTRACT,
+					new Operation(Operator.MULTIPLY, twoT, b1), b2), new Constant(re[k], im[k]));
+			b2 = b1;
+			b1 = b0;
+		}
+		return new Operation(Operator.ADD, new Operation(Operator.SUBTRACT,
+				new Operation(Operator.MULTIPLY, new Operation(Operator.DIVIDE, twoT, Constant.TWO), b1), b2),
+				new Constant(re[0], im[0])).simplified(heap);
+	}
+	
+	
+	@Override
+	public int compile(Tape tape) {	// Clenshaw's recurrence, on a Tape
+		final int x = tape.variable(var);
+		final int t = tape.apply(Operator.ADD,
+				tape.apply(Operator.MULTIPLY, x, tape.constant(2/(upp - low), 0)),
+				tape.constant(-(low + upp)/(upp - low), 0));
+		final int twoT = tape.apply(Operator.ADD, t, t);
+		int b1 = tape.constant(0, 0), b2 = b1;
+		for (int k = re.length-1; k >= 1; k --) {
+			final int b0 = tape.apply(Operator.ADD,
+					tape.apply(Operator.SUBTRACT, tape.apply(Operator.MULTIPLY, twoT, b1), b2),
+					tape.constant(re[k], im[k]));
+			b2 = b1;
+			b1 = b0;
+		}
+		return tape.apply(Operator.ADD,
+				tape.apply(Operator.SUBTRACT, tape.apply(Operator.MULTIPLY, t, b1), b2),
+				tape.constant(re[0], im[0]));
+	}
+	
+	
+	@Override
+	protected int hashed() {
+		final int h = 31*var.hashCode() + Double.hashCode(low);
+		return 31*(31*(31*h + Double.hashCode(upp)) + Arrays.hashCode(re)) + Arrays.hashCode(im);
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)	return true;
+		if (!(obj instanceof Chebyshev) || obj.hashCode() != this.hashCode())	return false;
+		final Chebyshev that = (Chebyshev) obj;
+		return this.var.equals(that.var) && Double.compare(this.low, that.low) == 0 && Double.compare(this.upp, that.upp) == 0 &&
+				Arrays.equals(this.re, that.re) && Arrays.equals(this.im, that.im);
+	}
+	
+	
+	@Override
+	public Image toImage() {
+		return ImgUtils.drawString(this.toString());
+	}
+	
+	
+	@Override
+	public String toString() {	// the series written out in T_k(t) = cos(k*acos(t)), so it can be typed back in
+		final double mid = (low + upp)/2, half = (upp - low)/2;
+		final String t = "acos("+(mid == 0 ? var : "("+var+(mid < 0 ? " + "+format(-mid) : " - "+format(mid))+")")+(half == 1 ? "" : "/"+format(half))+")";
+		double scale = 0;
+		for (int k = 0; k < re.length; k ++)
+			scale = Math.max(scale, Math.hypot(re[k], im[k]));
+		final double cutoff = scale*Math.ulp(1.);	// parts this small don't change a single digit of the sum
+		String s = "";
+		for (int k = 0; k < re.length; k ++) {
+			final double a = (Math.abs(re[k]) > cutoff) ? re[k] : 0, b = (Math.abs(im[k]) > cutoff) ? im[k] : 0;
+			if (a == 0 && b == 0)
+				continue;
+			final boolean negative = (b == 0) ? (a < 0) : (a == 0 && b < 0);
+			s += s.isEmpty() ? (negative ? "-" : "") : (negative ? " - " : " + ");
+			if (b == 0)
+				s += format(Math.abs(a));
+			else if (a == 0)
+				s += format(Math.abs(b))+"i";
+			else
+				s += "("+format(a)+(b < 0 ? " - " : " + ")+format(Math.abs(b))+"i)";
+			s += (k == 0) ? "" : (k == 1) ? "*cos("+t+")" : "*cos("+k+"*"+t+")";
+		}
+		return s.isEmpty() ? "0" : s;
+	}
+	
+	
+	private static String format(double d) {	// every digit it takes to get the same double back, but no E, because the parser can't read that
+		if ((int) d == d)
+			return Integer.toString((int) d);
+		return new BigDecimal(Double.toString(d)).toPlainString();
+	}
+
+}
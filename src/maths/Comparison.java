@@ -23,10 +23,12 @@
  */
 package maths;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import gui.Workspace;
 import javafx.scene.image.Image;
+import maths.auxiliary.Operator;
 import util.ImgUtils;
 
 /**
@@ -66,6 +68,21 @@ public class Comparison implements Statement {
 					return simp;
 				}
 			}
+			else if (expressions.get(0) instanceof Vector) {	// or assign several variables at once, like (x, y) = solve(...)
+				final Expression[] targets = ((Vector) expressions.get(0)).getComponents();
+				final List<String> names = new ArrayList<String>();
+				for (Expression target: targets)
+					if (target instanceof Variable)
+						names.add(target.toString());
+				if (names.size() == targets.length) {
+					final Expression simp = expressions.get(1).simplified(heap.localize(names));	// it has to be worked out now, without any old values of the targets
+					if (!(simp instanceof Vector) || simp.shape()[0] != targets.length)
+						throw new ArithmeticException("I can't split "+simp+" into "+targets.length+" values.");
+					for (int i = 0; i < targets.length; i ++)
+						heap.put(names.get(i), ((Vector) simp).get(i));
+					return simp;
+				}
+			}
 		}
 		if (expressions.size() == 3 && // or an ascending set definition
 				dir(operators.get(0)) > 0 && dir(operators.get(1)) > 0) {
@@ -99,6 +116,13 @@ public class Comparison implements Statement {
 	}
 	
 	
+	public Expression residual() throws IllegalArgumentException {	// the thing that is zero when this equation holds
+		if (expressions.size() != 2 || !operators.get(0).equals("="))
+			throw new IllegalArgumentException(this+" is not an equation.");
+		return new Operation(Operator.SUBTRACT, expressions.get(0), expressions.get(1));
+	}
+	
+	
 	@Override
 	public Image toImage() {
 		Image img = expressions.get(0).toImage();
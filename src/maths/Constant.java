@@ -23,18 +23,29 @@
  */
 package maths;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 
 import gui.Workspace;
 import javafx.scene.image.Image;
+import maths.auxiliary.BigComplex;
 import maths.auxiliary.Dimension;
+import maths.auxiliary.Operator;
+import maths.auxiliary.Rational;
+import maths.auxiliary.Summation;
+import maths.auxiliary.Tape;
 import util.ImgUtils;
 
 /**
  * An actual value, with no operators or variables attached. Represented as a
- * complex number with units.
+ * complex number with units. Real numbers built out of whole numbers also
+ * remember their exact ratio, and keep it through any arithmetic that only
+ * involves other ratios.
  *
  * @author jkunimune
  */
@@ -44,15 +55,18 @@ public class Constant extends Expression {
 	public static final Constant PI = new Constant(Math.PI);
 	public static final Constant E = new Constant(Math.E);
 	
-	public static final Constant ZERO = new Constant(0);
-	public static final Constant ONE = new Constant(1);
-	public static final Constant NEG_ONE = new Constant(-1);
+	public static final Constant ZERO = new Constant(Rational.of(0));
+	public static final Constant ONE = new Constant(Rational.of(1));
+	public static final Constant NEG_ONE = new Constant(Rational.of(-1));
 	public static final Constant I = new Constant(0,1);
-	public static final Constant TWO = new Constant(2);
-	public static final Constant TEN = new Constant(10);
+	public static final Constant TWO = new Constant(Rational.of(2));
+	public static final Constant TEN = new Constant(Rational.of(10));
 	
 	
 	private static final double JDT = Math.pow(2,-51);	// the Java double tolerance
+	private static final long MAX_EXACT_BITS = 1L << 24;	// how big an exact power can get before it's not worth it
+	private static final int MAX_PRINTED_BITS = 1 << 15;	// how big a ratio can get before it only gets its leading digits printed
+	private static final int PRINTED_DIGITS = 20;	// how many digits those are
 	
 	
 	
@@ -63,26 +77,52 @@ public class Constant extends Expression {
 	
 	private final int radix;
 	
+	private final BigComplex exact;	// all of the digits, if this came out of an arbitrary-precision evaluation
 	
+	private final Rational ratio;	// the exact value, if it's a ratio of integers
 	
-	public Constant(double r) {
-		this(r, 0);
+	private final double error;	// how far off this might be, if it came out of an estimate (0 if its digits are all it has to say)
+	
+	
+	
+	public Constant(double r) {	// a double is never exact, even if it's whole; exact numbers come from integer literals and ratios
+		this(r, 0, null, null);
 	}
 	
 	
 	public Constant(double r, double i) {
-		real = r;
-		imag = i;
-		dimensions = new HashMap<Dimension, Integer>();
-		radix = 10;
+		this(r, i, null, null);
 	}
 	
 	
 	public Constant(double r, double i, double tol) {	// this will be rounded to the nearest tol
-		real = Math.round(r/tol)*tol;
-		imag = Math.round(i/tol)*tol;
+		this(Math.round(r/tol)*tol, Math.round(i/tol)*tol, null, null);
+	}
+	
+	
+	public Constant(BigComplex z) {	// arithmetic on this will only see the doubles, but it will print every digit
+		this(z.getReal().doubleValue(), z.getImag().doubleValue(), null, z);
+	}
+	
+	
+	public Constant(Rational q) {
+		this(q.doubleValue(), 0, q, null);
+	}
+	
+	
+	private Constant(double r, double i, Rational q, BigComplex z) {
+		this(r, i, q, z, 0);
+	}
+	
+	
+	private Constant(double r, double i, Rational q, BigComplex z, double err) {
+		real = r;
+		imag = i;
 		dimensions = new HashMap<Dimension, Integer>();
 		radix = 10;
+		ratio = q;
+		exact = z;
+		error = err;
 	}
 	
 	
@@ -102,6 +142,26 @@ public class Constant extends Expression {
 	}
 	
 	
+	public double getError() {	// the estimated error, which arithmetic on this does not carry along
+		return error;
+	}
+	
+	
+	public Constant withError(double err) {	// this, tagged with how far off it might be
+		return new Constant(real, imag, ratio, exact, err);
+	}
+	
+	
+	public boolean isExact() {	// is this every digit of its value, rather than a double that might have been rounded?
+		return ratio != null || exact != null;
+	}
+	
+	
+	public Rational getRatio() {	// the exact value, or null if this isn't a ratio of integers
+		return ratio;
+	}
+	
+	
 	@Override
 	public int[] shape() {
 		final int[] out = {1,1};
@@ -133,14 +193,64 @@ public class Constant extends Expression {
 	}
 	
 	
+	@Override
+	public int compile(Tape tape) {
+		if (exact != null)
+			return tape.constant(exact);
+		if (ratio != null && !ratio.isInteger())	// a Tape can't hold a ratio, but it can hold a division
+			return tape.apply(Operator.DIVIDE, compile(ratio.getNumerator(), tape), compile(ratio.getDenominator(), tape));
+		if (ratio != null)
+			return compile(ratio.getNumerator(), tape);
+		return tape.constant(real, imag);
+	}
+	
+	
+	private static int compile(BigInteger n, Tape tape) {	// record an integer, with all of its digits
+		if (n.bitLength() <= 53)
+			return tape.constant(n.doubleValue(), 0);
+		return tape.constant(new BigComplex(new BigDecimal(n), BigDecimal.ZERO));
+	}
+	
+	
+	@Override
+	protected int hashed() {
+		return 31*Double.hashCode(real) + Double.hashCode(imag);
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {	// the same value, known just as exactly, in the same units (doubles are compared bit for bit, like Double.equals)
+		if (this == obj)	return true;
+		if (!(obj instanceof Constant))	return false;
+		final Constant that = (Constant) obj;
+		return Double.compare(this.real, that.real) == 0 && Double.compare(this.imag, that.imag) == 0 && this.radix == that.radix &&
+				Objects.equals(this.ratio, that.ratio) && Objects.equals(this.exact, that.exact) &&
+				Double.compare(this.error, that.error) == 0 &&
+				this.dimensions.equals(that.dimensions);
+	}
+	
+	
 	@Override
 	public Image toImage() {
-		return ImgUtils.drawString(this.toString());
+		return ImgUtils.drawString(this.toString()+this.errorString());	// the error gets shown, but not printed, since nothing could read it back in
+	}
+	
+	
+	public String errorString() {	// the error as it gets shown after the value, or nothing if there isn't one
+		if (error > 0)	// two digits of the error is all anyone needs
+			return " \u00B1 "+format(new BigDecimal(error).round(new MathContext(2)));
+		return "";
 	}
 	
 	
 	@Override
 	public String toString() {
+		if (exact != null)
+			return toString(exact);
+		if (ratio != null && ratio.bitLength() > MAX_PRINTED_BITS)	// nobody wants to read ten thousand digits
+			return format(ratio.toBigDecimal(PRINTED_DIGITS));
+		if (ratio != null)
+			return ratio.toString();
 		if (imag == 0)	// real numbers need no i component
 			return format(real, radix);
 		else if (real == 0)	// imaginary numbers need no real component
@@ -150,6 +260,26 @@ public class Constant extends Expression {
 	}
 	
 	
+	private static String toString(BigComplex z) {
+		if (z.isReal())
+			return format(z.getReal());
+		else if (z.getReal().signum() == 0)
+			return format(z.getImag())+"i";
+		else
+			return "("+format(z.getReal())+" + "+format(z.getImag())+"i)";
+	}
+	
+	
+	private static String format(BigDecimal d) {	// the way Double.toString would do it, if doubles had this many digits
+		final BigDecimal x = (d.signum() == 0) ? BigDecimal.ZERO : d.stripTrailingZeros();
+		final int exponent = x.precision() - x.scale() - 1;
+		if (exponent >= -3 && exponent < 7)
+			return x.toPlainString();
+		else
+			return x.toString();
+	}
+	
+	
 	private String format(double d, int r) {
 		if ((int) d == d)
 			return Integer.toString((int) d);
@@ -159,35 +289,86 @@ public class Constant extends Expression {
 	
 	
 	public Constant plus(Constant that) {
+		if (this.ratio != null && that.ratio != null)
+			return new Constant(this.ratio.plus(that.ratio));
 		return new Constant(this.real+that.real, this.imag+that.imag,
 				Math.max(this.tolerance(), that.tolerance()));	// check the error, because sig figs
 	}
 	
+	public static Constant sum(Constant... terms) {	// add them all at once, so the error only gets checked at the end
+		Rational total = Rational.ZERO;
+		for (int i = 0; i < terms.length && total != null; i ++)	// if they're all ratios, it can be done exactly
+			total = (terms[i].ratio != null) ? total.plus(terms[i].ratio) : null;
+		if (total != null)
+			return new Constant(total);
+		
+		final Summation.Accumulator acc = Summation.getMode().newAccumulator();
+		double tol = 0;
+		for (Constant c: terms) {
+			acc.add(c.real, c.imag);
+			tol = Math.max(tol, c.tolerance());
+		}
+		final double re = acc.getReal(), im = acc.getImag();
+		tol = Math.max(tol, Math.hypot(re, im)*JDT);	// never finer than the total itself can hold
+		return new Constant(re, im, tol);
+	}
+	
 	public Constant negative() {
+		if (ratio != null)
+			return new Constant(ratio.negate());
 		return new Constant(-real, -imag);
 	}
 	
 	public Constant times(Constant that) {
+		if (this.ratio != null && that.ratio != null)
+			return new Constant(this.ratio.times(that.ratio));
 		return new Constant(this.real*that.real - this.imag*that.imag,
 				this.real*that.imag + this.imag*that.real);
 	}
 	
 	public Constant recip() {
+		if (ratio != null && ratio.signum() != 0)
+			return new Constant(ratio.reciprocal());
 		final double r2 = real*real + imag*imag;
 		return new Constant(real/r2, -imag/r2);
 	}
 	
 	public Constant mod(Constant that) {
+		if (this.ratio != null && that.ratio != null && that.ratio.signum() != 0)
+			return new Constant(this.ratio.mod(that.ratio));
+		if (this.imag == 0 && that.imag == 0)	// the remainder of two doubles is always exactly a double
+			return new Constant(this.real % that.real);
 		return this.plus(this.times(that.recip()).floor().times(that).negative());
 	}
 	
 	public Constant floor() {
+		if (ratio != null)
+			return new Constant(ratio.truncate());
 		final double s = Math.floor(Math.hypot(real, imag))
 				/Math.hypot(real, imag);
 		return new Constant(s*real, s*imag);
 	}
 	
+	public Constant pow(Constant that) {
+		if (this.ratio != null && that.ratio != null && that.ratio.isInteger()
+				&& Math.max(1, this.ratio.bitLength())*that.ratio.abs().doubleValue() < MAX_EXACT_BITS
+				&& (this.ratio.signum() != 0 || that.ratio.signum() > 0))	// whole powers of ratios are ratios
+			return new Constant(this.ratio.pow(that.ratio.getNumerator().intValue()));
+		if (this.imag == 0 && that.imag == 0 && (this.real >= 0 || that.real == Math.rint(that.real)))	// real powers of real numbers stay real
+			return new Constant(Math.pow(this.real, that.real));
+		return this.ln().times(that).exp();
+	}
+	
+	public Constant root(Constant that) {
+		if (that.ratio != null && that.ratio.doubleValue() == 2)
+			return this.sqrt();
+		return this.ln().times(that.recip()).exp();
+	}
+	
 	public Constant sqrt() {
+		final Rational root = (ratio != null) ? ratio.sqrt() : null;
+		if (root != null)	// perfect squares stay exact
+			return new Constant(root);
 		return this.ln().times(Constant.TWO.recip()).exp();
 	}
 	
@@ -245,14 +426,20 @@ public class Constant extends Expression {
 	}
 	
 	public Constant re() {
+		if (ratio != null)
+			return this;
 		return new Constant(real);
 	}
 	
 	public Constant im() {
+		if (ratio != null)
+			return ZERO;
 		return new Constant(imag);
 	}
 	
 	public Constant abs() {
+		if (ratio != null)
+			return new Constant(ratio.abs());
 		return new Constant(Math.hypot(real, imag));
 	}
 	
@@ -0,0 +1,551 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import maths.auxiliary.Notation;
+import maths.auxiliary.Operator;
+
+/**
+ * A way to find the cheapest way to evaluate an Expression, by equality
+ * saturation. The Expression goes into an e-graph, where each class is a set
+ * of nodes that are all equal, and each node is an operation or function on
+ * classes, so every node is only stored once (hash-consing). Then every rule
+ * in Rules, both ways, and a few equations Rules can't use because they don't
+ * make things smaller (like a+b = b+a), get applied everywhere at once,
+ * again and again, until nothing new turns up or the graph gets too big or
+ * takes too long. Since nothing gets thrown away, it doesn't matter what
+ * order they go in. Last, the cheapest node in each class gets picked out,
+ * counting how long each thing takes to evaluate: function calls are slow,
+ * division and powers less so, and addition and multiplication are fast.
+ *
+ * @author jkunimune
+ */
+public class EGraph {
+
+	private static final int MAX_NODES = 1 << 14;	// the most nodes worth adding
+	private static final long MAX_NANOS = 100000000L;	// the longest worth spending
+	private static final int MAX_PASSES = 32;	// the most times worth going through the rules
+	private static final int MAX_MATCHES = 256;	// the most places a rule gets used in one pass
+	private static final int MAX_TERMS = 8;	// the most terms a polynomial can have and still get written out, so it can be factored
+	
+	private static final int FAST = 1, DIVISION = 4, POWER = 8, CALL = 20;	// how long each kind of thing takes to evaluate
+	
+	private static final String[][] EQUATIONS = {	// things that are equal, but neither side is simpler
+			{"a+b", "b+a"},
+			{"a*b", "b*a"},
+			{"(a+b)+c", "a+(b+c)"},
+			{"(a*b)*c", "a*(b*c)"},
+			{"(a+b)-c", "a+(b-c)"},
+			{"a-b", "a+(-b)"},
+			{"a*(-b)", "-(a*b)"},
+			{"(a/b)*c", "(a*c)/b"},
+			{"(a/b)/c", "a/(b*c)"},
+			{"a/(b/c)", "(a*c)/b"},
+			{"a/b+c/d", "(a*d+b*c)/(b*d)"},
+			{"a^2", "a*a"}};
+	private static final List<Expression[]> BASICS = new ArrayList<Expression[]>();	// those, parsed
+	
+	static {
+		for (String[] equation: EQUATIONS)
+			BASICS.add(new Expression[] {
+					Rules.stripped((Expression) Notation.parseStatement(equation[0])),
+					Rules.stripped((Expression) Notation.parseStatement(equation[1]))});
+	}
+	
+	
+	
+	/**
+	 * One way of working out the value of a class: an Operation, a function,
+	 * or something to treat as a whole.
+	 * 
+	 * @author jkunimune
+	 */
+	private static class Node {
+		private final Operator opr;	// what it does, if it's an Operation
+		private final String code;	// or which function it calls
+		private final Expression leaf;	// or what it is, if it's neither
+		private final int[] kids;	// the classes it works on
+		private final String head;	// what it is, apart from its inputs
+		
+		private Node(Operator opr, String code, Expression leaf, int[] kids) {
+			this.opr = opr;
+			this.code = code;
+			this.leaf = leaf;
+			this.kids = kids;
+			if (opr != null)
+				this.head = opr+"/"+kids.length;
+			else if (code != null)
+				this.head = code+"()";
+			else
+				this.head = leaf.getClass().getSimpleName()+"#"+leaf.hashCode();	// (which leaf it is exactly goes in its key)
+		}
+	}
+	
+	
+	
+	private final List<Integer> parents;	// the union-find forest of classes
+	private final Map<Integer, List<Node>> classes;	// the nodes in each class, by the root of its tree
+	private final Map<String, Integer> memo;	// the class of every node, by what it is
+	private final Map<Integer, Constant> values;	// the classes that are known to be one number
+	private final Map<Expression, Integer> leaves;	// a number for every different leaf, by structural equality
+	private int size;	// how many nodes there are
+	
+	
+	
+	private EGraph() {
+		parents = new ArrayList<Integer>();
+		classes = new LinkedHashMap<Integer, List<Node>>();
+		memo = new HashMap<String, Integer>();
+		values = new HashMap<Integer, Constant>();
+		leaves = new HashMap<Expression, Integer>();
+		size = 0;
+	}
+	
+	
+	
+	public static Expression optimized(Expression exp) {	// the cheapest thing equal to exp that can be found in a reasonable time
+		if (exp instanceof Vector) {	// vectors are done component by component
+			final Expression[] comps = ((Vector) exp).getComponents();
+			final Expression[] out = new Expression[comps.length];
+			for (int i = 0; i < comps.length; i ++)
+				out[i] = optimized(comps[i]);
+			return new Vector(((Vector) exp).getParenthetic(), out);
+		}
+		if (!(exp instanceof Operation) && !(exp instanceof BuiltInFunction) && !(exp instanceof SparsePolynomial))
+			return exp;
+		
+		try {
+			final EGraph graph = new EGraph();
+			final int root = graph.added(exp);
+			graph.saturate(equations());
+			return Expression.interned(graph.extracted(root));	// so any subtree it uses more than once is only kept once
+		} catch (ArithmeticException e) {	// if anything goes wrong, the original is still good
+			return exp;
+		}
+	}
+	
+	
+	private static List<Expression[]> equations() {	// every rule that can be used, in each direction it can be used
+		final List<Expression[]> pairs = new ArrayList<Expression[]>(BASICS);
+		pairs.addAll(Rules.identities());
+		
+		final List<Expression[]> out = new ArrayList<Expression[]>();
+		for (Expression[] pair: pairs) {
+			out.add(pair);
+			if (!(pair[1] instanceof Operation))
+				continue;	// a pattern that's just one thing would match everything, and one function is never worth turning into several
+			final Set<String> lhsVars = new HashSet<String>(), rhsVars = new HashSet<String>();
+			wildcards(pair[0], lhsVars);
+			wildcards(pair[1], rhsVars);
+			if (rhsVars.containsAll(lhsVars))	// it can only go backwards if that doesn't leave anything unknown
+				out.add(new Expression[] {pair[1], pair[0]});
+		}
+		return out;
+	}
+	
+	
+	
+	private int added(Expression exp) {	// put an Expression in the graph, and return its class
+		if (exp instanceof Operation) {
+			final Operation op = (Operation) exp;
+			if (op.opr == Operator.PARENTHESES)
+				return added(op.args[0]);
+			if (op.args.length > 2 && (op.opr == Operator.ADD || op.opr == Operator.MULTIPLY)) {	// long sums and products become chains of pairs
+				int chain = added(op.args[0]);
+				for (int i = 1; i < op.args.length; i ++)
+					chain = added(new Node(op.opr, null, null, new int[] {chain, added(op.args[i])}));
+				return chain;
+			}
+			if (op.args.length > 0) {
+				final int[] kids = new int[op.args.length];
+				for (int i = 0; i < kids.length; i ++)
+					kids[i] = added(op.args[i]);
+				return added(new Node(op.opr, null, null, kids));
+			}
+		}
+		if (exp instanceof SparsePolynomial && ((SparsePolynomial) exp).size() <= MAX_TERMS) {	// small polynomials might evaluate faster factored
+			final int c = added(new Node(null, null, exp, new int[0]));
+			union(c, added(((SparsePolynomial) exp).toExpression()));
+			return find(c);
+		}
+		if (exp instanceof BuiltInFunction && !(((BuiltInFunction) exp).getArgs().length > 1))
+			return added(new Node(null, ((BuiltInFunction) exp).getCode(), null,
+					new int[] {added(((BuiltInFunction) exp).getArgs()[0])}));
+		return added(new Node(null, null, exp, new int[0]));
+	}
+	
+	
+	private int added(Node node) {	// put a node in the graph, if it isn't already, and return its class
+		for (int i = 0; i < node.kids.length; i ++)
+			node.kids[i] = find(node.kids[i]);
+		final String key = key(node);
+		if (memo.containsKey(key))
+			return find(memo.get(key));
+		
+		final int c = parents.size();
+		parents.add(c);
+		final List<Node> members = new ArrayList<Node>();
+		members.add(node);
+		classes.put(c, members);
+		memo.put(key, c);
+		size ++;
+		
+		if (node.leaf instanceof Constant)
+			values.put(c, (Constant) node.leaf);
+		else {
+			final Constant value = folded(node);
+			if (value != null)
+				union(c, added(new Node(null, null, value, new int[0])));
+		}
+		return find(c);
+	}
+	
+	
+	private Constant folded(Node node) {	// the value of this node, if all of its inputs are numbers
+		if (node.leaf != null)
+			return null;
+		final Expression[] args = new Expression[node.kids.length];
+		for (int i = 0; i < args.length; i ++) {
+			args[i] = values.get(find(node.kids[i]));
+			if (args[i] == null)
+				return null;
+		}
+		try {
+			final Expression value = (node.opr != null) ? new Operation(node.opr, args).simplified(null) :
+				new BuiltInFunction(node.code, args[0]).simplified(null);
+			return (value instanceof Constant) ? (Constant) value : null;
+		} catch (ArithmeticException e) {	// if it's undefined, it can stay as it is
+			return null;
+		}
+	}
+	
+	
+	private int find(int c) {	// the root of this class's tree
+		while (parents.get(c) != c) {
+			parents.set(c, parents.get(parents.get(c)));
+			c = parents.get(c);
+		}
+		return c;
+	}
+	
+	
+	private boolean union(int a, int b) {	// say that two classes are equal, and return whether that's news
+		a = find(a);
+		b = find(b);
+		if (a == b)
+			return false;
+		if (b < a) {
+			final int t = a;
+			a = b;
+			b = t;
+		}
+		parents.set(b, a);
+		classes.get(a).addAll(classes.remove(b));
+		if (!values.containsKey(a) && values.containsKey(b))
+			values.put(a, values.get(b));
+		values.remove(b);
+		return true;
+	}
+	
+	
+	private void rebuild() {	// merge any nodes that have become the same since their inputs were merged
+		boolean changed;
+		do {
+			changed = false;
+			memo.clear();
+			final Map<String, Node> unique = new LinkedHashMap<String, Node>();
+			final List<Node> foldable = new ArrayList<Node>();
+			for (int c: new ArrayList<Integer>(classes.keySet())) {
+				if (!classes.containsKey(c))
+					continue;	// it was merged into an earlier one during this pass
+				for (Node node: new ArrayList<Node>(classes.get(find(c)))) {
+					for (int i = 0; i < node.kids.length; i ++)
+						node.kids[i] = find(node.kids[i]);
+					final String key = key(node);
+					if (memo.containsKey(key))
+						changed |= union(memo.get(key), c);
+					else {
+						memo.put(key, find(c));
+						unique.put(key, node);
+						if (!values.containsKey(find(c)) && folded(node) != null)
+							foldable.add(node);
+					}
+				}
+			}
+			
+			for (List<Node> members: classes.values())	// every node is only kept once
+				members.clear();
+			for (Map.Entry<String, Node> entry: unique.entrySet()) {
+				final int c = find(memo.get(entry.getKey()));
+				memo.put(entry.getKey(), c);
+				classes.get(c).add(entry.getValue());
+			}
+			size = unique.size();
+			
+			for (Node node: foldable) {
+				final int c = find(memo.get(key(node)));
+				if (!values.containsKey(c)) {
+					union(c, added(new Node(null, null, folded(node), new int[0])));
+					changed = true;
+				}
+			}
+		} while (changed);
+	}
+	
+	
+	private void saturate(List<Expression[]> equations) {	// apply every equation everywhere until nothing changes
+		final long deadline = System.nanoTime() + MAX_NANOS;
+		for (int pass = 0; pass < MAX_PASSES; pass ++) {
+			final Map<String, List<Integer>> byHead = new HashMap<String, List<Integer>>();	// the classes with each kind of node
+			for (Map.Entry<Integer, List<Node>> entry: classes.entrySet()) {
+				for (Node node: entry.getValue()) {
+					if (!byHead.containsKey(node.head))
+						byHead.put(node.head, new ArrayList<Integer>());
+					final List<Integer> list = byHead.get(node.head);
+					if (list.isEmpty() || list.get(list.size()-1) != (int) entry.getKey())
+						list.add(entry.getKey());
+				}
+			}
+			
+			final List<int[]> unions = new ArrayList<int[]>();
+			for (Expression[] equation: equations) {
+				final List<Map<String, Integer>> found = new ArrayList<Map<String, Integer>>();
+				final List<Integer> where = new ArrayList<Integer>();
+				final List<Integer> candidates = byHead.get(shape(equation[0]).head);
+				if (candidates == null)
+					continue;
+				for (int c: candidates) {
+					final int before = found.size();
+					matched(equation[0], c, new HashMap<String, Integer>(), found);
+					for (int i = before; i < found.size(); i ++)
+						where.add(c);
+					if (found.size() >= MAX_MATCHES)
+						break;
+				}
+				for (int i = 0; i < found.size(); i ++)
+					unions.add(new int[] {where.get(i), instantiated(equation[1], found.get(i))});
+				if (size > MAX_NODES || System.nanoTime() > deadline)
+					break;
+			}
+			
+			boolean changed = false;
+			for (int[] pair: unions)
+				changed |= union(pair[0], pair[1]);
+			final int before = size;
+			rebuild();
+			if (!changed && size == before)
+				return;	// it's saturated
+			if (size > MAX_NODES || System.nanoTime() > deadline)
+				return;
+		}
+	}
+	
+	
+	private void matched(Expression pat, int c, Map<String, Integer> binds, List<Map<String, Integer>> out) {	// every way pat could be a member of class c
+		c = find(c);
+		if (out.size() >= MAX_MATCHES)
+			return;
+		if (Rules.isWildcard(pat)) {
+			final String name = ((Variable) pat).getName();
+			if (!binds.containsKey(name)) {
+				final Map<String, Integer> more = new HashMap<String, Integer>(binds);
+				more.put(name, c);
+				out.add(more);
+			}
+			else if (find(binds.get(name)) == c)
+				out.add(binds);
+			return;
+		}
+		
+		final Node shape = shape(pat);
+		for (Node node: classes.get(c)) {
+			if (!node.head.equals(shape.head) || (shape.leaf != null && !shape.leaf.equals(node.leaf)))
+				continue;
+			if (shape.leaf != null) {
+				out.add(binds);
+				break;
+			}
+			final Expression[] args = children(pat);
+			List<Map<String, Integer>> partial = new ArrayList<Map<String, Integer>>();
+			partial.add(binds);
+			for (int i = 0; i < args.length && !partial.isEmpty(); i ++) {
+				final List<Map<String, Integer>> next = new ArrayList<Map<String, Integer>>();
+				for (Map<String, Integer> p: partial)
+					matched(args[i], node.kids[i], p, next);
+				partial = next;
+			}
+			for (Map<String, Integer> p: partial)
+				if (out.size() < MAX_MATCHES)
+					out.add(p);
+		}
+	}
+	
+	
+	private int instantiated(Expression pat, Map<String, Integer> binds) {	// put a pattern in the graph, with its wildcards filled in
+		if (Rules.isWildcard(pat))
+			return binds.get(((Variable) pat).getName());
+		final Node shape = shape(pat);
+		if (shape.leaf != null)
+			return added(shape);
+		final Expression[] args = children(pat);
+		final int[] kids = new int[args.length];
+		for (int i = 0; i < args.length; i ++)
+			kids[i] = instantiated(args[i], binds);
+		return added(new Node(shape.opr, shape.code, null, kids));
+	}
+	
+	
+	private Expression extracted(int root) {	// the cheapest member of this class, written out
+		final Map<Integer, Double> best = new HashMap<Integer, Double>();
+		final Map<Integer, Node> choice = new HashMap<Integer, Node>();
+		boolean changed = true;
+		while (changed) {	// keep lowering the costs until they settle
+			changed = false;
+			for (Map.Entry<Integer, List<Node>> entry: classes.entrySet()) {
+				for (Node node: entry.getValue()) {
+					double cost = cost(node);
+					for (int kid: node.kids) {
+						final Double kidCost = best.get(find(kid));
+						cost = (kidCost == null) ? Double.POSITIVE_INFINITY : cost + kidCost;
+					}
+					final Double old = best.get(entry.getKey());
+					if (cost < Double.POSITIVE_INFINITY && (old == null || cost < old)) {
+						best.put(entry.getKey(), cost);
+						choice.put(entry.getKey(), node);
+						changed = true;
+					}
+				}
+			}
+		}
+		return written(find(root), choice, new HashMap<Integer, Expression>());
+	}
+	
+	
+	private Expression written(int c, Map<Integer, Node> choice,
+			Map<Integer, Expression> done) {	// write out the chosen node of each class from here down, writing each class only once
+		c = find(c);
+		if (done.containsKey(c))
+			return done.get(c);
+		final Node node = choice.get(c);
+		final Expression out;
+		if (node.leaf != null)
+			out = node.leaf;
+		else {
+			final Expression[] args = new Expression[node.kids.length];
+			for (int i = 0; i < args.length; i ++)
+				args[i] = written(node.kids[i], choice, done);
+			if (node.opr != null)
+				out = new Operation(node.opr, args);
+			else
+				out = new BuiltInFunction(node.code, args[0]);
+		}
+		done.put(c, out);
+		return out;
+	}
+	
+	
+	private double cost(Node node) {	// how long this takes to evaluate, not counting its inputs
+		if (node.leaf instanceof Constant || node.leaf instanceof Variable)
+			return 0;
+		else if (node.leaf instanceof SparsePolynomial)
+			return ((SparsePolynomial) node.leaf).cost();
+		else if (node.leaf != null)
+			return FAST;
+		else if (node.code != null)
+			return CALL;
+		
+		switch (node.opr) {
+		case ADD:
+		case SUBTRACT:
+		case NEGATE:
+		case MULTIPLY:
+		case ABSOLUTE:
+			return FAST;
+		case DIVIDE:
+		case MODULO:
+			return DIVISION;
+		case POWER:
+			final Constant p = values.get(find(node.kids[1]));
+			if (p != null && p.getImag() == 0 && p.getReal() == Math.rint(p.getReal()) && Math.abs(p.getReal()) <= 4)
+				return (p.getReal() < 0) ? DIVISION+FAST : 2*FAST;	// small whole powers are just a few multiplications (and maybe a division)
+			return POWER;
+		case ROOT:
+		case LN:
+			return POWER;
+		case LOGBASE:
+			return 2*POWER;
+		default:
+			return 2*FAST;
+		}
+	}
+	
+	
+	
+	private String key(Node node) {	// what this node is, for hash-consing
+		final StringBuilder key = new StringBuilder(node.head);
+		if (node.leaf != null) {
+			if (!leaves.containsKey(node.leaf))
+				leaves.put(node.leaf, leaves.size());
+			key.append(':').append(leaves.get(node.leaf));
+		}
+		for (int kid: node.kids)
+			key.append(' ').append(kid);
+		return key.toString();
+	}
+	
+	
+	private static Node shape(Expression pat) {	// the node a pattern would be, with its inputs left blank
+		if (pat instanceof Operation && ((Operation) pat).args.length > 0)
+			return new Node(((Operation) pat).opr, null, null, new int[((Operation) pat).args.length]);
+		if (pat instanceof BuiltInFunction && ((BuiltInFunction) pat).getArgs().length == 1)
+			return new Node(null, ((BuiltInFunction) pat).getCode(), null, new int[1]);
+		return new Node(null, null, pat, new int[0]);
+	}
+	
+	
+	private static Expression[] children(Expression pat) {
+		if (pat instanceof Operation)
+			return ((Operation) pat).args;
+		else
+			return ((BuiltInFunction) pat).getArgs();
+	}
+	
+	
+	private static void wildcards(Expression pat, Set<String> names) {	// every wildcard in a pattern
+		if (Rules.isWildcard(pat))
+			names.add(((Variable) pat).getName());
+		else if (pat instanceof Operation || pat instanceof BuiltInFunction)
+			for (Expression arg: children(pat))
+				wildcards(arg, names);
+	}
+
+}
@@ -23,12 +23,16 @@
  */
 package maths;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import gui.Workspace;
 import javafx.scene.image.Image;
 import maths.auxiliary.Operator;
+import maths.auxiliary.Tape;
 
 /**
  * A combination of mathematical symbols and notation that can evaluate to some
@@ -42,6 +46,11 @@ public abstract class Expression implements Statement {
 	public static final Expression NULL = new Operation(Operator.NULL);	// used when an expression is blank
 	public static final Expression ERROR = new Operation(Operator.ERROR);	// used when an expression cannot be read
 	
+	private static final Map<Expression, WeakReference<Expression>> INTERNED =
+			new WeakHashMap<Expression, WeakReference<Expression>>();	// the one copy of each tree that has been interned, for as long as anyone is using it
+	
+	private int hash;	// the structural hash, saved the first time it is needed (0 if it hasn't been yet)
+	
 	
 	
 	public abstract int[] shape(); // returns the length of the vector or the size of the array
@@ -59,7 +68,7 @@ public abstract class Expression implements Statement {
 		int[] shape = this.shape();
 		if (i < 0 || i >= shape[0]*shape[1])
 			throw new ArithmeticException(this+" doesn't have a "+i+"th component");
-		return this.getComponent(i/shape[0], i%shape[1]);
+		return this.getComponent(i/shape[1], i%shape[1]);	// count along the rows
 	}
 	
 	
@@ -125,6 +134,66 @@ public abstract class Expression implements Statement {
 	public abstract Expression simplified(Workspace heap) throws ArithmeticException;
 	
 	
+	public int compile(Tape tape) throws ArithmeticException { // record this onto tape and return the register that will hold it
+		throw new ArithmeticException(this+" cannot be evaluated numerically.");
+	}
+	
+	
+	protected static int[] compileAll(Expression[] args, Tape tape) {
+		int[] output = new int[args.length];
+		for (int i = 0; i < args.length; i ++)
+			output[i] = args[i].compile(tape);
+		return output;
+	}
+	
+	
+	public static Expression interned(Expression exp) {	// the one shared copy of this tree, made of the shared copies of its subtrees
+		final Expression rebuilt = exp.internedParts();
+		synchronized (INTERNED) {
+			final WeakReference<Expression> ref = INTERNED.get(rebuilt);
+			final Expression old = (ref == null) ? null : ref.get();
+			if (old != null)
+				return old;
+			INTERNED.put(rebuilt, new WeakReference<Expression>(rebuilt));
+			return rebuilt;
+		}
+	}
+	
+	
+	protected static Expression[] internAll(Expression[] args) {	// returns args itself if every one was already interned
+		Expression[] output = args;
+		for (int i = 0; i < args.length; i ++) {
+			final Expression shared = interned(args[i]);
+			if (shared != args[i] && output == args)
+				output = args.clone();
+			output[i] = shared;
+		}
+		return output;
+	}
+	
+	
+	protected Expression internedParts() { // this with all of its subexpressions interned (things without any are already done)
+		return this;
+	}
+	
+	
+	@Override
+	public final int hashCode() {	// trees never change once they're built, so this only needs to be worked out once
+		if (hash == 0) {
+			final int h = hashed();
+			hash = (h == 0) ? 1 : h;
+		}
+		return hash;
+	}
+	
+	
+	protected abstract int hashed(); // a hash of this's structure, consistent with equals
+	
+	
+	@Override
+	public abstract boolean equals(Object that); // do these have the same structure, with the same values at the leaves?
+	
+	
 	@Override
 	public abstract Image toImage();
 	
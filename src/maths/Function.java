@@ -29,6 +29,7 @@ import java.util.List;
 
 import gui.Workspace;
 import javafx.scene.image.Image;
+import maths.auxiliary.Tape;
 import util.ImgUtils;
 
 /**
@@ -129,6 +130,45 @@ public class Function extends Expression {
 	}
 	
 	
+	@Override
+	public int compile(Tape tape) {
+		final Workspace heap = tape.getHeap();
+		if (heap == null || !heap.containsKey(name))
+			throw new ArithmeticException(name+" is undefined.");
+		final String[] params = (heap.getArgs(name) == null) ?
+				new String[0] : heap.getArgs(name);
+		if (params.length != args.length)
+			throw new ArithmeticException(name+" takes "+params.length+" arguments!");
+		
+		tape.enter(params, super.compileAll(args, tape));	// the arguments go in first
+		final int output = heap.get(name).compile(tape);	// then the body is recorded around them
+		tape.exit();
+		return output;
+	}
+	
+	
+	@Override
+	protected Expression internedParts() {
+		final Expression[] iargs = super.internAll(args);
+		return (iargs == args) ? this : new Function(name, iargs);
+	}
+	
+	
+	@Override
+	protected int hashed() {
+		return 31*name.hashCode() + Arrays.hashCode(args);
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)	return true;
+		if (!(obj instanceof Function) || obj.hashCode() != this.hashCode())	return false;
+		final Function that = (Function) obj;
+		return this.name.equals(that.name) && Arrays.equals(this.args, that.args);
+	}
+	
+	
 	@Override
 	public Image toImage() {
 		List<Image> imgs = new ArrayList<Image>();
@@ -66,6 +66,26 @@ public class Locus extends Expression {
 	
 	
 	
+	public Expression getTemplate() {
+		return template;
+	}
+	
+	
+	public String[] getParams() {
+		return params;
+	}
+	
+	
+	public Expression[] getLowBounds() {
+		return lowBounds;
+	}
+	
+	
+	public Expression[] getUppBounds() {
+		return uppBounds;
+	}
+	
+	
 	@Override
 	public int[] shape() {
 		return template.shape();
@@ -102,12 +122,40 @@ public class Locus extends Expression {
 	
 	@Override
 	public Expression simplified(Workspace heap) throws ArithmeticException {
-		final Workspace locHeap = heap.localize(Arrays.asList(params));
+		final Workspace locHeap = (heap == null) ? null :
+				heap.localize(Arrays.asList(params));
 		return new Locus(template.simplified(locHeap), params,
 				lowBounds, uppBounds);
 	}
 	
 	
+	@Override
+	protected Expression internedParts() {
+		final Expression itemp = Expression.interned(template);
+		final Expression[] ilow = super.internAll(lowBounds), iupp = super.internAll(uppBounds);
+		if (itemp == template && ilow == lowBounds && iupp == uppBounds)
+			return this;
+		return new Locus(itemp, params, ilow, iupp);
+	}
+	
+	
+	@Override
+	protected int hashed() {
+		final int h = 31*template.hashCode() + Arrays.hashCode(params);
+		return 31*(31*h + Arrays.hashCode(lowBounds)) + Arrays.hashCode(uppBounds);
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)	return true;
+		if (!(obj instanceof Locus) || obj.hashCode() != this.hashCode())	return false;
+		final Locus that = (Locus) obj;
+		return this.template.equals(that.template) && Arrays.equals(this.params, that.params) &&
+				Arrays.equals(this.lowBounds, that.lowBounds) && Arrays.equals(this.uppBounds, that.uppBounds);
+	}
+	
+	
 	@Override
 	public Image toImage() {
 		Image output =
@@ -1,90 +1,617 @@
 /**
- * 
+ *
  */
 package maths;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import gui.Workspace;
 import javafx.scene.image.Image;
+import maths.auxiliary.Eigensolver;
+import maths.auxiliary.LUDecomposition;
+import maths.auxiliary.LinearAlgebra;
+import maths.auxiliary.LinearSolver.LinearMap;
+import maths.auxiliary.Operator;
+import util.ImgUtils;
 
 /**
- * A two-dimensional grid of scalars, represented as a list of vectors.
+ * A two-dimensional grid of scalars. If every element is a number, they are
+ * packed row by row into arrays of doubles so that big matrices stay small and
+ * fast; otherwise, they are kept as a plain array of Expressions.
  *
  * @author jkunimune
  */
 public class Matrix extends Expression {
 
-	private final List<Vector> rows;
-	
-	
-	
-	public Matrix(List<Vector> e) {
-		rows = e;
-	}
-	
-	
-	
-	public static final List<Expression> convert(List<Vector> lv) {	// casts List<Vector> to List<Expression>
-		List<Expression> output = new ArrayList<Expression>();
-		for (Vector v: lv)
-			output.add((Expression) v);
+	static final int MAX_DISPLAY = 400;	// matrices with more elements than this are only summarised
+	private static final int MAX_SYMBOLIC_DET = 8;	// the biggest symbolic determinant we will expand by cofactors
+	static final int MIN_KRYLOV = 200;	// the smallest matrix for which we find a few eigenvalues by Arnoldi iteration
+	private static final int MAX_EXACT = 1 << 12;	// the most elements a matrix can have and still keep them exact
+
+	private final int height, width;
+	private final double[] real, imag;	// the numeric form (imag is null if the matrix is real)
+	private final Expression[] elements;	// the symbolic form (null if the matrix is numeric)
+	private final Constant[] exact;	// the numeric form again, if every element is exact (null otherwise)
+
+
+
+	public Matrix(int n, int m, double[] re, double[] im) {
+		height = n;
+		width = m;
+		real = re;
+		imag = LinearAlgebra.isZero(im) ? null : im;
+		elements = null;
+		exact = null;
+	}
+
+
+	public Matrix(int n, int m, Expression[] elms) {
+		if (elms.length != n*m)
+			throw new IllegalArgumentException("A "+n+"\u00d7"+m+" matrix can't have "+elms.length+" elements.");
+		height = n;
+		width = m;
+
+		boolean numeric = true, exactly = elms.length <= MAX_EXACT;
+		for (Expression elm: elms) {
+			if (!(elm instanceof Constant))
+				numeric = false;
+			else if (!((Constant) elm).isExact())
+				exactly = false;
+		}
+
+		if (numeric) {	// pack numbers into arrays as soon as we can
+			final double[] re = new double[n*m], im = new double[n*m];
+			for (int i = 0; i < elms.length; i ++) {
+				re[i] = ((Constant) elms[i]).getReal();
+				im[i] = ((Constant) elms[i]).getImag();
+			}
+			real = re;
+			imag = LinearAlgebra.isZero(im) ? null : im;
+			elements = null;
+			exact = exactly ? Arrays.copyOf(elms, elms.length, Constant[].class) : null;	// the doubles are for speed, but these are what gets shown
+		}
+		else {
+			real = null;
+			imag = null;
+			elements = elms;
+			exact = null;
+		}
+	}
+
+
+
+	public static Matrix identity(int n) {
+		return new Matrix(n, n, LinearAlgebra.identity(n), null);
+	}
+
+
+	public static Matrix stack(Expression... rows) {	// build a Matrix out of rows, like [a, b; c, d]
+		final List<Expression> elms = new ArrayList<Expression>();
+		int n = 0, m = -1;
+		for (Expression row: rows) {
+			final Expression[] comps;
+			int rowHeight = 1;
+			if (row instanceof Matrix) {
+				comps = ((Matrix) row).getElements();
+				rowHeight = ((Matrix) row).height;
+			}
+			else if (row instanceof Vector)
+				comps = ((Vector) row).getComponents();
+			else
+				comps = new Expression[] {row};
+
+			if (m >= 0 && comps.length != m*rowHeight)
+				throw new IllegalArgumentException("Every row of a matrix must be the same length.");
+			m = comps.length/rowHeight;
+			n += rowHeight;
+			elms.addAll(Arrays.asList(comps));
+		}
+		return new Matrix(n, m, elms.toArray(new Expression[0]));
+	}
+
+
+	public boolean isNumeric() {
+		return elements == null;
+	}
+
+
+	public double[] getReal() {	// the packed real parts (do not modify!)
+		return real;
+	}
+
+
+	public double[] getImag() {	// the packed imaginary parts, or null if this is real (do not modify!)
+		return imag;
+	}
+
+
+	public Expression[] getElements() {	// every element, row by row
+		if (elements != null)
+			return elements;
+		if (exact != null)
+			return Arrays.copyOf(exact, exact.length, Expression[].class);
+		final Expression[] output = new Expression[height*width];
+		for (int i = 0; i < output.length; i ++)
+			output[i] = new Constant(real[i], (imag == null) ? 0 : imag[i]);
 		return output;
 	}
-	
-	
+
+
 	@Override
 	public int[] shape() {
-		// TODO Auto-generated method stub
-		return null;
+		final int[] out = {height, width};
+		return out;
 	}
-	
-	
+
+
 	@Override
 	protected Expression getComponent(int i, int j) {
-		// TODO Auto-generated method stub
-		return null;
+		if (elements != null)
+			return elements[i*width+j];
+		else if (exact != null)
+			return exact[i*width+j];
+		else
+			return new Constant(real[i*width+j], (imag == null) ? 0 : imag[i*width+j]);
 	}
-	
-	
+
+
 	@Override
 	public List<String> getInputs(Workspace heap) {
-		// TODO Auto-generated method stub
-		return null;
+		if (elements == null)
+			return new ArrayList<String>();
+		return super.getInputsAll(elements, heap);
 	}
-	
-	
+
+
 	@Override
 	public Expression replaced(String[] oldStrs, String[] newStrs) {
-		// TODO Auto-generated method stub
-		return null;
+		if (elements == null)
+			return this;
+		return new Matrix(height, width, super.replaceAll(elements, oldStrs, newStrs));
+	}
+
+
+	@Override
+	public Matrix simplified(Workspace heap) {
+		if (elements == null)
+			return this;	// numbers are already simplified
+		return new Matrix(height, width, super.simplifyAll(elements, heap));
 	}
 
 
+	@Override
+	protected Expression internedParts() {
+		if (elements == null)
+			return this;
+		final Expression[] ielms = super.internAll(elements);
+		return (ielms == elements) ? this : new Matrix(height, width, ielms);
+	}
+
+
+	@Override
+	protected int hashed() {
+		final int h = 31*height + width;
+		if (elements == null)
+			return 31*(31*h + Arrays.hashCode(real)) + Arrays.hashCode(imag);
+		return 31*h + Arrays.hashCode(elements);
+	}
+
 
 	@Override
-	public Expression simplified(Workspace heap) {
-		// TODO Auto-generated method stub
-		return null;
+	public boolean equals(Object obj) {	// numeric matrices are compared by their numbers, and symbolic ones by their elements
+		if (this == obj)	return true;
+		if (!(obj instanceof Matrix) || obj.hashCode() != this.hashCode())	return false;
+		final Matrix that = (Matrix) obj;
+		if (this.height != that.height || this.width != that.width || this.isNumeric() != that.isNumeric())
+			return false;
+		if (this.isNumeric())
+			return Arrays.equals(this.real, that.real) && Arrays.equals(this.imag, that.imag)
+					&& Arrays.equals(this.exact, that.exact);
+		return Arrays.equals(this.elements, that.elements);
 	}
-	
-	
+
+
 	@Override
 	public Image toImage() {
-		// TODO Auto-generated method stub
-		return null;
+		if (height*width > MAX_DISPLAY)
+			return ImgUtils.drawString(summary());
+
+		final Image[] rowImgs = new Image[height];
+		for (int i = 0; i < height; i ++) {
+			final List<Image> imgs = new ArrayList<Image>();
+			for (int j = 0; j < width; j ++)
+				imgs.add(getComponent(i, j).toImage());
+			rowImgs[i] = ImgUtils.link(imgs, "  ");
+		}
+		return ImgUtils.bind(ImgUtils.vertCat(true, rowImgs));
 	}
-	
-	
+
+
 	@Override
 	public String toString() {
+		if (height*width > MAX_DISPLAY)
+			return summary();
+
 		String output = "[";
-		for (Vector row: rows) {
-			output += row.toString();
-			output += "\n";
+		for (int i = 0; i < height; i ++) {
+			for (int j = 0; j < width; j ++)
+				output += getComponent(i, j).toString()+", ";
+			output = output.substring(0, output.length()-2)+"; ";
+		}
+		return output.substring(0, output.length()-2)+"]";
+	}
+
+
+	private String summary() {
+		return "["+height+"\u00d7"+width+" matrix]";
+	}
+
+
+	public Matrix plus(Matrix that) {
+		if (this.height != that.height || this.width != that.width)
+			throw new ArithmeticException("Cannot sum a "+this.height+"\u00d7"
+					+this.width+" matrix with a "+that.height+"\u00d7"
+					+that.width+" matrix.");
+
+		if (this.exact != null && that.exact != null) {
+			final Constant[] sum = new Constant[exact.length];
+			for (int i = 0; i < sum.length; i ++)
+				sum[i] = this.exact[i].plus(that.exact[i]);
+			return new Matrix(height, width, sum);
+		}
+		if (this.isNumeric() && that.isNumeric())
+			return new Matrix(height, width,
+					LinearAlgebra.add(this.real, that.real, 1),
+					LinearAlgebra.add(this.imag, that.imag, 1));
+
+		final Expression[] a = this.getElements(), b = that.getElements();
+		final Expression[] newElms = new Expression[a.length];
+		for (int i = 0; i < a.length; i ++)
+			newElms[i] = new Operation(Operator.ADD, a[i], b[i]).simplified();
+		return new Matrix(height, width, newElms);
+	}
+
+
+	public Matrix negative() {
+		return this.times(Constant.NEG_ONE);
+	}
+
+
+	public Matrix times(Constant c) {
+		if (this.exact != null && c.isExact()) {
+			final Constant[] prod = new Constant[exact.length];
+			for (int i = 0; i < prod.length; i ++)
+				prod[i] = exact[i].times(c);
+			return new Matrix(height, width, prod);
 		}
+		if (this.isNumeric()) {
+			final double cr = c.getReal(), ci = c.getImag();
+			return new Matrix(height, width,
+					LinearAlgebra.add(LinearAlgebra.scale(real, cr), imag, -ci),
+					LinearAlgebra.add(LinearAlgebra.scale(imag, cr), real, ci));
+		}
+
+		final Expression[] newElms = new Expression[elements.length];
+		for (int i = 0; i < elements.length; i ++)
+			newElms[i] = new Operation(Operator.MULTIPLY, elements[i], c).simplified();
+		return new Matrix(height, width, newElms);
+	}
+
+
+	public Matrix times(Matrix that) {
+		if (this.width != that.height)
+			throw new ArithmeticException("Cannot multiply a "+this.height+"\u00d7"
+					+this.width+" matrix by a "+that.height+"\u00d7"
+					+that.width+" matrix.");
+
+		if (this.exact != null && that.exact != null) {	// exact products are added up as ratios
+			final Constant[] prod = new Constant[this.height*that.width];
+			final Constant[] terms = new Constant[this.width];
+			for (int i = 0; i < this.height; i ++) {
+				for (int j = 0; j < that.width; j ++) {
+					for (int k = 0; k < this.width; k ++)
+						terms[k] = this.exact[i*this.width+k].times(that.exact[k*that.width+j]);
+					prod[i*that.width+j] = Constant.sum(terms);
+				}
+			}
+			return new Matrix(this.height, that.width, prod);
+		}
+		if (this.isNumeric() && that.isNumeric()) {
+			final double[][] c = LinearAlgebra.multiply(this.real, this.imag,
+					that.real, that.imag, this.height, this.width, that.width);
+			return new Matrix(this.height, that.width, c[0], c[1]);
+		}
+
+		final Expression[] newElms = new Expression[this.height*that.width];
+		for (int i = 0; i < this.height; i ++) {
+			for (int j = 0; j < that.width; j ++) {
+				Expression sum = null;
+				for (int k = 0; k < this.width; k ++) {
+					final Expression prod = new Operation(Operator.MULTIPLY,
+							this.getComponent(i, k), that.getComponent(k, j));
+					if (sum == null)
+						sum = prod;
+					else
+						sum = new Operation(Operator.ADD, sum, prod);
+				}
+				newElms[i*that.width+j] = sum.simplified();
+			}
+		}
+		return new Matrix(this.height, that.width, newElms);
+	}
+
+
+	public Vector times(Vector that) {
+		if (this.isNumeric() && that.isNumeric() && this.exact == null) {
+			if (this.width != that.shape()[0])
+				throw new ArithmeticException("Cannot multiply a "+this.height+"\u00d7"
+						+this.width+" matrix by a vector in "+that.shape()[0]+"-space.");
+			final double[][] c = LinearAlgebra.multiply(this.real, this.imag,
+					that.getReal(), that.getImag(), this.height, this.width, 1);
+			return new Vector(c[0], c[1]);
+		}
+		final Matrix column = new Matrix(that.shape()[0], 1, that.getComponents());
+		return new Vector(this.times(column).getElements());
+	}
+
+
+	public Matrix transverse() {
+		if (this.exact != null) {
+			final Constant[] newElms = new Constant[exact.length];
+			for (int i = 0; i < height; i ++)
+				for (int j = 0; j < width; j ++)
+					newElms[j*height+i] = exact[i*width+j];
+			return new Matrix(width, height, newElms);
+		}
+		if (this.isNumeric())
+			return new Matrix(width, height,
+					LinearAlgebra.transpose(real, height, width),
+					LinearAlgebra.transpose(imag, height, width));
+
+		final Expression[] newElms = new Expression[elements.length];
+		for (int i = 0; i < height; i ++)
+			for (int j = 0; j < width; j ++)
+				newElms[j*height+i] = elements[i*width+j];
+		return new Matrix(width, height, newElms);
+	}
+
+
+	public Expression determinant() {
+		if (height != width)
+			throw new ArithmeticException("Only square matrices have determinants.");
+
+		if (this.exact != null)
+			return exactElimination(null);
+		if (this.isNumeric())
+			return new LUDecomposition(height, real, imag).determinant();
+
+		if (height > MAX_SYMBOLIC_DET)
+			throw new ArithmeticException("I can't expand the determinant of a "
+					+height+"\u00d7"+height+" matrix with unknowns.");
+		return cofactorDet(getElements(), height).simplified();
+	}
+
+
+	public Matrix inverse() {
+		if (height != width)
+			throw new ArithmeticException("Only square matrices have inverses.");
+
+		if (this.exact != null) {
+			final Constant[] inv = new Constant[height*width];
+			for (int i = 0; i < height; i ++)
+				for (int j = 0; j < width; j ++)
+					inv[i*width+j] = (i == j) ? Constant.ONE : Constant.ZERO;
+			if (isZero(exactElimination(inv)))
+				throw new ArithmeticException("This matrix is singular.");
+			return new Matrix(height, width, inv);
+		}
+		if (this.isNumeric()) {
+			final double[][] inv = new LUDecomposition(height, real, imag).inverse();
+			return new Matrix(height, width, inv[0], inv[1]);
+		}
+
+		final Expression det = this.determinant();	// the symbolic inverse is the adjugate over the determinant
+		final Expression[] newElms = new Expression[elements.length];
+		for (int i = 0; i < height; i ++) {
+			for (int j = 0; j < width; j ++) {
+				Expression cof = cofactorDet(minor(elements, height, i, j), height-1);
+				if ((i+j)%2 == 1)
+					cof = new Operation(Operator.NEGATE, cof);
+				newElms[j*width+i] = new Operation(Operator.DIVIDE, cof, det).simplified();
+			}
+		}
+		return new Matrix(height, width, newElms);
+	}
+
+
+	public Expression trace() {
+		if (height != width)
+			throw new ArithmeticException("Only square matrices have traces.");
+
+		if (this.exact != null) {
+			final Constant[] diagonal = new Constant[height];
+			for (int i = 0; i < height; i ++)
+				diagonal[i] = exact[i*width+i];
+			return Constant.sum(diagonal);
+		}
+		if (this.isNumeric()) {
+			double tr = 0, ti = 0;
+			for (int i = 0; i < height; i ++) {
+				tr += real[i*width+i];
+				ti += (imag == null) ? 0 : imag[i*width+i];
+			}
+			return new Constant(tr, ti);
+		}
+		Expression sum = getComponent(0, 0);
+		for (int i = 1; i < height; i ++)
+			sum = new Operation(Operator.ADD, sum, getComponent(i, i));
+		return sum.simplified();
+	}
+
+
+	public Vector eigenvalues(int k) {	// the k biggest eigenvalues, or all of them if k is 0
+		return values(eigen(k, false));
+	}
+
+
+	public Matrix eigenvectors(int k) {	// the eigenvectors that go with eigenvalues(k), as columns
+		final double[][] eig = eigen(k, true);
+		return new Matrix(height, eig[0].length, eig[2], eig[3]);
+	}
+
+
+	public Vector singularValues() {
+		if (!this.isNumeric() || imag != null)
+			throw new ArithmeticException("I can only find the singular values of real numbers.");
+
+		return new Vector(Eigensolver.singularValues(real, height, width), null);
+	}
+
+
+	public Matrix power(int p) {	// raise this to an integer power by squaring
+		if (height != width)
+			throw new ArithmeticException("Only square matrices have powers.");
+
+		if (p == 0)
+			return identity(height);
+		Matrix base = (p < 0) ? this.inverse() : this;
+		Matrix result = null;
+		for (int n = Math.abs(p); n > 0; n >>= 1) {
+			if ((n&1) == 1)
+				result = (result == null) ? base : result.times(base);
+			if (n > 1)
+				base = base.times(base);
+		}
+		return result;
+	}
+
+
+
+	private double[][] eigen(int k, boolean vectors) {	// find all the eigenpairs if it is cheap enough, or just the biggest few otherwise
+		if (height != width)
+			throw new ArithmeticException("Only square matrices have eigenvalues.");
+		if (!this.isNumeric() || imag != null)
+			throw new ArithmeticException("I can only find the eigenvalues of real numbers.");
+		if (k < 0 || k > height)
+			throw new ArithmeticException("A "+height+"\u00d7"+height+" matrix doesn't have "+k+" eigenvalues.");
+
+		if (k > 0 && height >= MIN_KRYLOV && 3*k < height) {
+			final LinearMap a = new LinearMap() {
+				public void apply(double[] x, double[] y) {
+					LinearAlgebra.gemv(real, x, y, height, width);
+				}
+			};
+			return Eigensolver.largest(a, height, k, Eigensolver.isSymmetric(real, height));
+		}
+
+		final double[][] eig = Eigensolver.eigen(real, height, vectors);
+		if (k == 0 || k == height)
+			return eig;
+		final double[] vr = vectors ? new double[height*k] : null;
+		final double[] vi = (vectors && eig[3] != null) ? new double[height*k] : null;
+		for (int i = 0; vectors && i < height; i ++) {	// keep only the first k columns
+			System.arraycopy(eig[2], i*height, vr, i*k, k);
+			if (vi != null)
+				System.arraycopy(eig[3], i*height, vi, i*k, k);
+		}
+		return new double[][] {Arrays.copyOf(eig[0], k), Arrays.copyOf(eig[1], k), vr, vi};
+	}
+
+
+	static Vector values(double[][] eig) {	// a vector of eigenvalues, tagged with how far off any that didn't converge might be
+		if (eig.length < 5 || eig[4] == null || LinearAlgebra.isZero(eig[4]))
+			return new Vector(eig[0], eig[1]);
+		final Expression[] values = new Expression[eig[0].length];
+		for (int i = 0; i < values.length; i ++)
+			values[i] = new Constant(eig[0][i], eig[1][i]).withError(eig[4][i]);
+		return new Vector(values);
+	}
+
+
+	private Constant exactElimination(Constant[] b) {	// Gauss-Jordan on the exact elements, which never rounds; returns the determinant, and turns b into A^-1 b if it is given
+		final int n = height;
+		final Constant[] a = exact.clone();
+		Constant det = Constant.ONE;
+		for (int k = 0; k < n; k ++) {
+			int p = k;	// any pivot that isn't zero will do, since nothing gets rounded
+			while (p < n && isZero(a[p*n+k]))
+				p ++;
+			if (p == n)
+				return Constant.ZERO;
+			if (p != k) {
+				swapRows(a, n, p, k);
+				if (b != null)
+					swapRows(b, n, p, k);
+				det = det.negative();
+			}
+			det = det.times(a[k*n+k]);
+			final Constant pivot = a[k*n+k].recip();
+			for (int i = (b == null) ? k+1 : 0; i < n; i ++) {	// the determinant only needs the rows below; the inverse needs all of them
+				if (i == k || isZero(a[i*n+k]))
+					continue;
+				final Constant f = a[i*n+k].times(pivot).negative();
+				for (int j = k; j < n; j ++)
+					a[i*n+j] = a[i*n+j].plus(f.times(a[k*n+j]));
+				for (int j = 0; b != null && j < n; j ++)
+					b[i*n+j] = b[i*n+j].plus(f.times(b[k*n+j]));
+			}
+		}
+		for (int i = 0; b != null && i < n; i ++) {	// then every row is divided by its pivot
+			final Constant pivot = a[i*n+i].recip();
+			for (int j = 0; j < n; j ++)
+				b[i*n+j] = b[i*n+j].times(pivot);
+		}
+		return det;
+	}
+
+
+	private static boolean isZero(Constant c) {	// (a ratio can be too small for its double to be anything but 0)
+		if (c.getRatio() != null)
+			return c.getRatio().signum() == 0;
+		return c.getReal() == 0 && c.getImag() == 0;
+	}
+
+
+	private static void swapRows(Constant[] a, int n, int p, int q) {
+		for (int j = 0; j < n; j ++) {
+			final Constant temp = a[p*n+j];
+			a[p*n+j] = a[q*n+j];
+			a[q*n+j] = temp;
+		}
+	}
+
+
+	private static Expression cofactorDet(Expression[] a, int n) {	// expand the determinant along the first row
+		if (n == 0)
+			return Constant.ONE;
+		if (n == 1)
+			return a[0];
+
+		Expression sum = null;
+		for (int j = 0; j < n; j ++) {
+			Expression term = new Operation(Operator.MULTIPLY,
+					a[j], cofactorDet(minor(a, n, 0, j), n-1));
+			if (sum == null)
+				sum = term;
+			else if (j%2 == 0)
+				sum = new Operation(Operator.ADD, sum, term);
+			else
+				sum = new Operation(Operator.SUBTRACT, sum, term);
+		}
+		return sum;
+	}
+
+
+	private static Expression[] minor(Expression[] a, int n, int row, int col) {	// remove one row and one column
+		final Expression[] output = new Expression[(n-1)*(n-1)];
+		int k = 0;
+		for (int i = 0; i < n; i ++)
+			for (int j = 0; j < n; j ++)
+				if (i != row && j != col)
+					output[k ++] = a[i*n+j];
 		return output;
 	}
-	
+
 }
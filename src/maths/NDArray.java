@@ -0,0 +1,648 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gui.Workspace;
+import javafx.scene.image.Image;
+import maths.auxiliary.LinearAlgebra;
+import maths.auxiliary.LinearAlgebra.Range;
+import maths.auxiliary.Operator;
+import maths.auxiliary.Summation;
+import util.ImgUtils;
+
+/**
+ * A rectangular block of numbers with any number of dimensions, like a NumPy
+ * array. The numbers live in one flat buffer (or two, if some of them are
+ * complex), and the array reads them through a list of strides, so slices and
+ * transposes are just new views of the same buffer. Arithmetic between arrays
+ * goes element by element, broadcasting any dimension of length 1 (or any
+ * dimension that one of them lacks) across the other, and runs as a plain
+ * loop over the buffers rather than through a tree of Operations.
+ *
+ * @author jkunimune
+ */
+public class NDArray extends Expression {
+
+	private static final int MAX_DISPLAY = 400;	// arrays with more elements than this are only summarised
+
+	private final int[] dims, strides;	// the length of each axis, and how far apart consecutive elements along it are
+	private final int offset;	// where element 0 is
+	private final double[] re, im;	// the buffer, which views share (im is null if the array is real)
+
+
+
+	public NDArray(int[] dims, double[] re, double[] im) {
+		this(dims, contiguous(dims), 0, re, LinearAlgebra.isZero(im) ? null : im);
+		if (re.length != size(dims))
+			throw new IllegalArgumentException("An array of shape "+Arrays.toString(dims)
+					+" can't have "+re.length+" elements.");
+	}
+
+
+	private NDArray(int[] dims, int[] strides, int offset, double[] re, double[] im) {
+		if (dims.length == 0)
+			throw new IllegalArgumentException("An array must have at least one axis.");
+		for (int d: dims)
+			if (d <= 0)
+				throw new ArithmeticException("An array can't have an axis of length "+d+".");
+		this.dims = dims;
+		this.strides = strides;
+		this.offset = offset;
+		this.re = re;
+		this.im = im;
+	}
+
+
+
+	public static NDArray of(Expression x) {	// pack a Vector or Matrix of numbers into an array, or return null if that is impossible
+		if (x instanceof NDArray)
+			return (NDArray) x;
+		if (x instanceof SparseMatrix)
+			x = ((SparseMatrix) x).toDense();
+		if (x instanceof Matrix) {
+			final Matrix mat = (Matrix) x;
+			if (!mat.isNumeric())
+				return null;
+			return new NDArray(mat.shape(), mat.getReal().clone(),
+					(mat.getImag() == null) ? null : mat.getImag().clone());
+		}
+		if (x instanceof Vector && ((Vector) x).isNumeric()) {
+			final Vector vec = (Vector) x;
+			return new NDArray(new int[] {vec.shape()[0]}, vec.getReal().clone(),
+					(vec.getImag() == null) ? null : vec.getImag().clone());
+		}
+		if (x instanceof Vector) {	// a vector of vectors is a higher-dimensional array
+			final Expression[] comps = ((Vector) x).getComponents();
+			final NDArray[] rows = new NDArray[comps.length];
+			for (int i = 0; i < comps.length; i ++) {
+				if (comps[i] instanceof Constant)
+					rows[i] = null;
+				else if ((rows[i] = of(comps[i])) == null)
+					return null;
+				if ((rows[i] == null) != (rows[0] == null) ||
+						(rows[i] != null && !Arrays.equals(rows[i].dims, rows[0].dims)))
+					throw new ArithmeticException("Every row of an array must be the same shape.");
+			}
+
+			final int[] inner = (rows[0] == null) ? new int[0] : rows[0].dims;
+			final int[] dims = new int[inner.length+1];
+			dims[0] = comps.length;
+			System.arraycopy(inner, 0, dims, 1, inner.length);
+			final int step = size(inner);
+			final double[] re = new double[comps.length*step], im = new double[comps.length*step];
+			for (int i = 0; i < comps.length; i ++) {
+				if (rows[i] == null) {
+					re[i] = ((Constant) comps[i]).getReal();
+					im[i] = ((Constant) comps[i]).getImag();
+				}
+				else {
+					final NDArray row = rows[i].copy();
+					System.arraycopy(row.re, 0, re, i*step, step);
+					if (row.im != null)
+						System.arraycopy(row.im, 0, im, i*step, step);
+				}
+			}
+			return new NDArray(dims, re, im);
+		}
+		return null;
+	}
+
+
+	public static NDArray filled(int[] dims, Constant value) {
+		final double[] re = new double[size(dims)];
+		Arrays.fill(re, value.getReal());
+		double[] im = null;
+		if (value.getImag() != 0) {
+			im = new double[re.length];
+			Arrays.fill(im, value.getImag());
+		}
+		return new NDArray(dims, re, im);
+	}
+
+
+	public int[] getDims() {
+		return dims.clone();
+	}
+
+
+	public int size() {
+		return size(dims);
+	}
+
+
+	public boolean isReal() {
+		return im == null;
+	}
+
+
+	@Override
+	public int[] shape() {
+		if (dims.length == 1) {
+			final int[] out = {dims[0], 1};	// a line is a column, like a Vector
+			return out;
+		}
+		return dims.clone();
+	}
+
+
+	@Override
+	protected Expression getComponent(int i, int j) {
+		if (dims.length == 1)
+			return element(offset + i*strides[0]);
+		else if (dims.length == 2)
+			return element(offset + i*strides[0] + j*strides[1]);
+		else
+			return new NDArray(Arrays.copyOfRange(dims, 2, dims.length),
+					Arrays.copyOfRange(strides, 2, dims.length),
+					offset + i*strides[0] + j*strides[1], re, im);
+	}
+
+
+	@Override
+	public List<String> getInputs(Workspace heap) {
+		return new ArrayList<String>();
+	}
+
+
+	@Override
+	public Expression replaced(String[] oldStrs, String[] newStrs) {
+		return this;
+	}
+
+
+	@Override
+	public NDArray simplified(Workspace heap) {
+		return this;	// numbers are already simplified
+	}
+
+
+	@Override
+	protected int hashed() {
+		return 31*Arrays.hashCode(dims) + Arrays.hashCode(this.copy().re);
+	}
+
+
+	@Override
+	public boolean equals(Object obj) {	// the same shape and elements, however the buffers are laid out underneath
+		if (this == obj)	return true;
+		if (!(obj instanceof NDArray) || obj.hashCode() != this.hashCode())	return false;
+		final NDArray that = (NDArray) obj;
+		if (!Arrays.equals(this.dims, that.dims))
+			return false;
+		final NDArray a = this.copy(), b = that.copy();
+		if (!Arrays.equals(a.re, b.re))
+			return false;
+		if (a.im == null || b.im == null)
+			return LinearAlgebra.isZero(a.im) && LinearAlgebra.isZero(b.im);
+		return Arrays.equals(a.im, b.im);
+	}
+
+
+	@Override
+	public Image toImage() {
+		if (size() <= MAX_DISPLAY && dims.length <= 2) {	// lines and grids can be drawn like vectors and matrices
+			final NDArray c = this.copy();
+			if (dims.length == 1)
+				return new Matrix(dims[0], 1, c.re, c.im).toImage();
+			else
+				return new Matrix(dims[0], dims[1], c.re, c.im).toImage();
+		}
+		return ImgUtils.drawString(this.toString());
+	}
+
+
+	@Override
+	public String toString() {
+		if (size() > MAX_DISPLAY)
+			return summary();
+		return nested(0, offset);
+	}
+
+
+	private String summary() {
+		String output = "[";
+		for (int d: dims)
+			output += d+"\u00d7";
+		return output.substring(0, output.length()-1)+" array]";
+	}
+
+
+	private String nested(int axis, int start) {	// write out the part of this array that starts at start along this axis
+		String output = "[";
+		for (int i = 0; i < dims[axis]; i ++) {
+			final int k = start + i*strides[axis];
+			output += (axis == dims.length-1) ? element(k).toString() : nested(axis+1, k);
+			output += ", ";
+		}
+		return output.substring(0, output.length()-2)+"]";
+	}
+
+
+	private Constant element(int k) {
+		return new Constant(re[k], (im == null) ? 0 : im[k]);
+	}
+
+
+	public NDArray transverse() {	// reverse the axes, without moving anything
+		final int n = dims.length;
+		final int[] newDims = new int[n], newStrides = new int[n];
+		for (int a = 0; a < n; a ++) {
+			newDims[a] = dims[n-1-a];
+			newStrides[a] = strides[n-1-a];
+		}
+		return new NDArray(newDims, newStrides, offset, re, im);
+	}
+
+
+	public NDArray slice(int axis, int start, int stop, int step) {	// take every step-th element from start up to stop along one axis, without moving anything
+		if (axis < 0 || axis >= dims.length)
+			throw new ArithmeticException("This array has no axis "+axis+".");
+		if (step == 0)
+			throw new ArithmeticException("Can't slice with a step of 0.");
+		if (start < 0)	start += dims[axis];	// negative indices count back from the end
+		if (stop < 0)	stop += dims[axis];
+		start = Math.max(0, Math.min(start, dims[axis]-1));
+		stop = Math.max(-1, Math.min(stop, dims[axis]));
+		final int length = (step > 0) ? (stop-start+step-1)/step : (start-stop-step-1)/(-step);
+		if (length <= 0)
+			throw new ArithmeticException("This slice is empty.");
+
+		final int[] newDims = dims.clone(), newStrides = strides.clone();
+		newDims[axis] = length;
+		newStrides[axis] = step*strides[axis];
+		return new NDArray(newDims, newStrides, offset + start*strides[axis], re, im);
+	}
+
+
+	public NDArray reshaped(int[] newDims) {	// read the same elements in a different shape, without moving anything if we can help it
+		if (size(newDims) != size())
+			throw new ArithmeticException("An array of shape "+Arrays.toString(dims)
+					+" can't be reshaped into "+Arrays.toString(newDims)+".");
+		if (!Arrays.equals(strides, contiguous(dims)))
+			return this.copy().reshaped(newDims);
+		return new NDArray(newDims, contiguous(newDims), offset, re, im);
+	}
+
+
+	public NDArray copy() {	// gather this view into a fresh buffer of its own
+		if (offset == 0 && re.length == size() && Arrays.equals(strides, contiguous(dims)))
+			return this;
+		return map(this, null, Operator.PARENTHESES);
+	}
+
+
+	public static Expression elementwise(Operator op, Expression[] args) {	// do op to arrays element by element, or return null if we can't
+		final NDArray a = asArray(args[0]);
+		final NDArray b = (args.length > 1) ? asArray(args[1]) : null;
+		if (a == null || (args.length > 1 && b == null))
+			return null;
+		switch (op) {
+		case PARENTHESES:
+			return a;
+		case NEGATE:
+		case ADD:
+		case SUBTRACT:
+		case MULTIPLY:
+		case DIVIDE:
+		case POWER:
+		case LN:
+			return map(a, b, op);
+		case ROOT:
+			return map(a, map(filled(new int[] {1}, Constant.ONE), b, Operator.DIVIDE), Operator.POWER);
+		case ABSOLUTE:
+			return a.apply("abs");
+		case TRANSVERSE:
+			return a.transverse();
+		default:
+			return null;
+		}
+	}
+
+
+	public NDArray apply(final String function) {	// call a built-in function on every element
+		final int f = realFunction(function);
+		final NDArray c = this.copy();
+		final double[] outRe = new double[c.re.length];
+		final double[] outIm = (c.im == null) ? null : new double[c.re.length];
+		final boolean[] complex = {false};
+		LinearAlgebra.inParallel(outRe.length, 20L*outRe.length, new Range() {
+			public void over(int i0, int i1) {
+				for (int i = i0; i < i1; i ++) {
+					if (c.im == null && f >= 0 && inDomain(f, c.re[i]))	// most functions of real numbers can be done without Constants
+						outRe[i] = realFunction(f, c.re[i]);
+					else
+						complex[0] = true;
+				}
+			}
+		});
+		if (!complex[0])
+			return new NDArray(dims.clone(), outRe, outIm);
+
+		final double[] fullIm = (outIm == null) ? new double[outRe.length] : outIm;
+		LinearAlgebra.inParallel(outRe.length, 1000L*outRe.length, new Range() {	// and the rest have to go through Constants
+			public void over(int i0, int i1) {
+				for (int i = i0; i < i1; i ++) {
+					if (c.im == null && f >= 0 && inDomain(f, c.re[i]))
+						continue;
+					final Expression y = new BuiltInFunction(function, c.element(i)).simplified();
+					if (!(y instanceof Constant))
+						throw new ArithmeticException(function+" doesn't give a number for "+c.element(i)+".");
+					outRe[i] = ((Constant) y).getReal();
+					fullIm[i] = ((Constant) y).getImag();
+				}
+			}
+		});
+		return new NDArray(dims.clone(), outRe, fullIm);
+	}
+
+
+
+	public Constant reduce(String code) {	// sum, prod, min, max, or mean of every element
+		final NDArray c = this.copy();
+		final int n = c.size();
+		double ar = code.equals("prod") ? 1 : 0, ai = 0;
+		if (code.equals("min") || code.equals("max")) {
+			if (c.im != null)
+				throw new ArithmeticException("Complex numbers can't be compared.");
+			ar = c.re[0];
+			for (int i = 1; i < n; i ++)
+				ar = code.equals("min") ? Math.min(ar, c.re[i]) : Math.max(ar, c.re[i]);
+			return new Constant(ar);
+		}
+		if (code.equals("prod")) {
+			for (int i = 0; i < n; i ++) {
+				final double br = c.re[i], bi = (c.im == null) ? 0 : c.im[i];
+				final double t = ar*br - ai*bi;
+				ai = ar*bi + ai*br;
+				ar = t;
+			}
+		}
+		else {	// the copy is contiguous, so the sum can go straight down the arrays
+			ar = Summation.sum(c.re, 0, n);
+			ai = (c.im == null) ? 0 : Summation.sum(c.im, 0, n);
+		}
+		if (code.equals("mean"))
+			return new Constant(ar/n, ai/n);
+		return new Constant(ar, ai);
+	}
+
+
+	private static NDArray asArray(Expression x) {	// a number is an array that broadcasts to anything
+		return (x instanceof Constant) ? filled(new int[] {1}, (Constant) x) : of(x);
+	}
+
+
+	private static NDArray map(final NDArray a, final NDArray b, final Operator op) {	// the elementwise kernel, broadcasting a and b against each other
+		final int[] dims = (b == null) ? a.dims.clone() : broadcast(a.dims, b.dims);
+		final int n = dims.length, last = dims[n-1], size = size(dims);
+		final int[] sa = stretch(a, dims), sb = (b == null) ? null : stretch(b, dims);
+		final int rows = size/last;
+
+		for (int attempt = 0; attempt < 2; attempt ++) {	// try it real first, and if that turns out to be impossible, try it complex
+			final boolean complex = attempt > 0 || a.im != null || (b != null && b.im != null);
+			final double[] outRe = new double[size], outIm = complex ? new double[size] : null;
+			final boolean[] failed = {false};
+			LinearAlgebra.inParallel(rows, 4L*size, new Range() {
+				public void over(int r0, int r1) {
+					for (int r = r0; r < r1; r ++) {
+						int pa = a.offset, pb = (b == null) ? 0 : b.offset, rem = r;
+						for (int ax = n-2; ax >= 0; ax --) {	// find the start of this row in each operand
+							final int idx = rem%dims[ax];
+							rem /= dims[ax];
+							pa += idx*sa[ax];
+							if (b != null)
+								pb += idx*sb[ax];
+						}
+						final int o = r*last;
+						if (complex)
+							complexRow(op, a, pa, sa[n-1], b, pb, (b == null) ? 0 : sb[n-1], outRe, outIm, o, last);
+						else if (!realRow(op, a.re, pa, sa[n-1], (b == null) ? null : b.re, pb, (b == null) ? 0 : sb[n-1], outRe, o, last))
+							failed[0] = true;
+					}
+				}
+			});
+			if (!failed[0])
+				return new NDArray(dims, outRe, outIm);
+		}
+		throw new ArithmeticException("Something went wrong with "+op+".");	// complex arithmetic can't fail
+	}
+
+
+	private static boolean realRow(Operator op, double[] a, int pa, int sa,
+			double[] b, int pb, int sb, double[] out, int o, int len) {	// one row of a real operation, or false if it needs complex numbers
+		switch (op) {
+		case PARENTHESES:
+			for (int t = 0; t < len; t ++)
+				out[o+t] = a[pa+t*sa];
+			return true;
+		case NEGATE:
+			for (int t = 0; t < len; t ++)
+				out[o+t] = -a[pa+t*sa];
+			return true;
+		case LN:
+			for (int t = 0; t < len; t ++) {
+				if (a[pa+t*sa] < 0)	// the log of a negative number is complex
+					return false;
+				out[o+t] = Math.log(a[pa+t*sa]);
+			}
+			return true;
+		case ADD:
+			for (int t = 0; t < len; t ++)
+				out[o+t] = a[pa+t*sa] + b[pb+t*sb];
+			return true;
+		case SUBTRACT:
+			for (int t = 0; t < len; t ++)
+				out[o+t] = a[pa+t*sa] - b[pb+t*sb];
+			return true;
+		case MULTIPLY:
+			for (int t = 0; t < len; t ++)
+				out[o+t] = a[pa+t*sa] * b[pb+t*sb];
+			return true;
+		case DIVIDE:
+			for (int t = 0; t < len; t ++)
+				out[o+t] = a[pa+t*sa] / b[pb+t*sb];
+			return true;
+		case POWER:
+			for (int t = 0; t < len; t ++) {
+				final double x = a[pa+t*sa], y = b[pb+t*sb];
+				if (x < 0 && y != Math.rint(y))	// a negative number to a fractional power is complex
+					return false;
+				out[o+t] = Math.pow(x, y);
+			}
+			return true;
+		default:
+			throw new ArithmeticException("I can't do "+op+" to arrays.");
+		}
+	}
+
+
+	private static void complexRow(Operator op, NDArray a, int pa, int sa,
+			NDArray b, int pb, int sb, double[] outRe, double[] outIm, int o, int len) {	// one row of a complex operation
+		for (int t = 0; t < len; t ++) {
+			final int i = pa+t*sa, j = pb+t*sb;
+			final double ar = a.re[i], ai = (a.im == null) ? 0 : a.im[i];
+			final double br = (b == null) ? 0 : b.re[j], bi = (b == null || b.im == null) ? 0 : b.im[j];
+			double zr, zi;
+			switch (op) {
+			case PARENTHESES:
+				zr = ar;	zi = ai;
+				break;
+			case NEGATE:
+				zr = -ar;	zi = -ai;
+				break;
+			case LN:
+				zr = Math.log(Math.hypot(ar, ai));	zi = Math.atan2(ai, ar);
+				break;
+			case ADD:
+				zr = ar + br;	zi = ai + bi;
+				break;
+			case SUBTRACT:
+				zr = ar - br;	zi = ai - bi;
+				break;
+			case MULTIPLY:
+				zr = ar*br - ai*bi;	zi = ar*bi + ai*br;
+				break;
+			case DIVIDE:
+				final double d = br*br + bi*bi;
+				zr = (ar*br + ai*bi)/d;	zi = (ai*br - ar*bi)/d;
+				break;
+			case POWER:
+				if (ar == 0 && ai == 0) {	// zero to a power is zero, unless the power is zero
+					zr = (br == 0 && bi == 0) ? 1 : 0;
+					zi = 0;
+					break;
+				}
+				final double lr = Math.log(Math.hypot(ar, ai)), li = Math.atan2(ai, ar);	// a^b = e^(b ln a)
+				final double mag = Math.exp(br*lr - bi*li), ang = br*li + bi*lr;
+				zr = mag*Math.cos(ang);	zi = mag*Math.sin(ang);
+				break;
+			default:
+				throw new ArithmeticException("I can't do "+op+" to arrays.");
+			}
+			outRe[o+t] = zr;
+			outIm[o+t] = zi;
+		}
+	}
+
+
+	private static int realFunction(String name) {	// the number of a function we can do on real numbers directly, or -1
+		final String[] names = {"sin", "cos", "tan", "sinh", "cosh", "tanh", "atan",
+				"arctan", "asinh", "arcsinh", "abs", "re", "real", "im", "imag",
+				"asin", "arcsin", "acos", "arccos", "acosh", "arccosh", "atanh", "arctanh"};
+		for (int f = 0; f < names.length; f ++)
+			if (names[f].equalsIgnoreCase(name))
+				return f;
+		return -1;
+	}
+
+
+	private static boolean inDomain(int f, double x) {	// is f(x) real?
+		if (f >= 15 && f <= 18)	// asin and acos
+			return Math.abs(x) <= 1;
+		else if (f == 19 || f == 20)	// acosh
+			return x >= 1;
+		else if (f == 21 || f == 22)	// atanh
+			return Math.abs(x) < 1;
+		else
+			return true;
+	}
+
+
+	private static double realFunction(int f, double x) {
+		switch (f) {
+		case 0:	return Math.sin(x);
+		case 1:	return Math.cos(x);
+		case 2:	return Math.tan(x);
+		case 3:	return Math.sinh(x);
+		case 4:	return Math.cosh(x);
+		case 5:	return Math.tanh(x);
+		case 6:
+		case 7:	return Math.atan(x);
+		case 8:
+		case 9:	return Math.log(x + Math.sqrt(x*x+1));
+		case 10:	return Math.abs(x);
+		case 11:
+		case 12:	return x;
+		case 13:
+		case 14:	return 0;
+		case 15:
+		case 16:	return Math.asin(x);
+		case 17:
+		case 18:	return Math.acos(x);
+		case 19:
+		case 20:	return Math.log(x + Math.sqrt(x*x-1));
+		default:	return .5*Math.log((1+x)/(1-x));
+		}
+	}
+
+
+	private static int[] broadcast(int[] a, int[] b) {	// line up the last axes, and stretch any of length 1
+		final int n = Math.max(a.length, b.length);
+		final int[] out = new int[n];
+		for (int k = 1; k <= n; k ++) {
+			final int da = (k <= a.length) ? a[a.length-k] : 1;
+			final int db = (k <= b.length) ? b[b.length-k] : 1;
+			if (da != db && da != 1 && db != 1)
+				throw new ArithmeticException("Cannot broadcast an array of shape "+Arrays.toString(a)
+						+" with one of shape "+Arrays.toString(b)+".");
+			out[n-k] = Math.max(da, db);
+		}
+		return out;
+	}
+
+
+	private static int[] stretch(NDArray a, int[] dims) {	// a's strides for the broadcast shape, with 0 wherever it repeats
+		final int n = dims.length, lead = n - a.dims.length;
+		final int[] out = new int[n];
+		for (int ax = lead; ax < n; ax ++)
+			out[ax] = (a.dims[ax-lead] == 1) ? 0 : a.strides[ax-lead];
+		return out;
+	}
+
+
+	private static int[] contiguous(int[] dims) {	// the strides of a freshly packed row-major array
+		final int[] strides = new int[dims.length];
+		int step = 1;
+		for (int ax = dims.length-1; ax >= 0; ax --) {
+			strides[ax] = step;
+			step *= dims[ax];
+		}
+		return strides;
+	}
+
+
+	private static int size(int[] dims) {
+		long size = 1;
+		for (int d: dims)
+			size *= d;
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("An array of shape "+Arrays.toString(dims)+" would not fit in memory.");
+		return (int) size;
+	}
+
+}
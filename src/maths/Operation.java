@@ -23,12 +23,16 @@
  */
 package maths;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 
 import gui.Workspace;
 import javafx.scene.image.Image;
 import maths.auxiliary.Operator;
+import maths.auxiliary.Tape;
 import util.ImgUtils;
 
 /**
@@ -38,6 +42,8 @@ import util.ImgUtils;
  */
 public class Operation extends Expression {
 
+	private static final int SUMS = 1, PRODUCTS = 2, POWERS = 3, ATOMS = 4;	// how tightly each kind of thing holds together when written out
+	
 	protected final Operator opr;
 	protected final Expression[] args;
 	
@@ -90,40 +96,129 @@ public class Operation extends Expression {
 	
 	@Override
 	public Expression simplified(Workspace heap) {
+		if (opr == Operator.ADD || opr == Operator.SUBTRACT) {	// long sums get added up all at once
+			final Expression sum = summed(heap);
+			if (sum != null)
+				return (sum instanceof Constant) ? sum : Rules.rewritten(sum, heap);
+		}
+		if (opr == Operator.MULTIPLY) {	// and so do long products, so that no Constant gets stuck between two functions
+			final Expression product = multiplied(heap);
+			if (product != null)
+				return (product instanceof Constant) ? product : Rules.rewritten(product, heap);
+		}
+		
 		final Expression[] sargs = new Expression[args.length];
-		for (int i = 0; i < args.length; i ++)
+		boolean numeric = true;
+		for (int i = 0; i < args.length; i ++) {
 			sargs[i] = args[i].simplified(heap);
+			numeric &= sargs[i] instanceof Constant;
+		}
+		if (numeric) {	// plain numbers go straight to the arithmetic, since nothing else could apply to them
+			final Expression result = arithmetic(opr, sargs);
+			return (result instanceof Constant) ? result : Rules.rewritten(result, heap);
+		}
+		if (opr == Operator.POWER && isTransverse(args[1], sargs[0], heap))
+			return Rules.rewritten(evaluated(Operator.TRANSVERSE, sargs[0]), heap);
+		return Rules.rewritten(evaluated(opr, sargs), heap);
+	}
+	
+	
+	private static boolean isTransverse(Expression power, Expression base, Workspace heap) {	// is this A^T, where T means transverse and not some number?
+		if (!(power instanceof Variable) || !((Variable) power).getName().equals("T"))
+			return false;
+		if (heap != null && heap.containsKey("T"))
+			return false;	// they have defined T, so it's an ordinary power
+		return base instanceof Matrix || base instanceof SparseMatrix
+				|| base instanceof NDArray || base instanceof Vector;
+	}
+	
+	
+	private static Expression evaluated(Operator opr, Expression... sargs) {	// combine some arguments that are already simplified
+		for (Expression sarg: sargs) {
+			if (sarg instanceof NDArray) {	// arrays are done element by element
+				final Expression result = NDArray.elementwise(opr, sargs);
+				if (result != null)
+					return result;
+				break;
+			}
+			if (sarg instanceof Sequence) {	// sequences are done element by element, when they are evaluated
+				final Expression result = Sequence.elementwise(opr, sargs);
+				if (result != null)
+					return result;
+				break;
+			}
+		}
 		
+		final Expression polynomial = SparsePolynomial.combined(opr, sargs);	// sums and products of variables get collected
+		if (polynomial != null)
+			return polynomial;
+		
+		return arithmetic(opr, sargs);
+	}
+	
+	
+	private static Expression arithmetic(Operator opr, Expression... sargs) {	// apply the operator itself to whatever it knows how to handle
 		switch(opr) {
 		case NULL:
 			return Expression.NULL;
 		case ERROR:
-			return this;
+			return new Operation(opr, sargs);
 		case PARENTHESES:
 			return sargs[0];
 		case ABSOLUTE:
 			if (sargs[0] instanceof Constant)
 				return ((Constant) sargs[0]).abs();
+			if (sargs[0] instanceof Matrix)	// |A| is the determinant
+				return ((Matrix) sargs[0]).determinant();
+			if (sargs[0] instanceof SparseMatrix)
+				return ((SparseMatrix) sargs[0]).toDense().determinant();
+			if (sargs[0] instanceof Vector)	// |v| is the magnitude
+				return ((Vector) sargs[0]).abs();
 			break;
 		case ADD:
 			if (sargs[0] instanceof Constant && sargs[1] instanceof Constant)
 				return ((Constant) sargs[0]).plus(((Constant) sargs[1]));
 			if (sargs[0] instanceof Vector && sargs[1] instanceof Vector)
 				return ((Vector) sargs[0]).plus(((Vector) sargs[1]));
+			if (sargs[0] instanceof Matrix && sargs[1] instanceof Matrix)
+				return ((Matrix) sargs[0]).plus(((Matrix) sargs[1]));
+			if (sargs[0] instanceof SparseMatrix && sargs[1] instanceof SparseMatrix)
+				return ((SparseMatrix) sargs[0]).plus(((SparseMatrix) sargs[1]));
+			if (sargs[0] instanceof SparseMatrix && sargs[1] instanceof Matrix)
+				return ((SparseMatrix) sargs[0]).plus(((Matrix) sargs[1]));
+			if (sargs[0] instanceof Matrix && sargs[1] instanceof SparseMatrix)
+				return ((SparseMatrix) sargs[1]).plus(((Matrix) sargs[0]));
 			break;
 		case SUBTRACT:
 			if (sargs[0] instanceof Constant && sargs[1] instanceof Constant)
 				return ((Constant) sargs[0]).plus(((Constant) sargs[1]).negative());
 			if (sargs[0] instanceof Vector && sargs[1] instanceof Vector)
 				return ((Vector) sargs[0]).plus(((Vector) sargs[1]).negative());
+			if (sargs[0] instanceof Matrix && sargs[1] instanceof Matrix)
+				return ((Matrix) sargs[0]).plus(((Matrix) sargs[1]).negative());
+			if (sargs[0] instanceof SparseMatrix && sargs[1] instanceof SparseMatrix)
+				return ((SparseMatrix) sargs[0]).plus(((SparseMatrix) sargs[1]).negative());
+			if (sargs[0] instanceof SparseMatrix && sargs[1] instanceof Matrix)
+				return ((SparseMatrix) sargs[0]).plus(((Matrix) sargs[1]).negative());
+			if (sargs[0] instanceof Matrix && sargs[1] instanceof SparseMatrix)
+				return ((SparseMatrix) sargs[1]).negative().plus(((Matrix) sargs[0]));
 			break;
 		case NEGATE:
 			if (sargs[0] instanceof Constant)
 				return ((Constant) sargs[0]).negative();
 			if (sargs[0] instanceof Vector)
 				return ((Vector) sargs[0]).negative();
+			if (sargs[0] instanceof Matrix)
+				return ((Matrix) sargs[0]).negative();
+			if (sargs[0] instanceof SparseMatrix)
+				return ((SparseMatrix) sargs[0]).negative();
 			break;
 		case MULTIPLY:
+			if (sargs[0] instanceof Matrix && sargs[1] instanceof Matrix) {	// big matrices of mostly zeros multiply faster sparsely
+				for (int i = 0; i < 2; i ++)
+					if (SparseMatrix.suits((Matrix) sargs[i]))
+						sargs[i] = SparseMatrix.of((Matrix) sargs[i]);
+			}
 			if (sargs[0] instanceof Constant && sargs[1] instanceof Constant)
 				return ((Constant) sargs[0]).times(((Constant) sargs[1]));
 			if (sargs[0] instanceof Vector && sargs[1] instanceof Vector)
@@ -132,16 +227,44 @@ public class Operation extends Expression {
 				return ((Vector) sargs[0]).times(((Constant) sargs[1]));
 			if (sargs[0] instanceof Constant && sargs[1] instanceof Vector)
 				return ((Vector) sargs[1]).times(((Constant) sargs[0]));
+			if (sargs[0] instanceof Matrix && sargs[1] instanceof Matrix)
+				return ((Matrix) sargs[0]).times(((Matrix) sargs[1]));
+			if (sargs[0] instanceof Matrix && sargs[1] instanceof Vector)
+				return ((Matrix) sargs[0]).times(((Vector) sargs[1]));
+			if (sargs[0] instanceof Vector && sargs[1] instanceof Matrix)	// a vector on the left is a row
+				return ((Matrix) sargs[1]).transverse().times(((Vector) sargs[0]));
+			if (sargs[0] instanceof Matrix && sargs[1] instanceof Constant)
+				return ((Matrix) sargs[0]).times(((Constant) sargs[1]));
+			if (sargs[0] instanceof Constant && sargs[1] instanceof Matrix)
+				return ((Matrix) sargs[1]).times(((Constant) sargs[0]));
+			if (sargs[0] instanceof SparseMatrix && sargs[1] instanceof SparseMatrix)
+				return ((SparseMatrix) sargs[0]).times(((SparseMatrix) sargs[1]));
+			if (sargs[0] instanceof SparseMatrix && sargs[1] instanceof Matrix)
+				return ((SparseMatrix) sargs[0]).times(((Matrix) sargs[1]));
+			if (sargs[0] instanceof Matrix && sargs[1] instanceof SparseMatrix)
+				return ((SparseMatrix) sargs[1]).timesLeft(((Matrix) sargs[0]));
+			if (sargs[0] instanceof SparseMatrix && sargs[1] instanceof Vector)
+				return ((SparseMatrix) sargs[0]).times(((Vector) sargs[1]));
+			if (sargs[0] instanceof Vector && sargs[1] instanceof SparseMatrix)	// a vector on the left is a row
+				return ((SparseMatrix) sargs[1]).transverse().times(((Vector) sargs[0]));
+			if (sargs[0] instanceof SparseMatrix && sargs[1] instanceof Constant)
+				return ((SparseMatrix) sargs[0]).times(((Constant) sargs[1]));
+			if (sargs[0] instanceof Constant && sargs[1] instanceof SparseMatrix)
+				return ((SparseMatrix) sargs[1]).times(((Constant) sargs[0]));
 			break;
 		case DIVIDE:
 			if (sargs[0] instanceof Constant && sargs[1] instanceof Constant)
 				return ((Constant)sargs[0]).times(((Constant)sargs[1]).recip());
 			if (sargs[0] instanceof Vector && sargs[1] instanceof Constant)
 				return ((Vector)sargs[0]).times(((Constant)sargs[1]).recip());
+			if (sargs[0] instanceof Matrix && sargs[1] instanceof Constant)
+				return ((Matrix)sargs[0]).times(((Constant)sargs[1]).recip());
+			if (sargs[0] instanceof SparseMatrix && sargs[1] instanceof Constant)
+				return ((SparseMatrix)sargs[0]).times(((Constant)sargs[1]).recip());
 			break;
 		case MODULO:
 			if (sargs[0] instanceof Constant && sargs[1] instanceof Constant)
-				return ((Constant)sargs[0]).times(((Constant)sargs[1]).recip());
+				return ((Constant)sargs[0]).mod((Constant)sargs[1]);
 			break;
 		case CROSS:
 			if (sargs[0] instanceof Constant && sargs[1] instanceof Constant)
@@ -157,18 +280,48 @@ public class Operation extends Expression {
 			if (sargs[0] instanceof Constant && sargs[1] instanceof Constant) {
 				final Constant base = (Constant) sargs[0];
 				final Constant power = (Constant) sargs[1];
-				return base.ln().times(power).exp();
+				return base.pow(power);
+			}
+			if (sargs[0] instanceof Vector && sargs[1] instanceof Constant
+					&& ((Constant) sargs[1]).getReal() == 2 && ((Constant) sargs[1]).getImag() == 0)	// v^2 is v*v, however it was written
+				return ((Vector) sargs[0]).dot((Vector) sargs[0]);
+			if (sargs[0] instanceof Matrix && sargs[1] instanceof Constant) {
+				final Constant power = (Constant) sargs[1];
+				if (power.getImag() != 0 || power.getReal() != Math.rint(power.getReal()))
+					throw new ArithmeticException("Matrices can only be raised to integer powers.");
+				return ((Matrix) sargs[0]).power((int) power.getReal());
+			}
+			if (sargs[0] instanceof SparseMatrix && sargs[1] instanceof Constant) {
+				final Constant power = (Constant) sargs[1];
+				if (power.getImag() != 0 || power.getReal() != Math.rint(power.getReal()))
+					throw new ArithmeticException("Matrices can only be raised to integer powers.");
+				return ((SparseMatrix) sargs[0]).power((int) power.getReal());
 			}
 			break;
 		case TRANSVERSE:
+			if (sargs[0] instanceof Constant)
+				return sargs[0];
+			if (sargs[0] instanceof Matrix)
+				return ((Matrix) sargs[0]).transverse();
+			if (sargs[0] instanceof SparseMatrix)
+				return ((SparseMatrix) sargs[0]).transverse();
+			if (sargs[0] instanceof Vector)	// a transversed vector is a row
+				return new Matrix(1, sargs[0].shape()[0],
+						((Vector) sargs[0]).getComponents());
 			break;
 		case INVERSE:
+			if (sargs[0] instanceof Constant)
+				return ((Constant) sargs[0]).recip();
+			if (sargs[0] instanceof Matrix)
+				return ((Matrix) sargs[0]).inverse();
+			if (sargs[0] instanceof SparseMatrix)	// the inverse of a sparse matrix is generally dense
+				return ((SparseMatrix) sargs[0]).toDense().inverse();
 			break;
 		case ROOT:
 			if (sargs[0] instanceof Constant && sargs[1] instanceof Constant) {
 				final Constant base = (Constant) sargs[0];
 				final Constant power = (Constant) sargs[1];
-				return base.ln().times(power.recip()).exp();
+				return base.root(power);
 			}
 			break;
 		case LN:
@@ -188,6 +341,209 @@ public class Operation extends Expression {
 	}
 	
 	
+	private Expression summed(Workspace heap) {	// add up a chain of three or more terms, with every Constant in one go
+		if (!isSum(args[0]) && !isSum(args[args.length-1]))
+			return null;	// there are only two, so don't bother flattening them
+		final List<Expression> terms = new ArrayList<Expression>();
+		final List<Boolean> negated = new ArrayList<Boolean>();
+		terms(terms, negated);
+		if (terms.size() < 3)
+			return null;
+		
+		final List<Constant> constants = new ArrayList<Constant>();
+		final List<Expression> others = new ArrayList<Expression>();
+		final List<Boolean> signs = new ArrayList<Boolean>();
+		int where = -1;	// the Constants all go where the first one was
+		for (int i = 0; i < terms.size(); i ++) {
+			final Expression term = terms.get(i).simplified(heap);
+			if (term instanceof Constant) {
+				if (where < 0)
+					where = others.size();
+				constants.add(negated.get(i) ? ((Constant) term).negative() : (Constant) term);
+			}
+			else {
+				others.add(term);
+				signs.add(negated.get(i));
+			}
+		}
+		if (!constants.isEmpty()) {
+			others.add(where, (constants.size() == 1) ? constants.get(0) :
+					Constant.sum(constants.toArray(new Constant[0])));
+			signs.add(where, false);
+		}
+		
+		Expression sum = signs.get(0) ? evaluated(Operator.NEGATE, others.get(0)) : others.get(0);
+		for (int i = 1; i < others.size(); i ++)
+			sum = evaluated(signs.get(i) ? Operator.SUBTRACT : Operator.ADD, sum, others.get(i));
+		return sum;
+	}
+	
+	
+	private Expression multiplied(Workspace heap) {	// multiply out a chain of three or more factors, with every Constant in one go
+		if (!isProduct(args[0]) && !isProduct(args[1]))
+			return null;	// there are only two, so don't bother flattening them
+		final List<Expression> factors = new ArrayList<Expression>();
+		final Deque<Expression> stack = new ArrayDeque<Expression>();
+		stack.push(this);
+		while (!stack.isEmpty()) {
+			final Expression exp = stack.pop();
+			if (isProduct(exp)) {
+				final Expression[] a = ((Operation) exp).args;
+				for (int i = a.length-1; i >= 0; i --)	// push them backwards so they come off in order
+					stack.push(a[i]);
+			}
+			else
+				factors.add(exp);
+		}
+		if (factors.size() < 3)
+			return null;
+		
+		Constant constant = null;
+		final List<Expression> others = new ArrayList<Expression>();
+		int where = -1;	// the Constants all go where the first one was, since matrices can't be moved past each other
+		for (Expression factor: factors) {
+			final Expression simp = factor.simplified(heap);
+			if (simp instanceof Constant) {
+				if (where < 0)
+					where = others.size();
+				constant = (constant == null) ? (Constant) simp : constant.times((Constant) simp);
+			}
+			else
+				others.add(simp);
+		}
+		if (constant != null && (others.isEmpty() || constant.getReal() != 1 || constant.getImag() != 0))
+			others.add(where, constant);	// a one is only worth keeping if it's all there is
+		
+		Expression product = others.get(0);
+		for (int i = 1; i < others.size(); i ++)
+			product = evaluated(Operator.MULTIPLY, product, others.get(i));
+		return product;
+	}
+	
+	
+	private static boolean isProduct(Expression exp) {
+		if (!(exp instanceof Operation))
+			return false;
+		final Operator o = ((Operation) exp).opr;
+		return o == Operator.MULTIPLY || o == Operator.PARENTHESES;
+	}
+	
+	
+	private static boolean isSum(Expression exp) {
+		if (!(exp instanceof Operation))
+			return false;
+		final Operator o = ((Operation) exp).opr;
+		return o == Operator.ADD || o == Operator.SUBTRACT || o == Operator.PARENTHESES;
+	}
+	
+	
+	void terms(List<Expression> terms, List<Boolean> negated) {	// flatten a chain of + and - into a list, without recursing
+		final Deque<Expression> stack = new ArrayDeque<Expression>();
+		final Deque<Boolean> signs = new ArrayDeque<Boolean>();
+		stack.push(this);
+		signs.push(false);
+		while (!stack.isEmpty()) {
+			final Expression exp = stack.pop();
+			final boolean neg = signs.pop();
+			final Operator o = (exp instanceof Operation) ? ((Operation) exp).opr : null;
+			if (o == Operator.ADD || o == Operator.SUBTRACT || o == Operator.PARENTHESES) {
+				final Expression[] a = ((Operation) exp).args;
+				for (int i = a.length-1; i >= 0; i --) {	// push them backwards so they come off in order
+					stack.push(a[i]);
+					signs.push(neg ^ (o == Operator.SUBTRACT && i > 0));
+				}
+			}
+			else {
+				terms.add(exp);
+				negated.add(neg);
+			}
+		}
+	}
+	
+	
+	@Override
+	public int compile(Tape tape) {
+		if (opr == Operator.ADD || opr == Operator.SUBTRACT) {	// a chain of sums is recorded as one n-ary sum
+			final List<Expression> terms = new ArrayList<Expression>();
+			final List<Boolean> negated = new ArrayList<Boolean>();
+			terms(terms, negated);
+			final int[] regs = new int[terms.size()];
+			for (int i = 0; i < regs.length; i ++) {
+				regs[i] = terms.get(i).compile(tape);
+				if (negated.get(i))
+					regs[i] = tape.apply(Operator.NEGATE, regs[i]);
+			}
+			return tape.apply(Operator.ADD, regs);
+		}
+		return tape.apply(opr, super.compileAll(args, tape));
+	}
+	
+	
+	@Override
+	protected Expression internedParts() {
+		final Expression[] iargs = super.internAll(args);
+		return (iargs == args) ? this : new Operation(opr, iargs);
+	}
+	
+	
+	@Override
+	protected int hashed() {
+		return 31*opr.ordinal() + Arrays.hashCode(args);
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)	return true;
+		if (!(obj instanceof Operation) || obj.hashCode() != this.hashCode())	return false;
+		final Operation that = (Operation) obj;
+		return this.opr == that.opr && Arrays.equals(this.args, that.args);
+	}
+	
+	
+	private static int precedence(Expression exp) {	// how tightly this is held together when written out
+		if (exp instanceof SparsePolynomial)
+			return (((SparsePolynomial) exp).size() == 1) ? precedence(((SparsePolynomial) exp).toExpression()) : SUMS;
+		if (exp instanceof Constant) {
+			final Constant c = (Constant) exp;	// (complex ones come with their own parentheses)
+			if (c.getReal() != 0 && c.getImag() != 0)
+				return ATOMS;
+			if (c.getReal() < 0 || c.getImag() < 0 || (c.getRatio() != null && !c.getRatio().isInteger()))
+				return PRODUCTS;
+			return ATOMS;
+		}
+		if (!(exp instanceof Operation))
+			return ATOMS;
+		switch (((Operation) exp).opr) {
+		case ADD:
+		case SUBTRACT:
+			return SUMS;
+		case NEGATE:
+		case MULTIPLY:
+		case DIVIDE:
+		case MODULO:
+		case CROSS:
+			return PRODUCTS;
+		case POWER:
+		case TRANSVERSE:
+		case INVERSE:
+			return POWERS;
+		default:
+			return ATOMS;
+		}
+	}
+	
+	
+	private static String bracketed(Expression arg, int level) {	// in parentheses, if it wouldn't hold together at this level otherwise
+		return (precedence(arg) < level) ? "("+arg+")" : arg.toString();
+	}
+	
+	
+	private static Image bracketedImage(Expression arg, int level) {
+		return (precedence(arg) < level) ? ImgUtils.wrap("(", arg.toImage(), ")") : arg.toImage();
+	}
+	
+	
 	@Override
 	public Image toImage() {
 		switch (opr) {
@@ -206,14 +562,14 @@ public class Operation extends Expression {
 			return ImgUtils.link(argImgs, " + ");
 		case SUBTRACT:
 			return ImgUtils.horzCat(args[0].toImage(),
-					ImgUtils.drawString(" - "), args[1].toImage());
+					ImgUtils.drawString(" - "), bracketedImage(args[1], PRODUCTS));
 		case NEGATE:
 			return ImgUtils.horzCat(ImgUtils.drawString("-"),
-					args[0].toImage());
+					bracketedImage(args[0], PRODUCTS));
 		case MULTIPLY:
 			final List<Image> imgArgs = new ArrayList<Image>();
 			for (Expression arg: args)
-				imgArgs.add(arg.toImage());
+				imgArgs.add(bracketedImage(arg, PRODUCTS));
 			return ImgUtils.link(imgArgs, "\u2217");
 		case DIVIDE:
 			return ImgUtils.split(args[0].toImage(), args[1].toImage());
@@ -224,7 +580,7 @@ public class Operation extends Expression {
 			return ImgUtils.horzCat(args[0].toImage(),
 					ImgUtils.drawString("\u00d7"), args[1].toImage());
 		case POWER:
-			return ImgUtils.horzCat(args[0].toImage(),
+			return ImgUtils.horzCat(bracketedImage(args[0], ATOMS),
 					ImgUtils.superS(args[1].toImage()));
 		case TRANSVERSE:
 			return ImgUtils.horzCat(args[0].toImage(),
@@ -269,25 +625,25 @@ public class Operation extends Expression {
 				out1 += e.toString()+" + ";
 			return out1.substring(0,out1.length()-3);
 		case SUBTRACT:
-			return args[0]+" - "+args[1];
+			return args[0]+" - "+bracketed(args[1], PRODUCTS);
 		case NEGATE:
-			return "-"+args[0];
+			return "-"+bracketed(args[0], PRODUCTS);
 		case MULTIPLY:
-			String out2 = args[0].toString();
+			String out2 = bracketed(args[0], PRODUCTS);
 			for (int i = 1; i < args.length; i ++) {
-				out2 += "\u2217"+args[i];
+				out2 += "\u2217"+bracketed(args[i], PRODUCTS);
 			}
 			return out2;
 		case DIVIDE:
-			return args[0]+"/"+args[1];
+			return bracketed(args[0], PRODUCTS)+"/"+bracketed(args[1], POWERS);
 		case MODULO:
-			return args[0]+"%"+args[1];
+			return bracketed(args[0], POWERS)+"%"+bracketed(args[1], POWERS);
 		case CROSS:
-			return args[0]+" \u00d7 "+args[1];
+			return bracketed(args[0], PRODUCTS)+" \u00d7 "+bracketed(args[1], PRODUCTS);
 		case POWER:
-			return args[0]+"^"+args[1];
+			return bracketed(args[0], ATOMS)+"^"+bracketed(args[1], ATOMS);
 		case TRANSVERSE:
-			return args[0]+"T";
+			return args[0]+"^T";
 		case INVERSE:
 			return args[0]+"^(-1)";
 		case ROOT:
@@ -0,0 +1,225 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gui.Workspace;
+import javafx.scene.image.Image;
+import maths.auxiliary.Operator;
+import maths.auxiliary.PolynomialRoots;
+import maths.auxiliary.Tape;
+import util.ImgUtils;
+
+/**
+ * A polynomial in one variable, written in powers of that variable's distance
+ * from some center, the way a Taylor series is. The coefficients are all just
+ * numbers, so it evaluates by Horner's rule, both here and on a Tape.
+ *
+ * @author jkunimune
+ */
+public class Polynomial extends Expression {
+
+	private final String var;
+	private final Constant center;
+	private final double[] re, im;	// the coefficient of each power of (var - center), starting with the constant term
+	
+	
+	
+	public Polynomial(String var, Constant center, double[] re, double[] im) {
+		this.var = var;
+		this.center = center;
+		this.re = re;
+		this.im = im;
+	}
+	
+	
+	
+	public int degree() {
+		return re.length - 1;
+	}
+	
+	
+	public String getVariable() {
+		return var;
+	}
+	
+	
+	public Constant coefficient(int i) {
+		return new Constant(re[i], im[i]);
+	}
+	
+	
+	public Polynomial derivative() {
+		final int n = Math.max(1, re.length - 1);
+		final double[] dRe = new double[n], dIm = new double[n];
+		for (int i = 1; i < re.length; i ++) {
+			dRe[i-1] = i*re[i];
+			dIm[i-1] = i*im[i];
+		}
+		return new Polynomial(var, center, dRe, dIm);
+	}
+	
+	
+	public Polynomial antiderivative() {	// the one that is zero at the center
+		final double[] fRe = new double[re.length+1], fIm = new double[re.length+1];
+		for (int i = 0; i < re.length; i ++) {
+			fRe[i+1] = re[i]/(i+1);
+			fIm[i+1] = im[i]/(i+1);
+		}
+		return new Polynomial(var, center, fRe, fIm);
+	}
+	
+	
+	public Set roots() throws ArithmeticException {	// every complex root, counted with multiplicity
+		final double[][] z = PolynomialRoots.roots(re, im);
+		final List<Expression> roots = new ArrayList<Expression>();
+		for (int i = 0; i < z[0].length; i ++)
+			roots.add(PolynomialRoots.bounded(center.getReal() + z[0][i], center.getImag() + z[1][i], z[2][i]));
+		return new Set(roots);
+	}
+	
+	
+	@Override
+	public int[] shape() {
+		final int[] out = {1,1};
+		return out;
+	}
+	
+	
+	@Override
+	protected Expression getComponent(int i, int j) {
+		return this;
+	}
+	
+	
+	@Override
+	public List<String> getInputs(Workspace heap) {
+		if (heap != null && heap.containsKey(var))
+			return heap.get(var).getInputs(heap);
+		final List<String> list = new ArrayList<String>();
+		list.add(var);
+		return list;
+	}
+	
+	
+	@Override
+	public Expression replaced(String[] oldStrs, String[] newStrs) {
+		for (int i = 0; i < oldStrs.length; i ++)
+			if (oldStrs[i].equals(var))
+				return new Polynomial(newStrs[i], center, re, im);
+		return this;
+	}
+	
+	
+	@Override
+	public Expression simplified(Workspace heap) {
+		if (heap == null || !heap.containsKey(var))
+			return this;
+		final Expression value = heap.get(var).simplified(heap);
+		if (value instanceof Constant) {	// Horner's rule, in doubles
+			final double dr = ((Constant) value).getReal() - center.getReal();
+			final double di = ((Constant) value).getImag() - center.getImag();
+			double sr = re[re.length-1], si = im[im.length-1];
+			for (int i = re.length-2; i >= 0; i --) {
+				final double t = sr*dr - si*di + re[i];
+				si = sr*di + si*dr + im[i];
+				sr = t;
+			}
+			return new Constant(sr, si);
+		}
+		final Expression d = new Operation(Operator.SUBTRACT, value, center);	// or Horner's rule, symbolically
+		Expression sum = coefficient(re.length-1);
+		for (int i = re.length-2; i >= 0; i --)
+			sum = new Operation(Operator.ADD, new Operation(Operator.MULTIPLY, sum, d), coefficient(i));
+		return sum.simplified(heap);
+	}
+	
+	
+	@Override
+	public int compile(Tape tape) {	// Horner's rule, on a Tape
+		final int x = tape.variable(var);
+		final int d = (center.getReal() == 0 && center.getImag() == 0) ? x :
+				tape.apply(Operator.SUBTRACT, x, center.compile(tape));
+		int sum = tape.constant(re[re.length-1], im[im.length-1]);
+		for (int i = re.length-2; i >= 0; i --)
+			sum = tape.apply(Operator.ADD, tape.apply(Operator.MULTIPLY, sum, d), tape.constant(re[i], im[i]));
+		return sum;
+	}
+	
+	
+	@Override
+	protected int hashed() {
+		return 31*(31*(31*var.hashCode() + center.hashCode()) + Arrays.hashCode(re)) + Arrays.hashCode(im);
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)	return true;
+		if (!(obj instanceof Polynomial) || obj.hashCode() != this.hashCode())	return false;
+		final Polynomial that = (Polynomial) obj;
+		return this.var.equals(that.var) && this.center.equals(that.center) &&
+				Arrays.equals(this.re, that.re) && Arrays.equals(this.im, that.im);
+	}
+	
+	
+	@Override
+	public Image toImage() {
+		return ImgUtils.drawString(this.toString());
+	}
+	
+	
+	@Override
+	public String toString() {
+		final String base;
+		if (center.getReal() == 0 && center.getImag() == 0)
+			base = var;
+		else if (center.getImag() == 0 && center.getReal() < 0)
+			base = "("+var+" + "+center.negative()+")";
+		else
+			base = "("+var+" - "+center+")";
+		String output = "";
+		for (int i = 0; i < re.length; i ++) {
+			if (re[i] == 0 && im[i] == 0)	continue;
+			final boolean negative = im[i] == 0 && re[i] < 0;
+			final Constant c = negative ? new Constant(-re[i]) : coefficient(i);
+			if (!output.isEmpty())
+				output += negative ? " - " : " + ";
+			else if (negative)
+				output += "-";
+			if (i == 0)
+				output += c;
+			else {
+				if (c.getReal() != 1 || c.getImag() != 0)
+					output += c+"*";
+				output += (i == 1) ? base : base+"^"+i;
+			}
+		}
+		return output.isEmpty() ? "0" : output;
+	}
+
+}
@@ -0,0 +1,637 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import gui.Workspace;
+import maths.auxiliary.DiscriminationTree;
+import maths.auxiliary.Notation;
+import maths.auxiliary.Operator;
+
+/**
+ * A list of identities, like sin(a)^2+cos(a)^2 = 1, that can make an
+ * Expression smaller. The left side of each rule is a pattern, where every
+ * Variable but e, i, and the Greek constants stands for whatever is there,
+ * and the patterns are filed in a DiscriminationTree, so each Operation only
+ * gets checked against the few rules that might fit it. Sums and products
+ * match in any order, and at the top they can match just some of the terms.
+ * A rule only gets used if it makes the Expression cheaper, and it can only be
+ * added if its two sides agree at a few random points and its right side is
+ * cheaper than its left side no matter what fills in the Variables, so
+ * rewriting always comes to an end. Distributing a product over a sum is left
+ * to SparsePolynomial, which knows when the result will collect.
+ *
+ * @author jkunimune
+ */
+public class Rules {
+
+	private static final String[] LITERALS = {"e", "i", "pi", "\u03C0", "\u03C4", "\u03C6"};	// the Variables in a pattern that only match themselves
+	private static final Constant[] LITERAL_VALUES = {Constant.E, Constant.I, Constant.PI, Constant.PI, Constant.TAU,
+			new Constant((1 + Math.sqrt(5))/2)};	// and the numbers they stand for
+	private static final int SPOT_CHECKS = 4;	// how many random points to check a new rule at
+	private static final int MAX_SPLIT = 64;	// the most terms a sum can have and still get searched for part of a pattern
+	private static final int MAX_MATCHES = 16;	// the most ways to fit a pattern worth trying
+	
+	private static final String[][] IDENTITIES = {	// the rules everyone gets, as pattern and replacement
+			{"sin(a)^2+cos(a)^2", "1"},
+			{"cosh(a)^2-sinh(a)^2", "1"},
+			{"1-sin(a)^2", "cos(a)^2"},
+			{"1-cos(a)^2", "sin(a)^2"},
+			{"tan(a)^2+1", "sec(a)^2"},
+			{"cos(a)^2-sin(a)^2", "cos(2*a)"},
+			{"2*sin(a)*cos(a)", "sin(2*a)"},
+			{"sin(a)/cos(a)", "tan(a)"},
+			{"cos(a)/sin(a)", "cot(a)"},
+			{"tan(a)*cos(a)", "sin(a)"},
+			{"cot(a)*sin(a)", "cos(a)"},
+			{"1/sin(a)", "csc(a)"},
+			{"1/cos(a)", "sec(a)"},
+			{"1/tan(a)", "cot(a)"},
+			{"cos(-a)", "cos(a)"},
+			{"cosh(-a)", "cosh(a)"},
+			{"sin(asin(a))", "a"},
+			{"cos(acos(a))", "a"},
+			{"tan(atan(a))", "a"},
+			{"sinh(asinh(a))", "a"},
+			{"cosh(acosh(a))", "a"},
+			{"tanh(atanh(a))", "a"},
+			{"e^ln(a)", "a"},
+			{"e^a*e^b", "e^(a+b)"},
+			{"e^a/e^b", "e^(a-b)"},
+			{"a+0", "a"},
+			{"0+a", "a"},
+			{"a-0", "a"},
+			{"a*1", "a"},
+			{"1*a", "a"},
+			{"a*0", "0"},
+			{"0*a", "0"},
+			{"a/1", "a"},
+			{"a^1", "a"},
+			{"a^0", "1"},
+			{"1^a", "1"},
+			{"sqrt(a)^2", "a"},
+			{"a*a", "a^2"},
+			{"a*a^b", "a^(b+1)"},
+			{"a^b*a^c", "a^(b+c)"},
+			{"a/a", "1"},
+			{"a^b/a", "a^(b-1)"},
+			{"a/a^b", "a^(1-b)"},
+			{"a^b/a^c", "a^(b-c)"},
+			{"-(-a)", "a"},
+			{"a-a", "0"},
+			{"a+a", "2*a"},
+			{"a*b+a*c", "a*(b+c)"},
+			{"a*b-a*c", "a*(b-c)"},
+			{"a*b+a", "a*(b+1)"},
+			{"a/c+b/c", "(a+b)/c"},
+			{"a/c-b/c", "(a-b)/c"}};
+	
+	private static final DiscriminationTree<Rule> INDEX = new DiscriminationTree<Rule>();	// every rule, filed by its pattern
+	private static final List<Rule> ALL = new ArrayList<Rule>();	// and in the order they came
+	private static int depth = 0;	// the deepest any pattern goes
+	
+	static {
+		for (String[] identity: IDENTITIES)
+			add(identity[0], identity[1]);
+	}
+	
+	
+	
+	/**
+	 * A pattern and what to replace it with.
+	 * 
+	 * @author jkunimune
+	 */
+	private static class Rule {
+		private final Expression lhs, rhs;
+		private final int serial;	// the rules that came first get tried first
+		
+		private Rule(Expression lhs, Expression rhs, int serial) {
+			this.lhs = lhs;
+			this.rhs = rhs;
+			this.serial = serial;
+		}
+		
+		private Expression applied(Expression exp, int cost, Workspace heap) {	// something cheaper that this turns exp into, or null if it doesn't fit
+			final List<Match> matches = new ArrayList<Match>();
+			if (isSum(lhs) || isProduct(lhs))	// at the top, a sum or product can match just some of its terms
+				matchedAll(lhs, exp, new HashMap<String, Expression>(), false, matches);
+			else
+				for (Map<String, Expression> binds: matches(lhs, exp, new HashMap<String, Expression>()))
+					matches.add(new Match(binds, null, null));
+			
+			for (Match match: matches) {
+				Expression out = null;	// the terms that weren't part of the match go first
+				for (int i = 0; match.rest != null && i < match.rest.size(); i ++) {
+					final Expression term = match.rest.get(i);
+					final boolean negated = match.restNegated.get(i);
+					if (isSum(lhs))
+						out = (out == null) ? (negated ? negated(term) : term) :
+							new Operation(negated ? Operator.SUBTRACT : Operator.ADD, out, term);
+					else
+						out = (out == null) ? term : new Operation(Operator.MULTIPLY, out, term);
+				}
+				final Expression replacement = substituted(rhs, match.binds);
+				final Expression result;
+				try {
+					result = (out == null) ? replacement.simplified(heap) :
+						new Operation(isSum(lhs) ? Operator.ADD : Operator.MULTIPLY, out, replacement).simplified(heap);
+				} catch (ArithmeticException e) {	// the replacement can be undefined where the original wasn't (like a/a at 0), so this match is no good
+					continue;
+				}
+				if (cost(result) < cost)
+					return result;
+			}
+			return null;
+		}
+	}
+	
+	
+	/**
+	 * One way a pattern can fit, with the terms it didn't need.
+	 * 
+	 * @author jkunimune
+	 */
+	private static class Match {
+		private final Map<String, Expression> binds;
+		private final List<Expression> rest;
+		private final List<Boolean> restNegated;
+		
+		private Match(Map<String, Expression> binds, List<Expression> rest, List<Boolean> restNegated) {
+			this.binds = binds;
+			this.rest = rest;
+			this.restNegated = restNegated;
+		}
+	}
+	
+	
+	private static final Comparator<Rule> BY_AGE = new Comparator<Rule>() {
+		public int compare(Rule a, Rule b) {
+			return a.serial - b.serial;
+		}
+	};
+	
+	
+	
+	public static void add(String lhs, String rhs) throws ArithmeticException {	// add a rule, written out
+		add((Expression) Notation.parseStatement(lhs), (Expression) Notation.parseStatement(rhs));
+	}
+	
+	
+	public static void add(Expression lhs, Expression rhs) throws ArithmeticException {	// add a rule, as it was parsed (and not simplified), unless it's already there
+		lhs = stripped(lhs);
+		rhs = stripped(rhs);
+		synchronized (INDEX) {
+			for (Rule rule: ALL)
+				if (rule.lhs.equals(lhs) && rule.rhs.equals(rhs))
+					return;	// it already knows this one, so simplifying rule(...) twice doesn't file it twice
+		}
+		if (isWildcard(lhs))
+			throw new ArithmeticException("I can't use "+lhs+" as a pattern; it would match everything.");
+		
+		final Map<String, Integer> lhsCounts = new HashMap<String, Integer>();
+		final Map<String, Integer> rhsCounts = new HashMap<String, Integer>();
+		counted(lhs, lhsCounts);
+		counted(rhs, rhsCounts);
+		for (String v: rhsCounts.keySet()) {
+			if (!lhsCounts.containsKey(v))
+				throw new ArithmeticException("I can't rewrite "+lhs+" as "+rhs+"; "+v+" isn't in the pattern.");
+			if (rhsCounts.get(v) > lhsCounts.get(v))
+				throw new ArithmeticException("I can't rewrite "+lhs+" as "+rhs+"; "+v+" would get copied.");
+		}
+		if (cost(rhs) >= cost(lhs))
+			throw new ArithmeticException("I can't rewrite "+lhs+" as "+rhs+"; it's no simpler.");
+		checked(lhs, rhs, lhsCounts.keySet());
+		
+		final List<String> key = new ArrayList<String>();
+		final int d = keyed(lhs, 0, key);
+		synchronized (INDEX) {
+			final Rule rule = new Rule(lhs, rhs, INDEX.size());
+			INDEX.insert(key, rule);
+			ALL.add(rule);
+			depth = Math.max(depth, d);
+		}
+	}
+	
+	
+	public static List<Expression[]> identities() {	// every rule so far, as a pattern and its replacement
+		final List<Expression[]> out = new ArrayList<Expression[]>();
+		synchronized (INDEX) {
+			for (Rule rule: ALL)
+				out.add(new Expression[] {rule.lhs, rule.rhs});
+		}
+		return out;
+	}
+	
+	
+	public static Expression rewritten(Expression exp, Workspace heap) {	// the first thing a rule turns this into that's cheaper, or exp if there isn't one
+		if (!(exp instanceof Operation) && !(exp instanceof BuiltInFunction))
+			return exp;
+		
+		final List<Rule> candidates;
+		synchronized (INDEX) {
+			final List<String> symbols = new ArrayList<String>();
+			final List<Integer> ends = new ArrayList<Integer>();
+			symbols(exp, 0, symbols, ends);
+			final int[] endArray = new int[ends.size()];
+			for (int i = 0; i < endArray.length; i ++)
+				endArray[i] = ends.get(i);
+			candidates = INDEX.retrieve(symbols.toArray(new String[0]), endArray);
+		}
+		if (candidates.isEmpty())
+			return exp;
+		Collections.sort(candidates, BY_AGE);
+		
+		final int cost = cost(exp);
+		for (Rule rule: candidates) {
+			final Expression out = rule.applied(exp, cost, heap);
+			if (out != null)
+				return out;
+		}
+		return exp;
+	}
+	
+	
+	public static int cost(Expression exp) {	// how much work it is to evaluate this: one for each operation and Variable, two for each function, and nothing for Constants
+		int cost = 0;
+		final Deque<Expression> stack = new ArrayDeque<Expression>();	// long sums are deep, so this doesn't recurse
+		stack.push(exp);
+		while (!stack.isEmpty()) {
+			final Expression e = stack.pop();
+			if (e instanceof Constant)
+				continue;
+			else if (e instanceof SparsePolynomial)
+				cost += ((SparsePolynomial) e).cost();
+			else if (e instanceof Operation) {
+				if (((Operation) e).opr != Operator.PARENTHESES)
+					cost += 1;
+				for (Expression arg: ((Operation) e).args)
+					stack.push(arg);
+			}
+			else if (e instanceof BuiltInFunction) {
+				cost += 2;
+				for (Expression arg: ((BuiltInFunction) e).getArgs())
+					stack.push(arg);
+			}
+			else if (e instanceof Vector) {
+				for (Expression c: ((Vector) e).getComponents())
+					stack.push(c);
+			}
+			else
+				cost += 1;
+		}
+		return cost;
+	}
+	
+	
+	
+	private static List<Map<String, Expression>> matches(Expression pat, Expression exp,
+			Map<String, Expression> binds) {	// every way to add to binds so that pat is exp (up to MAX_MATCHES of them)
+		final List<Map<String, Expression>> out = new ArrayList<Map<String, Expression>>();
+		if (isWildcard(pat)) {
+			final String name = ((Variable) pat).getName();
+			if (!binds.containsKey(name)) {
+				final Map<String, Expression> more = new HashMap<String, Expression>(binds);
+				more.put(name, exp);
+				out.add(more);
+			}
+			else if (same(binds.get(name), exp))
+				out.add(binds);
+		}
+		else if (isSum(pat) || isProduct(pat)) {
+			final List<Match> matches = new ArrayList<Match>();
+			matchedAll(pat, exp, binds, true, matches);
+			for (Match match: matches)
+				out.add(match.binds);
+		}
+		else if (pat instanceof Operation && ((Operation) pat).opr == Operator.NEGATE && isNegative(exp))	// a polynomial can be a negation too
+			return matches(((Operation) pat).args[0], ((SparsePolynomial) exp).negative(), binds);
+		else if (pat instanceof Operation) {
+			if (exp instanceof Operation && ((Operation) pat).opr == ((Operation) exp).opr)
+				return matchesEach(((Operation) pat).args, ((Operation) exp).args, binds);
+		}
+		else if (pat instanceof BuiltInFunction) {
+			if (exp instanceof BuiltInFunction &&
+					((BuiltInFunction) pat).getCode().equals(((BuiltInFunction) exp).getCode()))
+				return matchesEach(((BuiltInFunction) pat).getArgs(), ((BuiltInFunction) exp).getArgs(), binds);
+		}
+		else if (same(pat, exp))
+			out.add(binds);
+		return out;
+	}
+	
+	
+	private static List<Map<String, Expression>> matchesEach(Expression[] pats, Expression[] exps,
+			Map<String, Expression> binds) {	// every way to match each of pats to the same of exps
+		List<Map<String, Expression>> out = new ArrayList<Map<String, Expression>>();
+		if (pats.length != exps.length)
+			return out;
+		out.add(binds);
+		for (int i = 0; i < pats.length && !out.isEmpty(); i ++) {
+			final List<Map<String, Expression>> next = new ArrayList<Map<String, Expression>>();
+			for (Map<String, Expression> partial: out)
+				for (Map<String, Expression> more: matches(pats[i], exps[i], partial))
+					if (next.size() < MAX_MATCHES)
+						next.add(more);
+			out = next;
+		}
+		return out;
+	}
+	
+	
+	private static void matchedAll(Expression pat, Expression exp, Map<String, Expression> binds,
+			boolean exact, List<Match> out) {	// every way to match the terms of a sum or the factors of a product in any order, maybe with some left over
+		if (isSum(pat) != isSum(exp) || isProduct(pat) != isProduct(exp))
+			return;
+		final List<Expression> pats = new ArrayList<Expression>(), exps = new ArrayList<Expression>();
+		final List<Boolean> patNeg = new ArrayList<Boolean>(), expNeg = new ArrayList<Boolean>();
+		parts(pat, pats, patNeg);
+		parts(exp, exps, expNeg);
+		if (pats.size() > exps.size() || (pats.size() < exps.size() && (exact || exps.size() > MAX_SPLIT)))
+			return;
+		
+		final List<Integer> order = new ArrayList<Integer>();	// the wildcards go last, since they match anything
+		for (int i = 0; i < pats.size(); i ++)
+			if (!isWildcard(pats.get(i)))
+				order.add(i);
+		for (int i = 0; i < pats.size(); i ++)
+			if (isWildcard(pats.get(i)))
+				order.add(i);
+		
+		assigned(pats, patNeg, exps, expNeg, order, 0, new boolean[exps.size()], binds, out);
+	}
+	
+	
+	private static void assigned(List<Expression> pats, List<Boolean> patNeg,
+			List<Expression> exps, List<Boolean> expNeg, List<Integer> order, int k, boolean[] used,
+			Map<String, Expression> binds, List<Match> out) {	// match the rest of the pattern terms, from order.get(k) on, to terms that aren't used yet
+		if (k == order.size()) {
+			final List<Expression> rest = new ArrayList<Expression>();
+			final List<Boolean> restNegated = new ArrayList<Boolean>();
+			for (int j = 0; j < exps.size(); j ++) {
+				if (!used[j]) {
+					rest.add(exps.get(j));
+					restNegated.add(expNeg.get(j));
+				}
+			}
+			out.add(new Match(binds, rest, restNegated));
+			return;
+		}
+		final int i = order.get(k);
+		for (int j = 0; j < exps.size() && out.size() < MAX_MATCHES; j ++) {
+			if (used[j])
+				continue;
+			Expression target = exps.get(j);
+			if (patNeg.get(i) != expNeg.get(j)) {	// a sign can only be absorbed into a wildcard
+				if (!isWildcard(pats.get(i)))
+					continue;
+				target = negated(target);
+			}
+			used[j] = true;
+			for (Map<String, Expression> more: matches(pats.get(i), target, binds))
+				assigned(pats, patNeg, exps, expNeg, order, k+1, used, more, out);
+			used[j] = false;
+		}
+	}
+	
+	
+	private static void parts(Expression exp, List<Expression> parts, List<Boolean> negated) {	// the terms of a sum or the factors of a product
+		if (isSum(exp)) {
+			((Operation) exp).terms(parts, negated);
+			return;
+		}
+		final Deque<Expression> stack = new ArrayDeque<Expression>();
+		stack.push(exp);
+		while (!stack.isEmpty()) {
+			final Expression e = stack.pop();
+			if (isProduct(e) || (e instanceof Operation && ((Operation) e).opr == Operator.PARENTHESES)) {
+				final Expression[] a = ((Operation) e).args;
+				for (int i = a.length-1; i >= 0; i --)	// push them backwards so they come off in order
+					stack.push(a[i]);
+			}
+			else {
+				parts.add(e);
+				negated.add(false);
+			}
+		}
+	}
+	
+	
+	private static Expression substituted(Expression pat, Map<String, Expression> binds) {	// fill in the wildcards of a pattern (and the literals, if they're there)
+		if (pat instanceof Variable && binds.containsKey(((Variable) pat).getName()))
+			return binds.get(((Variable) pat).getName());
+		if (pat instanceof Operation) {
+			final Expression[] args = ((Operation) pat).args;
+			final Expression[] out = new Expression[args.length];
+			for (int i = 0; i < args.length; i ++)
+				out[i] = substituted(args[i], binds);
+			return new Operation(((Operation) pat).opr, out);
+		}
+		if (pat instanceof BuiltInFunction) {
+			final Expression[] args = ((BuiltInFunction) pat).getArgs();
+			final Expression[] out = new Expression[args.length];
+			for (int i = 0; i < args.length; i ++)
+				out[i] = substituted(args[i], binds);
+			return new BuiltInFunction(((BuiltInFunction) pat).getCode(),
+					(out.length == 1) ? out[0] : new Vector(true, out));
+		}
+		return pat;
+	}
+	
+	
+	static Expression stripped(Expression exp) {	// a pattern without the parentheses it was written with, and with its negative numbers folded in
+		if (exp instanceof Operation) {
+			final Operation op = (Operation) exp;
+			if (op.opr == Operator.PARENTHESES)
+				return stripped(op.args[0]);
+			final Expression[] args = new Expression[op.args.length];
+			for (int i = 0; i < args.length; i ++)
+				args[i] = stripped(op.args[i]);
+			if (op.opr == Operator.NEGATE && args[0] instanceof Constant)
+				return ((Constant) args[0]).negative();
+			return new Operation(op.opr, args);
+		}
+		if (exp instanceof BuiltInFunction) {
+			final Expression[] args = ((BuiltInFunction) exp).getArgs();
+			for (int i = 0; i < args.length; i ++)
+				args[i] = stripped(args[i]);
+			return new BuiltInFunction(((BuiltInFunction) exp).getCode(),
+					(args.length == 1) ? args[0] : new Vector(true, args));
+		}
+		return exp;
+	}
+	
+	
+	private static void checked(Expression lhs, Expression rhs, Set<String> wildcards) throws ArithmeticException {	// make sure the two sides are the same at a few random points
+		final Random rng = new Random(0);
+		final Map<String, Expression> binds = new HashMap<String, Expression>();
+		for (int i = 0; i < LITERALS.length; i ++)
+			binds.put(LITERALS[i], LITERAL_VALUES[i]);
+		for (int s = 0; s < SPOT_CHECKS; s ++) {
+			String point = "";
+			for (String v: wildcards) {	// positive reals between 0 and 1 are inside every branch cut
+				final Constant x = new Constant(.1 + .8*rng.nextDouble());
+				binds.put(v, x);
+				point += ((point.isEmpty()) ? "" : ", ")+v+" = "+x;
+			}
+			final Expression a, b;
+			try {
+				a = substituted(lhs, binds).simplified(null);
+				b = substituted(rhs, binds).simplified(null);
+			} catch (ArithmeticException e) {	// a point where either side is undefined doesn't say anything
+				continue;
+			}
+			if (!(a instanceof Constant) || !(b instanceof Constant))
+				continue;
+			final Constant x = (Constant) a, y = (Constant) b;
+			final double size = Math.max(1, Math.hypot(x.getReal(), x.getImag()));
+			if (Math.hypot(x.getReal() - y.getReal(), x.getImag() - y.getImag()) > 1e-9*size)
+				throw new ArithmeticException("I can't rewrite "+lhs+" as "+rhs+"; they aren't equal when "+point+".");
+		}
+	}
+	
+	
+	private static void counted(Expression pat, Map<String, Integer> counts) {	// how many times each wildcard appears
+		if (isWildcard(pat)) {
+			final String name = ((Variable) pat).getName();
+			counts.put(name, counts.containsKey(name) ? counts.get(name)+1 : 1);
+		}
+		for (Expression child: children(pat, true))
+			counted(child, counts);
+	}
+	
+	
+	private static int keyed(Expression pat, int level, List<String> key) {	// write out this pattern for the index, and return how deep it goes
+		key.add(isWildcard(pat) ? DiscriminationTree.WILDCARD : symbol(pat));
+		int deepest = level;
+		for (Expression child: children(pat, false))
+			deepest = Math.max(deepest, keyed(child, level+1, key));
+		return deepest;
+	}
+	
+	
+	private static void symbols(Expression exp, int level, List<String> symbols, List<Integer> ends) {	// write out this Expression for the index, as deep as any pattern could look
+		final int i = symbols.size();
+		symbols.add(symbol(exp));
+		ends.add(0);
+		if (level < depth)
+			for (Expression child: children(exp, false))
+				symbols(child, level+1, symbols, ends);
+		ends.set(i, symbols.size());
+	}
+	
+	
+	private static String symbol(Expression exp) {	// what this gets filed under: its operation or function and how many arguments that takes
+		if (isSum(exp))
+			return "SUM";
+		else if (isProduct(exp))
+			return "PRODUCT";
+		else if (exp instanceof Operation)
+			return ((Operation) exp).opr+"/"+((Operation) exp).args.length;
+		else if (isNegative(exp))
+			return Operator.NEGATE+"/1";
+		else if (exp instanceof BuiltInFunction)
+			return ((BuiltInFunction) exp).getCode()+"/"+((BuiltInFunction) exp).getArgs().length;
+		else if (exp instanceof Variable)
+			return "$"+exp;
+		else if (exp instanceof Constant)
+			return "#"+exp;
+		else
+			return exp.getClass().getSimpleName();
+	}
+	
+	
+	private static Expression[] children(Expression exp, boolean all) {	// the arguments that get filed along with this (sums and products don't keep theirs in order, so they only get filed by what they are unless all)
+		if ((isSum(exp) || isProduct(exp)) && !all)
+			return new Expression[0];
+		else if (isSum(exp) || isProduct(exp)) {
+			final List<Expression> parts = new ArrayList<Expression>();
+			parts(exp, parts, new ArrayList<Boolean>());
+			return parts.toArray(new Expression[0]);
+		}
+		else if (exp instanceof Operation)
+			return ((Operation) exp).args;
+		else if (exp instanceof BuiltInFunction)
+			return ((BuiltInFunction) exp).getArgs();
+		else if (isNegative(exp))
+			return new Expression[] {((SparsePolynomial) exp).negative()};
+		else
+			return new Expression[0];
+	}
+	
+	
+	private static boolean isSum(Expression exp) {
+		return exp instanceof Operation &&
+				(((Operation) exp).opr == Operator.ADD || ((Operation) exp).opr == Operator.SUBTRACT);
+	}
+	
+	
+	private static boolean isProduct(Expression exp) {
+		return exp instanceof Operation && ((Operation) exp).opr == Operator.MULTIPLY;
+	}
+	
+	
+	private static boolean isNegative(Expression exp) {	// is this a polynomial that gets written with a minus sign in front?
+		return exp instanceof SparsePolynomial && ((SparsePolynomial) exp).isNegative(0);
+	}
+	
+	
+	static boolean isWildcard(Expression pat) {	// does this stand for whatever is there?
+		if (!(pat instanceof Variable))
+			return false;
+		for (String literal: LITERALS)
+			if (literal.equals(((Variable) pat).getName()))
+				return false;
+		return true;
+	}
+	
+	
+	private static Expression negated(Expression exp) {
+		if (exp instanceof Operation && ((Operation) exp).opr == Operator.NEGATE)
+			return ((Operation) exp).args[0];
+		return new Operation(Operator.NEGATE, exp);
+	}
+	
+	
+	static boolean same(Expression a, Expression b) {	// are these written the same way?
+		if (a.equals(b))
+			return true;
+		if ((a instanceof SparsePolynomial) == (b instanceof SparsePolynomial))
+			return false;
+		if (a instanceof Variable || a instanceof Constant || b instanceof Variable || b instanceof Constant)
+			return a.toString().equals(b.toString());	// a polynomial can look like a Variable or a Constant
+		return false;
+	}
+
+}
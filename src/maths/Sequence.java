@@ -0,0 +1,438 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+import gui.Workspace;
+import javafx.scene.image.Image;
+import maths.auxiliary.Frame;
+import maths.auxiliary.Operator;
+import maths.auxiliary.Rational;
+import maths.auxiliary.Summation;
+import maths.auxiliary.Tape;
+import util.ImgUtils;
+
+/**
+ * A list of values that is never written down: a template, evaluated at every
+ * step of a parameter from one bound to another. Arithmetic on a Sequence
+ * just wraps its template, and the sum, product, minimum, maximum, and mean
+ * of one are found by streaming through it, in parallel, so a Sequence with
+ * a hundred million terms takes no more memory than one with ten.
+ *
+ * @author jkunimune
+ */
+public class Sequence extends Expression {
+
+	public static final String INDEX = "#";	// the parameter of a bare range, which nobody can type
+	private static final int MAX_EXPANDED = 256;	// the most terms we will add up symbolically
+	private static final long LEAF = 1<<14;	// the number of terms each thread does at a time
+
+	private final Expression template;
+	private final String param;
+	private final Expression start, stop, step;
+	private final boolean inward;	// should the bounds be rounded inward to integers?
+
+
+
+	public Sequence(Expression exp, String name, Expression start, Expression stop, Expression step) {
+		this(exp, name, start, stop, step, false);
+	}
+
+
+	private Sequence(Expression exp, String name, Expression start, Expression stop,
+			Expression step, boolean inward) {
+		this.template = exp;
+		this.param = name;
+		this.start = start;
+		this.stop = stop;
+		this.step = step;
+		this.inward = inward;
+	}
+
+
+
+	public static Sequence range(Expression start, Expression stop, Expression step) {	// start, start+step, ..., stop
+		return new Sequence(new Variable(INDEX), INDEX, start, stop, step);
+	}
+
+
+	public static Sequence over(Locus region) {	// the integers in a one-dimensional Locus
+		if (region.getParams().length != 1)
+			throw new ArithmeticException("Only a region of one variable can be stepped through.");
+		return new Sequence(region.getTemplate(), region.getParams()[0],
+				region.getLowBounds()[0], region.getUppBounds()[0], Constant.ONE, true);
+	}
+
+
+	public static Expression elementwise(Operator op, Expression[] args) {	// wrap an Operation around the Sequences' templates, or return null
+		Sequence seq = null;
+		for (Expression arg: args)
+			if (arg instanceof Sequence && seq == null)
+				seq = (Sequence) arg;
+		final Expression[] newArgs = new Expression[args.length];
+		for (int i = 0; i < args.length; i ++) {
+			if (args[i] instanceof Sequence && ((Sequence) args[i]).sameRange(seq))	// sequences over the same range go term by term
+				newArgs[i] = ((Sequence) args[i]).template.replaced(
+						new String[] {((Sequence) args[i]).param}, new String[] {seq.param});
+			else if (args[i] instanceof Sequence)
+				return null;
+			else if (args[i].getInputs(null).contains(seq.param))
+				return null;	// the parameter would get captured
+			else
+				newArgs[i] = args[i];
+		}
+		return seq.withTemplate(new Operation(op, newArgs));
+	}
+
+
+	private boolean sameRange(Sequence that) {
+		final Expression[] these = {this.start, this.stop, this.step}, those = {that.start, that.stop, that.step};
+		for (int i = 0; i < 3; i ++)
+			if (!(these[i] instanceof Constant && those[i] instanceof Constant
+					&& equal((Constant) these[i], (Constant) those[i])))
+				return false;
+		return this.inward == that.inward;
+	}
+
+
+	private static boolean equal(Constant a, Constant b) {	// matches() only compares units
+		return a.getReal() == b.getReal() && a.getImag() == b.getImag();
+	}
+
+
+	public Sequence mapped(String function) {	// call a built-in function on every term
+		return withTemplate(new BuiltInFunction(function, template));
+	}
+
+
+	private Sequence withTemplate(Expression exp) {
+		return new Sequence(exp, param, start, stop, step, inward);
+	}
+
+
+	@Override
+	public int[] shape() {
+		return template.shape();
+	}
+
+
+	@Override
+	protected Expression getComponent(int i, int j) {
+		return withTemplate(template.getComponent(i, j));
+	}
+
+
+	@Override
+	public List<String> getInputs(Workspace heap) {
+		final Workspace locHeap = (heap == null) ? null : heap.localize(Arrays.asList(param));
+		final List<String> inputs = template.getInputs(locHeap);
+		inputs.remove(param);
+		for (Expression bound: new Expression[] {start, stop, step})
+			for (String s: bound.getInputs(heap))
+				if (!inputs.contains(s))
+					inputs.add(s);
+		return inputs;
+	}
+
+
+	@Override
+	public Expression replaced(String[] oldStrs, String[] newStrs) {
+		return new Sequence(template.replaced(oldStrs, newStrs), param,
+				start.replaced(oldStrs, newStrs), stop.replaced(oldStrs, newStrs),
+				step.replaced(oldStrs, newStrs), inward);
+	}
+
+
+	@Override
+	public Sequence simplified(Workspace heap) throws ArithmeticException {
+		final Workspace locHeap = (heap == null) ? null : heap.localize(Arrays.asList(param));
+		return new Sequence(template.simplified(locHeap), param, start.simplified(heap),
+				stop.simplified(heap), step.simplified(heap), inward);
+	}
+
+
+	@Override
+	protected Expression internedParts() {
+		final Expression itemp = Expression.interned(template);
+		final Expression[] ibounds = super.internAll(new Expression[] {start, stop, step});
+		if (itemp == template && ibounds[0] == start && ibounds[1] == stop && ibounds[2] == step)
+			return this;
+		return new Sequence(itemp, param, ibounds[0], ibounds[1], ibounds[2], inward);
+	}
+
+
+	@Override
+	protected int hashed() {
+		final int h = 31*template.hashCode() + param.hashCode();
+		return 31*(31*(31*h + start.hashCode()) + stop.hashCode()) + step.hashCode() + (inward ? 1 : 0);
+	}
+
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)	return true;
+		if (!(obj instanceof Sequence) || obj.hashCode() != this.hashCode())	return false;
+		final Sequence that = (Sequence) obj;
+		return this.template.equals(that.template) && this.param.equals(that.param) && this.inward == that.inward &&
+				this.start.equals(that.start) && this.stop.equals(that.stop) && this.step.equals(that.step);
+	}
+
+
+	@Override
+	public Image toImage() {
+		return ImgUtils.drawString(this.toString());
+	}
+
+
+	@Override
+	public String toString() {
+		if (inward)	// a sequence that came from a Locus is written like one
+			return "{"+template+" | "+start+"\u2264"+param+"\u2264"+stop+"}";
+		String range = "range("+start+", "+stop;
+		if (!(step instanceof Constant) || !equal((Constant) step, Constant.ONE))
+			range += ", "+step;
+		range += ")";
+		if (param.equals(INDEX))	// a bare range is written as one
+			return template.replaced(new String[] {INDEX}, new String[] {range}).toString();
+		return "{"+template+" | "+param+" \u2208 "+range+"}";
+	}
+
+
+	public long length() throws ArithmeticException {	// the number of terms, if the bounds are known
+		final double a = first(), b = last(), s = bound(step);
+		if (s == 0)
+			throw new ArithmeticException("A range can't have a step of 0.");
+		final double n = Math.floor((b - a)/s*(1 + 1e-12)) + 1;	// leave some room for roundoff in fractional steps
+		return (long) Math.max(0, n);
+	}
+
+
+	public Expression reduce(String code, Workspace heap) throws ArithmeticException {	// sum, prod, min, max, or mean, or null if the terms aren't numbers
+		if (!(start instanceof Constant && stop instanceof Constant && step instanceof Constant))
+			return null;
+		final long n = length();
+		final double a = first(), s = bound(step);
+		if (n == 0) {
+			if (code.equals("sum"))
+				return Constant.ZERO;
+			else if (code.equals("prod"))
+				return Constant.ONE;
+			else
+				throw new ArithmeticException("An empty sequence has no "+code+".");
+		}
+
+		if (n <= MAX_EXPANDED) {	// a few ratios are better off added up exactly, so that prod(k for k=1..20) is every digit of 20!
+			final Expression exact = exactly(code, n, heap);
+			if (exact != null)
+				return exact;
+		}
+
+		final Workspace locHeap = (heap == null) ? null : heap.localize(Arrays.asList(param));
+		final Tape tape = new Tape(new String[] {param}, locHeap);
+		try {
+			tape.output(((n > LEAF) ? EGraph.optimized(template) : template).compile(tape));	// long sequences are worth making fast first
+		} catch (ArithmeticException e) {	// if there are unknowns, we can only write it out
+			if (n > MAX_EXPANDED)
+				return null;
+			return expanded(code, n, a, s, heap);
+		}
+
+		final double[] result = new Reduction(tape, code, a, s, 0, n).invoke();	// invoking from outside the pool sends it to the common pool
+		if (code.equals("mean"))
+			return new Constant(result[0]/n, result[1]/n);
+		else
+			return new Constant(result[0], result[1]);
+	}
+
+
+
+	private Expression expanded(String code, long n, double a, double s, Workspace heap) {	// write out every term and combine them symbolically
+		if (code.equals("min") || code.equals("max"))
+			return null;	// there's no way to compare unknowns
+		final Rational q = firstRatio(), r = ((Constant) step).getRatio();	// whole indices stay exact, so x^k is still a polynomial
+		final Workspace locHeap = (heap == null) ? new Workspace() : heap.clone();	// one heap, with the parameter rebound for each term
+		Expression total = null;
+		for (long i = 0; i < n; i ++) {
+			locHeap.put(param, (q != null && r != null) ?
+					new Constant(q.plus(r.times(Rational.of(i)))) : new Constant(a + i*s));
+			final Expression term = template.simplified(locHeap);
+			if (total == null)
+				total = term;
+			else
+				total = new Operation(code.equals("prod") ? Operator.MULTIPLY : Operator.ADD, total, term);
+		}
+		if (code.equals("mean"))
+			total = new Operation(Operator.DIVIDE, total, new Constant(Rational.of(n)));
+		return total.simplified(heap);
+	}
+
+
+	private Expression exactly(String code, long n, Workspace heap) {	// combine the terms as ratios, or return null if they aren't all ratios
+		final Rational a = firstRatio(), s = ((Constant) step).getRatio();
+		if (a == null || s == null)
+			return null;
+		final Rational[] terms = new Rational[(int) n];
+		final Workspace locHeap = (heap == null) ? new Workspace() : heap.clone();
+		for (int i = 0; i < n; i ++) {
+			locHeap.put(param, new Constant(a.plus(s.times(Rational.of(i)))));
+			final Expression term = template.simplified(locHeap);
+			if (!(term instanceof Constant) || ((Constant) term).getRatio() == null)
+				return null;	// this one isn't exact, so none of them are worth doing this way
+			terms[i] = ((Constant) term).getRatio();
+		}
+
+		Rational total = terms[0];
+		for (int i = 1; i < n; i ++) {
+			if (code.equals("prod"))
+				total = total.times(terms[i]);
+			else if (code.equals("min"))
+				total = (terms[i].compareTo(total) < 0) ? terms[i] : total;
+			else if (code.equals("max"))
+				total = (terms[i].compareTo(total) > 0) ? terms[i] : total;
+			else
+				total = total.plus(terms[i]);
+		}
+		if (code.equals("mean"))
+			total = total.times(Rational.of(1, n));
+		return new Constant(total);
+	}
+
+
+	private double first() {
+		return inward ? Math.ceil(bound(start)) : bound(start);
+	}
+
+
+	private Rational firstRatio() {	// the first index exactly, or null if it isn't a ratio
+		return inward ? Rational.of(first()) : ((Constant) start).getRatio();
+	}
+
+
+	private double last() {
+		return inward ? Math.floor(bound(stop)) : bound(stop);
+	}
+
+
+	private static double bound(Expression x) {
+		if (!(x instanceof Constant) || ((Constant) x).getImag() != 0)
+			throw new ArithmeticException("The bounds of a range must be real numbers, not "+x+".");
+		return ((Constant) x).getReal();
+	}
+
+
+
+	/**
+	 * One block of terms of a reduction. Big blocks are split in half and
+	 * done in parallel; small ones are done in a loop with their own Frame.
+	 */
+	private static class Reduction extends RecursiveTask<double[]> {
+		private static final long serialVersionUID = 1L;
+
+		private static final int SUM = 0, PROD = 1, MIN = 2, MAX = 3;
+
+		private final Tape tape;
+		private final int kind;
+		private final double start, step;
+		private final long lo, hi;
+
+		private Reduction(Tape tape, String code, double start, double step, long lo, long hi) {
+			this(tape, code.equals("prod") ? PROD : code.equals("min") ? MIN :
+					code.equals("max") ? MAX : SUM, start, step, lo, hi);
+		}
+
+		private Reduction(Tape tape, int kind, double start, double step, long lo, long hi) {
+			this.tape = tape;
+			this.kind = kind;
+			this.start = start;
+			this.step = step;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected double[] compute() {
+			if (hi - lo > LEAF) {
+				final long mid = (lo + hi) >>> 1;
+				final Reduction left = new Reduction(tape, kind, start, step, lo, mid);
+				final Reduction right = new Reduction(tape, kind, start, step, mid, hi);
+				left.fork();
+				final double[] b = right.compute();
+				return combine(left.join(), b[0], b[1]);
+			}
+
+			final Frame frame = tape.newFrame();
+			if (kind == SUM) {	// the leaves are summed in the Tape's mode, and the tree above them is already pairwise
+				final Summation.Accumulator sum = tape.getSummation().newAccumulator();
+				for (long i = lo; i < hi; i ++) {
+					frame.evaluate(start + i*step);
+					sum.add(frame.getReal(0), frame.getImag(0));
+				}
+				return new double[] {sum.getReal(), sum.getImag()};
+			}
+
+			final double[] acc = {Double.NaN, 0};
+			boolean first = true;
+			for (long i = lo; i < hi; i ++) {
+				frame.evaluate(start + i*step);
+				if (first) {
+					acc[0] = frame.getReal(0);
+					acc[1] = frame.getImag(0);
+					first = false;
+				}
+				else
+					combine(acc, frame.getReal(0), frame.getImag(0));
+			}
+			if ((kind == MIN || kind == MAX) && acc[1] != 0)
+				throw new ArithmeticException("Complex numbers can't be compared.");
+			return acc;
+		}
+
+		private double[] combine(double[] acc, double re, double im) {	// fold one more term or partial result into acc
+			switch (kind) {
+			case PROD:
+				final double r = acc[0]*re - acc[1]*im;
+				acc[1] = acc[0]*im + acc[1]*re;
+				acc[0] = r;
+				break;
+			case MIN:
+			case MAX:
+				if (im != 0)
+					throw new ArithmeticException("Complex numbers can't be compared.");
+				if ((kind == MIN) ? re < acc[0] : re > acc[0])
+					acc[0] = re;
+				else if (Double.isNaN(re))
+					acc[0] = re;
+				break;
+			default:
+				acc[0] += re;
+				acc[1] += im;
+			}
+			return acc;
+		}
+	}
+
+}
@@ -23,6 +23,7 @@
  */
 package maths;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -87,6 +88,28 @@ public class Set extends Expression {
 	}
 	
 	
+	@Override
+	protected Expression internedParts() {
+		final Expression[] ielms = super.internAll(elements);
+		return (ielms == elements) ? this : new Set(ielms);
+	}
+	
+	
+	@Override
+	protected int hashed() {
+		return Arrays.hashCode(elements);
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)	return true;
+		if (!(obj instanceof Set) || obj.hashCode() != this.hashCode())	return false;
+		final Set that = (Set) obj;
+		return Arrays.equals(this.elements, that.elements);
+	}
+	
+	
 	@Override
 	public Image toImage() {
 		if (elements.length==0)	return ImgUtils.drawString("{}");
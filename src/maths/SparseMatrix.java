@@ -0,0 +1,399 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gui.Workspace;
+import javafx.scene.image.Image;
+import maths.auxiliary.CSRMatrix;
+import maths.auxiliary.Eigensolver;
+import maths.auxiliary.LinearAlgebra;
+import maths.auxiliary.LinearSolver;
+import maths.auxiliary.LinearSolver.LinearMap;
+import maths.auxiliary.Operator;
+import util.ImgUtils;
+
+/**
+ * A numeric matrix that is mostly zeros, which only remembers the elements
+ * that aren't. Things like finite-difference operators, which have a few
+ * diagonals and nothing else, can be huge without taking much memory or time.
+ * Anything that would fill it in, like an inverse, turns it into a Matrix.
+ *
+ * @author jkunimune
+ */
+public class SparseMatrix extends Expression {
+
+	public static final double MAX_FILL = .125;	// the fraction of nonzero elements above which a matrix might as well be dense
+	public static final int MIN_SIZE = 10000;	// the number of elements below which a matrix might as well be dense
+	private static final int MAX_DENSE = 3000;	// the biggest matrix we are willing to fill in
+	private static final double SHIFT_MARGIN = 1e-10;	// how far outside the spectrum to shift, relative to its width
+
+	private final CSRMatrix csr;
+
+
+
+	public SparseMatrix(CSRMatrix csr) {
+		this.csr = csr;
+	}
+
+
+
+	public static SparseMatrix of(Matrix dense) {
+		if (!dense.isNumeric())
+			throw new ArithmeticException("Only matrices of numbers can be sparse.");
+		return new SparseMatrix(CSRMatrix.fromDense(dense.shape()[0], dense.shape()[1],
+				dense.getReal(), dense.getImag()));
+	}
+
+
+	public static boolean suits(Matrix dense) {	// would this be better off sparse?
+		final int n = dense.shape()[0], m = dense.shape()[1];
+		if (!dense.isNumeric() || (long) n*m < MIN_SIZE)
+			return false;
+		final double[] re = dense.getReal(), im = dense.getImag();
+		final long limit = (long) (MAX_FILL*n*m);
+		long count = 0;
+		for (int i = 0; i < re.length; i ++)
+			if (re[i] != 0 || (im != null && im[i] != 0))
+				if (++ count > limit)
+					return false;
+		return true;
+	}
+
+
+	public static SparseMatrix diagonal(Vector d, int offset) {	// a square matrix with d along one diagonal
+		final Expression[] comps = d.getComponents();
+		final double[] re = new double[comps.length], im = new double[comps.length];
+		for (int i = 0; i < comps.length; i ++) {
+			if (!(comps[i] instanceof Constant))
+				throw new ArithmeticException("Only matrices of numbers can be sparse.");
+			re[i] = ((Constant) comps[i]).getReal();
+			im[i] = ((Constant) comps[i]).getImag();
+		}
+		return new SparseMatrix(CSRMatrix.diagonal(comps.length+Math.abs(offset), offset, re, im));
+	}
+
+
+	public CSRMatrix getCSR() {	// (do not modify!)
+		return csr;
+	}
+
+
+	public Matrix toDense() {
+		if ((long) csr.getHeight()*csr.getWidth() > (long) MAX_DENSE*MAX_DENSE)
+			throw new ArithmeticException("This "+summary()+" is too big to fill in.");
+		final double[][] d = csr.toDense();
+		return new Matrix(csr.getHeight(), csr.getWidth(), d[0], d[1]);
+	}
+
+
+	@Override
+	public int[] shape() {
+		final int[] out = {csr.getHeight(), csr.getWidth()};
+		return out;
+	}
+
+
+	@Override
+	protected Expression getComponent(int i, int j) {
+		return new Constant(csr.get(i, j, false), csr.get(i, j, true));
+	}
+
+
+	@Override
+	public List<String> getInputs(Workspace heap) {
+		return new ArrayList<String>();
+	}
+
+
+	@Override
+	public Expression replaced(String[] oldStrs, String[] newStrs) {
+		return this;
+	}
+
+
+	@Override
+	public SparseMatrix simplified(Workspace heap) {
+		return this;	// numbers are already simplified
+	}
+
+
+	@Override
+	protected int hashed() {
+		final int[] cols = csr.getCols();
+		final double[] re = csr.getReal();
+		int h = 31*Arrays.hashCode(csr.getRowStart()) + csr.getWidth();
+		for (int k = 0; k < csr.nonzeros(); k ++)
+			h = 31*(31*h + cols[k]) + Double.hashCode(re[k]);
+		return h;
+	}
+
+
+	@Override
+	public boolean equals(Object obj) {	// the same elements in the same places (the buffers may be longer than they need to be)
+		if (this == obj)	return true;
+		if (!(obj instanceof SparseMatrix) || obj.hashCode() != this.hashCode())	return false;
+		final CSRMatrix a = this.csr, b = ((SparseMatrix) obj).csr;
+		if (a.getHeight() != b.getHeight() || a.getWidth() != b.getWidth() ||
+				!Arrays.equals(a.getRowStart(), b.getRowStart()))
+			return false;
+		for (int k = 0; k < a.nonzeros(); k ++) {
+			if (a.getCols()[k] != b.getCols()[k] || Double.compare(a.getReal()[k], b.getReal()[k]) != 0)
+				return false;
+			final double ai = a.isReal() ? 0 : a.getImag()[k], bi = b.isReal() ? 0 : b.getImag()[k];
+			if (Double.compare(ai, bi) != 0)
+				return false;
+		}
+		return true;
+	}
+
+
+	@Override
+	public Image toImage() {
+		if ((long) csr.getHeight()*csr.getWidth() > Matrix.MAX_DISPLAY)
+			return ImgUtils.drawString(summary());
+		return toDense().toImage();
+	}
+
+
+	@Override
+	public String toString() {
+		if ((long) csr.getHeight()*csr.getWidth() > Matrix.MAX_DISPLAY)
+			return summary();
+		return toDense().toString();
+	}
+
+
+	private String summary() {
+		return "["+csr.getHeight()+"\u00d7"+csr.getWidth()+" sparse matrix with "
+				+csr.nonzeros()+" elements]";
+	}
+
+
+	public SparseMatrix plus(SparseMatrix that) {
+		return new SparseMatrix(this.csr.plus(that.csr, 1));
+	}
+
+
+	public Matrix plus(Matrix that) {	// adding something dense makes it dense
+		if (!that.isNumeric())
+			return this.toDense().plus(that);
+		if (csr.getHeight() != that.shape()[0] || csr.getWidth() != that.shape()[1])
+			throw new ArithmeticException("Cannot sum a "+csr.getHeight()+"\u00d7"
+					+csr.getWidth()+" matrix with a "+that.shape()[0]+"\u00d7"
+					+that.shape()[1]+" matrix.");
+		final int m = csr.getWidth();
+		final double[] re = that.getReal().clone();
+		final double[] im = (that.getImag() == null && csr.isReal()) ? null :
+				(that.getImag() == null) ? new double[re.length] : that.getImag().clone();
+		final int[] start = csr.getRowStart(), cols = csr.getCols();
+		for (int i = 0; i < csr.getHeight(); i ++) {
+			for (int p = start[i]; p < start[i+1]; p ++) {
+				re[i*m+cols[p]] += csr.getReal()[p];
+				if (!csr.isReal())
+					im[i*m+cols[p]] += csr.getImag()[p];
+			}
+		}
+		return new Matrix(csr.getHeight(), m, re, im);
+	}
+
+
+	public SparseMatrix negative() {
+		return this.times(Constant.NEG_ONE);
+	}
+
+
+	public SparseMatrix times(Constant c) {
+		return new SparseMatrix(csr.times(c.getReal(), c.getImag()));
+	}
+
+
+	public SparseMatrix times(SparseMatrix that) {
+		return new SparseMatrix(this.csr.times(that.csr));
+	}
+
+
+	public Matrix times(Matrix that) {
+		if (!that.isNumeric())
+			return this.toDense().times(that);
+		if (csr.getWidth() != that.shape()[0])
+			throw new ArithmeticException("Cannot multiply a "+csr.getHeight()+"\u00d7"
+					+csr.getWidth()+" matrix by a "+that.shape()[0]+"\u00d7"
+					+that.shape()[1]+" matrix.");
+		final double[][] c = csr.times(that.getReal(), that.getImag(), that.shape()[1]);
+		return new Matrix(csr.getHeight(), that.shape()[1], c[0], c[1]);
+	}
+
+
+	public Matrix timesLeft(Matrix that) {	// that*this
+		if (!that.isNumeric())
+			return that.times(this.toDense());
+		if (that.shape()[1] != csr.getHeight())
+			throw new ArithmeticException("Cannot multiply a "+that.shape()[0]+"\u00d7"
+					+that.shape()[1]+" matrix by a "+csr.getHeight()+"\u00d7"
+					+csr.getWidth()+" matrix.");
+		final double[][] c = csr.timesLeft(that.getReal(), that.getImag(), that.shape()[0]);
+		return new Matrix(that.shape()[0], csr.getWidth(), c[0], c[1]);
+	}
+
+
+	public Vector times(Vector that) {
+		final int length = that.shape()[0];
+		if (length != csr.getWidth())
+			throw new ArithmeticException("Cannot multiply a "+csr.getHeight()+"\u00d7"
+					+csr.getWidth()+" matrix by a vector in "+length+"-space.");
+
+		final Expression[] y = new Expression[csr.getHeight()];
+		final int[] start = csr.getRowStart(), cols = csr.getCols();
+		if (!that.isNumeric()) {	// with unknowns, each row only involves the components under its elements
+			final Expression[] x = that.getComponents();
+			for (int i = 0; i < y.length; i ++) {
+				Expression sum = null;
+				for (int p = start[i]; p < start[i+1]; p ++) {
+					final Expression prod = new Operation(Operator.MULTIPLY,
+							getComponent(i, cols[p]), x[cols[p]]);
+					sum = (sum == null) ? prod : new Operation(Operator.ADD, sum, prod);
+				}
+				y[i] = (sum == null) ? Constant.ZERO : sum.simplified();
+			}
+			return new Vector(y);
+		}
+
+		final boolean real = csr.isReal() && that.getImag() == null;
+		final double[] yr = new double[y.length], yi = real ? null : new double[y.length];
+		csr.multiply(that.getReal(), that.getImag(), yr, yi);
+		return new Vector(yr, yi);
+	}
+
+
+	public Expression power(int p) {	// raise this to an integer power by squaring
+		if (csr.getHeight() != csr.getWidth())
+			throw new ArithmeticException("Only square matrices have powers.");
+		if (p < 0)
+			return toDense().power(p);
+		if (p == 0) {
+			final double[] ones = new double[csr.getHeight()];
+			Arrays.fill(ones, 1);
+			return new SparseMatrix(CSRMatrix.diagonal(ones.length, 0, ones, null));
+		}
+		SparseMatrix base = this, result = null;
+		for (int n = p; n > 0; n >>= 1) {
+			if ((n&1) == 1)
+				result = (result == null) ? base : result.times(base);
+			if (n > 1)
+				base = base.times(base);
+		}
+		return result;
+	}
+
+
+	public Vector eigenvalues(int k) {	// the k biggest eigenvalues, found by Arnoldi iteration if there are few enough
+		if (!usesKrylov(k))
+			return toDense().eigenvalues(k);
+		return Matrix.values(largest(k));
+	}
+
+
+	public Matrix eigenvectors(int k) {
+		if (!usesKrylov(k))
+			return toDense().eigenvectors(k);
+		final double[][] eig = largest(k);
+		return new Matrix(csr.getHeight(), k, eig[2], eig[3]);
+	}
+
+
+	private boolean usesKrylov(int k) {
+		final int n = csr.getHeight();
+		return n == csr.getWidth() && csr.isReal() && k > 0 && n >= Matrix.MIN_KRYLOV && 3*k < n;
+	}
+
+
+	private double[][] largest(int k) {	// shift and invert at each end of the spectrum if we can afford to, since the ends are often crowded
+		final int n = csr.getHeight();
+		if (csr.isSymmetric() && LinearSolver.isBanded(csr)) {
+			final double[] bounds = gershgorin();
+			final double margin = SHIFT_MARGIN*(bounds[1] - bounds[0]) + Double.MIN_NORMAL;
+			try {
+				double[][] eig = null;
+				if (bounds[1] > 0)
+					eig = Eigensolver.nearest(LinearSolver.bandedInverse(csr, bounds[1]+margin), n, k, bounds[1]+margin);
+				if (bounds[0] < 0) {
+					final double[][] low = Eigensolver.nearest(LinearSolver.bandedInverse(csr, bounds[0]-margin), n, k, bounds[0]-margin);
+					eig = (eig == null) ? low : Eigensolver.biggest(eig, low, n, k);
+				}
+				if (eig != null)
+					return eig;
+			} catch (ArithmeticException e) {	// the shift landed right on an eigenvalue, so do without it
+			}
+		}
+
+		final LinearMap a = new LinearMap() {
+			public void apply(double[] x, double[] y) {
+				csr.multiply(x, y);
+			}
+		};
+		return Eigensolver.largest(a, n, k, csr.isSymmetric());
+	}
+
+
+	private double[] gershgorin() {	// {lowest, highest} that any eigenvalue could be
+		final int[] rowStart = csr.getRowStart(), cols = csr.getCols();
+		final double[] re = csr.getReal();
+		double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < csr.getHeight(); i ++) {
+			double diag = 0, radius = 0;
+			for (int p = rowStart[i]; p < rowStart[i+1]; p ++) {
+				if (cols[p] == i)
+					diag = re[p];
+				else
+					radius += Math.abs(re[p]);
+			}
+			lo = Math.min(lo, diag - radius);
+			hi = Math.max(hi, diag + radius);
+		}
+		return new double[] {lo, hi};
+	}
+
+
+	public SparseMatrix transverse() {
+		return new SparseMatrix(csr.transpose());
+	}
+
+
+	public Expression trace() {
+		if (csr.getHeight() != csr.getWidth())
+			throw new ArithmeticException("Only square matrices have traces.");
+		double tr = 0, ti = 0;
+		final double[] dr = csr.diagonal(false), di = csr.diagonal(true);
+		for (int i = 0; i < dr.length; i ++) {
+			tr += dr[i];
+			ti += di[i];
+		}
+		return new Constant(tr, ti);
+	}
+
+}
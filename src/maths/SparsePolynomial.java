@@ -0,0 +1,741 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import gui.Workspace;
+import javafx.scene.image.Image;
+import maths.auxiliary.Operator;
+import maths.auxiliary.PolynomialGCD;
+import maths.auxiliary.PolynomialRoots;
+import maths.auxiliary.Rational;
+import maths.auxiliary.Tape;
+import util.ImgUtils;
+
+/**
+ * A polynomial in any number of variables, kept as a list of terms from the
+ * biggest down. All of a term's exponents are packed into one long, with the
+ * first variable in the highest bits, so comparing them orders the terms and
+ * adding them multiplies the monomials. Products come from merging every
+ * pair of terms through a heap, or, if both factors are dense and exact, from
+ * packing them into one variable (Kronecker substitution) and multiplying
+ * that by Karatsuba's algorithm. Operations collect sums and products of
+ * variables into these, so like terms always get combined. The variables are
+ * assumed to commute, like numbers do.
+ *
+ * @author jkunimune
+ */
+public class SparsePolynomial extends Expression {
+
+	private static final int MAX_BITS = 31;	// the most bits an exponent gets, so it fits in an int
+	private static final int MAX_TERMS = 1 << 16;	// the most terms worth expanding into
+	private static final int MAX_DENSE = 1 << 24;	// the longest a Kronecker substitution can get
+	private static final int KARATSUBA_MIN = 32;	// the shortest dense factor worth splitting in half
+	private static final int MAX_DENSITY = 4;	// how many slots per term a factor can waste and still count as dense
+
+	private final String[] vars;	// in alphabetical order
+	private final int bits;	// how many bits each exponent gets
+	private final long[] exps;	// the packed exponents of each term, biggest first
+	private final Constant[] coefs;	// and their coefficients, none of which are zero
+	
+	
+	
+	private SparsePolynomial(String[] vars, long[] exps, Constant[] coefs) {
+		this.vars = vars;
+		this.bits = (vars.length == 0) ? MAX_BITS : Math.min(MAX_BITS, 63/vars.length);
+		this.exps = exps;
+		this.coefs = coefs;
+	}
+	
+	
+	private static SparsePolynomial of(Expression exp) {	// a Constant, a Variable, or one of these, as one of these
+		if (exp instanceof SparsePolynomial)
+			return (SparsePolynomial) exp;
+		if (exp instanceof Variable)
+			return new SparsePolynomial(new String[] {((Variable) exp).getName()},
+					new long[] {1}, new Constant[] {Constant.ONE});
+		if (isZero((Constant) exp))
+			return new SparsePolynomial(new String[0], new long[0], new Constant[0]);
+		return new SparsePolynomial(new String[0], new long[] {0}, new Constant[] {(Constant) exp});
+	}
+	
+	
+	public static Expression combined(Operator opr, Expression... sargs) {	// do an Operation on polynomials, or return null if these aren't
+		if (opr != Operator.ADD && opr != Operator.SUBTRACT && opr != Operator.NEGATE
+				&& opr != Operator.MULTIPLY && opr != Operator.DIVIDE && opr != Operator.POWER)
+			return null;
+		boolean symbolic = false;
+		for (Expression sarg: sargs) {
+			if (!(sarg instanceof Constant) && !(sarg instanceof Variable) && !(sarg instanceof SparsePolynomial))
+				return null;
+			symbolic |= !(sarg instanceof Constant);
+		}
+		if (!symbolic)	// numbers are better off on their own
+			return null;
+		
+		SparsePolynomial out = of(sargs[0]);
+		switch (opr) {
+		case ADD:
+			for (int i = 1; i < sargs.length && out != null; i ++)
+				out = out.plus(of(sargs[i]));
+			break;
+		case SUBTRACT:
+			out = out.plus(of(sargs[1]).negative());
+			break;
+		case NEGATE:
+			out = out.negative();
+			break;
+		case MULTIPLY:
+			for (int i = 1; i < sargs.length && out != null; i ++)
+				out = out.times(of(sargs[i]));
+			break;
+		case DIVIDE:
+			if (!(sargs[1] instanceof Constant))	// a ratio of polynomials gets its common factors cancelled
+				return out.over(of(sargs[1]));
+			if (isZero((Constant) sargs[1]))
+				return null;
+			out = out.times(of(((Constant) sargs[1]).recip()));
+			break;
+		default:
+			if (!(sargs[1] instanceof Constant))
+				return null;
+			final Rational n = ((Constant) sargs[1]).getRatio();
+			if (n == null || !n.isInteger() || n.signum() < 0 || n.bitLength() > 31)
+				return null;
+			out = out.pow(n.getNumerator().intValue());
+		}
+		return (out == null) ? null : out.normalized();
+	}
+	
+	
+	
+	public int size() {
+		return exps.length;
+	}
+	
+	
+	@Override
+	protected int hashed() {
+		return 31*(31*Arrays.hashCode(vars) + Arrays.hashCode(exps)) + Arrays.hashCode(coefs);
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {	// are these the same terms in the same variables?
+		if (this == obj)	return true;
+		if (!(obj instanceof SparsePolynomial) || obj.hashCode() != this.hashCode())	return false;
+		final SparsePolynomial that = (SparsePolynomial) obj;
+		return this.bits == that.bits && Arrays.equals(this.vars, that.vars) &&
+				Arrays.equals(this.exps, that.exps) && Arrays.equals(this.coefs, that.coefs);
+	}
+	
+	
+	int cost() {	// how many operations and Variables it takes to write this out, the way Rules counts them
+		int cost = exps.length-1;	// one for each + or -
+		if (exps.length > 0 && isNegative(0))
+			cost ++;	// and one for the minus sign in front
+		for (int k = 0; k < exps.length; k ++) {
+			int factors = isOne(isNegative(k) ? coefs[k].negative() : coefs[k]) ? 0 : 1;
+			for (int v = 0; v < vars.length; v ++) {
+				final int p = exponent(exps[k], v);
+				if (p > 0) {
+					factors ++;
+					cost += (p > 1) ? 2 : 1;	// the Variable, and maybe a ^
+				}
+			}
+			cost += Math.max(0, factors-1);	// and the *s between them
+		}
+		return cost;
+	}
+	
+	
+	private int exponent(long e, int v) {	// the power of vars[v] in a packed monomial
+		return (int) ((e >>> (bits*(vars.length-1-v))) & ((1L << bits) - 1));
+	}
+	
+	
+	private int[] degrees() {	// the highest power of each variable
+		final int[] out = new int[vars.length];
+		for (long e: exps)
+			for (int v = 0; v < vars.length; v ++)
+				out[v] = Math.max(out[v], exponent(e, v));
+		return out;
+	}
+	
+	
+	private int totalDegree() {	// the highest sum of powers in any one term
+		int out = 0;
+		for (long e: exps) {
+			int d = 0;
+			for (int v = 0; v < vars.length; v ++)
+				d += exponent(e, v);
+			out = Math.max(out, d);
+		}
+		return out;
+	}
+	
+	
+	private static double monomials(int vars, int degree) {	// how many monomials there are of at most this degree
+		double out = 1;
+		for (int k = 1; k <= vars; k ++)
+			out = out*(degree + k)/k;
+		return out;
+	}
+	
+	
+	private Expression normalized() {	// this, or the simpler thing it has come down to
+		if (exps.length == 0)
+			return Constant.ZERO;
+		if (exps.length == 1 && exps[0] == 0)
+			return coefs[0];
+		final int[] deg = degrees();
+		int used = 0;
+		for (int d: deg)
+			if (d > 0)
+				used ++;
+		if (exps.length == 1 && used == 1 && Long.bitCount(exps[0]) == 1 && isOne(coefs[0]))
+			for (int v = 0; v < vars.length; v ++)
+				if (deg[v] == 1)
+					return new Variable(vars[v]);
+		if (used == vars.length)
+			return this;
+		final String[] fewer = new String[used];	// forget any variables that cancelled out
+		for (int v = 0, u = 0; v < vars.length; v ++)
+			if (deg[v] > 0)
+				fewer[u ++] = vars[v];
+		return this.withVars(fewer);
+	}
+	
+	
+	private SparsePolynomial withVars(String[] newVars) {	// the same polynomial, packed for a sorted list of variables that has all of the ones it uses, or null if they won't fit
+		final SparsePolynomial out = new SparsePolynomial(newVars, new long[exps.length], coefs);
+		final int[] where = new int[vars.length];
+		for (int v = 0; v < vars.length; v ++)
+			where[v] = Arrays.asList(newVars).indexOf(vars[v]);
+		for (int k = 0; k < exps.length; k ++) {
+			for (int v = 0; v < vars.length; v ++) {
+				final long e = exponent(exps[k], v);
+				if (e == 0)
+					continue;
+				if (where[v] < 0 || e >= (1L << out.bits))
+					return null;
+				out.exps[k] |= e << (out.bits*(newVars.length-1-where[v]));
+			}
+		}
+		return out;
+	}
+	
+	
+	private static String[] union(String[] a, String[] b) {	// all of the variables in either, in order
+		final List<String> out = new ArrayList<String>();
+		int i = 0, j = 0;
+		while (i < a.length || j < b.length) {
+			final int c = (i >= a.length) ? 1 : (j >= b.length) ? -1 : a[i].compareTo(b[j]);
+			if (c <= 0)
+				out.add(a[i ++]);
+			else
+				out.add(b[j ++]);
+			if (c == 0)
+				j ++;
+		}
+		return out.toArray(new String[0]);
+	}
+	
+	
+	public SparsePolynomial negative() {
+		final Constant[] neg = new Constant[coefs.length];
+		for (int k = 0; k < coefs.length; k ++)
+			neg[k] = coefs[k].negative();
+		return new SparsePolynomial(vars, exps, neg);
+	}
+	
+	
+	public SparsePolynomial plus(SparsePolynomial that) {	// merge the two lists of terms
+		final String[] all = union(this.vars, that.vars);
+		final SparsePolynomial a = this.withVars(all), b = that.withVars(all);
+		if (a == null || b == null)
+			return null;
+		final long[] e = new long[a.size() + b.size()];
+		final Constant[] c = new Constant[e.length];
+		int i = 0, j = 0, n = 0;
+		while (i < a.size() || j < b.size()) {
+			if (j >= b.size() || (i < a.size() && a.exps[i] > b.exps[j])) {
+				e[n] = a.exps[i];
+				c[n ++] = a.coefs[i ++];
+			}
+			else if (i >= a.size() || b.exps[j] > a.exps[i]) {
+				e[n] = b.exps[j];
+				c[n ++] = b.coefs[j ++];
+			}
+			else {
+				final Constant sum = a.coefs[i].plus(b.coefs[j]);
+				if (!isZero(sum)) {
+					e[n] = a.exps[i];
+					c[n ++] = sum;
+				}
+				i ++;
+				j ++;
+			}
+		}
+		return new SparsePolynomial(all, Arrays.copyOf(e, n), Arrays.copyOf(c, n));
+	}
+	
+	
+	public SparsePolynomial times(SparsePolynomial that) {	// multiply, or return null if the product would be too big to bother with
+		final String[] all = union(this.vars, that.vars);
+		final SparsePolynomial a = this.withVars(all), b = that.withVars(all);
+		if (a == null || b == null)
+			return null;
+		if (a.size() == 0 || b.size() == 0)
+			return new SparsePolynomial(all, new long[0], new Constant[0]);
+		
+		final int[] degA = a.degrees(), degB = b.degrees();
+		final long[] stride = new long[all.length];	// the place value of each variable in a Kronecker substitution
+		long terms = 1, lenA = 1, lenB = 1;
+		for (int v = all.length-1; v >= 0; v --) {
+			if (degA[v] + degB[v] >= (1L << a.bits))
+				return null;	// the exponents would overflow their bits
+			stride[v] = terms;
+			lenA += degA[v]*stride[v];
+			lenB += degB[v]*stride[v];
+			terms = Math.min(terms*(degA[v] + degB[v] + 1), Long.MAX_VALUE/MAX_TERMS);
+		}
+		if (Math.min(terms, (long) a.size()*b.size()) > MAX_TERMS
+				&& monomials(all.length, a.totalDegree() + b.totalDegree()) > MAX_TERMS)
+			return null;
+		if (a.isExact() && b.isExact() && terms <= MAX_DENSE
+				&& Math.min(a.size(), b.size()) >= KARATSUBA_MIN
+				&& lenA <= MAX_DENSITY*a.size() && lenB <= MAX_DENSITY*b.size())
+			return kroneckerTimes(a, b, stride, (int) lenA, (int) lenB);
+		else
+			return heapTimes(a, b);
+	}
+	
+	
+	public SparsePolynomial pow(int n) {	// raise to a whole power, or return null if it would be too big to bother with
+		final int[] deg = degrees();
+		double terms = 1;
+		for (int d: deg)
+			terms *= (double) n*d + 1;
+		if (terms > MAX_TERMS && Math.pow(size(), n) > MAX_TERMS
+				&& monomials(vars.length, n*totalDegree()) > MAX_TERMS)
+			return null;
+		SparsePolynomial out = of(Constant.ONE), base = this;
+		for (int m = n; m > 0 && out != null && base != null; m >>= 1) {	// by squaring
+			if ((m & 1) != 0)
+				out = out.times(base);
+			if (m > 1)
+				base = base.times(base);
+		}
+		return (base == null) ? null : out;
+	}
+	
+	
+	public Expression over(SparsePolynomial that) {	// divide, cancelling the GCD, or return null if the coefficients aren't exact
+		final String[] all = union(this.vars, that.vars);
+		final SparsePolynomial a = this.withVars(all), b = that.withVars(all);
+		if (a == null || b == null || !a.isExact() || !b.isExact())
+			return null;
+		final BigInteger la = a.denominator(), lb = b.denominator();
+		PolynomialGCD.Terms num = a.integers(la), den = b.integers(lb);
+		final PolynomialGCD.Terms g = PolynomialGCD.gcd(num, den, all.length, a.bits);
+		if (g != null && !g.isConstant()) {
+			num = PolynomialGCD.quotient(num, g, all.length, a.bits);
+			den = PolynomialGCD.quotient(den, g, all.length, a.bits);
+			if (num == null || den == null)
+				return null;
+		}
+		final BigInteger c = PolynomialGCD.content(num).abs().gcd(PolynomialGCD.content(den))
+				.multiply(BigInteger.valueOf(PolynomialGCD.content(den).signum()));	// so the denominator is primitive and starts out positive
+		num = PolynomialGCD.divided(num, c);
+		den = PolynomialGCD.divided(den, c);
+		
+		final Rational scale = Rational.of(lb, la);
+		if (den.isConstant())
+			return of(all, num, scale.times(Rational.of(den.coefs[0]).reciprocal())).normalized();
+		return new Operation(Operator.DIVIDE, of(all, num, scale).normalized(), of(all, den, Rational.ONE).normalized());
+	}
+	
+	
+	public Set roots() throws ArithmeticException {	// every complex root, counted with multiplicity, if this is in one variable
+		if (vars.length != 1)
+			throw new ArithmeticException("I can only find the roots of polynomials in one variable.");
+		final int n = exponent(exps[0], 0);
+		final double[] re = new double[n+1], im = new double[n+1];
+		for (int k = 0; k < exps.length; k ++) {
+			re[exponent(exps[k], 0)] = coefs[k].getReal();
+			im[exponent(exps[k], 0)] = coefs[k].getImag();
+		}
+		final double[][] z = PolynomialRoots.roots(re, im);
+		final List<Expression> roots = new ArrayList<Expression>();
+		for (int i = 0; i < z[0].length; i ++) {
+			final Constant exact = isExact() ? exactRoot(z[0][i], z[1][i], z[2][i]) : null;
+			roots.add((exact != null) ? exact : PolynomialRoots.bounded(z[0][i], z[1][i], z[2][i]));
+		}
+		return new Set(roots);
+	}
+	
+	
+	private Constant exactRoot(double re, double im, double radius) {	// the Gaussian rational root near (re, im), if there is one (its denominator must divide the leading coefficient)
+		final BigInteger lead = coefs[0].getRatio().times(Rational.of(denominator())).getNumerator().abs();
+		if (lead.bitLength() > 52 || Math.abs(re)*lead.doubleValue() >= 1L << 52 || Math.abs(im)*lead.doubleValue() >= 1L << 52)
+			return null;
+		final long l = lead.longValue();
+		final Rational xr = Rational.of(Math.round(re*l), l), xi = Rational.of(Math.round(im*l), l);
+		if (Math.hypot(xr.doubleValue() - re, xi.doubleValue() - im) > radius)
+			return null;
+		
+		Rational sr = Rational.ZERO, si = Rational.ZERO;	// Horner's rule, exactly
+		for (int d = exponent(exps[0], 0), k = 0; d >= 0; d --) {
+			final Rational tr = sr.times(xr).minus(si.times(xi));
+			si = sr.times(xi).plus(si.times(xr));
+			sr = tr;
+			if (k < exps.length && exponent(exps[k], 0) == d)
+				sr = sr.plus(coefs[k ++].getRatio());
+		}
+		if (sr.signum() != 0 || si.signum() != 0)
+			return null;
+		return (xi.signum() == 0) ? new Constant(xr) : new Constant(xr.doubleValue(), xi.doubleValue());
+	}
+	
+	
+	private static SparsePolynomial heapTimes(SparsePolynomial x, SparsePolynomial y) {	// Johnson's algorithm: pull products out of a heap, biggest first
+		final SparsePolynomial a = (x.size() <= y.size()) ? x : y, b = (a == x) ? y : x;
+		final int[] next = new int[a.size()];	// which term of b each term of a is up to
+		final PriorityQueue<Integer> heap = new PriorityQueue<Integer>(a.size(), new Comparator<Integer>() {
+			public int compare(Integer i, Integer j) {
+				return Long.compare(a.exps[j] + b.exps[next[j]], a.exps[i] + b.exps[next[i]]);
+			}
+		});
+		for (int i = 0; i < a.size(); i ++)
+			heap.add(i);
+		long[] e = new long[a.size() + b.size()];
+		Constant[] c = new Constant[e.length];
+		int n = 0;
+		while (!heap.isEmpty()) {
+			final int i = heap.poll();
+			final long product = a.exps[i] + b.exps[next[i]];
+			final Constant coef = a.coefs[i].times(b.coefs[next[i]]);
+			if (n > 0 && e[n-1] == product)
+				c[n-1] = c[n-1].plus(coef);
+			else {
+				if (n > 0 && isZero(c[n-1]))	// the last term cancelled out
+					n --;
+				if (n == e.length) {
+					e = Arrays.copyOf(e, 2*n);
+					c = Arrays.copyOf(c, 2*n);
+				}
+				e[n] = product;
+				c[n ++] = coef;
+			}
+			if (++ next[i] < b.size())
+				heap.add(i);
+		}
+		if (n > 0 && isZero(c[n-1]))
+			n --;
+		return new SparsePolynomial(a.vars, Arrays.copyOf(e, n), Arrays.copyOf(c, n));
+	}
+	
+	
+	private static SparsePolynomial kroneckerTimes(SparsePolynomial a, SparsePolynomial b,
+			long[] stride, int lenA, int lenB) {	// pack both into one variable, multiply those densely, and unpack the result
+		final Constant[] c = karatsuba(a.dense(stride, lenA), b.dense(stride, lenB));
+		int n = 0;
+		for (Constant ck: c)
+			if (ck != null && !isZero(ck))
+				n ++;
+		final long[] e = new long[n];
+		final Constant[] coefs = new Constant[n];
+		for (int k = c.length-1, i = 0; k >= 0; k --) {	// the biggest places are the biggest terms
+			if (c[k] == null || isZero(c[k]))
+				continue;
+			long rest = k;
+			for (int v = 0; v < a.vars.length; v ++) {
+				e[i] |= (rest/stride[v]) << (a.bits*(a.vars.length-1-v));
+				rest %= stride[v];
+			}
+			coefs[i ++] = c[k];
+		}
+		return new SparsePolynomial(a.vars, e, coefs);
+	}
+	
+	
+	private Constant[] dense(long[] stride, int length) {	// the coefficients of the Kronecker substitution, with nulls for zeros
+		final Constant[] out = new Constant[length];
+		for (int k = 0; k < exps.length; k ++) {
+			long place = 0;
+			for (int v = 0; v < vars.length; v ++)
+				place += exponent(exps[k], v)*stride[v];
+			out[(int) place] = coefs[k];
+		}
+		return out;
+	}
+	
+	
+	private static Constant[] karatsuba(Constant[] a, Constant[] b) {	// the product of two dense polynomials, with nulls for zeros
+		final Constant[] c = new Constant[a.length + b.length - 1];
+		if (Math.min(a.length, b.length) < KARATSUBA_MIN) {	// short enough to do the schoolbook way
+			for (int i = 0; i < a.length; i ++)
+				if (a[i] != null)
+					for (int j = 0; j < b.length; j ++)
+						if (b[j] != null)
+							c[i+j] = add(c[i+j], a[i].times(b[j]));
+			return c;
+		}
+		final int h = Math.min(a.length, b.length)/2;	// split both at the same place
+		final Constant[] a0 = Arrays.copyOfRange(a, 0, h), a1 = Arrays.copyOfRange(a, h, a.length);
+		final Constant[] b0 = Arrays.copyOfRange(b, 0, h), b1 = Arrays.copyOfRange(b, h, b.length);
+		final Constant[] z0 = karatsuba(a0, b0), z2 = karatsuba(a1, b1);
+		final Constant[] z1 = karatsuba(added(a0, a1), added(b0, b1));
+		for (int i = 0; i < z0.length; i ++) {
+			c[i] = add(c[i], z0[i]);
+			z1[i] = add(z1[i], (z0[i] == null) ? null : z0[i].negative());
+		}
+		for (int i = 0; i < z2.length; i ++) {
+			c[i+2*h] = add(c[i+2*h], z2[i]);
+			z1[i] = add(z1[i], (z2[i] == null) ? null : z2[i].negative());
+		}
+		for (int i = 0; i < z1.length; i ++)
+			c[i+h] = add(c[i+h], z1[i]);
+		return c;
+	}
+	
+	
+	private static Constant[] added(Constant[] a, Constant[] b) {	// the sum of two dense polynomials
+		final Constant[] out = Arrays.copyOf(a, Math.max(a.length, b.length));
+		for (int i = 0; i < b.length; i ++)
+			out[i] = add(out[i], b[i]);
+		return out;
+	}
+	
+	
+	private static Constant add(Constant a, Constant b) {	// a + b, where null is zero
+		return (a == null) ? b : (b == null) ? a : a.plus(b);
+	}
+	
+	
+	private BigInteger denominator() {	// the least common multiple of the denominators of the coefficients
+		BigInteger lcm = BigInteger.ONE;
+		for (Constant c: coefs) {
+			final BigInteger d = c.getRatio().getDenominator();
+			lcm = lcm.divide(lcm.gcd(d)).multiply(d);
+		}
+		return lcm;
+	}
+	
+	
+	private PolynomialGCD.Terms integers(BigInteger l) {	// this times l, which must clear all of the denominators
+		final BigInteger[] ints = new BigInteger[coefs.length];
+		for (int k = 0; k < coefs.length; k ++)
+			ints[k] = coefs[k].getRatio().times(Rational.of(l)).getNumerator();
+		return new PolynomialGCD.Terms(exps, ints);
+	}
+	
+	
+	private static SparsePolynomial of(String[] vars, PolynomialGCD.Terms terms, Rational scale) {	// integer terms, times a ratio
+		final Constant[] coefs = new Constant[terms.coefs.length];
+		for (int k = 0; k < coefs.length; k ++)
+			coefs[k] = new Constant(Rational.of(terms.coefs[k]).times(scale));
+		return new SparsePolynomial(vars, terms.exps, coefs);
+	}
+	
+	
+	private boolean isExact() {	// are all of the coefficients ratios of integers?
+		for (Constant c: coefs)
+			if (c.getRatio() == null)
+				return false;
+		return true;
+	}
+	
+	
+	private static boolean isZero(Constant c) {
+		if (c.getRatio() != null)
+			return c.getRatio().signum() == 0;
+		return c.getReal() == 0 && c.getImag() == 0;
+	}
+	
+	
+	private static boolean isOne(Constant c) {
+		if (c.getRatio() != null)
+			return c.getRatio().minus(Rational.ONE).signum() == 0;
+		return c.getReal() == 1 && c.getImag() == 0;
+	}
+	
+	
+	public Expression toExpression() {	// write this out as a sum of products of powers, biggest term first
+		Expression sum = null;
+		for (int k = 0; k < exps.length; k ++) {
+			final Expression term = term(k);
+			if (sum == null)
+				sum = isNegative(k) ? new Operation(Operator.NEGATE, term) : term;
+			else
+				sum = new Operation(isNegative(k) ? Operator.SUBTRACT : Operator.ADD, sum, term);
+		}
+		return (sum == null) ? Constant.ZERO : sum;
+	}
+	
+	
+	boolean isNegative(int k) {	// should this term be written with a minus sign?
+		return coefs[k].getImag() == 0 && coefs[k].getReal() < 0;
+	}
+	
+	
+	private Expression term(int k) {	// the absolute value of the kth term, if it was written with a minus sign
+		final Constant c = isNegative(k) ? coefs[k].negative() : coefs[k];
+		final List<Expression> factors = new ArrayList<Expression>();
+		if (!isOne(c) || exps[k] == 0)
+			factors.add(c);
+		for (int v = 0; v < vars.length; v ++) {
+			final int p = exponent(exps[k], v);
+			if (p == 1)
+				factors.add(new Variable(vars[v]));
+			else if (p > 1)
+				factors.add(new Operation(Operator.POWER, new Variable(vars[v]), new Constant(Rational.of(p))));
+		}
+		return (factors.size() == 1) ? factors.get(0) : new Operation(Operator.MULTIPLY, factors);
+	}
+	
+	
+	@Override
+	public int[] shape() {
+		final int[] out = {1,1};
+		return out;
+	}
+	
+	
+	@Override
+	protected Expression getComponent(int i, int j) {
+		return this;
+	}
+	
+	
+	@Override
+	public List<String> getInputs(Workspace heap) {
+		final List<String> list = new ArrayList<String>();
+		for (String var: vars) {
+			if (heap != null && heap.containsKey(var)) {
+				for (String s: heap.get(var).getInputs(heap))
+					if (!list.contains(s))
+						list.add(s);
+			}
+			else if (!list.contains(var))
+				list.add(var);
+		}
+		return list;
+	}
+	
+	
+	@Override
+	public Expression replaced(String[] oldStrs, String[] newStrs) {
+		final String[] newVars = vars.clone();
+		for (int v = 0; v < newVars.length; v ++)
+			for (int i = 0; i < oldStrs.length; i ++)
+				if (vars[v].equals(oldStrs[i]))
+					newVars[v] = newStrs[i];
+		if (Arrays.equals(newVars, vars))
+			return this;
+		for (int v = 1; v < newVars.length; v ++)
+			if (newVars[v-1].compareTo(newVars[v]) >= 0)	// if they're out of order now, it has to be rebuilt
+				return toExpression().replaced(oldStrs, newStrs);
+		return new SparsePolynomial(newVars, exps, coefs);
+	}
+	
+	
+	@Override
+	public Expression simplified(Workspace heap) {
+		if (heap == null)
+			return this;
+		final Constant[] values = new Constant[vars.length];
+		boolean any = false, numeric = true;
+		for (int v = 0; v < vars.length; v ++) {
+			if (!heap.containsKey(vars[v])) {
+				numeric = false;
+				continue;
+			}
+			any = true;
+			final Expression value = heap.get(vars[v]).simplified(heap);
+			if (value instanceof Constant)
+				values[v] = (Constant) value;
+			else
+				numeric = false;
+		}
+		if (!any)
+			return this;
+		if (!numeric)	// if it's not just numbers going in, let the Operations work it out
+			return toExpression().simplified(heap);
+		
+		final int[] deg = degrees();
+		final Constant[][] powers = new Constant[vars.length][];
+		for (int v = 0; v < vars.length; v ++) {
+			powers[v] = new Constant[deg[v]+1];
+			powers[v][0] = Constant.ONE;
+			for (int p = 1; p <= deg[v]; p ++)
+				powers[v][p] = powers[v][p-1].times(values[v]);
+		}
+		final Constant[] terms = new Constant[exps.length];
+		for (int k = 0; k < exps.length; k ++) {
+			terms[k] = coefs[k];
+			for (int v = 0; v < vars.length; v ++)
+				terms[k] = terms[k].times(powers[v][exponent(exps[k], v)]);
+		}
+		return Constant.sum(terms);
+	}
+	
+	
+	@Override
+	public int compile(Tape tape) {
+		return toExpression().compile(tape);
+	}
+	
+	
+	@Override
+	public Image toImage() {	// drawn term by term, since toExpression() nests one level per term
+		final List<Image> imgs = new ArrayList<Image>();
+		for (int k = 0; k < exps.length; k ++) {
+			if (k > 0 || isNegative(k))
+				imgs.add(ImgUtils.drawString(isNegative(k) ? (k > 0 ? " - " : "-") : " + "));
+			imgs.add(term(k).toImage());
+		}
+		return imgs.isEmpty() ? Constant.ZERO.toImage() : ImgUtils.horzCat(imgs.toArray(new Image[0]));
+	}
+	
+	
+	@Override
+	public String toString() {
+		final StringBuilder out = new StringBuilder();
+		for (int k = 0; k < exps.length; k ++) {
+			if (k > 0 || isNegative(k))
+				out.append(isNegative(k) ? (k > 0 ? " - " : "-") : " + ");
+			out.append(term(k));
+		}
+		return (out.length() == 0) ? Constant.ZERO.toString() : out.toString();
+	}
+
+}
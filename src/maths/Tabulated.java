@@ -0,0 +1,178 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gui.Workspace;
+import javafx.scene.image.Image;
+import maths.auxiliary.LookupTable;
+import maths.auxiliary.Tape;
+import util.ImgUtils;
+
+/**
+ * A function that has been traded for a LookupTable over some box, because
+ * it was too expensive to evaluate at every point of a plot. Inside the box,
+ * it gets interpolated from the table; outside, or anywhere the inputs aren't
+ * real numbers, it falls back on the function itself.
+ *
+ * @author jkunimune
+ */
+public class Tabulated extends Expression {
+
+	private final String name;	// the function that made this, which says how it interpolates
+	private final Expression exact;
+	private final String[] vars;
+	private final double[] low, upp;
+	private final double tol;
+	private final LookupTable table;
+	
+	
+	
+	public Tabulated(String name, Expression exact, String[] vars, double[] low, double[] upp,
+			double tol, LookupTable table) {
+		this.name = name;
+		this.exact = exact;
+		this.vars = vars;
+		this.low = low;
+		this.upp = upp;
+		this.tol = tol;
+		this.table = table;
+	}
+	
+	
+	
+	@Override
+	public int[] shape() {
+		final int[] out = {1,1};
+		return out;
+	}
+	
+	
+	@Override
+	protected Expression getComponent(int i, int j) {
+		return this;
+	}
+	
+	
+	@Override
+	public List<String> getInputs(Workspace heap) {
+		final List<String> list = new ArrayList<String>();
+		for (String var: vars) {
+			if (heap != null && heap.containsKey(var)) {
+				for (String s: heap.get(var).getInputs(heap))
+					if (!list.contains(s))
+						list.add(s);
+			}
+			else if (!list.contains(var))
+				list.add(var);
+		}
+		return list;
+	}
+	
+	
+	@Override
+	public Expression replaced(String[] oldStrs, String[] newStrs) {
+		final String[] newVars = vars.clone();
+		for (int i = 0; i < newVars.length; i ++)
+			for (int j = 0; j < oldStrs.length; j ++)
+				if (newVars[i].equals(oldStrs[j]))
+					newVars[i] = newStrs[j];
+		return new Tabulated(name, exact.replaced(oldStrs, newStrs), newVars, low, upp, tol, table);
+	}
+	
+	
+	@Override
+	public Expression simplified(Workspace heap) {
+		if (heap == null)
+			return this;
+		final double[] x = new double[vars.length];
+		int bound = 0;
+		for (int d = 0; d < vars.length; d ++) {
+			if (!heap.containsKey(vars[d]))
+				continue;
+			bound ++;
+			final Expression value = heap.get(vars[d]).simplified(heap);
+			if (!(value instanceof Constant) || ((Constant) value).getImag() != 0)
+				return exact.simplified(heap);	// the table only knows about real numbers
+			x[d] = ((Constant) value).getReal();
+		}
+		if (bound == 0)
+			return this;
+		if (bound < vars.length || !table.contains(x))
+			return exact.simplified(heap);
+		return table.get(x);
+	}
+	
+	
+	@Override
+	public int compile(Tape tape) {	// the table goes in front of the function, for the Frames that can skip it
+		final int[] x = new int[vars.length];
+		for (int d = 0; d < vars.length; d ++)
+			x[d] = tape.variable(vars[d]);
+		return tape.lookup(table, x, exact);
+	}
+	
+	
+	@Override
+	protected Expression internedParts() {
+		final Expression iexact = Expression.interned(exact);
+		return (iexact == exact) ? this : new Tabulated(name, iexact, vars, low, upp, tol, table);
+	}
+	
+	
+	@Override
+	protected int hashed() {
+		final int h = 31*name.hashCode() + exact.hashCode();
+		return 31*(31*(31*h + Arrays.hashCode(vars)) + Arrays.hashCode(low)) + Arrays.hashCode(upp) + Double.hashCode(tol);
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)	return true;
+		if (!(obj instanceof Tabulated) || obj.hashCode() != this.hashCode())	return false;
+		final Tabulated that = (Tabulated) obj;
+		return this.name.equals(that.name) && this.exact.equals(that.exact) && Arrays.equals(this.vars, that.vars) &&
+				Arrays.equals(this.low, that.low) && Arrays.equals(this.upp, that.upp) && Double.compare(this.tol, that.tol) == 0;
+	}
+	
+	
+	@Override
+	public Image toImage() {
+		return ImgUtils.drawString(this.toString());
+	}
+	
+	
+	@Override
+	public String toString() {
+		String region = "{"+vars[0]+" : ";
+		for (int d = 0; d < vars.length; d ++)
+			region += new Constant(low[d])+"<"+vars[d]+"<"+new Constant(upp[d])+((d+1 < vars.length) ? ", " : "}");
+		return name+"("+exact+", "+region+", "+new Constant(tol)+")";
+	}
+
+}
@@ -28,6 +28,7 @@ import java.util.List;
 
 import gui.Workspace;
 import javafx.scene.image.Image;
+import maths.auxiliary.Tape;
 import util.ImgUtils;
 
 /**
@@ -47,6 +48,11 @@ public class Variable extends Expression {
 	
 	
 	
+	public String getName() {
+		return name;
+	}
+	
+	
 	@Override
 	public int[] shape() {
 		final int[] out = {1,1};
@@ -91,6 +97,25 @@ public class Variable extends Expression {
 	}
 	
 	
+	@Override
+	public int compile(Tape tape) {
+		return tape.variable(name);
+	}
+	
+	
+	@Override
+	protected int hashed() {
+		return name.hashCode();
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)	return true;
+		return obj instanceof Variable && ((Variable) obj).name.equals(this.name);
+	}
+	
+	
 	@Override
 	public Image toImage() {
 		return ImgUtils.horzCat(ImgUtils.drawString(name.substring(0, 1), true),
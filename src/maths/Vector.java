@@ -29,42 +29,93 @@ import java.util.List;
 
 import gui.Workspace;
 import javafx.scene.image.Image;
+import maths.auxiliary.LinearAlgebra;
 import maths.auxiliary.Operator;
+import maths.auxiliary.Summation;
 import util.ImgUtils;
 
 /**
  * A list of scalars. Vectors are commonly used to represent points and flows,
- * and have special dot and cross product operators.
+ * and have special dot and cross product operators. If every component is a
+ * number, they are packed into arrays of doubles, and the arithmetic runs
+ * straight through those; the components only become Expressions when
+ * someone asks for them.
  *
  * @author jkunimune
  */
 public class Vector extends Expression {
 
-	private final Expression[] rows;
+	private final double[] real, imag;	// the numeric form (null if the vector is symbolic; imag is also null if it is real)
+	private Expression[] rows;	// the symbolic form (made on demand if the vector is numeric)
 	private final boolean parenthetic; // this flag is mostly used by notation
 	
 	
 	
 	public Vector(boolean flag, List<Expression> comps) {
-		rows = comps.toArray(new Expression[0]);
-		parenthetic = false;
+		this(false, comps.toArray(new Expression[0]));
 	}
 	
 	
 	public Vector(Expression... comps) {
-		rows = comps;
-		parenthetic = false;
+		this(false, comps);
 	}
 	
 	
 	
 	public Vector(boolean flag, Expression... comps) {
-		rows = comps;
 		parenthetic = flag;
+		boolean numeric = true;
+		for (Expression comp: comps)
+			if (!(comp instanceof Constant))
+				numeric = false;
+		
+		if (numeric) {	// pack numbers into arrays as soon as we can
+			final double[] re = new double[comps.length], im = new double[comps.length];
+			for (int i = 0; i < comps.length; i ++) {
+				re[i] = ((Constant) comps[i]).getReal();
+				im[i] = ((Constant) comps[i]).getImag();
+			}
+			real = re;
+			imag = LinearAlgebra.isZero(im) ? null : im;
+		}
+		else {
+			real = null;
+			imag = null;
+		}
+		rows = comps;
+	}
+	
+	
+	public Vector(double[] re, double[] im) {
+		real = re;
+		imag = LinearAlgebra.isZero(im) ? null : im;
+		rows = null;
+		parenthetic = false;
+	}
+
+
+	public boolean isNumeric() {
+		return real != null;
+	}
+	
+	
+	public double[] getReal() {	// the packed real parts (do not modify!)
+		return real;
+	}
+	
+	
+	public double[] getImag() {	// the packed imaginary parts, or null if this is real (do not modify!)
+		return imag;
 	}
 
 
 	public Expression[] getComponents() {
+		if (rows == null) {	// it's fine if two threads both do this
+			final Expression[] comps = new Expression[real.length];
+			for (int i = 0; i < comps.length; i ++)
+				comps[i] = get(i);
+			rows = comps;
+		}
 		return rows;
 	}
 	
@@ -75,46 +126,89 @@ public class Vector extends Expression {
 	
 	
 	public Expression get(int index) {
-		return rows[index];
+		if (rows != null)	// the original components can know more than the doubles do (like every digit of a big integer)
+			return rows[index];
+		return new Constant(real[index], (imag == null) ? 0 : imag[index]);
+	}
+	
+	
+	private int length() {
+		return (real != null) ? real.length : rows.length;
 	}
 	
 	
 	@Override
 	public int[] shape() {
-		final int[] output = {rows.length, 1};
+		final int[] output = {length(), 1};
 		return output;
 	}
 	
 	
 	@Override
 	protected Expression getComponent(int i, int j) {
-		return rows[i];
+		return get(i);
 	}
 	
 	
 	@Override
 	public List<String> getInputs(Workspace heap) {
+		if (real != null)
+			return new ArrayList<String>();
 		return super.getInputsAll(rows, heap);
 	}
 	
 	
 	@Override
 	public Expression replaced(String[] oldStrs, String[] newStrs) {
+		if (real != null)
+			return this;
 		return new Vector(super.replaceAll(rows, oldStrs, newStrs));
 	}
 	
 	
 	@Override
 	public Vector simplified(Workspace heap) {
+		if (real != null)
+			return this;	// numbers are already simplified
 		return new Vector(super.simplifyAll(rows, heap));
 	}
 	
 	
+	@Override
+	protected Expression internedParts() {
+		if (real != null)
+			return this;
+		final Expression[] irows = super.internAll(rows);
+		return (irows == rows) ? this : new Vector(parenthetic, irows);
+	}
+	
+	
+	@Override
+	protected int hashed() {
+		if (real != null)
+			return 31*Arrays.hashCode(real) + Arrays.hashCode(imag);
+		return Arrays.hashCode(rows);
+	}
+	
+	
+	@Override
+	public boolean equals(Object obj) {	// numeric vectors are compared by their numbers, and symbolic ones by their components
+		if (this == obj)	return true;
+		if (!(obj instanceof Vector) || obj.hashCode() != this.hashCode())	return false;
+		final Vector that = (Vector) obj;
+		if (this.parenthetic != that.parenthetic || this.isNumeric() != that.isNumeric())
+			return false;
+		if (this.isNumeric())
+			return Arrays.equals(this.real, that.real) && Arrays.equals(this.imag, that.imag);
+		return Arrays.equals(this.rows, that.rows);
+	}
+	
+	
 	@Override
 	public Image toImage() {
-		Image[] argImgs = new Image[rows.length];
-		for (int i = 0; i < rows.length; i ++)
-			argImgs[i] = rows[i].toImage();
+		Image[] argImgs = new Image[length()];
+		for (int i = 0; i < argImgs.length; i ++)
+			argImgs[i] = get(i).toImage();
 		return ImgUtils.bind(ImgUtils.vertCat(true, argImgs));
 	}
 	
@@ -122,28 +216,35 @@ public class Vector extends Expression {
 	@Override
 	public String toString() {
 		String output = "[";
-		for (Expression arg: rows)
-			output += arg.toString()+", ";
+		for (int i = 0; i < length(); i ++)
+			output += get(i).toString()+", ";
 		return output.substring(0, output.length()-2)+"]";
 	}
 	
 	
 	public Vector plus(Vector that) {
-		if (this.shape()[0] != that.shape()[0])
+		if (this.length() != that.length())
 			throw new ArithmeticException("Cannot sum a vector in "
-					+this.shape()[0]+"-space with a vector in "
-					+that.shape()[0]+"-space.");
+					+this.length()+"-space with a vector in "
+					+that.length()+"-space.");
+		
+		if (this.isNumeric() && that.isNumeric())
+			return new Vector(LinearAlgebra.add(this.real, that.real, 1),
+					LinearAlgebra.add(this.imag, that.imag, 1));
 		
-		Expression[] newComps = new Expression[shape()[0]];
-		for (int i = 0; i < shape()[0]; i ++)
-			newComps[i] = new Operation(Operator.ADD,this.rows[i],that.rows[i])
+		Expression[] newComps = new Expression[length()];
+		for (int i = 0; i < newComps.length; i ++)
+			newComps[i] = new Operation(Operator.ADD,this.get(i),that.get(i))
 					.simplified();
 		return new Vector(newComps);
 	}
 	
 	
 	public Vector negative() {
-		Expression[] newComps = new Expression[shape()[0]];
+		if (this.isNumeric())
+			return this.times(Constant.NEG_ONE);
+		
+		Expression[] newComps = new Expression[length()];
 		for (int i = 0; i < rows.length; i ++)
 			newComps[i] = new Operation(Operator.NEGATE, rows[i]).simplified();
 		return new Vector(newComps);
@@ -151,8 +252,22 @@ public class Vector extends Expression {
 	
 	
 	public Expression dot(Vector that) {
+		if (this.isNumeric() && that.isNumeric()) {
+			if (this.length() != that.length())
+				throw new ArithmeticException("Cannot dot a vector in "
+						+this.length()+"-space with a vector in "
+						+that.length()+"-space.");
+			final Summation.Accumulator sum = Summation.getMode().newAccumulator();
+			for (int i = 0; i < real.length; i ++) {
+				final double ai = (this.imag == null) ? 0 : this.imag[i];
+				final double bi = (that.imag == null) ? 0 : that.imag[i];
+				sum.add(this.real[i]*that.real[i] - ai*bi, this.real[i]*bi + ai*that.real[i]);
+			}
+			return new Constant(sum.getReal(), sum.getImag());
+		}
+		
 		Expression sum = null;
-		for (int i = 0; i < shape()[0]; i ++) {
+		for (int i = 0; i < length(); i ++) {
 			final Expression prod = new Operation(Operator.MULTIPLY,
 					this.get(i), that.get(i));
 			if (sum == null)
@@ -165,8 +280,22 @@ public class Vector extends Expression {
 	
 	
 	public Vector cross(Vector that) {
-		if (this.shape()[0] == 3 && that.shape()[0] == 3) {
-			Expression[] newComps = new Expression[shape()[0]];
+		if (this.length() == 3 && that.length() == 3) {
+			if (this.isNumeric() && that.isNumeric()) {
+				final double[] re = new double[3], im = new double[3];
+				for (int i = 0; i < 3; i ++) {
+					final int j = (i+1)%3, k = (i+2)%3;
+					final double ajr = this.real[j], aji = (this.imag == null) ? 0 : this.imag[j];
+					final double akr = this.real[k], aki = (this.imag == null) ? 0 : this.imag[k];
+					final double bjr = that.real[j], bji = (that.imag == null) ? 0 : that.imag[j];
+					final double bkr = that.real[k], bki = (that.imag == null) ? 0 : that.imag[k];
+					re[i] = (ajr*bkr - aji*bki) - (akr*bjr - aki*bji);
+					im[i] = (ajr*bki + aji*bkr) - (akr*bji + aki*bjr);
+				}
+				return new Vector(re, im);
+			}
+			
+			Expression[] newComps = new Expression[3];
 			for (int i = 0; i < 3; i ++) {
 				final Expression vxuy = new Operation(Operator.MULTIPLY,
 						this.get((i+1)%3), that.get((i+2)%3));
@@ -177,7 +306,7 @@ public class Vector extends Expression {
 			}
 			return new Vector(newComps);
 		}
-		else if (this.shape()[0] == 7 && that.shape()[0] == 7) {
+		else if (this.length() == 7 && that.length() == 7) {
 			throw new ArithmeticException("GAHH! The seven dimensional cross-"
 					+ "product! Who the heck is trying to take a seven "
 					+ "dimensional cross product?! I never implemented that! "
@@ -192,7 +321,13 @@ public class Vector extends Expression {
 	
 	
 	public Vector times(Constant c) {
-		Expression[] newComps = new Expression[shape()[0]];
+		if (this.isNumeric()) {
+			final double cr = c.getReal(), ci = c.getImag();
+			return new Vector(LinearAlgebra.add(LinearAlgebra.scale(real, cr), imag, -ci),
+					LinearAlgebra.add(LinearAlgebra.scale(imag, cr), real, ci));
+		}
+		
+		Expression[] newComps = new Expression[length()];
 		for (int i = 0; i < newComps.length; i ++)
 			newComps[i] = new Operation(Operator.MULTIPLY, rows[i], c)
 					.simplified();
@@ -201,6 +336,19 @@ public class Vector extends Expression {
 	
 	
 	public Expression abs() {	// calculate the magnitude
+		if (this.isNumeric() && imag == null) {
+			double scale = 0;	// scale by the biggest component so the squares don't overflow
+			for (double x: real)
+				scale = Math.max(scale, Math.abs(x));
+			if (scale == 0 || Double.isInfinite(scale))
+				return new Constant(scale);
+			return new Constant(scale*Math.sqrt(Summation.sumOfSquares(real, scale)));
+		}
+		else if (this.isNumeric()) {	// complex components get squared, not multiplied by their conjugates
+			final Expression square = this.dot(this);
+			return ((Constant) square).sqrt();
+		}
+		
 		Expression sum = null;
 		for (Expression comp: rows) {
 			final Expression v_i2 = new Operation(Operator.POWER,
@@ -224,7 +372,7 @@ public class Vector extends Expression {
 		List<Expression> components = new ArrayList<Expression>();	// build a new Vector
 		for (Expression exp: exps) {
 			if (exp instanceof Vector)
-				components.addAll(Arrays.asList(((Vector) exp).rows));	// by concatenating the inputs
+				components.addAll(Arrays.asList(((Vector) exp).getComponents()));	// by concatenating the inputs
 			else
 				components.add(exp);
 		}
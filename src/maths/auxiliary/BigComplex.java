@@ -0,0 +1,541 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * A complex number with arbitrary-precision parts. Rather than carrying a
+ * fixed number of significant digits, every inexact operation takes a scale s,
+ * and promises an answer within about 10^-s of the truth, given exact operands.
+ * Sums and products are always exact. PreciseFrame is what works out how big s
+ * has to be for each operation.
+ *
+ * @author jkunimune
+ */
+public final class BigComplex {
+
+	public static final BigComplex ZERO = new BigComplex(BigDecimal.ZERO, BigDecimal.ZERO);
+	public static final BigComplex ONE = new BigComplex(BigDecimal.ONE, BigDecimal.ZERO);
+
+	private static final int GUARD = 8;	// how many extra digits to carry inside a function
+	private static final double LOG10_E = 0.4342944819032518;
+	private static final double LOG10_2 = 0.3010299956639812;
+	private static final BigDecimal TWO = BigDecimal.valueOf(2), HALF = new BigDecimal("0.5");
+
+	private static BigDecimal pi = BigDecimal.ZERO;	// the most digits of pi anyone has needed so far
+	private static int piScale = -1;
+
+
+
+	private final BigDecimal re, im;
+
+
+
+	public BigComplex(BigDecimal re, BigDecimal im) {
+		this.re = re;
+		this.im = im;
+	}
+
+
+	public BigComplex(double re, double im) {	// the exact value of a pair of doubles
+		this(new BigDecimal(re), new BigDecimal(im));
+	}
+
+
+
+	public BigDecimal getReal() {
+		return re;
+	}
+
+
+	public BigDecimal getImag() {
+		return im;
+	}
+
+
+	public boolean isReal() {
+		return im.signum() == 0;
+	}
+
+
+	public boolean isZero() {
+		return re.signum() == 0 && im.signum() == 0;
+	}
+
+
+	public double log10Abs() {	// about how many digits are in front of the point (-infinity for zero)
+		return Math.max(log10(re), log10(im));
+	}
+
+
+	public BigComplex rounded(int s) {
+		return new BigComplex(round(re, s), round(im, s));
+	}
+
+
+	public BigComplex plus(BigComplex that) {
+		return new BigComplex(this.re.add(that.re), this.im.add(that.im));
+	}
+
+
+	public BigComplex minus(BigComplex that) {
+		return new BigComplex(this.re.subtract(that.re), this.im.subtract(that.im));
+	}
+
+
+	public BigComplex negate() {
+		return new BigComplex(re.negate(), im.negate());
+	}
+
+
+	public BigComplex times(BigComplex that) {
+		if (this.isReal() && that.isReal())
+			return new BigComplex(this.re.multiply(that.re), BigDecimal.ZERO);
+		return new BigComplex(this.re.multiply(that.re).subtract(this.im.multiply(that.im)),
+				this.re.multiply(that.im).add(this.im.multiply(that.re)));
+	}
+
+
+	public BigComplex divide(BigComplex that, int s) throws ArithmeticException {
+		if (that.isZero())
+			throw new ArithmeticException("Division by zero.");
+		if (that.isReal())	// real denominators are common enough to be worth it
+			return new BigComplex(divide(this.re, that.re, s), divide(this.im, that.re, s));
+		final BigDecimal d = that.re.multiply(that.re).add(that.im.multiply(that.im));
+		final int t = s + Math.max(0, mag(that.re) + mag(that.im));	// the numerator is about |that| times bigger than the answer
+		return new BigComplex(
+				divide(round(this.re.multiply(that.re).add(this.im.multiply(that.im)), t+1), d, s),
+				divide(round(this.im.multiply(that.re).subtract(this.re.multiply(that.im)), t+1), d, s));
+	}
+
+
+	public BigComplex exp(int s) {
+		if (isReal())
+			return new BigComplex(exp(re, s), BigDecimal.ZERO);
+		final BigDecimal m = exp(re, s+1);
+		final int t = s + 1 + Math.max(0, mag(m));
+		final BigDecimal[] sc = sincos(im, t);
+		return new BigComplex(round(m.multiply(sc[1]), s+1), round(m.multiply(sc[0]), s+1));
+	}
+
+
+	public BigComplex log(int s) throws ArithmeticException {
+		if (isZero())
+			throw new ArithmeticException("The logarithm of zero is undefined.");
+		if (isReal() && re.signum() > 0)
+			return new BigComplex(ln(re, s), BigDecimal.ZERO);
+		final BigDecimal n2 = re.multiply(re).add(im.multiply(im));
+		return new BigComplex(ln(n2, s+1).multiply(HALF), arg(re, im, s));
+	}
+
+
+	public BigComplex sqrt(int s) {
+		if (isReal() && re.signum() >= 0)
+			return new BigComplex(sqrt(re, s), BigDecimal.ZERO);
+		if (isReal())	// the negative reals are exactly on the imaginary axis
+			return new BigComplex(BigDecimal.ZERO, sqrt(re.negate(), s));
+		final int t = s + GUARD;	// anything else is sqrt|z|*(cos(t/2) + i*sin(t/2)), the same branch cut as Tape
+		final BigDecimal r = sqrt(sqrt(re.multiply(re).add(im.multiply(im)), 2*t), t);
+		final BigDecimal[] sc = sincos(arg(re, im, t + Math.max(0, mag(r))).multiply(HALF), t + Math.max(0, mag(r)));
+		return new BigComplex(round(r.multiply(sc[1]), s+1), round(r.multiply(sc[0]), s+1));
+	}
+
+
+	public BigComplex abs(int s) {
+		if (isReal())
+			return new BigComplex(re.abs(), BigDecimal.ZERO);
+		return new BigComplex(sqrt(re.multiply(re).add(im.multiply(im)), s), BigDecimal.ZERO);
+	}
+
+
+	public BigComplex arg(int s) {
+		return new BigComplex(arg(re, im, s), BigDecimal.ZERO);
+	}
+
+
+	public BigComplex pow(BigComplex that, int s) throws ArithmeticException {
+		if (that.isReal() && that.re.signum() != 0 && isInteger(that.re)
+				&& that.re.abs().compareTo(BigDecimal.valueOf(100000)) <= 0) {	// integer powers are done by squaring
+			final int n = that.re.intValue();
+			if (this.isZero()) {
+				if (n < 0)
+					throw new ArithmeticException("Division by zero.");
+				return ZERO;
+			}
+			final double size = Math.abs(n)*log10Abs();	// about how many digits the answer has in front of the point
+			final int digits = (int) Math.ceil(s + Math.abs(size) + Math.log10(Math.abs(n)) + GUARD);
+			if (digits <= 0)
+				return ZERO;
+			final MathContext mc = new MathContext(digits);
+			BigComplex p = ONE, b = this;
+			for (int k = Math.abs(n); k > 0; k >>= 1) {
+				if ((k&1) == 1)
+					p = p.times(b).round(mc);
+				if (k > 1)
+					b = b.times(b).round(mc);
+			}
+			return (n < 0) ? ONE.divide(p, s+1) : p.rounded(s+1);
+		}
+		if (that.isZero())
+			return ONE;
+		if (this.isZero()) {
+			if (that.re.signum() > 0)
+				return ZERO;
+			throw new ArithmeticException("Zero can't be raised to a nonpositive power.");
+		}
+		final double out = that.times(this.log(16)).re.doubleValue()*LOG10_E;	// everything else is exp(w*ln(z)), which is about 10^out
+		final int t = s + 2 + (int) Math.ceil(Math.max(0, out) + Math.max(0, that.log10Abs()));
+		return that.times(this.log(t)).rounded(t).exp(s);
+	}
+
+
+	public BigComplex mod(BigComplex that, int s) throws ArithmeticException {	// this - floor(this/that)*that, rounding toward zero like Tape
+		final int t = s + GUARD + Math.max(0, (int) Math.ceil(that.log10Abs()));
+		BigComplex q = this.divide(that, t);
+		if (q.isZero())
+			return this;
+		else if (q.isReal())
+			q = new BigComplex(q.re.setScale(0, RoundingMode.DOWN), BigDecimal.ZERO);
+		else {
+			final BigDecimal mag = q.abs(t).re;
+			final BigDecimal f = divide(mag.setScale(0, RoundingMode.FLOOR), mag, t);
+			q = new BigComplex(round(q.re.multiply(f), t), round(q.im.multiply(f), t));
+		}
+		return this.minus(q.times(that)).rounded(s+1);
+	}
+
+
+	public BigComplex sin(int s) {	// sin(x)cosh(y) + i cos(x)sinh(y)
+		if (isReal())
+			return new BigComplex(sincos(re, s)[0], BigDecimal.ZERO);
+		final BigDecimal[] sh = sinhcosh(im, s+1);
+		final BigDecimal[] sc = sincos(re, s + 1 + Math.max(0, mag(sh[1])));
+		return new BigComplex(round(sc[0].multiply(sh[1]), s+1), round(sc[1].multiply(sh[0]), s+1));
+	}
+
+
+	public BigComplex cos(int s) {	// cos(x)cosh(y) - i sin(x)sinh(y)
+		if (isReal())
+			return new BigComplex(sincos(re, s)[1], BigDecimal.ZERO);
+		final BigDecimal[] sh = sinhcosh(im, s+1);
+		final BigDecimal[] sc = sincos(re, s + 1 + Math.max(0, mag(sh[1])));
+		return new BigComplex(round(sc[1].multiply(sh[1]), s+1), round(sc[0].multiply(sh[0]).negate(), s+1));
+	}
+
+
+	public BigComplex sinh(int s) {	// sinh(x)cos(y) + i cosh(x)sin(y)
+		final BigDecimal[] sh = sinhcosh(re, s+1);
+		if (isReal())
+			return new BigComplex(sh[0], BigDecimal.ZERO);
+		final BigDecimal[] sc = sincos(im, s + 1 + Math.max(0, mag(sh[1])));
+		return new BigComplex(round(sh[0].multiply(sc[1]), s+1), round(sh[1].multiply(sc[0]), s+1));
+	}
+
+
+	public BigComplex cosh(int s) {	// cosh(x)cos(y) + i sinh(x)sin(y)
+		final BigDecimal[] sh = sinhcosh(re, s+1);
+		if (isReal())
+			return new BigComplex(sh[1], BigDecimal.ZERO);
+		final BigDecimal[] sc = sincos(im, s + 1 + Math.max(0, mag(sh[1])));
+		return new BigComplex(round(sh[1].multiply(sc[1]), s+1), round(sh[0].multiply(sc[0]), s+1));
+	}
+
+
+	public BigComplex asin(int s) {	// -i*asinh(iz)
+		if (isReal() && re.abs().compareTo(BigDecimal.ONE) <= 0) {	// on the real segment, it's the angle of (sqrt(1-x^2), x)
+			final BigDecimal c = sqrt(BigDecimal.ONE.subtract(re.multiply(re)), 2*s + GUARD);
+			final BigDecimal a = arg(c, re.abs(), s);
+			return new BigComplex((re.signum() < 0) ? a.negate() : a, BigDecimal.ZERO);
+		}
+		return timesI().asinh(s).timesNegI();
+	}
+
+
+	public BigComplex acos(int s) {	// -i*acosh(z)
+		if (isReal() && re.abs().compareTo(BigDecimal.ONE) <= 0) {	// on the real segment, it's the angle of (x, sqrt(1-x^2))
+			final BigDecimal c = sqrt(BigDecimal.ONE.subtract(re.multiply(re)), 2*s + GUARD);
+			return new BigComplex(arg(re, c, s), BigDecimal.ZERO);
+		}
+		return acosh(s).timesNegI();
+	}
+
+
+	public BigComplex atan(int s) {	// -i*atanh(iz)
+		if (isReal())
+			return new BigComplex(atan(re, s), BigDecimal.ZERO);
+		return timesI().atanh(s).timesNegI();
+	}
+
+
+	public BigComplex asinh(int s) {	// ln(z + sqrt(z^2+1))
+		final int t = s + 2*GUARD + Math.max(0, (int) Math.ceil(log10Abs()));
+		if (isReal() && re.signum() < 0)	// on the negative reals, use the symmetry so the sum doesn't cancel
+			return negate().asinh(s).negate();
+		final BigComplex root = this.times(this).plus(ONE).sqrt(t);
+		return this.plus(root).log(s);
+	}
+
+
+	public BigComplex acosh(int s) {	// ln(z + sqrt(z^2-1))
+		final int t = s + 2*GUARD + Math.max(0, (int) Math.ceil(log10Abs()));
+		final BigComplex root = this.times(this).minus(ONE).sqrt(t);
+		return this.plus(root).log(s);
+	}
+
+
+	public BigComplex atanh(int s) throws ArithmeticException {	// ln(sqrt((1+z)/(1-z)))
+		final int t = s + 2*GUARD;
+		final BigComplex q = ONE.plus(this).divide(ONE.minus(this), t);
+		return q.sqrt(t).log(s);
+	}
+
+
+	public BigComplex round(MathContext mc) {	// round to some number of digits, relative to the bigger part
+		final double size = log10Abs();
+		if (Double.isInfinite(size))
+			return this;
+		return rounded(mc.getPrecision() - (int) Math.floor(size) - 1);
+	}
+
+
+	@Override
+	public boolean equals(Object obj) {	// the same digits to the same scale
+		if (this == obj)	return true;
+		if (!(obj instanceof BigComplex))	return false;
+		final BigComplex that = (BigComplex) obj;
+		return this.re.equals(that.re) && this.im.equals(that.im);
+	}
+
+
+	@Override
+	public int hashCode() {
+		return 31*re.hashCode() + im.hashCode();
+	}
+
+
+	@Override
+	public String toString() {
+		return "("+re+" + "+im+"i)";
+	}
+
+
+
+	private BigComplex timesI() {
+		return new BigComplex(im.negate(), re);
+	}
+
+
+	private BigComplex timesNegI() {
+		return new BigComplex(im, re.negate());
+	}
+
+
+
+	/*
+	 * The real functions underneath. Like the complex ones, each one is good
+	 * to about 10^-s.
+	 */
+
+	static BigDecimal pi(int s) {
+		synchronized (BigComplex.class) {
+			if (piScale < s) {	// Machin's formula
+				final int w = s + GUARD;
+				pi = atanInv(5, w).multiply(BigDecimal.valueOf(16)).subtract(atanInv(239, w).multiply(BigDecimal.valueOf(4)));
+				piScale = w - 2;
+			}
+			return round(pi, s);
+		}
+	}
+
+
+	static BigDecimal exp(BigDecimal x, int s) throws ArithmeticException {
+		if (x.signum() == 0)
+			return BigDecimal.ONE;
+		final double lx = Math.signum(x.signum())*Math.pow(10, log10(x));
+		if (lx*LOG10_E < -s - 2)	// it's too small to tell from zero
+			return BigDecimal.ZERO;
+		if (lx*LOG10_E > 1e8)
+			throw new ArithmeticException("Overflow.");
+		final int k = Math.max(0, (int) Math.ceil(log10(x)/LOG10_2)) + (int) Math.sqrt(s/2.) + 4;	// halve it this many times
+		final int w = s + (int) Math.ceil(Math.max(0, lx)*LOG10_E + k*LOG10_2) + GUARD;
+		final BigDecimal r = round(x.multiply(HALF.pow(k)), w);
+		BigDecimal sum = BigDecimal.ONE, term = BigDecimal.ONE;
+		for (int n = 1; term.signum() != 0; n ++) {	// the Taylor series
+			term = term.multiply(r).divide(BigDecimal.valueOf(n), w, RoundingMode.HALF_EVEN);
+			sum = sum.add(term);
+		}
+		for (int i = 0; i < k; i ++)	// and square it back up
+			sum = round(sum.multiply(sum), w);
+		return round(sum, s+2);
+	}
+
+
+	static BigDecimal ln(BigDecimal x, int s) {	// Halley's method on exp(y) = x, tripling the digits each time
+		final int w = s + GUARD, size = (int) Math.floor(log10(x));
+		BigDecimal y = new BigDecimal(log10(x)/LOG10_E);
+		for (int digits = 15; digits < w; ) {
+			digits = Math.min(w, 3*digits);
+			final BigDecimal ey = exp(y, digits + 2 - size);
+			y = round(y.add(TWO.multiply(x.subtract(ey)).divide(x.add(ey), digits + 2, RoundingMode.HALF_EVEN)), digits + 2);
+		}
+		return round(y, s+2);
+	}
+
+
+	static BigDecimal sqrt(BigDecimal x, int s) {	// Newton's method, doubling the digits each time
+		if (x.signum() == 0)
+			return BigDecimal.ZERO;
+		final double half = log10(x)/2;
+		final int e = (int) Math.floor(half);
+		BigDecimal y = new BigDecimal(Math.pow(10, half - e)).scaleByPowerOfTen(e);
+		final int w = s + GUARD;
+		for (int digits = 15; digits < w + e; ) {
+			digits = Math.min(w + e, 2*digits);
+			final int t = digits - e + 2;
+			y = round(y.add(x.divide(y, t, RoundingMode.HALF_EVEN)).multiply(HALF), t);
+		}
+		return round(y, s+2);
+	}
+
+
+	static BigDecimal[] sincos(BigDecimal x, int s) {	// {sin(x), cos(x)}
+		final int w = s + GUARD;
+		final BigDecimal halfPi = pi(w + Math.max(0, mag(x))).multiply(HALF);	// take off the nearest quarter turn
+		final BigInteger q = x.divide(halfPi, 0, RoundingMode.HALF_EVEN).toBigInteger();
+		final BigDecimal r = round(x.subtract(halfPi.multiply(new BigDecimal(q))), w);
+		final BigDecimal r2 = round(r.multiply(r), w);
+		BigDecimal sin = r, cos = BigDecimal.ONE, st = r, ct = BigDecimal.ONE;
+		for (int n = 1; st.signum() != 0 || ct.signum() != 0; n ++) {	// the two Taylor series
+			ct = ct.multiply(r2).divide(BigDecimal.valueOf(-(2L*n-1)*(2L*n)), w, RoundingMode.HALF_EVEN);
+			st = st.multiply(r2).divide(BigDecimal.valueOf(-(2L*n)*(2L*n+1)), w, RoundingMode.HALF_EVEN);
+			cos = cos.add(ct);
+			sin = sin.add(st);
+		}
+		switch (q.mod(BigInteger.valueOf(4)).intValue()) {	// and then turn it back
+		case 0:
+			return new BigDecimal[] {round(sin, s+2), round(cos, s+2)};
+		case 1:
+			return new BigDecimal[] {round(cos, s+2), round(sin.negate(), s+2)};
+		case 2:
+			return new BigDecimal[] {round(sin.negate(), s+2), round(cos.negate(), s+2)};
+		default:
+			return new BigDecimal[] {round(cos.negate(), s+2), round(sin, s+2)};
+		}
+	}
+
+
+	static BigDecimal[] sinhcosh(BigDecimal x, int s) {	// {sinh(x), cosh(x)}
+		final BigDecimal e = exp(x, s+1), f = exp(x.negate(), s+1);
+		return new BigDecimal[] {round(e.subtract(f).multiply(HALF), s+1), round(e.add(f).multiply(HALF), s+1)};
+	}
+
+
+	static BigDecimal atan(BigDecimal x, int s) {
+		if (x.signum() == 0)
+			return BigDecimal.ZERO;
+		final int w = s + GUARD;
+		if (x.abs().compareTo(BigDecimal.ONE) > 0) {	// big ones are a quarter turn minus the atan of the reciprocal
+			final BigDecimal quarter = pi(w).multiply(HALF);
+			final BigDecimal rest = atan(BigDecimal.ONE.divide(x, w, RoundingMode.HALF_EVEN), w);
+			return round((x.signum() > 0) ? quarter.subtract(rest) : quarter.negate().subtract(rest), s+2);
+		}
+		final int k = Math.max(2, (int) Math.sqrt(w/3.));	// halve the angle this many times, as x/(1 + sqrt(1 + x^2))
+		final int t = w + (int) Math.ceil(k*LOG10_2);
+		BigDecimal y = round(x, t);
+		for (int i = 0; i < k; i ++)
+			y = y.divide(BigDecimal.ONE.add(sqrt(BigDecimal.ONE.add(y.multiply(y)), t)), t, RoundingMode.HALF_EVEN);
+		final BigDecimal y2 = round(y.multiply(y), t);
+		BigDecimal sum = y, term = y;
+		for (int n = 1; term.signum() != 0; n ++) {	// then the Taylor series
+			term = term.multiply(y2).negate().setScale(t, RoundingMode.HALF_EVEN);
+			sum = sum.add(term.divide(BigDecimal.valueOf(2*n+1), t, RoundingMode.HALF_EVEN));
+		}
+		return round(sum.multiply(TWO.pow(k)), s+2);
+	}
+
+
+	static BigDecimal arg(BigDecimal x, BigDecimal y, int s) {	// the same branch cut as Tape, [0, 2pi)
+		if (y.signum() == 0)
+			return (x.signum() < 0) ? pi(s+2) : BigDecimal.ZERO;
+		if (x.signum() == 0)
+			return pi(s+2).multiply((y.signum() > 0) ? HALF : new BigDecimal("1.5"));
+		final int w = s + GUARD;
+		final BigDecimal a = atan(y.divide(x, w + Math.max(0, mag(y) - mag(x)), RoundingMode.HALF_EVEN), w);
+		if (x.signum() > 0 && y.signum() > 0)
+			return round(a, s+2);
+		else if (x.signum() < 0)
+			return round(a.add(pi(w)), s+2);
+		else
+			return round(a.add(pi(w).multiply(TWO)), s+2);
+	}
+
+
+
+	private static BigDecimal atanInv(int n, int w) {	// atan(1/n), for Machin's formula
+		final BigDecimal n2 = BigDecimal.valueOf((long) n*n);
+		BigDecimal power = BigDecimal.ONE.divide(BigDecimal.valueOf(n), w, RoundingMode.HALF_EVEN);
+		BigDecimal sum = power;
+		for (int k = 1; power.signum() != 0; k ++) {
+			power = power.divide(n2, w, RoundingMode.HALF_EVEN);
+			final BigDecimal term = power.divide(BigDecimal.valueOf(2*k+1), w, RoundingMode.HALF_EVEN);
+			sum = (k%2 == 0) ? sum.add(term) : sum.subtract(term);
+		}
+		return sum;
+	}
+
+
+	private static BigDecimal divide(BigDecimal a, BigDecimal b, int s) {
+		return a.divide(b, s+1, RoundingMode.HALF_EVEN);
+	}
+
+
+	private static BigDecimal round(BigDecimal x, int s) {
+		return x.setScale(s, RoundingMode.HALF_EVEN);
+	}
+
+
+	private static boolean isInteger(BigDecimal x) {
+		return x.signum() == 0 || x.scale() <= 0 || x.stripTrailingZeros().scale() <= 0;
+	}
+
+
+	static double log10(BigDecimal x) {	// about log10|x|, without overflowing (-infinity for zero)
+		if (x.signum() == 0)
+			return Double.NEGATIVE_INFINITY;
+		BigInteger u = x.unscaledValue().abs();
+		final int shift = Math.max(0, u.bitLength() - 60);
+		return Math.log10(u.shiftRight(shift).doubleValue()) + shift*LOG10_2 - x.scale();
+	}
+
+
+	static int mag(BigDecimal x) {	// a power of ten that |x| is less than
+		final double l = log10(x);
+		return Double.isInfinite(l) ? Integer.MIN_VALUE/4 : (int) Math.floor(l) + 1;
+	}
+
+}
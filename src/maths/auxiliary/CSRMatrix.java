@@ -0,0 +1,460 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.util.Arrays;
+
+import maths.auxiliary.LinearAlgebra.Range;
+
+/**
+ * A sparse matrix in compressed sparse row form: the nonzero elements of each
+ * row are stored together, in order of column, so that a matrix with only a
+ * handful of entries per row takes memory and time proportional to its number
+ * of entries rather than its area. As with LinearAlgebra, a null imaginary
+ * array means the matrix is real. The transpose of a CSR matrix is the same
+ * matrix in compressed sparse column form, so that is all we need for column
+ * access. Products and sums are worked out a block of rows at a time in
+ * parallel: once to count the elements of each row, and again to fill them in.
+ *
+ * @author jkunimune
+ */
+public class CSRMatrix {
+
+	private final int height, width;
+	private final int[] rowStart;	// the elements of row i are at rowStart[i] until rowStart[i+1]
+	private final int[] cols;	// the column of each element
+	private final double[] re, im;	// the value of each element
+
+
+
+	public CSRMatrix(int n, int m, int[] rowStart, int[] cols, double[] re, double[] im) {
+		this.height = n;
+		this.width = m;
+		this.rowStart = rowStart;
+		this.cols = cols;
+		this.re = re;
+		this.im = LinearAlgebra.isZero(im) ? null : im;
+	}
+
+
+
+	public int getHeight() {
+		return height;
+	}
+
+
+	public int getWidth() {
+		return width;
+	}
+
+
+	public int nonzeros() {
+		return rowStart[height];
+	}
+
+
+	public int[] getRowStart() {	// (do not modify!)
+		return rowStart;
+	}
+
+
+	public int[] getCols() {	// (do not modify!)
+		return cols;
+	}
+
+
+	public double[] getReal() {	// (do not modify!)
+		return re;
+	}
+
+
+	public double[] getImag() {	// (do not modify!)
+		return im;
+	}
+
+
+	public boolean isReal() {
+		return im == null;
+	}
+
+
+	public boolean isSymmetric() {
+		if (height != width)
+			return false;
+		for (int i = 0; i < height; i ++)
+			for (int p = rowStart[i]; p < rowStart[i+1]; p ++)
+				if (get(cols[p], i, false) != re[p] || get(cols[p], i, true) != ((im == null) ? 0 : im[p]))
+					return false;
+		return true;
+	}
+
+
+	public int lowerBandwidth() {	// how far below the diagonal the farthest element is
+		int kl = 0;
+		for (int i = 0; i < height; i ++)
+			if (rowStart[i+1] > rowStart[i])
+				kl = Math.max(kl, i - cols[rowStart[i]]);
+		return kl;
+	}
+
+
+	public int upperBandwidth() {	// how far above the diagonal the farthest element is
+		int ku = 0;
+		for (int i = 0; i < height; i ++)
+			if (rowStart[i+1] > rowStart[i])
+				ku = Math.max(ku, cols[rowStart[i+1]-1] - i);
+		return ku;
+	}
+
+
+	public void multiply(double[] x, double[] y) {	// y = Ax for real A and x
+		multiply(x, null, y, null);
+	}
+
+
+	public void multiply(final double[] xRe, final double[] xIm,
+			final double[] yRe, final double[] yIm) {	// y = Ax, where yIm may only be null if A and x are real
+		LinearAlgebra.inParallel(height, 2L*nonzeros(), new Range() {
+			public void over(int i0, int i1) {
+				for (int i = i0; i < i1; i ++) {
+					double sr = 0, si = 0;
+					for (int p = rowStart[i]; p < rowStart[i+1]; p ++) {
+						final double ar = re[p], ai = (im == null) ? 0 : im[p];
+						final double br = xRe[cols[p]], bi = (xIm == null) ? 0 : xIm[cols[p]];
+						sr += ar*br - ai*bi;
+						si += ar*bi + ai*br;
+					}
+					yRe[i] = sr;
+					if (yIm != null)
+						yIm[i] = si;
+				}
+			}
+		});
+	}
+
+
+	public double get(int i, int j, boolean imaginary) {	// look up one element by bisection
+		final int p = Arrays.binarySearch(cols, rowStart[i], rowStart[i+1], j);
+		if (p < 0)
+			return 0;
+		return imaginary ? ((im == null) ? 0 : im[p]) : re[p];
+	}
+
+
+	public CSRMatrix transpose() {	// count the elements in each column, then deal them out
+		final int[] tStart = new int[width+1];
+		for (int p = 0; p < nonzeros(); p ++)
+			tStart[cols[p]+1] ++;
+		for (int j = 0; j < width; j ++)
+			tStart[j+1] += tStart[j];
+		final int[] next = Arrays.copyOf(tStart, width);
+		final int[] tCols = new int[nonzeros()];
+		final double[] tRe = new double[nonzeros()];
+		final double[] tIm = (im == null) ? null : new double[nonzeros()];
+		for (int i = 0; i < height; i ++) {	// going down the rows keeps each new row in order
+			for (int p = rowStart[i]; p < rowStart[i+1]; p ++) {
+				final int q = next[cols[p]] ++;
+				tCols[q] = i;
+				tRe[q] = re[p];
+				if (im != null)
+					tIm[q] = im[p];
+			}
+		}
+		return new CSRMatrix(width, height, tStart, tCols, tRe, tIm);
+	}
+
+
+	public CSRMatrix times(double cr, double ci) {	// multiply every element by a scalar
+		final double[] sr = new double[nonzeros()];
+		final double[] si = (im == null && ci == 0) ? null : new double[nonzeros()];
+		for (int p = 0; p < nonzeros(); p ++) {
+			final double ar = re[p], ai = (im == null) ? 0 : im[p];
+			sr[p] = ar*cr - ai*ci;
+			if (si != null)
+				si[p] = ar*ci + ai*cr;
+		}
+		return new CSRMatrix(height, width, rowStart, cols, sr, si);
+	}
+
+
+	public CSRMatrix plus(final CSRMatrix that, final double scale) {	// this + scale*that, merging the rows
+		if (this.height != that.height || this.width != that.width)
+			throw new ArithmeticException("Cannot sum a "+this.height+"\u00d7"
+					+this.width+" matrix with a "+that.height+"\u00d7"
+					+that.width+" matrix.");
+
+		final int[] start = new int[height+1];
+		LinearAlgebra.inParallel(height, this.nonzeros()+that.nonzeros(), new Range() {
+			public void over(int i0, int i1) {
+				for (int i = i0; i < i1; i ++)
+					start[i+1] = merge(that, i, scale, null, null, null, 0);
+			}
+		});
+		for (int i = 0; i < height; i ++)
+			start[i+1] += start[i];
+
+		final int[] sCols = new int[start[height]];
+		final double[] sRe = new double[start[height]];
+		final double[] sIm = (this.im == null && that.im == null) ? null : new double[start[height]];
+		LinearAlgebra.inParallel(height, this.nonzeros()+that.nonzeros(), new Range() {
+			public void over(int i0, int i1) {
+				for (int i = i0; i < i1; i ++)
+					merge(that, i, scale, sCols, sRe, sIm, start[i]);
+			}
+		});
+		return new CSRMatrix(height, width, start, sCols, sRe, sIm);
+	}
+
+
+	public CSRMatrix times(final CSRMatrix that) {	// multiply two sparse matrices, one row of the product at a time
+		if (this.width != that.height)
+			throw new ArithmeticException("Cannot multiply a "+this.height+"\u00d7"
+					+this.width+" matrix by a "+that.height+"\u00d7"
+					+that.width+" matrix.");
+
+		final boolean complex = this.im != null || that.im != null;
+		final long work = 2L*this.nonzeros()*Math.max(1, that.nonzeros()/Math.max(1, that.height));
+		final int[] start = new int[height+1];
+		LinearAlgebra.inParallel(height, work, new Range() {
+			public void over(int i0, int i1) {
+				final int[] mark = new int[that.width];	// the last row in which each column came up
+				Arrays.fill(mark, -1);
+				for (int i = i0; i < i1; i ++) {
+					int count = 0;
+					for (int p = rowStart[i]; p < rowStart[i+1]; p ++) {
+						for (int q = that.rowStart[cols[p]]; q < that.rowStart[cols[p]+1]; q ++) {
+							if (mark[that.cols[q]] != i) {
+								mark[that.cols[q]] = i;
+								count ++;
+							}
+						}
+					}
+					start[i+1] = count;
+				}
+			}
+		});
+		for (int i = 0; i < height; i ++)
+			start[i+1] += start[i];
+
+		final int[] pCols = new int[start[height]];
+		final double[] pRe = new double[start[height]];
+		final double[] pIm = complex ? new double[start[height]] : null;
+		LinearAlgebra.inParallel(height, work, new Range() {
+			public void over(int i0, int i1) {
+				final double[] accRe = new double[that.width];	// a dense row to add up the products in
+				final double[] accIm = complex ? new double[that.width] : null;
+				final boolean[] seen = new boolean[that.width];
+				for (int i = i0; i < i1; i ++) {
+					int k = start[i];
+					for (int p = rowStart[i]; p < rowStart[i+1]; p ++) {
+						final double ar = re[p], ai = (im == null) ? 0 : im[p];
+						for (int q = that.rowStart[cols[p]]; q < that.rowStart[cols[p]+1]; q ++) {
+							final int j = that.cols[q];
+							if (!seen[j]) {
+								seen[j] = true;
+								pCols[k ++] = j;
+							}
+							final double br = that.re[q], bi = (that.im == null) ? 0 : that.im[q];
+							accRe[j] += ar*br - ai*bi;
+							if (complex)
+								accIm[j] += ar*bi + ai*br;
+						}
+					}
+					Arrays.sort(pCols, start[i], k);
+					for (int q = start[i]; q < k; q ++) {	// then gather them up and clear the row for next time
+						final int j = pCols[q];
+						pRe[q] = accRe[j];
+						accRe[j] = 0;
+						if (complex) {
+							pIm[q] = accIm[j];
+							accIm[j] = 0;
+						}
+						seen[j] = false;
+					}
+				}
+			}
+		});
+		return new CSRMatrix(height, that.width, start, pCols, pRe, pIm);
+	}
+
+
+	public double[][] times(final double[] bRe, final double[] bIm, final int m) {	// multiply by a dense width*m matrix on the right
+		final double[] cRe = new double[height*m];
+		final double[] cIm = (im == null && bIm == null) ? null : new double[height*m];
+		LinearAlgebra.inParallel(height, 2L*nonzeros()*m, new Range() {
+			public void over(int i0, int i1) {
+				for (int i = i0; i < i1; i ++) {
+					for (int p = rowStart[i]; p < rowStart[i+1]; p ++) {
+						final double ar = re[p], ai = (im == null) ? 0 : im[p];
+						final int b = cols[p]*m, c = i*m;
+						for (int j = 0; j < m; j ++) {
+							final double br = bRe[b+j], bi = (bIm == null) ? 0 : bIm[b+j];
+							cRe[c+j] += ar*br - ai*bi;
+							if (cIm != null)
+								cIm[c+j] += ar*bi + ai*br;
+						}
+					}
+				}
+			}
+		});
+		return new double[][] {cRe, cIm};
+	}
+
+
+	public double[][] timesLeft(final double[] aRe, final double[] aIm, final int n) {	// multiply by a dense n*height matrix on the left
+		final double[] cRe = new double[n*width];
+		final double[] cIm = (im == null && aIm == null) ? null : new double[n*width];
+		LinearAlgebra.inParallel(n, 2L*nonzeros()*n, new Range() {
+			public void over(int i0, int i1) {
+				for (int i = i0; i < i1; i ++) {
+					for (int t = 0; t < height; t ++) {	// add each row of this, weighted by an element of a
+						final double ar = aRe[i*height+t], ai = (aIm == null) ? 0 : aIm[i*height+t];
+						if (ar == 0 && ai == 0)	continue;
+						for (int p = rowStart[t]; p < rowStart[t+1]; p ++) {
+							final double br = re[p], bi = (im == null) ? 0 : im[p];
+							cRe[i*width+cols[p]] += ar*br - ai*bi;
+							if (cIm != null)
+								cIm[i*width+cols[p]] += ar*bi + ai*br;
+						}
+					}
+				}
+			}
+		});
+		return new double[][] {cRe, cIm};
+	}
+
+
+	public double[] diagonal(boolean imaginary) {
+		final double[] d = new double[Math.min(height, width)];
+		for (int i = 0; i < d.length; i ++)
+			d[i] = get(i, i, imaginary);
+		return d;
+	}
+
+
+	public double[][] toDense() {	// the row-major arrays that LinearAlgebra uses
+		final double[] dr = new double[height*width];
+		final double[] di = (im == null) ? null : new double[height*width];
+		for (int i = 0; i < height; i ++) {
+			for (int p = rowStart[i]; p < rowStart[i+1]; p ++) {
+				dr[i*width+cols[p]] = re[p];
+				if (im != null)
+					di[i*width+cols[p]] = im[p];
+			}
+		}
+		return new double[][] {dr, di};
+	}
+
+
+	public static CSRMatrix fromRows(int m, int[][] rowCols, double[][] rowRe, double[][] rowIm) {	// put together rows with sorted columns, dropping any zeros
+		final int n = rowCols.length;
+		final int[] rowStart = new int[n+1];
+		int nnz = 0;
+		for (int i = 0; i < n; i ++)
+			nnz += rowCols[i].length;
+		int[] cols = new int[nnz];
+		double[] re = new double[nnz], im = new double[nnz];
+		int p = 0;
+		for (int i = 0; i < n; i ++) {
+			for (int q = 0; q < rowCols[i].length; q ++) {
+				if (rowRe[i][q] == 0 && rowIm[i][q] == 0)	continue;
+				cols[p] = rowCols[i][q];
+				re[p] = rowRe[i][q];
+				im[p] = rowIm[i][q];
+				p ++;
+			}
+			rowStart[i+1] = p;
+		}
+		return new CSRMatrix(n, m, rowStart, Arrays.copyOf(cols, p),
+				Arrays.copyOf(re, p), Arrays.copyOf(im, p));
+	}
+
+
+
+	public static CSRMatrix fromDense(int n, int m, double[] aRe, double[] aIm) {	// pick the nonzero elements out of a row-major matrix
+		final int[] start = new int[n+1];
+		for (int i = 0; i < n; i ++) {
+			start[i+1] = start[i];
+			for (int j = 0; j < m; j ++)
+				if (aRe[i*m+j] != 0 || (aIm != null && aIm[i*m+j] != 0))
+					start[i+1] ++;
+		}
+		final int[] cols = new int[start[n]];
+		final double[] re = new double[start[n]];
+		final double[] im = (aIm == null) ? null : new double[start[n]];
+		int p = 0;
+		for (int i = 0; i < n; i ++) {
+			for (int j = 0; j < m; j ++) {
+				if (aRe[i*m+j] != 0 || (aIm != null && aIm[i*m+j] != 0)) {
+					cols[p] = j;
+					re[p] = aRe[i*m+j];
+					if (im != null)
+						im[p] = aIm[i*m+j];
+					p ++;
+				}
+			}
+		}
+		return new CSRMatrix(n, m, start, cols, re, im);
+	}
+
+
+	public static CSRMatrix diagonal(int n, int offset, double[] dRe, double[] dIm) {	// an n*n matrix with d along one of its diagonals
+		final int len = n - Math.abs(offset);
+		if (dRe.length != len)
+			throw new ArithmeticException("Diagonal "+offset+" of a "+n+"\u00d7"+n+" matrix has "+len+" elements, not "+dRe.length+".");
+		final int[] start = new int[n+1];
+		final int first = Math.max(0, -offset);	// the first row that has an element
+		for (int i = 0; i < n; i ++)
+			start[i+1] = Math.max(0, Math.min(i+1-first, len));
+		final int[] cols = new int[len];
+		for (int k = 0; k < len; k ++)
+			cols[k] = first+k+offset;
+		return new CSRMatrix(n, n, start, cols, dRe.clone(), (dIm == null) ? null : dIm.clone());
+	}
+
+
+
+	private int merge(CSRMatrix that, int i, double scale,
+			int[] sCols, double[] sRe, double[] sIm, int k0) {	// count (or, given somewhere to put them, write) the elements of row i of this + scale*that
+		int p = this.rowStart[i], q = that.rowStart[i], k = k0;
+		final int pEnd = this.rowStart[i+1], qEnd = that.rowStart[i+1];
+		while (p < pEnd || q < qEnd) {
+			final int jp = (p < pEnd) ? this.cols[p] : Integer.MAX_VALUE;
+			final int jq = (q < qEnd) ? that.cols[q] : Integer.MAX_VALUE;
+			final int j = Math.min(jp, jq);
+			if (sCols != null) {
+				sCols[k] = j;
+				sRe[k] = ((jp == j) ? this.re[p] : 0) + ((jq == j) ? scale*that.re[q] : 0);
+				if (sIm != null)
+					sIm[k] = ((jp == j && this.im != null) ? this.im[p] : 0)
+							+ ((jq == j && that.im != null) ? scale*that.im[q] : 0);
+			}
+			if (jp == j)	p ++;
+			if (jq == j)	q ++;
+			k ++;
+		}
+		return k - k0;
+	}
+
+}
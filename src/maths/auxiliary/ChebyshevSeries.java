@@ -0,0 +1,309 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import maths.Constant;
+
+/**
+ * A class full of static methods for series of Chebyshev polynomials on
+ * [-1, 1]. A function gets sampled at Chebyshev points, twice as many each
+ * time, until its coefficients (found by FFT) die down to roundoff. After
+ * that, everything costs about as much as the number of coefficients:
+ * Clenshaw's recurrence evaluates it, the coefficients of its derivative and
+ * antiderivative come from short recurrences, and its roots are the
+ * eigenvalues of a colleague matrix, once it has been split into pieces
+ * small enough for that.
+ *
+ * @author jkunimune
+ */
+public class ChebyshevSeries {
+
+	public static final int MAX_POINTS = (1 << 16) + 1;	// the most samples a fit may take
+
+	private static final int MIN_POINTS = 17;	// the samples a fit starts with
+	private static final double TOL = 16*Math.ulp(1.);	// coefficients this much smaller than the function are roundoff
+	private static final int PLATEAU_POINTS = 129;	// how many samples we need before trusting a plateau
+	private static final double SLOPPY_TOL = 1e-8;	// the noisiest function we will settle for
+	private static final int MAX_COLLEAGUE = 50;	// the biggest colleague matrix worth finding eigenvalues of
+	private static final double SPLIT = -0.004849834917525;	// where to split for roots (not quite the middle, so symmetric roots don't land on it)
+	private static final double ROOT_TRIM = 1e-13;	// coefficients this much smaller than the biggest don't matter for roots
+	private static final double ROOT_IMAG = 1e-8;	// how far off the real line an eigenvalue can be and still be a root
+	private static final int MAX_SPLITS = 40;	// how many times one piece can be split looking for roots
+	private static final double RESIDUAL = 1e-10;	// how small the function must be, relative to its coefficients, at a root
+	private static final double DUPLICATE = 1e-7;	// how close two roots can be before they're the same (double roots are only good to about sqrt(epsilon))
+	private static final int NEWTON_STEPS = 64;	// how many times to polish each root (multiple roots take a while)
+
+
+
+	public static double[][] fit(Tape tape, double a, double b) throws ArithmeticException {	// the coefficients {re, im} of the first output on [a, b], to machine precision
+		double[][] f = {new double[0], new double[0]};
+		double previous = Double.POSITIVE_INFINITY;
+		for (int n = MIN_POINTS; n <= MAX_POINTS; n = 2*n - 1) {
+			f = sample(tape, a, b, n, f[0], f[1]);
+			double scale = 0;
+			for (int j = 0; j < n; j ++)
+				scale = Math.max(scale, Math.hypot(f[0][j], f[1][j]));
+			if (scale == 0)
+				return new double[][] {{0}, {0}};
+			
+			final double[][] c = coefficients(f[0], f[1]);
+			double tail = 0;
+			for (int k = n - Math.max(4, n/8); k < n; k ++)
+				tail = Math.max(tail, Math.hypot(c[0][k], c[1][k]));
+			if (tail <= TOL*scale)	// if it has converged
+				return chopped(c, TOL*scale);
+			if (n >= PLATEAU_POINTS && tail <= SLOPPY_TOL*scale && tail > previous/2)	// or it has hit the noise in the function itself
+				return chopped(c, 2*tail);
+			previous = tail;
+		}
+		throw new ArithmeticException("I couldn't resolve that with "+MAX_POINTS+" points. Is it smooth there?");
+	}
+
+
+	public static double[] value(double[] re, double[] im, double tr, double ti) {	// Clenshaw's recurrence, at t = tr + i ti
+		double b1r = 0, b1i = 0, b2r = 0, b2i = 0;
+		for (int k = re.length-1; k >= 1; k --) {
+			final double b0r = 2*(tr*b1r - ti*b1i) - b2r + re[k];
+			final double b0i = 2*(tr*b1i + ti*b1r) - b2i + im[k];
+			b2r = b1r;
+			b2i = b1i;
+			b1r = b0r;
+			b1i = b0i;
+		}
+		final double[] out = {tr*b1r - ti*b1i - b2r + re[0], tr*b1i + ti*b1r - b2i + im[0]};
+		return out;
+	}
+
+
+	public static double[][] derivative(double[] re, double[] im, double scale) {	// the coefficients of the derivative, times scale
+		final int n = re.length;
+		if (n <= 1)
+			return new double[][] {{0}, {0}};
+		final double[][] d = new double[2][n-1];
+		for (int p = 0; p < 2; p ++) {
+			final double[] c = (p == 0) ? re : im;
+			for (int k = n-1; k >= 1; k --)	// d[k-1] = d[k+1] + 2k c[k]
+				d[p][k-1] = ((k+1 < n-1) ? d[p][k+1] : 0) + 2*k*c[k];
+			d[p][0] /= 2;
+			for (int k = 0; k < n-1; k ++)
+				d[p][k] *= scale;
+		}
+		return d;
+	}
+
+
+	public static double[][] antiderivative(double[] re, double[] im, double scale) {	// the coefficients of the antiderivative that is 0 at -1, times scale
+		final int n = re.length;
+		final double[][] f = new double[2][n+1];
+		for (int p = 0; p < 2; p ++) {
+			final double[] c = (p == 0) ? re : im;
+			double start = 0;	// the value at -1
+			for (int k = 1; k <= n; k ++) {	// F[k] = (c[k-1] - c[k+1])/2k, counting c[0] twice
+				final double before = (k == 1) ? 2*c[0] : c[k-1];
+				final double after = (k+1 < n) ? c[k+1] : 0;
+				f[p][k] = scale*(before - after)/(2*k);
+				start += (k%2 == 0) ? f[p][k] : -f[p][k];
+			}
+			f[p][0] = -start;
+		}
+		return f;
+	}
+
+
+	public static double[] roots(double[] c) throws ArithmeticException {	// the real roots in [-1, 1] of a real series, in order
+		double scale = 0;
+		for (double ck: c)
+			scale = Math.max(scale, Math.abs(ck));
+		if (scale == 0)
+			throw new ArithmeticException("Every point is a root of that.");
+		final List<Double> found = new ArrayList<Double>();
+		rootsOn(c, c.length, -1, 1, ROOT_TRIM*scale, 0, found);
+		
+		final double[] d = derivative(c, new double[c.length], 1)[0];
+		final double[] zero = new double[Math.max(c.length, d.length)];
+		for (int i = 0; i < found.size(); i ++) {	// polish each root against the whole series
+			double t = found.get(i);
+			double ft = Math.abs(value(c, zero, t, 0)[0]);
+			for (int step = 0; step < NEWTON_STEPS && ft > 0; step ++) {
+				final double slope = value(d, zero, t, 0)[0];
+				final double next = Math.max(-1, Math.min(1, t - value(c, zero, t, 0)[0]/slope));
+				final double fNext = Math.abs(value(c, zero, next, 0)[0]);
+				if (!(fNext < ft))
+					break;
+				t = next;
+				ft = fNext;
+			}
+			found.set(i, t);
+		}
+		Collections.sort(found);
+		
+		final List<Double> distinct = new ArrayList<Double>();
+		for (double t: found) {	// the pieces overlap a little, double roots come in pairs, and some eigenvalues are just near misses
+			if (!distinct.isEmpty() && t - distinct.get(distinct.size()-1) <= DUPLICATE)
+				continue;
+			if (Math.abs(value(c, zero, t, 0)[0]) <= RESIDUAL*scale)
+				distinct.add(t);
+		}
+		final double[] out = new double[distinct.size()];
+		for (int i = 0; i < out.length; i ++)
+			out[i] = distinct.get(i);
+		return out;
+	}
+
+
+	private static void rootsOn(double[] c, int n, double t0, double t1, double tol,
+			int depth, List<Double> found) throws ArithmeticException {	// find the roots of the first n coefficients, which cover [t0, t1]
+		while (n > 1 && Math.abs(c[n-1]) <= tol)
+			n --;
+		if (n == 1)	// a constant has no roots we can count
+			return;
+		if (n-1 <= MAX_COLLEAGUE || depth >= MAX_SPLITS) {
+			for (double t: colleague(c, Math.min(n-1, MAX_COLLEAGUE)))
+				found.add(t0 + (t1 - t0)*(t + 1)/2);
+			return;
+		}
+		final double mid = t0 + (t1 - t0)*(SPLIT + 1)/2;	// otherwise, it's divide and conquer
+		rootsOn(restricted(c, n, -1, SPLIT), n, t0, mid, tol, depth+1, found);
+		rootsOn(restricted(c, n, SPLIT, 1), n, mid, t1, tol, depth+1, found);
+	}
+
+
+	private static double[] restricted(double[] c, int n, double s0, double s1) {	// the coefficients of the same polynomial, stretched so [s0, s1] becomes [-1, 1]
+		int m = 2;
+		while (m + 1 < n)
+			m *= 2;
+		final double[] values = new double[m+1];
+		final double[] zero = new double[n];
+		final double[] trimmed = new double[n];
+		System.arraycopy(c, 0, trimmed, 0, n);
+		for (int j = 0; j <= m; j ++)
+			values[j] = value(trimmed, zero, (s0 + s1)/2 + (s1 - s0)/2*node(j, m+1), 0)[0];
+		return coefficients(values, new double[m+1])[0];
+	}
+
+
+	private static double[] colleague(double[] c, int n) throws ArithmeticException {	// the roots in [-1, 1] of a series of degree n
+		if (n == 1) {
+			final double t = -c[0]/c[1];
+			return (Math.abs(t) <= 1 + ROOT_IMAG) ? new double[] {Math.max(-1, Math.min(1, t))} : new double[0];
+		}
+		final double[] a = new double[n*n];	// x T[k] = (T[k-1] + T[k+1])/2, and T[n] is known in terms of the rest
+		a[1] = 1;
+		for (int i = 1; i < n; i ++) {
+			a[i*n+i-1] = .5;
+			if (i+1 < n)
+				a[i*n+i+1] = .5;
+		}
+		for (int j = 0; j < n; j ++)
+			a[(n-1)*n+j] -= c[j]/(2*c[n]);
+		final double[][] eig = Eigensolver.eigen(a, n, false);
+		
+		final List<Double> real = new ArrayList<Double>();
+		for (int i = 0; i < n; i ++)
+			if (Math.abs(eig[1][i]) <= ROOT_IMAG && Math.abs(eig[0][i]) <= 1 + ROOT_IMAG)
+				real.add(Math.max(-1, Math.min(1, eig[0][i])));
+		final double[] out = new double[real.size()];
+		for (int i = 0; i < out.length; i ++)
+			out[i] = real.get(i);
+		return out;
+	}
+
+
+	private static double[][] sample(final Tape tape, double a, double b, final int n,
+			final double[] oldRe, final double[] oldIm) throws ArithmeticException {	// play the Tape at n Chebyshev points, reusing the last n/2
+		final double center = (a + b)/2, radius = (b - a)/2;
+		final double[] re = new double[n], im = new double[n];
+		final boolean nested = oldRe.length == (n + 1)/2;
+		LinearAlgebra.inParallel(n, (long) n*tape.size(), new LinearAlgebra.Range() {
+			public void over(int j0, int j1) {
+				final Frame frame = tape.newFrame();
+				for (int j = j0; j < j1; j ++) {
+					if (nested && j%2 == 0) {
+						re[j] = oldRe[j/2];
+						im[j] = oldIm[j/2];
+					}
+					else {
+						frame.evaluate(center + radius*node(j, n));
+						re[j] = frame.getReal(0);
+						im[j] = frame.getImag(0);
+					}
+				}
+			}
+		});
+		for (int j = 0; j < n; j ++)
+			if (Double.isNaN(re[j]) || Double.isInfinite(re[j]) || Double.isNaN(im[j]) || Double.isInfinite(im[j]))
+				throw new ArithmeticException("That isn't finite everywhere between "+new Constant(a)+" and "+new Constant(b)+".");
+		final double[][] out = {re, im};
+		return out;
+	}
+
+
+	private static double node(int j, int n) {	// the jth of n Chebyshev points, from 1 down to -1
+		return Math.sin(Math.PI*(n - 1 - 2*j)/(2*(n - 1)));	// (this is cos(pi j/(n-1)), but symmetric)
+	}
+
+
+	private static double[][] coefficients(double[] re, double[] im) {	// the series that goes through these values at the Chebyshev points, by FFT
+		final int n = re.length;
+		if (n == 1)
+			return new double[][] {re.clone(), im.clone()};
+		final int m = 2*(n - 1);
+		final double[] vRe = new double[m], vIm = new double[m];
+		for (int j = 0; j < n; j ++) {	// reflect the values, so the transform is a cosine transform
+			vRe[j] = re[j];
+			vIm[j] = im[j];
+			if (j > 0 && j < n-1) {
+				vRe[m-j] = re[j];
+				vIm[m-j] = im[j];
+			}
+		}
+		boolean real = true;
+		for (int j = 0; j < n; j ++)
+			real &= im[j] == 0;
+		Multiplication.transform(vRe, vIm, false);
+		final double[][] c = new double[2][n];
+		for (int k = 0; k < n; k ++) {	// both halves transform to real numbers, so any crosstalk is roundoff
+			final double weight = (k == 0 || k == n-1) ? 1./(2*(n - 1)) : 1./(n - 1);
+			c[0][k] = vRe[k]*weight;
+			c[1][k] = real ? 0 : vIm[k]*weight;
+		}
+		return c;
+	}
+
+
+	private static double[][] chopped(double[][] c, double level) {	// drop the coefficients at the end that are under level
+		int n = c[0].length;
+		while (n > 1 && Math.hypot(c[0][n-1], c[1][n-1]) <= level)
+			n --;
+		final double[][] out = {new double[n], new double[n]};
+		System.arraycopy(c[0], 0, out[0], 0, n);
+		System.arraycopy(c[1], 0, out[1], 0, n);
+		return out;
+	}
+
+}
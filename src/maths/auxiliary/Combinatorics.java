@@ -0,0 +1,187 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.math.BigInteger;
+
+/**
+ * Exact factorials, permutations, and combinations of whole numbers. None of
+ * these multiply 1*2*3*... in order: factorials multiply their odd factors by
+ * binary splitting and shift in the 2s at the end, binomials add up the power
+ * of each prime from the shared sieve, and everything is multiplied together
+ * in a balanced tree so that the fast multiplication gets numbers of about
+ * the same size.
+ *
+ * @author jkunimune
+ */
+public final class Combinatorics {
+
+	private static final long[] SMALL = new long[21];	// every factorial that fits in a long
+	static {
+		SMALL[0] = 1;
+		for (int i = 1; i < SMALL.length; i ++)
+			SMALL[i] = i*SMALL[i-1];
+	}
+
+	private static final int LEAF = 16;	// how many factors the product tree multiplies in a row
+
+
+
+	private Combinatorics() {}
+
+
+
+	public static BigInteger factorial(long n) throws ArithmeticException {
+		if (n < 0)
+			throw new ArithmeticException("The factorial of a negative integer is undefined.");
+		if (n < SMALL.length)
+			return BigInteger.valueOf(SMALL[(int) n]);
+		if (n > Integer.MAX_VALUE)
+			throw new ArithmeticException("That is too big to count.");
+		return oddFactorial(n).shiftLeft((int) (n - Long.bitCount(n)));	// every 2 in n! comes out as one shift at the end
+	}
+
+
+	public static BigInteger permutations(long n, long k) {	// n*(n-1)*...*(n-k+1), for k >= 0
+		if (k == 0)
+			return BigInteger.ONE;
+		if (n >= 0 && k > n)
+			return BigInteger.ZERO;
+		if (k == n)
+			return factorial(n);
+		if (n >= 0 && 2*k > n && Primes.isSieved(n))	// most of n!, so it's better done by primes
+			return fromPrimes(Primes.upTo(n), n, 0, n-k);
+		return range(n-k+1, n+1);
+	}
+
+
+	public static BigInteger binomial(long n, long k) {	// n choose k, for any n and any k
+		if (k < 0 || (n >= 0 && k > n))
+			return BigInteger.ZERO;
+		if (n < 0) {	// (-n choose k) = (-1)^k*(n+k-1 choose k)
+			final BigInteger c = binomial(k - n - 1, k);
+			return (k%2 == 0) ? c : c.negate();
+		}
+		k = Math.min(k, n - k);
+		if (k == 0)
+			return BigInteger.ONE;
+		if (k < 64 || k < n/64 || !Primes.isSieved(n))	// small ones are quicker straight than sieving up to n
+			return range(n-k+1, n+1).divide(factorial(k));
+		return fromPrimes(Primes.upTo(n), n, k, n-k);
+	}
+
+
+
+	private static BigInteger oddFactorial(long n) {	// n! without its 2s, which is the odd numbers in (n/2^(i+1), n/2^i] to the i+1 for every i
+		BigInteger level = BigInteger.ONE, total = BigInteger.ONE;
+		for (int i = 63 - Long.numberOfLeadingZeros(n); i >= 0; i --) {	// from the top level down, so each one is multiplied in i+1 times
+			level = Multiplication.times(level, odds(n >> (i+1), n >> i));
+			total = Multiplication.times(total, level);
+		}
+		return total;
+	}
+
+
+	private static BigInteger odds(long from, long to) {	// the product of the odd numbers in (from, to], split in half until they fit in longs
+		final Factors f = new Factors((int) ((to - from)/2 + 1));
+		for (long i = (from + 1) | 1; i <= to; i += 2)
+			f.times(i);
+		return f.product();
+	}
+
+
+	private static BigInteger fromPrimes(int[] primes, long n, long k, long m) {	// n!/(k!m!), by Legendre's formula
+		final Factors f = new Factors(primes.length);
+		for (int p: primes) {
+			if (p > n)
+				break;
+			for (long q = p; q <= n; q *= p) {
+				for (long e = n/q - k/q - m/q; e > 0; e --)
+					f.times(p);
+				if (q > n/p)
+					break;
+			}
+		}
+		return f.product();
+	}
+
+
+	private static BigInteger range(long from, long to) {	// from*(from+1)*...*(to-1)
+		final Factors f = new Factors((int) Math.min(to - from, 1 << 20));
+		for (long i = from; i < to; i ++)
+			f.times(i);
+		return f.product();
+	}
+
+
+	private static BigInteger product(long[] x, int from, int to) {	// multiply a list of longs, in a balanced tree
+		if (to - from <= LEAF) {
+			BigInteger p = BigInteger.ONE;
+			for (int i = from; i < to; i ++)
+				p = p.multiply(BigInteger.valueOf(x[i]));
+			return p;
+		}
+		final int mid = (from + to) >>> 1;
+		return Multiplication.times(product(x, from, mid), product(x, mid, to));
+	}
+
+
+
+	/**
+	 * A pile of factors to multiply together, packed as many to a long as will
+	 * fit, so the BigIntegers don't have to start out tiny.
+	 *
+	 * @author jkunimune
+	 */
+	private static final class Factors {
+
+		private long[] words;
+		private int size;
+		private long current = 1;
+
+		private Factors(int capacity) {
+			words = new long[Math.max(capacity/2, 16)];
+		}
+
+		private void times(long x) {
+			if (x == 0)
+				current = 0;
+			if (current != 0 && Math.abs(current) > Long.MAX_VALUE/Math.abs(x)) {	// this one's full
+				if (size == words.length)
+					words = java.util.Arrays.copyOf(words, 2*size);
+				words[size ++] = current;
+				current = 1;
+			}
+			current *= x;
+		}
+
+		private BigInteger product() {
+			if (current == 0)
+				return BigInteger.ZERO;
+			return Combinatorics.product(words, 0, size).multiply(BigInteger.valueOf(current));
+		}
+
+	}
+
+}
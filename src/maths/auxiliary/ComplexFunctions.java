@@ -0,0 +1,209 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+/**
+ * The complex functions a Frame plays its Tape with: the same ones as
+ * Constant, with the same branch cuts, but on bare doubles. Each method writes
+ * its answer into register k of a pair of arrays rather than building
+ * anything, and special() finds the one from SpecialFunctions that goes with
+ * an instruction.
+ *
+ * @author jkunimune
+ */
+public final class ComplexFunctions {
+
+	private ComplexFunctions() {}
+
+
+
+	static double roundoff(double a, double b) {	// exactly what gets lost when a and b are added (Knuth's two-sum)
+		final double s = a + b, bb = s - a;
+		if (Double.isInfinite(s))	// infinity has no roundoff to speak of
+			return 0;
+		return (a - (s - bb)) + (b - bb);
+	}
+
+
+	static void div(double a, double b, double c, double d,
+			double[] re, double[] im, int k) {
+		if (d == 0) {	// real denominators are common enough to be worth it
+			re[k] = a/c;
+			im[k] = b/c;
+		}
+		else {
+			final double r2 = c*c + d*d;
+			re[k] = (a*c + b*d)/r2;
+			im[k] = (b*c - a*d)/r2;
+		}
+	}
+
+
+	static void mod(double a, double b, double c, double d,
+			double[] re, double[] im, int k) {	// a - floor(a/b)*b, rounding toward zero like Constant.floor
+		div(a, b, c, d, re, im, k);
+		final double mag = Math.hypot(re[k], im[k]);
+		final double s = (mag == 0) ? 0 : Math.floor(mag)/mag;
+		final double qr = s*re[k], qi = s*im[k];
+		re[k] = a - (qr*c - qi*d);
+		im[k] = b - (qr*d + qi*c);
+	}
+
+
+	static void pow(double a, double b, double c, double d,
+			double[] re, double[] im, int k) {
+		if (d == 0 && c == Math.rint(c) && Math.abs(c) <= 1024) {	// integer powers are done by squaring
+			long n = Math.abs((long) c);
+			double pr = 1, pi = 0, br = a, bi = b;
+			while (n > 0) {
+				if ((n&1) == 1) {
+					final double t = pr*br - pi*bi;
+					pi = pr*bi + pi*br;
+					pr = t;
+				}
+				final double t = br*br - bi*bi;
+				bi = 2*br*bi;
+				br = t;
+				n >>= 1;
+			}
+			if (c < 0)
+				div(1, 0, pr, pi, re, im, k);
+			else {
+				re[k] = pr;
+				im[k] = pi;
+			}
+		}
+		else if (a == 0 && b == 0) {
+			re[k] = (c > 0) ? 0 : Double.NaN;
+			im[k] = (c > 0) ? 0 : Double.NaN;
+		}
+		else {	// everything else is exp(w*ln(z))
+			ln(a, b, re, im, k);
+			final double lr = re[k], li = im[k];
+			exp(lr*c - li*d, lr*d + li*c, re, im, k);
+		}
+	}
+
+
+	static void exp(double a, double b, double[] re, double[] im, int k) {
+		final double mag = Math.exp(a);
+		re[k] = (b == 0) ? mag : mag*Math.cos(b);
+		im[k] = (b == 0) ? 0 : mag*Math.sin(b);
+	}
+
+
+	static void ln(double a, double b, double[] re, double[] im, int k) {
+		re[k] = Math.log(Math.hypot(a, b));
+		im[k] = arg(a, b);
+	}
+
+
+	static void sqrt(double a, double b, double[] re, double[] im, int k) {
+		ln(a, b, re, im, k);
+		exp(re[k]/2, im[k]/2, re, im, k);
+	}
+
+
+	static void asinh(double a, double b, double[] re, double[] im, int k) {	// ln(z + sqrt(z^2+1))
+		sqrt(a*a - b*b + 1, 2*a*b, re, im, k);
+		ln(re[k] + a, im[k] + b, re, im, k);
+	}
+
+
+	static void acosh(double a, double b, double[] re, double[] im, int k) {	// ln(z + sqrt(z^2-1))
+		sqrt(a*a - b*b - 1, 2*a*b, re, im, k);
+		ln(re[k] + a, im[k] + b, re, im, k);
+	}
+
+
+	static void atanh(double a, double b, double[] re, double[] im, int k) {	// ln(sqrt((1+z)/(1-z)))
+		div(1 + a, b, 1 - a, -b, re, im, k);
+		sqrt(re[k], im[k], re, im, k);
+		ln(re[k], im[k], re, im, k);
+	}
+
+
+	static void rotNeg90(double[] re, double[] im, int k) {	// multiply by -i
+		final double t = re[k];
+		re[k] = im[k];
+		im[k] = -t;
+	}
+
+
+	static void special(int op, double ar, double ai, double br, double bi,
+			double[] re, double[] im, int k) {	// one of the special functions, from SpecialFunctions
+		final double nu = (ai == 0) ? ar : Double.NaN;	// the Bessel functions only take real orders
+		switch (op) {
+		case Tape.ERF:
+			SpecialFunctions.erf(ar, ai, re, im, k);
+			break;
+		case Tape.ERFC:
+			SpecialFunctions.erfc(ar, ai, re, im, k);
+			break;
+		case Tape.ERFI:
+			SpecialFunctions.erfi(ar, ai, re, im, k);
+			break;
+		case Tape.GAMMA:
+			SpecialFunctions.gamma(ar, ai, re, im, k);
+			break;
+		case Tape.LGAMMA:
+			SpecialFunctions.lgamma(ar, ai, re, im, k);
+			break;
+		case Tape.BETA:
+			SpecialFunctions.beta(ar, ai, br, bi, re, im, k);
+			break;
+		case Tape.BESSEL_J:
+			SpecialFunctions.besselJ(nu, br, bi, re, im, k);
+			break;
+		case Tape.BESSEL_Y:
+			SpecialFunctions.besselY(nu, br, bi, re, im, k);
+			break;
+		case Tape.BESSEL_I:
+			SpecialFunctions.besselI(nu, br, bi, re, im, k);
+			break;
+		case Tape.BESSEL_K:
+			SpecialFunctions.besselK(nu, br, bi, re, im, k);
+			break;
+		case Tape.AIRY_AI:
+			SpecialFunctions.airyAi(ar, ai, re, im, k);
+			break;
+		case Tape.AIRY_BI:
+			SpecialFunctions.airyBi(ar, ai, re, im, k);
+			break;
+		}
+	}
+
+
+	static double arg(double x, double y) {	// the same branch cut as Constant, but with arg(0) = 0
+		if (x == 0 && y == 0)
+			return 0;
+		else if (x >= 0 && y >= 0)
+			return Math.atan(y/x);
+		else if (x < 0)
+			return Math.atan(y/x) + Math.PI;
+		else
+			return Math.atan(y/x) + 2*Math.PI;
+	}
+
+}
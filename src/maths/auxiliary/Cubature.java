@@ -0,0 +1,404 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import gui.Workspace;
+import maths.Constant;
+import maths.Expression;
+import maths.Locus;
+
+/**
+ * A class full of static methods to integrate Expressions over the parameter
+ * space of a Locus. Regions of up to three dimensions are done with nested
+ * adaptive Gauss-Kronrod quadrature; anything bigger is done with randomly
+ * shifted Sobol points. Either way, the work is split across all cores.
+ *
+ * @author jkunimune
+ */
+public class Cubature {
+
+	public static final double REL_TOL = 1e-10;	// the default relative tolerance for quadrature
+	public static final double QMC_TOL = 1e-5;	// the default relative tolerance for Monte Carlo
+	public static final int MAX_NESTED_DIMS = 3;	// any more dimensions than this, and we switch to Sobol
+
+	private static final double ABS_TOL = 1e-14;	// errors this small are just roundoff
+	private static final int MAX_INTERVALS = 100;	// the most times each 1D integral may be bisected
+	private static final int REPLICAS = 8;	// the number of random shifts for error estimation
+	private static final int MIN_POINTS = 1<<10, MAX_POINTS = 1<<20;	// the number of Sobol points per shift
+	private static final int BLOCK = 1<<12;	// the number of Sobol points per thread
+
+	private static final double[] XGK = { // 15-point Kronrod nodes (the odd ones are also the 7-point Gauss nodes)
+			0.991455371120812639206854697526329, 0.949107912342758524526189684047851,
+			0.864864423359769072789712788640926, 0.741531185599394439863864773280788,
+			0.586087235467691130294144845693013, 0.405845151377397166906606412076961,
+			0.207784955007898467600689403773245, 0.000000000000000000000000000000000};
+	private static final double[] WGK = { // 15-point Kronrod weights
+			0.022935322010529224963732008058970, 0.063092092629978553290700663189204,
+			0.104790010322250183839876322541518, 0.140653259715525918745189590510238,
+			0.169004726639267902826583426598550, 0.190350578064785409913256402421014,
+			0.204432940075298892414161999234649, 0.209482141084727828012999174891714};
+	private static final double[] WG = { // 7-point Gauss weights
+			0.129484966168869693270611432679082, 0.279705391489276667901467771423780,
+			0.381830050505118944950369775488975, 0.417959183673469387755102040816327};
+
+	private static final int[][] SOBOL = { // degree, polynomial, and initial direction numbers of Joe and Kuo
+			{1, 0, 1}, {2, 1, 1,3}, {3, 1, 1,3,1}, {3, 2, 1,1,1}, {4, 1, 1,1,3,3},
+			{4, 4, 1,3,5,13}, {5, 2, 1,1,5,5,17}, {5, 4, 1,1,5,5,5},
+			{5, 7, 1,1,7,11,19}, {5, 11, 1,1,5,1,1}, {5, 13, 1,1,1,3,11},
+			{5, 14, 1,3,5,5,31}, {6, 1, 1,3,3,9,7,49}, {6, 13, 1,1,1,15,21,21},
+			{6, 16, 1,3,1,13,27,49}, {6, 19, 1,1,1,15,7,5},
+			{6, 22, 1,3,1,15,13,25}, {6, 25, 1,1,5,5,19,61},
+			{7, 1, 1,3,7,11,23,15,103}, {7, 4, 1,3,7,13,13,15,69}};
+
+
+
+	/**
+	 * The result of an integration: a value and an estimate of its absolute
+	 * error.
+	 *
+	 * @author jkunimune
+	 */
+	public static class Result {
+
+		private final double real, imag, error;
+		private final long evaluations;
+
+
+		private Result(double real, double imag, double error, long evaluations) {
+			this.real = real;
+			this.imag = imag;
+			this.error = error;
+			this.evaluations = evaluations;
+		}
+
+
+		public Constant getValue() {
+			return new Constant(real, imag);
+		}
+
+
+		public double getError() {
+			return error;
+		}
+
+
+		public long getEvaluations() {
+			return evaluations;
+		}
+
+
+		@Override
+		public String toString() {
+			return getValue()+" \u00B1 "+error;
+		}
+
+	}
+
+
+
+	public static Result integrate(Expression f, Locus region, Workspace heap) throws ArithmeticException {
+		if (region.getParams().length <= MAX_NESTED_DIMS)
+			return integrate(f, region, heap, REL_TOL);
+		else
+			return integrate(f, region, heap, QMC_TOL);
+	}
+
+
+	public static Result integrate(Expression f, Locus region, Workspace heap,
+			double tol) throws ArithmeticException {
+		final String[] params = region.getParams();
+		final Workspace locHeap = (heap == null) ? null :
+			heap.localize(Arrays.asList(params));	// the parameters shadow anything in the heap
+
+		final Tape integrand = new Tape(params, locHeap);
+		integrand.output(f.compile(integrand));
+
+		final Tape[] bounds = new Tape[params.length];	// each bound may depend on the parameters before it
+		for (int k = 0; k < params.length; k ++) {
+			bounds[k] = new Tape(Arrays.copyOf(params, k), locHeap);
+			bounds[k].output(region.getLowBounds()[k].compile(bounds[k]),
+					region.getUppBounds()[k].compile(bounds[k]));
+		}
+
+		if (params.length <= MAX_NESTED_DIMS)
+			return nested(integrand, bounds, tol);
+		else
+			return sobol(integrand, bounds, tol);
+	}
+
+
+
+	private static Result nested(Tape integrand, Tape[] bounds, double tol) {	// adaptive quadrature, one dimension at a time
+		final Worker main = new Worker(integrand, bounds);
+		final double[] ab = main.bounds(0, new double[bounds.length]);
+		final int panels = Math.max(1, ForkJoinPool.getCommonPoolParallelism());	// the outermost integral is split between cores
+
+		final List<RecursiveTask<double[]>> tasks = new ArrayList<RecursiveTask<double[]>>();
+		for (int p = 0; p < panels; p ++) {
+			final double a = ab[0] + (ab[1]-ab[0])*p/panels;
+			final double b = ab[0] + (ab[1]-ab[0])*(p+1)/panels;
+			tasks.add(new RecursiveTask<double[]>() {
+				private static final long serialVersionUID = 1L;
+				protected double[] compute() {
+					final Worker w = new Worker(integrand, bounds);
+					final double[] out = w.adapt(0, a, b, new double[bounds.length], tol);
+					return new double[] {out[0], out[1], out[2], w.count};
+				}
+			});
+		}
+
+		double re = 0, im = 0, err = 0;
+		long count = 0;
+		for (RecursiveTask<double[]> task: ForkJoinTask.invokeAll(tasks)) {	// forking from outside the pool sends them to the common pool
+			final double[] out = task.join();
+			re += out[0];
+			im += out[1];
+			err += out[2];
+			count += (long) out[3];
+		}
+		return new Result(re, im, err, count);
+	}
+
+
+	private static Result sobol(Tape integrand, Tape[] bounds, double tol) {	// randomized quasi-Monte Carlo
+		final int d = bounds.length;
+		if (d > SOBOL.length+1)
+			throw new ArithmeticException("I can only integrate in up to "
+					+(SOBOL.length+1)+" dimensions.");
+		final int[][] v = directionNumbers(d);
+
+		final Random rng = new Random(d);	// a fixed seed keeps answers repeatable
+		final double[][] shifts = new double[REPLICAS][d];
+		for (double[] shift: shifts)
+			for (int k = 0; k < d; k ++)
+				shift[k] = rng.nextDouble();
+
+		final double[] sumRe = new double[REPLICAS], sumIm = new double[REPLICAS];
+		int n = 0;
+		double re, im, err;
+		do {	// double the number of points until the replicas agree
+			final int start = n, end = (n == 0) ? MIN_POINTS : 2*n;
+			final List<RecursiveTask<double[]>> tasks = new ArrayList<RecursiveTask<double[]>>();
+			final List<Integer> replica = new ArrayList<Integer>();	// which shift each task belongs to
+			for (int r = 0; r < REPLICAS; r ++) {
+				for (int b = start; b < end; b += BLOCK) {
+					replica.add(r);
+					final double[] shift = shifts[r];
+					final int from = b, to = Math.min(end, b+BLOCK);
+					tasks.add(new RecursiveTask<double[]>() {
+						private static final long serialVersionUID = 1L;
+						protected double[] compute() {
+							return new Worker(integrand, bounds).sobolSum(v, shift, from, to);
+						}
+					});
+				}
+			}
+			ForkJoinTask.invokeAll(tasks);
+			for (int i = 0; i < tasks.size(); i ++) {
+				final double[] out = tasks.get(i).join();
+				sumRe[replica.get(i)] += out[0];
+				sumIm[replica.get(i)] += out[1];
+			}
+			n = end;
+
+			re = 0;
+			im = 0;
+			for (int r = 0; r < REPLICAS; r ++) {
+				re += sumRe[r]/n/REPLICAS;
+				im += sumIm[r]/n/REPLICAS;
+			}
+			double var = 0;
+			for (int r = 0; r < REPLICAS; r ++)
+				var += Math.pow(sumRe[r]/n - re, 2) + Math.pow(sumIm[r]/n - im, 2);
+			err = Math.sqrt(var/(REPLICAS-1)/REPLICAS);	// the standard error of the mean of the replicas
+		} while (err > tol*Math.hypot(re, im) && n < MAX_POINTS);
+
+		return new Result(re, im, err, (long) n*REPLICAS);
+	}
+
+
+	private static int[][] directionNumbers(int d) {	// the Sobol direction numbers for each dimension
+		final int[][] v = new int[d][32];
+		for (int i = 0; i < 32; i ++)
+			v[0][i] = 1 << (31-i);	// the first dimension is just van der Corput
+		for (int j = 1; j < d; j ++) {
+			final int s = SOBOL[j-1][0], a = SOBOL[j-1][1];
+			for (int i = 0; i < s; i ++)
+				v[j][i] = SOBOL[j-1][2+i] << (31-i);
+			for (int i = s; i < 32; i ++) {
+				v[j][i] = v[j][i-s] ^ (v[j][i-s] >>> s);
+				for (int k = 1; k < s; k ++)
+					if (((a >> (s-1-k)) & 1) == 1)
+						v[j][i] ^= v[j][i-k];
+			}
+		}
+		return v;
+	}
+
+
+
+	/**
+	 * The Frames one thread needs to evaluate an integrand and its bounds.
+	 *
+	 * @author jkunimune
+	 */
+	private static class Worker {
+
+		private final Frame f;
+		private final Frame[] bounds;
+		private long count;
+
+
+		private Worker(Tape integrand, Tape[] boundTapes) {
+			f = integrand.newFrame();
+			bounds = new Frame[boundTapes.length];
+			for (int k = 0; k < bounds.length; k ++)
+				bounds[k] = boundTapes[k].newFrame();
+			count = 0;
+		}
+
+
+		private double[] bounds(int k, double[] x) {	// the limits of the kth parameter, given the ones before it
+			bounds[k].evaluate(x);
+			if (bounds[k].getImag(0) != 0 || bounds[k].getImag(1) != 0)
+				throw new ArithmeticException("The bounds of an integral must be real.");
+			return new double[] {bounds[k].getReal(0), bounds[k].getReal(1)};
+		}
+
+
+		private double[] adapt(int k, double a, double b, double[] x, double tol) {	// integrate the kth dimension from a to b
+			final PriorityQueue<double[]> queue = new PriorityQueue<double[]>(16,
+					new Comparator<double[]>() {	// always bisect the worst interval first
+				public int compare(double[] p, double[] q) {
+					return Double.compare(q[4], p[4]);
+				}
+			});
+			queue.add(kronrod(k, a, b, x, tol));
+			double re = queue.peek()[2], im = queue.peek()[3], err = queue.peek()[4];
+
+			for (int i = 0; i < MAX_INTERVALS && err > Math.max(tol*Math.hypot(re, im), ABS_TOL); i ++) {
+				final double[] worst = queue.poll();
+				final double mid = (worst[0] + worst[1])/2;
+				final double[] left = kronrod(k, worst[0], mid, x, tol);
+				final double[] rght = kronrod(k, mid, worst[1], x, tol);
+				queue.add(left);
+				queue.add(rght);
+				re += left[2] + rght[2] - worst[2];
+				im += left[3] + rght[3] - worst[3];
+				err += left[4] + rght[4] - worst[4];
+			}
+
+			re = 0;	// add everything up again from scratch to avoid accumulated roundoff
+			im = 0;
+			err = 0;
+			for (double[] interval: queue) {
+				re += interval[2];
+				im += interval[3];
+				err += interval[4];
+			}
+			return new double[] {re, im, err};
+		}
+
+
+		private double[] kronrod(int k, double a, double b, double[] x, double tol) {	// the 15-point rule on one interval
+			final double c = (a + b)/2, h = (b - a)/2;
+			final double[] fc = sample(k, c, x, tol);
+			double kRe = WGK[7]*fc[0], kIm = WGK[7]*fc[1];
+			double gRe = WG[3]*fc[0], gIm = WG[3]*fc[1];
+			double innerErr = WGK[7]*fc[2];
+			for (int j = 0; j < 7; j ++) {	// the nodes come in symmetric pairs
+				final double[] f1 = sample(k, c - h*XGK[j], x, tol);
+				final double[] f2 = sample(k, c + h*XGK[j], x, tol);
+				kRe += WGK[j]*(f1[0] + f2[0]);
+				kIm += WGK[j]*(f1[1] + f2[1]);
+				innerErr += WGK[j]*(f1[2] + f2[2]);
+				if (j%2 == 1) {	// every other one is also a Gauss node
+					gRe += WG[j/2]*(f1[0] + f2[0]);
+					gIm += WG[j/2]*(f1[1] + f2[1]);
+				}
+			}
+			final double err = Math.abs(h)*(Math.hypot(kRe-gRe, kIm-gIm) + innerErr);
+			return new double[] {a, b, h*kRe, h*kIm, err};
+		}
+
+
+		private double[] sample(int k, double xk, double[] x, double tol) {	// the value (and error) of the integrand at one node
+			x[k] = xk;
+			if (k == bounds.length-1) {	// the innermost dimension calls the integrand
+				f.evaluate(x);
+				count ++;
+				return new double[] {f.getReal(0), f.getImag(0), 0};
+			}
+			else {	// the others call another integral
+				final double[] ab = bounds(k+1, x);
+				return adapt(k+1, ab[0], ab[1], x, tol);
+			}
+		}
+
+
+		private double[] sobolSum(int[][] v, double[] shift, int from, int to) {	// sum the integrand over some Sobol points
+			final int d = v.length;
+			final int[] point = new int[d];
+			final int gray = from ^ (from >>> 1);	// jump straight to the first point
+			for (int i = 0; i < 32; i ++)
+				if (((gray >>> i) & 1) == 1)
+					for (int j = 0; j < d; j ++)
+						point[j] ^= v[j][i];
+
+			final double[] x = new double[d];
+			double re = 0, im = 0;
+			for (int n = from; n < to; n ++) {
+				double jacobian = 1;
+				for (int j = 0; j < d; j ++) {
+					double u = (point[j] & 0xFFFFFFFFL)/4294967296. + shift[j];
+					if (u >= 1)	u -= 1;	// Cranley-Patterson rotation
+					final double[] ab = bounds(j, x);
+					x[j] = ab[0] + u*(ab[1] - ab[0]);
+					jacobian *= ab[1] - ab[0];
+				}
+				f.evaluate(x);
+				count ++;
+				re += jacobian*f.getReal(0);
+				im += jacobian*f.getImag(0);
+
+				final int c = Integer.numberOfTrailingZeros(~n);	// step to the next point with the Gray code
+				for (int j = 0; j < d; j ++)
+					point[j] ^= v[j][c];
+			}
+			return new double[] {re, im};
+		}
+
+	}
+
+}
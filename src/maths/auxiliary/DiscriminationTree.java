@@ -0,0 +1,103 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A trie of patterns, each written out as the list of symbols you pass on the
+ * way down through its tree, parent first (preorder). A pattern's wildcards
+ * stand for whole subtrees, so looking something up follows every edge that
+ * matches its next symbol, and also the wildcard edge, which skips to the end
+ * of that symbol's subtree. That way, finding every pattern that might match
+ * takes time in proportion to the size of the thing being matched, however
+ * many patterns there are.
+ *
+ * @author jkunimune
+ */
+public class DiscriminationTree<T> {
+
+	public static final String WILDCARD = "*";	// the symbol that stands for any subtree
+
+
+
+	private final Map<String, DiscriminationTree<T>> children;
+	private final List<T> values;	// the things filed under the patterns that end here
+	private int size;
+
+
+
+	public DiscriminationTree() {
+		children = new HashMap<String, DiscriminationTree<T>>();
+		values = new ArrayList<T>();
+		size = 0;
+	}
+
+
+
+	public void insert(List<String> key, T value) {	// file value under this pattern
+		DiscriminationTree<T> node = this;
+		for (String symbol: key) {
+			node.size ++;
+			DiscriminationTree<T> next = node.children.get(symbol);
+			if (next == null) {
+				next = new DiscriminationTree<T>();
+				node.children.put(symbol, next);
+			}
+			node = next;
+		}
+		node.size ++;
+		node.values.add(value);
+	}
+
+
+	public List<T> retrieve(String[] symbols, int[] ends) {	// everything filed under a pattern that might match this, where ends[i] is where the subtree starting at symbols[i] ends
+		final List<T> out = new ArrayList<T>();
+		retrieve(symbols, ends, 0, out);
+		return out;
+	}
+
+
+	private void retrieve(String[] symbols, int[] ends, int i, List<T> out) {
+		if (i == symbols.length) {
+			out.addAll(values);
+			return;
+		}
+		final DiscriminationTree<T> same = children.get(symbols[i]);
+		if (same != null)
+			same.retrieve(symbols, ends, i+1, out);
+		final DiscriminationTree<T> any = children.get(WILDCARD);
+		if (any != null)
+			any.retrieve(symbols, ends, ends[i], out);
+	}
+
+
+	public int size() {	// how many things are filed in here
+		return size;
+	}
+
+}
@@ -0,0 +1,699 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.math.BigDecimal;
+
+/**
+ * Arithmetic on double-doubles: unevaluated sums hi + lo of two doubles, with
+ * |lo| no bigger than half an ulp of hi, good for about 32 significant digits.
+ * Everything is built out of error-free transformations (two-sum and Dekker's
+ * two-product), so it stays within a small factor of the speed of plain
+ * doubles. Like Tape, nothing here allocates; every method writes its answer
+ * into an array. The real methods write a hi, lo pair at index o, and the
+ * complex ones work on registers of four doubles (re hi, re lo, im hi, im lo)
+ * at offsets a, b and k, with t as scratch space of at least SCRATCH doubles.
+ *
+ * @author jkunimune
+ */
+public final class DoubleDouble {
+
+	public static final int SCRATCH = 16;
+
+	private static final double EPS = 4.93038065763132e-32;	// 2^-104
+	private static final double SPLITTER = 134217729.0;	// 2^27 + 1
+	private static final double SPLIT_MAX = 6.69692879491417e+299;	// anything bigger has to be scaled down before it gets split
+
+	private static final double[] PI = {3.141592653589793116e+00, 1.224646799147353207e-16};
+	private static final double[] TAU = {6.283185307179586232e+00, 2.449293598294706414e-16};
+	private static final double[] HALF_PI = {1.570796326794896558e+00, 6.123233995736766036e-17};
+	private static final double[] E = {2.718281828459045091e+00, 1.445646891729250158e-16};
+	private static final double[] LN2 = {6.931471805599452862e-01, 2.319046813846299558e-17};
+	private static final double[] ONE = {1, 0, 0, 0};
+
+	private static final double[] INV_FACT = new double[2*32];	// 1/n!, two doubles at a time
+	static {
+		INV_FACT[0] = INV_FACT[2] = 1;
+		for (int n = 2; n < INV_FACT.length/2; n ++)
+			div(INV_FACT[2*n-2], INV_FACT[2*n-1], n, 0, INV_FACT, 2*n);
+	}
+
+
+
+	private DoubleDouble() {}	// this is just a bag of methods
+
+
+
+	public static double lowPart(double x) {	// what a constant most likely meant beyond the precision of a double
+		if (x == PI[0])	return PI[1];	// either one of the famous irrationals
+		if (x == TAU[0])	return TAU[1];
+		if (x == HALF_PI[0])	return HALF_PI[1];
+		if (x == E[0])	return E[1];
+		if (x == 0 || Double.isInfinite(x) || Double.isNaN(x))
+			return 0;
+		return new BigDecimal(Double.toString(x)).subtract(new BigDecimal(x)).doubleValue();	// or the decimal that was typed in
+	}
+
+
+
+	/*
+	 * The real operations. Each one takes its operands as hi, lo pairs.
+	 */
+
+	public static void add(double ah, double al, double bh, double bl, double[] out, int o) {
+		final double s = ah + bh;
+		if (Double.isInfinite(s) || Double.isNaN(s)) {
+			out[o] = s;
+			out[o+1] = 0;
+			return;
+		}
+		final double bb = s - ah;
+		double e = (ah - (s - bb)) + (bh - bb);
+		final double t = al + bl, cc = t - al;
+		final double f = (al - (t - cc)) + (bl - cc);
+		e += t;
+		final double h = s + e;
+		e = (e - (h - s)) + f;
+		out[o] = h + e;
+		out[o+1] = e - (out[o] - h);
+	}
+
+
+	public static void mul(double ah, double al, double bh, double bl, double[] out, int o) {
+		final double p = ah*bh;
+		if (Double.isInfinite(p) || Double.isNaN(p)) {
+			out[o] = p;
+			out[o+1] = 0;
+			return;
+		}
+		final double e = productError(ah, bh, p) + (ah*bl + al*bh);
+		out[o] = p + e;
+		out[o+1] = e - (out[o] - p);
+	}
+
+
+	public static void div(double ah, double al, double bh, double bl, double[] out, int o) {	// long division, three digits deep
+		final double q1 = ah/bh;
+		if (Double.isInfinite(q1) || Double.isNaN(q1) || q1 == 0) {
+			out[o] = q1;
+			out[o+1] = 0;
+			return;
+		}
+		mul(q1, 0, bh, bl, out, o);
+		add(ah, al, -out[o], -out[o+1], out, o);
+		final double rh = out[o], rl = out[o+1];
+		final double q2 = rh/bh;
+		mul(q2, 0, bh, bl, out, o);
+		add(rh, rl, -out[o], -out[o+1], out, o);
+		final double q3 = out[o]/bh;
+		final double h = q1 + q2;
+		add(h, q2 - (h - q1), q3, 0, out, o);
+	}
+
+
+	public static void sqrt(double ah, double al, double[] out, int o) {	// one Newton step from the double answer
+		if (ah <= 0 || Double.isInfinite(ah) || Double.isNaN(ah)) {
+			out[o] = Math.sqrt(ah);
+			out[o+1] = 0;
+			return;
+		}
+		final double x = 1/Math.sqrt(ah), ax = ah*x;
+		final double sq = ax*ax;
+		add(ah, al, -sq, -productError(ax, ax, sq), out, o);
+		final double c = out[o]*(x*.5);
+		out[o] = ax + c;
+		out[o+1] = c - (out[o] - ax);
+	}
+
+
+	public static void exp(double ah, double al, double[] out, int o) {
+		if (Double.isNaN(ah) || ah > 709.79 || ah < -745.2) {
+			out[o] = Math.exp(ah);
+			out[o+1] = 0;
+			return;
+		}
+		final double k = Math.rint(ah/LN2[0]);	// reduce it to r = a - k*ln(2), and then to r/1024
+		mul(k, 0, LN2[0], LN2[1], out, o);
+		add(ah, al, -out[o], -out[o+1], out, o);
+		final double rh = out[o]/1024, rl = out[o+1]/1024;
+
+		double sh = rh, sl = rl, ph = rh, pl = rl;	// the series for exp(r) - 1
+		for (int n = 2; n < INV_FACT.length/2; n ++) {
+			mul(ph, pl, rh, rl, out, o);
+			ph = out[o];
+			pl = out[o+1];
+			mul(ph, pl, INV_FACT[2*n], INV_FACT[2*n+1], out, o);
+			final double th = out[o];
+			add(sh, sl, th, out[o+1], out, o);
+			sh = out[o];
+			sl = out[o+1];
+			if (Math.abs(th) <= EPS*Math.abs(sh))
+				break;
+		}
+		for (int i = 0; i < 10; i ++) {	// then square it back up, as (1+s)^2 - 1 = 2s + s^2
+			mul(sh, sl, sh, sl, out, o);
+			add(2*sh, 2*sl, out[o], out[o+1], out, o);
+			sh = out[o];
+			sl = out[o+1];
+		}
+		add(sh, sl, 1, 0, out, o);
+		out[o] = Math.scalb(out[o], (int) k);
+		out[o+1] = Math.scalb(out[o+1], (int) k);
+	}
+
+
+	public static void log(double ah, double al, double[] out, int o) {	// one Newton step, x + a*exp(-x) - 1
+		if (ah <= 0 || Double.isInfinite(ah) || Double.isNaN(ah)) {
+			out[o] = Math.log(ah);
+			out[o+1] = 0;
+			return;
+		}
+		if (ah < 1e-290 || ah > 1e290) {	// exp(-x) would overflow, so scale it first
+			final int e = Math.getExponent(ah);
+			log(Math.scalb(ah, -e), Math.scalb(al, -e), out, o);
+			final double lh = out[o], ll = out[o+1];
+			mul(e, 0, LN2[0], LN2[1], out, o);
+			add(lh, ll, out[o], out[o+1], out, o);
+			return;
+		}
+		final double x = Math.log(ah);
+		exp(-x, 0, out, o);
+		mul(out[o], out[o+1], ah, al, out, o);
+		add(out[o], out[o+1], -1, 0, out, o);
+		add(x, 0, out[o], out[o+1], out, o);
+	}
+
+
+	public static void sincos(double ah, double al, double[] out, int o) {	// sin at o, and cos at o+2
+		if (Double.isInfinite(ah) || Double.isNaN(ah)) {
+			out[o] = out[o+2] = Double.NaN;
+			out[o+1] = out[o+3] = 0;
+			return;
+		}
+		final double z = Math.rint(ah/TAU[0]);	// bring it within a half turn of zero
+		mul(z, 0, TAU[0], TAU[1], out, o);
+		add(ah, al, -out[o], -out[o+1], out, o);
+		final double rh = out[o], rl = out[o+1];
+		final double j = Math.rint(rh/HALF_PI[0]);	// and then within an eighth turn of a quarter turn
+		mul(j, 0, HALF_PI[0], HALF_PI[1], out, o);
+		add(rh, rl, -out[o], -out[o+1], out, o);
+		final double th = out[o], tl = out[o+1];
+
+		double sh = th, sl = tl, ch = 1, cl = 0, ph = th, pl = tl;	// the two Taylor series, together
+		for (int n = 2; n < INV_FACT.length/2 && th != 0; n ++) {
+			mul(ph, pl, th, tl, out, o);
+			ph = out[o];
+			pl = out[o+1];
+			mul(ph, pl, INV_FACT[2*n], INV_FACT[2*n+1], out, o);
+			final double qh = (n%4 < 2) ? out[o] : -out[o], ql = (n%4 < 2) ? out[o+1] : -out[o+1];
+			if (n%2 == 0) {
+				add(ch, cl, qh, ql, out, o);
+				ch = out[o];
+				cl = out[o+1];
+			}
+			else {
+				add(sh, sl, qh, ql, out, o);
+				sh = out[o];
+				sl = out[o+1];
+			}
+			if (Math.abs(qh) <= EPS*Math.abs(th))
+				break;
+		}
+		switch ((int) j) {	// turn the answer back by however many quarter turns we took off
+		case 0:
+			out[o] = sh; out[o+1] = sl; out[o+2] = ch; out[o+3] = cl;
+			break;
+		case 1:
+			out[o] = ch; out[o+1] = cl; out[o+2] = -sh; out[o+3] = -sl;
+			break;
+		case -1:
+			out[o] = -ch; out[o+1] = -cl; out[o+2] = sh; out[o+3] = sl;
+			break;
+		default:
+			out[o] = -sh; out[o+1] = -sl; out[o+2] = -ch; out[o+3] = -cl;
+		}
+	}
+
+
+	public static void sinhcosh(double ah, double al, double[] out, int o) {	// sinh at o, and cosh at o+2
+		exp(ah, al, out, o);
+		final double eh = out[o], el = out[o+1];
+		div(1, 0, eh, el, out, o);
+		final double fh = out[o], fl = out[o+1];
+		add(eh, el, fh, fl, out, o+2);
+		out[o+2] /= 2;
+		out[o+3] /= 2;
+		if (Math.abs(ah) >= .5) {	// sinh cancels itself out near zero, so it needs a series there
+			add(eh, el, -fh, -fl, out, o);
+			out[o] /= 2;
+			out[o+1] /= 2;
+			return;
+		}
+		double sh = ah, sl = al, ph = ah, pl = al;
+		mul(ah, al, ah, al, out, o);
+		final double a2h = out[o], a2l = out[o+1];
+		for (int n = 3; n < INV_FACT.length/2 && ah != 0; n += 2) {
+			mul(ph, pl, a2h, a2l, out, o);
+			ph = out[o];
+			pl = out[o+1];
+			mul(ph, pl, INV_FACT[2*n], INV_FACT[2*n+1], out, o);
+			final double qh = out[o];
+			add(sh, sl, qh, out[o+1], out, o);
+			sh = out[o];
+			sl = out[o+1];
+			if (Math.abs(qh) <= EPS*Math.abs(sh))
+				break;
+		}
+		out[o] = sh;
+		out[o+1] = sl;
+	}
+
+
+	public static void arg(double xh, double xl, double yh, double yl, double[] out, int o) {	// the same branch cut as Tape, [0, 2pi) (needs four slots)
+		if (xh == 0 && yh == 0) {
+			out[o] = out[o+1] = 0;
+			return;
+		}
+		double z = Math.atan2(yh, xh);
+		if (z < 0)
+			z += TAU[0];
+		if (Double.isNaN(z) || Double.isInfinite(xh) || Double.isInfinite(yh)) {
+			out[o] = z;
+			out[o+1] = 0;
+			return;
+		}
+		sincos(z, 0, out, o);	// take a Newton step, z + (y*cos(z) - x*sin(z))/(x*cos(z) + y*sin(z))
+		final double sh = out[o], sl = out[o+1], ch = out[o+2], cl = out[o+3];
+		mul(yh, yl, ch, cl, out, o);
+		mul(xh, xl, sh, sl, out, o+2);
+		add(out[o], out[o+1], -out[o+2], -out[o+3], out, o);
+		add(z, 0, out[o]/(xh*ch + yh*sh), 0, out, o);
+		if (out[o] < 0)	// don't let the step push it over the cut
+			add(out[o], out[o+1], TAU[0], TAU[1], out, o);
+	}
+
+
+
+	/*
+	 * The complex operations. Each one works on the four doubles of register
+	 * a (and b), and puts its answer in register k.
+	 */
+
+	public static void add(double[] w, int a, int b, int k) {
+		add(w[a], w[a+1], w[b], w[b+1], w, k);
+		add(w[a+2], w[a+3], w[b+2], w[b+3], w, k+2);
+	}
+
+
+	public static void subtract(double[] w, int a, int b, int k) {
+		add(w[a], w[a+1], -w[b], -w[b+1], w, k);
+		add(w[a+2], w[a+3], -w[b+2], -w[b+3], w, k+2);
+	}
+
+
+	public static void multiply(double[] w, int a, int b, int k, double[] t) {
+		if (isReal(w, a) && isReal(w, b)) {
+			mul(w[a], w[a+1], w[b], w[b+1], w, k);
+			w[k+2] = w[k+3] = 0;
+			return;
+		}
+		mul(w[a], w[a+1], w[b], w[b+1], t, 0);
+		mul(w[a+2], w[a+3], w[b+2], w[b+3], t, 2);
+		mul(w[a], w[a+1], w[b+2], w[b+3], t, 4);
+		mul(w[a+2], w[a+3], w[b], w[b+1], t, 6);
+		add(t[0], t[1], -t[2], -t[3], w, k);
+		add(t[4], t[5], t[6], t[7], w, k+2);
+	}
+
+
+	public static void divide(double[] w, int a, int b, int k, double[] t) {
+		divide(w, a, w, b, w, k, t);
+	}
+
+
+	public static void divide(double[] n, int a, double[] d, int b, double[] w, int k, double[] t) {	// n[a]/d[b], which may be in different arrays (only uses the first eight of t)
+		final double xh = n[a], xl = n[a+1], yh = n[a+2], yl = n[a+3];
+		final double bh = d[b], bl = d[b+1], ch = d[b+2], cl = d[b+3];
+		if (ch == 0 && cl == 0) {	// real denominators are common enough to be worth it
+			div(xh, xl, bh, bl, w, k);
+			div(yh, yl, bh, bl, w, k+2);
+			return;
+		}
+		mul(bh, bl, bh, bl, t, 0);	// the squared magnitude of the denominator
+		mul(ch, cl, ch, cl, t, 2);
+		add(t[0], t[1], t[2], t[3], t, 0);
+		final double mh = t[0], ml = t[1];
+		mul(xh, xl, bh, bl, t, 0);
+		mul(yh, yl, ch, cl, t, 2);
+		mul(yh, yl, bh, bl, t, 4);
+		mul(xh, xl, ch, cl, t, 6);
+		add(t[0], t[1], t[2], t[3], t, 0);
+		add(t[4], t[5], -t[6], -t[7], t, 4);
+		div(t[0], t[1], mh, ml, w, k);
+		div(t[4], t[5], mh, ml, w, k+2);
+	}
+
+
+	public static void reciprocal(double[] w, int a, int k, double[] t) {
+		divide(ONE, 0, w, a, w, k, t);
+	}
+
+
+	public static void modulo(double[] w, int a, int b, int k, double[] t) {	// a - floor(a/b)*b, rounding toward zero like Tape
+		divide(w, a, b, k, t);
+		if (isReal(w, k)) {
+			double fh = Math.floor(Math.abs(w[k])), fl = 0;
+			if (fh == Math.abs(w[k]))	// the integer part of a double-double might be in both halves
+				fl = Math.floor(Math.signum(w[k])*w[k+1]);
+			if (w[k] < 0) {
+				fh = -fh;
+				fl = -fl;
+			}
+			w[k] = fh;
+			w[k+1] = fl;
+		}
+		else {
+			final double mag = Math.hypot(w[k], w[k+2]);
+			final double s = (mag == 0) ? 0 : Math.floor(mag)/mag;
+			mul(w[k], w[k+1], s, 0, w, k);
+			mul(w[k+2], w[k+3], s, 0, w, k+2);
+		}
+		multiply(w, k, b, k, t);	// multiply writes its answer after it is done reading it
+		subtract(w, a, k, k);
+	}
+
+
+	public static void power(double[] w, int a, int b, int k, double[] t) {
+		final double c = w[b];
+		if (isReal(w, b) && w[b+1] == 0 && c == Math.rint(c) && Math.abs(c) <= 1024) {	// integer powers are done by squaring
+			long n = Math.abs((long) c);
+			t[8] = 1;
+			t[9] = t[10] = t[11] = 0;
+			System.arraycopy(w, a, t, 12, 4);
+			while (n > 0) {
+				if ((n&1) == 1)
+					multiply(t, 8, 12, 8, t);
+				multiply(t, 12, 12, 12, t);
+				n >>= 1;
+			}
+			if (c < 0)
+				divide(ONE, 0, t, 8, w, k, t);
+			else
+				System.arraycopy(t, 8, w, k, 4);
+		}
+		else if (w[a] == 0 && w[a+2] == 0) {
+			w[k] = w[k+2] = (c > 0) ? 0 : Double.NaN;
+			w[k+1] = w[k+3] = 0;
+		}
+		else {	// everything else is exp(w*ln(z))
+			log(w, a, k, t);
+			multiply(w, k, b, k, t);
+			exp(w, k, k, t);
+		}
+	}
+
+
+	public static void exp(double[] w, int a, int k, double[] t) {
+		if (isReal(w, a)) {
+			exp(w[a], w[a+1], w, k);
+			w[k+2] = w[k+3] = 0;
+			return;
+		}
+		exp(w[a], w[a+1], t, 8);
+		sincos(w[a+2], w[a+3], t, 0);
+		mul(t[8], t[9], t[2], t[3], w, k);
+		mul(t[8], t[9], t[0], t[1], w, k+2);
+	}
+
+
+	public static void log(double[] w, int a, int k, double[] t) {
+		if (isReal(w, a) && w[a] > 0) {
+			log(w[a], w[a+1], w, k);
+			w[k+2] = w[k+3] = 0;
+			return;
+		}
+		final int e = Math.getExponent(Math.max(Math.abs(w[a]), Math.abs(w[a+2])));	// scale it so the squares can't overflow
+		final double xh = Math.scalb(w[a], -e), xl = Math.scalb(w[a+1], -e);
+		final double yh = Math.scalb(w[a+2], -e), yl = Math.scalb(w[a+3], -e);
+		arg(xh, xl, yh, yl, t, 0);
+		final double ah = t[0], al = t[1];
+		mul(xh, xl, xh, xl, t, 0);
+		mul(yh, yl, yh, yl, t, 2);
+		add(t[0], t[1], t[2], t[3], t, 0);
+		log(t[0], t[1], t, 0);
+		mul(e, 0, LN2[0], LN2[1], t, 2);
+		add(t[0]/2, t[1]/2, t[2], t[3], w, k);
+		w[k+2] = ah;
+		w[k+3] = al;
+	}
+
+
+	public static void sqrt(double[] w, int a, int k, double[] t) {
+		if (isReal(w, a) && w[a] >= 0) {
+			sqrt(w[a], w[a+1], w, k);
+			w[k+2] = w[k+3] = 0;
+			return;
+		}
+		log(w, a, k, t);	// anything else is exp(ln(z)/2), to keep the same branch cut as Tape
+		for (int i = 0; i < 4; i ++)
+			w[k+i] /= 2;
+		exp(w, k, k, t);
+	}
+
+
+	public static void abs(double[] w, int a, int k) {
+		if (isReal(w, a)) {
+			w[k] = Math.abs(w[a]);
+			w[k+1] = Math.signum(w[a])*w[a+1];
+		}
+		else {
+			final int e = Math.getExponent(Math.max(Math.abs(w[a]), Math.abs(w[a+2])));
+			final double xh = Math.scalb(w[a], -e), xl = Math.scalb(w[a+1], -e);
+			final double yh = Math.scalb(w[a+2], -e), yl = Math.scalb(w[a+3], -e);
+			mul(xh, xl, xh, xl, w, k);
+			mul(yh, yl, yh, yl, w, k+2);
+			add(w[k], w[k+1], w[k+2], w[k+3], w, k);
+			sqrt(w[k], w[k+1], w, k);
+			w[k] = Math.scalb(w[k], e);
+			w[k+1] = Math.scalb(w[k+1], e);
+		}
+		w[k+2] = w[k+3] = 0;
+	}
+
+
+	public static void sin(double[] w, int a, int k, double[] t) {	// sin(x)cosh(y) + i cos(x)sinh(y)
+		sincos(w[a], w[a+1], t, 0);
+		if (isReal(w, a)) {
+			w[k] = t[0];
+			w[k+1] = t[1];
+			w[k+2] = w[k+3] = 0;
+			return;
+		}
+		sinhcosh(w[a+2], w[a+3], t, 4);
+		mul(t[0], t[1], t[6], t[7], w, k);
+		mul(t[2], t[3], t[4], t[5], w, k+2);
+	}
+
+
+	public static void cos(double[] w, int a, int k, double[] t) {	// cos(x)cosh(y) - i sin(x)sinh(y)
+		sincos(w[a], w[a+1], t, 0);
+		if (isReal(w, a)) {
+			w[k] = t[2];
+			w[k+1] = t[3];
+			w[k+2] = w[k+3] = 0;
+			return;
+		}
+		sinhcosh(w[a+2], w[a+3], t, 4);
+		mul(t[2], t[3], t[6], t[7], w, k);
+		mul(-t[0], -t[1], t[4], t[5], w, k+2);
+	}
+
+
+	public static void sinh(double[] w, int a, int k, double[] t) {	// sinh(x)cos(y) + i cosh(x)sin(y)
+		sinhcosh(w[a], w[a+1], t, 4);
+		if (isReal(w, a)) {
+			w[k] = t[4];
+			w[k+1] = t[5];
+			w[k+2] = w[k+3] = 0;
+			return;
+		}
+		sincos(w[a+2], w[a+3], t, 0);
+		mul(t[4], t[5], t[2], t[3], w, k);
+		mul(t[6], t[7], t[0], t[1], w, k+2);
+	}
+
+
+	public static void cosh(double[] w, int a, int k, double[] t) {	// cosh(x)cos(y) + i sinh(x)sin(y)
+		sinhcosh(w[a], w[a+1], t, 4);
+		if (isReal(w, a)) {
+			w[k] = t[6];
+			w[k+1] = t[7];
+			w[k+2] = w[k+3] = 0;
+			return;
+		}
+		sincos(w[a+2], w[a+3], t, 0);
+		mul(t[6], t[7], t[2], t[3], w, k);
+		mul(t[4], t[5], t[0], t[1], w, k+2);
+	}
+
+
+	public static void asin(double[] w, int a, int k, int s, double[] t) {	// -i*asinh(iz), with s as a spare register
+		if (isReal(w, a) && Math.abs(w[a]) <= 1) {	// on the real segment, it's the angle of (sqrt(1-x^2), x)
+			final double sign = Math.signum(w[a]);
+			cosine(w[a], w[a+1], t, 0);
+			arg(t[0], t[1], sign*w[a], sign*w[a+1], w, k);
+			w[k] *= sign;
+			w[k+1] *= sign;
+			w[k+2] = w[k+3] = 0;
+			return;
+		}
+		timesI(w, a, s);
+		asinh(w, s, k, t);
+		rotateNeg90(w, k);
+	}
+
+
+	public static void acos(double[] w, int a, int k, double[] t) {	// -i*acosh(z)
+		if (isReal(w, a) && Math.abs(w[a]) <= 1) {	// on the real segment, it's the angle of (x, sqrt(1-x^2))
+			cosine(w[a], w[a+1], t, 0);
+			arg(w[a], w[a+1], t[0], t[1], w, k);
+			w[k+2] = w[k+3] = 0;
+			return;
+		}
+		acosh(w, a, k, t);
+		rotateNeg90(w, k);
+	}
+
+
+	public static void atan(double[] w, int a, int k, int s, double[] t) {	// -i*atanh(iz), with s as a spare register
+		if (isReal(w, a)) {	// on the real line, it's the angle of (1, x)
+			final double sign = Math.signum(w[a]);
+			arg(1, 0, sign*w[a], sign*w[a+1], w, k);
+			w[k] *= sign;
+			w[k+1] *= sign;
+			w[k+2] = w[k+3] = 0;
+			return;
+		}
+		timesI(w, a, s);
+		atanh(w, s, k, t);
+		rotateNeg90(w, k);
+	}
+
+
+	public static void asinh(double[] w, int a, int k, double[] t) {	// ln(z + sqrt(z^2+1))
+		square(w, a, k, t);
+		add(w[k], w[k+1], 1, 0, w, k);
+		sqrt(w, k, k, t);
+		if (isReal(w, a) && w[a] < 0) {	// on the negative reals, use the symmetry so the sum doesn't cancel
+			add(w[k], w[k+1], -w[a], -w[a+1], w, k);
+			log(w, k, k, t);
+			w[k] = -w[k];
+			w[k+1] = -w[k+1];
+			return;
+		}
+		add(w, k, a, k);
+		log(w, k, k, t);
+	}
+
+
+	public static void acosh(double[] w, int a, int k, double[] t) {	// ln(z + sqrt(z^2-1))
+		square(w, a, k, t);
+		add(w[k], w[k+1], -1, 0, w, k);
+		sqrt(w, k, k, t);
+		add(w, k, a, k);
+		log(w, k, k, t);
+	}
+
+
+	public static void atanh(double[] w, int a, int k, double[] t) {	// ln(sqrt((1+z)/(1-z)))
+		t[12] = 1;
+		t[13] = 0;
+		add(1, 0, w[a], w[a+1], t, 12);
+		t[14] = w[a+2];
+		t[15] = w[a+3];
+		add(1, 0, -w[a], -w[a+1], w, k);
+		w[k+2] = -w[a+2];
+		w[k+3] = -w[a+3];
+		divide(t, 12, w, k, w, k, t);
+		sqrt(w, k, k, t);
+		log(w, k, k, t);
+	}
+
+
+
+	private static boolean isReal(double[] w, int a) {
+		return w[a+2] == 0 && w[a+3] == 0;
+	}
+
+
+	private static void rotateNeg90(double[] w, int k) {	// multiply by -i
+		final double h = w[k], l = w[k+1];
+		w[k] = w[k+2];
+		w[k+1] = w[k+3];
+		w[k+2] = -h;
+		w[k+3] = -l;
+	}
+
+
+	private static void timesI(double[] w, int a, int k) {	// multiply by i, so that asin and atan can use asinh and atanh
+		final double h = w[a], l = w[a+1];
+		w[k] = -w[a+2];
+		w[k+1] = -w[a+3];
+		w[k+2] = h;
+		w[k+3] = l;
+	}
+
+
+	private static void cosine(double xh, double xl, double[] out, int o) {	// sqrt((1-x)(1+x)), the other side of a unit right triangle
+		add(1, 0, -xh, -xl, out, o);
+		final double dh = out[o], dl = out[o+1];
+		add(1, 0, xh, xl, out, o);
+		mul(dh, dl, out[o], out[o+1], out, o);
+		sqrt(out[o], out[o+1], out, o);
+	}
+
+
+	private static void square(double[] w, int a, int k, double[] t) {
+		multiply(w, a, a, k, t);
+	}
+
+
+	private static double productError(double a, double b, double p) {	// exactly what gets lost when a and b are multiplied (Dekker's two-product)
+		final double ah = splitHigh(a), al = a - ah;
+		final double bh = splitHigh(b), bl = b - bh;
+		return ((ah*bh - p) + ah*bl + al*bh) + al*bl;
+	}
+
+
+	private static double splitHigh(double a) {	// the top 26 bits of a
+		if (Math.abs(a) > SPLIT_MAX) {
+			final double s = a*3.7252902984619140625e-09;	// 2^-28
+			final double c = SPLITTER*s;
+			return (c - (c - s))*268435456.0;	// 2^28
+		}
+		final double c = SPLITTER*a;
+		return c - (c - a);
+	}
+
+}
@@ -0,0 +1,910 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import maths.auxiliary.LinearAlgebra.Range;
+import maths.auxiliary.LinearSolver.LinearMap;
+
+/**
+ * A class full of static methods that find the eigenvalues, eigenvectors and
+ * singular values of real matrices stored as flat, row-major arrays of
+ * doubles. Dense matrices are reduced by Householder reflections, to
+ * tridiagonal form if they are symmetric and Hessenberg form otherwise, and
+ * then finished off by QR iteration. Only a few of the eigenvalues of a big
+ * matrix are found by Arnoldi iteration (which is Lanczos iteration when the
+ * matrix is symmetric), which locks the pairs that have converged as it
+ * restarts and says how far off the rest are if it gives up; eigenvalues that
+ * are bunched together are better found by shift-and-invert. Eigenvalues
+ * always come out in order of decreasing magnitude, each with its eigenvector
+ * in the corresponding column.
+ *
+ * @author jkunimune
+ */
+public class Eigensolver {
+
+	private static final double EPS = Math.ulp(1.);
+	private static final int MAX_SWEEPS = 30;	// the number of QR sweeps we allow for each eigenvalue
+	private static final double KRYLOV_TOL = 1e-10;	// the relative residual at which a Ritz pair has converged
+	private static final int MAX_RESTARTS = 300;	// the number of times Arnoldi iteration may start over
+	private static final int MAX_STALL = 8;	// the number of restarts without progress before we try a bigger subspace
+	private static final int MAX_GROWTH = 4;	// how many times bigger than it started the subspace may get
+	private static final double CLUSTER = 1e-2;	// the relative gap under which eigenvalues are hard to tell apart
+
+
+
+	public static double[][] eigen(double[] a, int n, boolean vectors) throws ArithmeticException {	// {real parts, imaginary parts, vector real parts, vector imaginary parts}
+		final double[] h = a.clone();
+		if (isSymmetric(h, n)) {
+			final double[] d = new double[n], e = new double[n];
+			final double[] q = tridiagonalise(h, n, d, e, vectors);
+			final double[] zT = LinearAlgebra.transpose(q, n, n);	// the vectors are kept in rows while we work on them
+			tql(d, e, zT, n);
+			return sorted(d, new double[n], LinearAlgebra.transpose(zT, n, n), null, null, n, n, n);
+		}
+		else {
+			final double[] zT = LinearAlgebra.transpose(hessenberg(h, n, vectors), n, n);
+			schur(h, zT, n);
+			final double[] wr = new double[n], wi = new double[n];
+			eigenvalues(h, n, wr, wi);
+			if (zT == null)
+				return sorted(wr, wi, null, null, null, n, n, n);
+			final double[][] vec = schurVectors(h, zT, n, wr, wi);
+			return sorted(wr, wi, vec[0], vec[1], null, n, n, n);
+		}
+	}
+
+
+	public static double[] singularValues(double[] a, int n, int m) {	// the singular values of an n*m matrix, from biggest to smallest
+		final double[] b = (n >= m) ? a.clone() : LinearAlgebra.transpose(a, n, m);
+		final int rows = Math.max(n, m), cols = Math.min(n, m);
+		final double[] d = new double[cols], e = new double[cols];
+		bidiagonalise(b, rows, cols, d, e);
+
+		final double[] tgkD = new double[2*cols], tgkE = new double[2*cols];	// the eigenvalues of [0 B; B^T 0] are plus and minus the singular values
+		for (int i = 0; i < cols; i ++) {
+			tgkE[2*i] = d[i];
+			if (i < cols-1)
+				tgkE[2*i+1] = e[i];
+		}
+		tql(tgkD, tgkE, null, 2*cols);
+		Arrays.sort(tgkD);
+		final double[] sigma = new double[cols];
+		for (int i = 0; i < cols; i ++)
+			sigma[i] = Math.abs(tgkD[2*cols-1-i]);
+		return sigma;
+	}
+
+
+	public static double[][] largest(LinearMap a, int n, int k, boolean symmetric) {	// the k biggest eigenpairs of something we can only multiply by, in the same form as eigen() plus error bounds
+		int m = Math.min(n, Math.max(2*k+1, k+20));	// the size of the Krylov subspace
+		final int mMax = Math.min(n, MAX_GROWTH*m);	// which can grow this far if the eigenvalues are hard to tell apart
+		final Random rng = new Random(0);
+		double[][] v = new double[m+1][];
+		double[] h = new double[(m+1)*m];	// the projection of a onto v, which is Hessenberg until the first restart
+		v[0] = randomUnit(rng, v, 0, n);
+		int j0 = 0, locked = 0, stalled = 0;
+
+		for (int restart = 0; ; restart ++) {
+			for (int j = j0; j < m; j ++) {	// extend the Krylov decomposition
+				double[] w = new double[n];
+				a.apply(v[j], w);
+				final double before = norm(w);
+				orthogonalise(w, v, j+1, h, j, m);
+				final double beta = norm(w);
+				if (beta > 1e-12*before) {
+					v[j+1] = LinearAlgebra.scale(w, 1/beta);
+					h[(j+1)*m+j] = beta;
+				}
+				else {	// we have found an invariant subspace, so go somewhere new
+					v[j+1] = randomUnit(rng, v, j+1, n);
+					h[(j+1)*m+j] = 0;
+				}
+			}
+
+			final double[] small = Arrays.copyOf(h, m*m);	// solve the projected problem
+			if (symmetric)
+				for (int i = 0; i < m; i ++)
+					for (int j = 0; j < i; j ++)
+						small[i*m+j] = small[j*m+i] = (small[i*m+j] + small[j*m+i])/2;
+			final double[][] ritz = eigen(small, m, true);
+			final double beta = h[m*m+m-1];
+
+			final double scale = Math.max(Math.hypot(ritz[0][0], ritz[1][0]), Double.MIN_NORMAL);
+			final double[] residual = new double[m];
+			for (int i = 0; i < m; i ++)
+				residual[i] = beta*Math.hypot(ritz[2][(m-1)*m+i], (ritz[3] == null) ? 0 : ritz[3][(m-1)*m+i]);
+			int done = 0;	// the pairs that have converged, from the biggest down
+			while (done < m && residual[done] <= KRYLOV_TOL*scale)
+				done ++;
+			if (done >= k || restart >= MAX_RESTARTS)	// if we run out of patience, say how far off the rest are
+				return ritzPairs(ritz, v, n, m, k, residual, KRYLOV_TOL*scale);
+
+			if (done > locked) {
+				locked = done;
+				stalled = 0;
+			}
+			else
+				stalled ++;
+			final int next = (stalled >= MAX_STALL && m < mMax && isClustered(ritz, locked, k, scale)) ?
+					Math.min(mMax, 2*m) : m;	// make room to pull a cluster apart
+			if (next > m)
+				stalled = 0;
+
+			int keep = k + (m-k)/2;	// keep the best Ritz vectors, and don't split up conjugate pairs
+			if (ritz[1][keep-1] > 0)
+				keep ++;
+			if (keep >= m)
+				keep -= 2;
+			final double[] w = realBasis(ritz, m, keep);
+			final double[][] newV = new double[next+1][];
+			for (int c = 0; c < keep; c ++) {
+				newV[c] = new double[n];
+				for (int j = 0; j < m; j ++)
+					if (w[j*keep+c] != 0)
+						axpy(w[j*keep+c], v[j], newV[c]);
+			}
+			newV[keep] = v[m];
+
+			final double[] hw = LinearAlgebra.multiply(small, null, w, null, m, m, keep)[0];	// the new projection is w^T h w, with b along the bottom
+			final double[] r = LinearAlgebra.multiply(LinearAlgebra.transpose(w, m, keep), null,
+					hw, null, keep, m, keep)[0];
+			h = new double[(next+1)*next];
+			for (int i = 0; i < keep; i ++) {
+				System.arraycopy(r, i*keep, h, i*next, keep);
+				if (i >= Math.min(done, keep))	// converged pairs are locked by cutting them off from the residual
+					h[keep*next+i] = beta*w[(m-1)*keep+i];
+			}
+			v = newV;
+			m = next;
+			j0 = keep;
+		}
+	}
+
+
+	public static double[][] nearest(LinearMap inverse, int n, int k, double shift) {	// the k eigenpairs of a symmetric matrix closest to shift, given something that multiplies by (A - shift)^-1
+		final double[][] mu = largest(inverse, n, k, true);	// the biggest of these are the nearest of those
+		final double[] lambda = new double[k], err = new double[k];
+		for (int i = 0; i < k; i ++) {
+			lambda[i] = shift + 1/mu[0][i];
+			err[i] = mu[4][i]/(mu[0][i]*mu[0][i]);
+		}
+		return sorted(lambda, new double[k], mu[2], null, err, n, k, k);
+	}
+
+
+	public static double[][] biggest(double[][] a, double[][] b, int n, int k) {	// the k biggest of two sets of real eigenpairs
+		final int ka = a[0].length, kb = b[0].length;
+		final double[] wr = new double[ka+kb], err = new double[ka+kb], vr = new double[n*(ka+kb)];
+		System.arraycopy(a[0], 0, wr, 0, ka);
+		System.arraycopy(b[0], 0, wr, ka, kb);
+		System.arraycopy(a[4], 0, err, 0, ka);
+		System.arraycopy(b[4], 0, err, ka, kb);
+		for (int i = 0; i < n; i ++) {
+			System.arraycopy(a[2], i*ka, vr, i*(ka+kb), ka);
+			System.arraycopy(b[2], i*kb, vr, i*(ka+kb)+ka, kb);
+		}
+		return sorted(wr, new double[ka+kb], vr, null, err, n, ka+kb, k);
+	}
+
+
+	public static boolean isSymmetric(double[] a, int n) {
+		for (int i = 0; i < n; i ++)
+			for (int j = 0; j < i; j ++)
+				if (a[i*n+j] != a[j*n+i])
+					return false;
+		return true;
+	}
+
+
+
+	/*
+	 * Reductions by Householder reflections. Each reflection is I - 2vv^T for a
+	 * unit vector v, which is stored in case we need to put them all together.
+	 */
+
+	private static double[] tridiagonalise(final double[] a, final int n,
+			double[] d, double[] e, boolean vectors) {	// reduce a symmetric matrix, and return the reflections multiplied together
+		final double[][] vs = new double[n][];
+		for (int k = 0; k < n-2; k ++) {
+			final int k1 = k+1, len = n-k1;
+			final double[] v = new double[len];
+			for (int i = 0; i < len; i ++)
+				v[i] = a[(k1+i)*n+k];
+			e[k] = house(v);
+			if (e[k] == 0 && v[0] == 0)	continue;
+			vs[k] = v;
+
+			final double[] p = new double[len];	// a <- (I-2vv^T) a (I-2vv^T), which is a - 2vw^T - 2wv^T
+			LinearAlgebra.inParallel(len, (long) len*len, new Range() {
+				public void over(int i0, int i1) {
+					for (int i = i0; i < i1; i ++) {
+						double sum = 0;
+						for (int j = 0; j < len; j ++)
+							sum += a[(k1+i)*n+k1+j]*v[j];
+						p[i] = sum;
+					}
+				}
+			});
+			double vp = 0;
+			for (int i = 0; i < len; i ++)
+				vp += v[i]*p[i];
+			for (int i = 0; i < len; i ++)
+				p[i] -= vp*v[i];
+			LinearAlgebra.inParallel(len, (long) len*len, new Range() {
+				public void over(int i0, int i1) {
+					for (int i = i0; i < i1; i ++)
+						for (int j = 0; j < len; j ++)
+							a[(k1+i)*n+k1+j] -= 2*(v[i]*p[j] + p[i]*v[j]);
+				}
+			});
+		}
+		for (int i = 0; i < n; i ++)
+			d[i] = a[i*n+i];
+		if (n >= 2)
+			e[n-2] = a[(n-1)*n+n-2];
+		return vectors ? accumulate(vs, n) : null;
+	}
+
+
+	private static double[] hessenberg(final double[] a, final int n, boolean vectors) {	// reduce any square matrix, and return the reflections multiplied together
+		final double[][] vs = new double[n][];
+		for (int k = 0; k < n-2; k ++) {
+			final int k1 = k+1, len = n-k1;
+			final double[] v = new double[len];
+			for (int i = 0; i < len; i ++)
+				v[i] = a[(k1+i)*n+k];
+			final double alpha = house(v);
+			a[k1*n+k] = alpha;
+			for (int i = 1; i < len; i ++)
+				a[(k1+i)*n+k] = 0;
+			if (alpha == 0 && v[0] == 0)	continue;
+			vs[k] = v;
+
+			reflectRows(a, n, k1, k1, n, v);	// a <- (I-2vv^T) a
+			LinearAlgebra.inParallel(n, (long) n*len, new Range() {	// a <- a (I-2vv^T)
+				public void over(int i0, int i1) {
+					for (int i = i0; i < i1; i ++) {
+						double sum = 0;
+						for (int j = 0; j < len; j ++)
+							sum += a[i*n+k1+j]*v[j];
+						for (int j = 0; j < len; j ++)
+							a[i*n+k1+j] -= 2*sum*v[j];
+					}
+				}
+			});
+		}
+		return vectors ? accumulate(vs, n) : null;
+	}
+
+
+	private static void bidiagonalise(final double[] a, final int n, final int m,
+			double[] d, double[] e) {	// reduce a tall n*m matrix to upper bidiagonal form
+		for (int k = 0; k < m; k ++) {
+			final int len = n-k;
+			final double[] u = new double[len];	// clear out the column
+			for (int i = 0; i < len; i ++)
+				u[i] = a[(k+i)*m+k];
+			d[k] = house(u);
+			if (d[k] != 0 || u[0] != 0)
+				reflectRows(a, m, k, k+1, m, u);
+
+			if (k < m-2) {	// then the row
+				final int k1 = k+1, wid = m-k1;
+				final double[] v = new double[wid];
+				for (int j = 0; j < wid; j ++)
+					v[j] = a[k*m+k1+j];
+				e[k] = house(v);
+				if (e[k] == 0 && v[0] == 0)	continue;
+				LinearAlgebra.inParallel(n-k1, (long) (n-k1)*wid, new Range() {
+					public void over(int i0, int i1) {
+						for (int i = k1+i0; i < k1+i1; i ++) {
+							double sum = 0;
+							for (int j = 0; j < wid; j ++)
+								sum += a[i*m+k1+j]*v[j];
+							for (int j = 0; j < wid; j ++)
+								a[i*m+k1+j] -= 2*sum*v[j];
+						}
+					}
+				});
+			}
+			else if (k == m-2)
+				e[k] = a[k*m+k+1];
+		}
+	}
+
+
+	private static double house(double[] x) {	// turn x into the unit v such that (I-2vv^T)x = (alpha,0,...), and return alpha
+		double norm = 0;
+		for (double xi: x)
+			norm = Math.hypot(norm, xi);
+		if (norm == 0)
+			return 0;	// (leaving x as zero, which means no reflection)
+		final double alpha = -Math.copySign(norm, x[0]);
+		x[0] -= alpha;
+		final double vNorm = Math.sqrt(2*norm*(norm + Math.abs(x[0] + alpha)));
+		for (int i = 0; i < x.length; i ++)
+			x[i] /= vNorm;
+		return alpha;
+	}
+
+
+	private static void reflectRows(final double[] a, final int m, final int r0,
+			final int c0, final int c1, final double[] v) {	// apply I-2vv^T to rows r0 and below, in columns c0 until c1
+		final int len = v.length, wid = c1-c0;
+		if (wid <= 0)	return;
+		final double[] w = new double[wid];
+		LinearAlgebra.inParallel(wid, (long) len*wid, new Range() {	// w = v^T a, a few columns at a time
+			public void over(int j0, int j1) {
+				for (int i = 0; i < len; i ++) {
+					if (v[i] == 0)	continue;
+					for (int j = j0; j < j1; j ++)
+						w[j] += v[i]*a[(r0+i)*m+c0+j];
+				}
+			}
+		});
+		LinearAlgebra.inParallel(len, (long) len*wid, new Range() {	// then a -= 2vw
+			public void over(int i0, int i1) {
+				for (int i = i0; i < i1; i ++)
+					for (int j = 0; j < wid; j ++)
+						a[(r0+i)*m+c0+j] -= 2*v[i]*w[j];
+			}
+		});
+	}
+
+
+	private static double[] accumulate(double[][] vs, int n) {	// multiply the reflections together, from the last one back
+		final double[] q = LinearAlgebra.identity(n);
+		for (int k = n-3; k >= 0; k --)
+			if (vs[k] != null)
+				reflectRows(q, n, k+1, k+1, n, vs[k]);
+		return q;
+	}
+
+
+
+	/*
+	 * QR iteration. In both cases, the rotations or reflections are applied to
+	 * the part of the matrix that matters for the eigenvalues right away, but
+	 * everything else they touch (the eigenvectors, in particular) is saved up
+	 * and updated all at once, in parallel, after every sweep. The eigenvectors
+	 * are kept transposed, so that each of those updates runs along a row.
+	 */
+
+	private static void tql(double[] d, double[] e, double[] zT, int n) {	// implicit QL on a symmetric tridiagonal matrix, with e[i] coupling d[i] and d[i+1]
+		final int[] rotIdx = new int[n];
+		final double[] rotC = new double[n], rotS = new double[n];
+		e[n-1] = 0;
+		for (int l = 0; l < n; l ++) {
+			int iter = 0, m;
+			do {
+				for (m = l; m < n-1; m ++)	// look for a small off-diagonal element to split on
+					if (Math.abs(e[m]) <= EPS*(Math.abs(d[m]) + Math.abs(d[m+1])))
+						break;
+				if (m == l)	break;
+				if (iter ++ == MAX_SWEEPS)
+					throw new ArithmeticException("The eigenvalues did not converge.");
+
+				double g = (d[l+1] - d[l])/(2*e[l]);	// the Wilkinson shift
+				double r = Math.hypot(g, 1);
+				g = d[m] - d[l] + e[l]/(g + Math.copySign(r, g));
+				double s = 1, c = 1, p = 0;
+				int i, numRot = 0;
+				for (i = m-1; i >= l; i --) {	// chase the bulge up
+					final double f = s*e[i], b = c*e[i];
+					r = Math.hypot(f, g);
+					e[i+1] = r;
+					if (r == 0) {	// (recover from underflow)
+						d[i+1] -= p;
+						e[m] = 0;
+						break;
+					}
+					s = f/r;
+					c = g/r;
+					g = d[i+1] - p;
+					r = (d[i] - g)*s + 2*c*b;
+					p = s*r;
+					d[i+1] = g + p;
+					g = c*r - b;
+					rotIdx[numRot] = i;
+					rotC[numRot] = c;
+					rotS[numRot] = s;
+					numRot ++;
+				}
+				if (zT != null)
+					rotate(zT, n, rotIdx, rotC, rotS, numRot);
+				if (r == 0 && i >= l)	continue;
+				d[l] -= p;
+				e[l] = g;
+				e[m] = 0;
+			} while (m != l);
+		}
+	}
+
+
+	private static void rotate(final double[] zT, final int n, final int[] idx,
+			final double[] c, final double[] s, final int num) {	// apply a sweep's worth of rotations to the rows of zT
+		LinearAlgebra.inParallel(n, 6L*n*num, new Range() {
+			public void over(int j0, int j1) {
+				for (int t = 0; t < num; t ++) {
+					final int i = idx[t]*n, i1 = i+n;
+					for (int j = j0; j < j1; j ++) {
+						final double f = zT[i1+j];
+						zT[i1+j] = s[t]*zT[i+j] + c[t]*f;
+						zT[i+j] = c[t]*zT[i+j] - s[t]*f;
+					}
+				}
+			}
+		});
+	}
+
+
+	private static void schur(double[] h, double[] zT, int n) throws ArithmeticException {	// Francis double-shift QR, down to quasi-triangular form
+		double norm = 0;
+		for (double x: h)
+			norm += Math.abs(x);
+		int hi = n-1, iter = 0, total = 0;
+		while (hi >= 0) {
+			int l = hi;
+			while (l > 0) {	// look for a small subdiagonal element to split on
+				double s = Math.abs(h[(l-1)*n+l-1]) + Math.abs(h[l*n+l]);
+				if (s == 0)
+					s = norm;
+				if (Math.abs(h[l*n+l-1]) < EPS*s) {
+					h[l*n+l-1] = 0;
+					break;
+				}
+				l --;
+			}
+
+			if (l == hi) {	// one real eigenvalue has converged
+				hi --;
+				iter = 0;
+			}
+			else if (l == hi-1) {	// or a pair of them
+				if (zT != null)
+					split(h, zT, n, hi);
+				hi -= 2;
+				iter = 0;
+			}
+			else {
+				if (++ total > MAX_SWEEPS*n)
+					throw new ArithmeticException("The eigenvalues did not converge.");
+				sweep(h, zT, n, l, hi, iter ++);
+			}
+		}
+	}
+
+
+	private static void sweep(final double[] h, final double[] zT, final int n,
+			final int l, final int hi, int iter) {	// chase one double-shift bulge down the active window
+		double a00 = h[(hi-1)*n+hi-1], a01 = h[(hi-1)*n+hi];
+		double a10 = h[hi*n+hi-1], a11 = h[hi*n+hi];
+		if (iter == 10 || iter == 20) {	// an exceptional shift, in case we are stuck
+			final double w = Math.abs(h[hi*n+hi-1]) + Math.abs(h[(hi-1)*n+hi-2]);
+			a00 = .75*w + h[hi*n+hi];
+			a01 = -.4375*w;
+			a10 = w;
+			a11 = a00;
+		}
+		final double s = a00 + a11, t = a00*a11 - a01*a10;
+		double x = h[l*n+l]*h[l*n+l] + h[l*n+l+1]*h[(l+1)*n+l] - s*h[l*n+l] + t;
+		double y = h[(l+1)*n+l]*(h[l*n+l] + h[(l+1)*n+l+1] - s);
+		double w = h[(l+1)*n+l]*h[(l+2)*n+l+1];
+
+		final int num = hi-l;
+		final double[] v1 = new double[num], v2 = new double[num], tau = new double[num];
+		for (int r = 0; r < num; r ++) {
+			final int k = l+r;
+			final boolean three = k < hi-1;	// the last reflection only has two rows
+			final double norm = Math.sqrt(x*x + y*y + (three ? w*w : 0));
+			if (norm != 0) {
+				final double alpha = -Math.copySign(norm, x);
+				final double d = x - alpha;
+				v1[r] = y/d;
+				v2[r] = three ? w/d : 0;
+				tau[r] = 2/(1 + v1[r]*v1[r] + v2[r]*v2[r]);
+
+				for (int j = Math.max(l, k-1); j <= hi; j ++) {	// reflect the rows
+					final double f = tau[r]*(h[k*n+j] + v1[r]*h[(k+1)*n+j] + (three ? v2[r]*h[(k+2)*n+j] : 0));
+					h[k*n+j] -= f;
+					h[(k+1)*n+j] -= f*v1[r];
+					if (three)
+						h[(k+2)*n+j] -= f*v2[r];
+				}
+				if (k > l) {
+					h[k*n+k-1] = alpha;
+					h[(k+1)*n+k-1] = 0;
+					if (three)
+						h[(k+2)*n+k-1] = 0;
+				}
+				for (int i = l; i <= Math.min(k+3, hi); i ++) {	// and the columns
+					final double f = tau[r]*(h[i*n+k] + v1[r]*h[i*n+k+1] + (three ? v2[r]*h[i*n+k+2] : 0));
+					h[i*n+k] -= f;
+					h[i*n+k+1] -= f*v1[r];
+					if (three)
+						h[i*n+k+2] -= f*v2[r];
+				}
+			}
+			if (k < hi-1) {
+				x = h[(k+1)*n+k];
+				y = h[(k+2)*n+k];
+				if (k < hi-2)
+					w = h[(k+3)*n+k];
+			}
+		}
+
+		if (zT == null)	return;	// eigenvalues alone don't care about anything outside the window
+		final double[] above = LinearAlgebra.transpose(Arrays.copyOfRange(h, 0, l*n), l, n);	// the columns of the rows above the window
+		final Range reflectRows = new Range() {	// catch up the Schur vectors and the part above the window
+			public void over(int j0, int j1) {
+				for (int r = 0; r < num; r ++) {
+					if (tau[r] == 0)	continue;
+					final boolean three = l+r < hi-1;
+					for (int j = j0; j < j1; j ++) {
+						final double[] mat = (j < n) ? zT : above;
+						final int m = (j < n) ? n : l, col = (j < n) ? j : j-n;
+						final int k = (l+r)*m + col;
+						final double f = tau[r]*(mat[k] + v1[r]*mat[k+m] + (three ? v2[r]*mat[k+2*m] : 0));
+						mat[k] -= f;
+						mat[k+m] -= f*v1[r];
+						if (three)
+							mat[k+2*m] -= f*v2[r];
+					}
+				}
+			}
+		};
+		LinearAlgebra.inParallel(n+l, 6L*(n+l)*num, reflectRows);
+		for (int i = 0; i < l; i ++)
+			for (int j = l; j <= hi; j ++)
+				h[i*n+j] = above[j*l+i];
+
+		LinearAlgebra.inParallel(n-hi-1, 6L*(n-hi-1)*num, new Range() {	// and the columns right of it
+			public void over(int j0, int j1) {
+				for (int r = 0; r < num; r ++) {
+					if (tau[r] == 0)	continue;
+					final int k = l+r;
+					final boolean three = k < hi-1;
+					for (int j = hi+1+j0; j < hi+1+j1; j ++) {
+						final double f = tau[r]*(h[k*n+j] + v1[r]*h[(k+1)*n+j] + (three ? v2[r]*h[(k+2)*n+j] : 0));
+						h[k*n+j] -= f;
+						h[(k+1)*n+j] -= f*v1[r];
+						if (three)
+							h[(k+2)*n+j] -= f*v2[r];
+					}
+				}
+			}
+		});
+	}
+
+
+	private static void split(double[] h, double[] zT, int n, int hi) {	// rotate a 2*2 block with real eigenvalues into triangular form
+		final int p = hi-1;
+		final double a = h[p*n+p], b = h[p*n+hi], c = h[hi*n+p], d = h[hi*n+hi];
+		final double half = (a - d)/2, disc = half*half + b*c;
+		if (disc < 0 || c == 0)	return;
+		final double vx = half + Math.copySign(Math.sqrt(disc), half), vy = c;	// the eigenvector, which we rotate onto the first axis
+		final double r = Math.hypot(vx, vy), cs = vx/r, sn = vy/r;
+		for (int j = p; j < n; j ++) {
+			final double r1 = h[p*n+j], r2 = h[hi*n+j];
+			h[p*n+j] = cs*r1 + sn*r2;
+			h[hi*n+j] = -sn*r1 + cs*r2;
+		}
+		for (int i = 0; i <= hi; i ++) {
+			final double c1 = h[i*n+p], c2 = h[i*n+hi];
+			h[i*n+p] = cs*c1 + sn*c2;
+			h[i*n+hi] = -sn*c1 + cs*c2;
+		}
+		for (int i = 0; i < n; i ++) {
+			final double c1 = zT[p*n+i], c2 = zT[hi*n+i];
+			zT[p*n+i] = cs*c1 + sn*c2;
+			zT[hi*n+i] = -sn*c1 + cs*c2;
+		}
+		h[hi*n+p] = 0;
+	}
+
+
+	private static void eigenvalues(double[] h, int n, double[] wr, double[] wi) {	// read the eigenvalues off of a quasi-triangular matrix
+		for (int i = 0; i < n; i ++) {
+			if (i < n-1 && h[(i+1)*n+i] != 0) {
+				final double a = h[i*n+i], b = h[i*n+i+1], c = h[(i+1)*n+i], d = h[(i+1)*n+i+1];
+				final double mid = (a + d)/2, half = (a - d)/2, disc = half*half + b*c;
+				if (disc >= 0) {
+					wr[i] = mid + Math.copySign(Math.sqrt(disc), half);
+					wr[i+1] = (wr[i] == 0) ? mid - Math.copySign(Math.sqrt(disc), half) : (a*d - b*c)/wr[i];
+				}
+				else {
+					wr[i] = wr[i+1] = mid;
+					wi[i] = Math.sqrt(-disc);
+					wi[i+1] = -wi[i];
+				}
+				i ++;
+			}
+			else
+				wr[i] = h[i*n+i];
+		}
+	}
+
+
+	private static double[][] schurVectors(final double[] h, final double[] zT, final int n,
+			final double[] wr, final double[] wi) {	// back-substitute for the eigenvectors of the Schur form, then rotate them back
+		double sum = 0;
+		for (double x: h)
+			sum += Math.abs(x);
+		final double small = Math.max(EPS*sum, Double.MIN_NORMAL);
+		final double[] vr = new double[n*n], vi = new double[n*n];
+		LinearAlgebra.inParallel(n, (long) n*n*n, new Range() {
+			public void over(int i0, int i1) {
+				for (int p = i0; p < i1; p ++) {
+					if (wi[p] < 0)	continue;	// the conjugates get filled in with their partners
+					final int top = (wi[p] > 0) ? p+1 : p;
+					final double lr = wr[p], li = wi[p];
+					final double[] yr = new double[top+1], yi = new double[top+1];
+					if (wi[p] == 0)
+						yr[p] = 1;
+					else {
+						yr[p] = h[p*n+p+1];
+						yr[p+1] = lr - h[p*n+p];
+						yi[p+1] = li;
+					}
+
+					for (int i = p-1; i >= 0; i --) {
+						if (i > 0 && h[i*n+i-1] != 0) {	// a 2*2 block takes two rows at once
+							double r1r = 0, r1i = 0, r2r = 0, r2i = 0;
+							for (int j = i+1; j <= top; j ++) {
+								r1r += h[(i-1)*n+j]*yr[j];
+								r1i += h[(i-1)*n+j]*yi[j];
+								r2r += h[i*n+j]*yr[j];
+								r2i += h[i*n+j]*yi[j];
+							}
+							final double m00r = h[(i-1)*n+i-1] - lr, m11r = h[i*n+i] - lr;
+							final double m01 = h[(i-1)*n+i], m10 = h[i*n+i-1];
+							double dr = m00r*m11r - li*li - m01*m10, di = -li*(m00r + m11r);
+							if (dr == 0 && di == 0)
+								dr = small;
+							final double d2 = dr*dr + di*di;
+							final double ar = -(m11r*r1r + li*r1i) + m01*r2r, ai = -(m11r*r1i - li*r1r) + m01*r2i;	// Cramer's rule
+							final double br = -(m00r*r2r + li*r2i) + m10*r1r, bi = -(m00r*r2i - li*r2r) + m10*r1i;
+							yr[i-1] = (ar*dr + ai*di)/d2;
+							yi[i-1] = (ai*dr - ar*di)/d2;
+							yr[i] = (br*dr + bi*di)/d2;
+							yi[i] = (bi*dr - br*di)/d2;
+							i --;
+						}
+						else {
+							double rr = 0, ri = 0;
+							for (int j = i+1; j <= top; j ++) {
+								rr += h[i*n+j]*yr[j];
+								ri += h[i*n+j]*yi[j];
+							}
+							double dr = h[i*n+i] - lr, di = -li;
+							if (dr == 0 && di == 0)
+								dr = small;
+							final double d2 = dr*dr + di*di;
+							yr[i] = -(rr*dr + ri*di)/d2;
+							yi[i] = -(ri*dr - rr*di)/d2;
+						}
+					}
+
+					final double[] xr = new double[n], xi = new double[n];
+					for (int j = 0; j <= top; j ++) {
+						axpy(yr[j], zT, j*n, xr);
+						axpy(yi[j], zT, j*n, xi);
+					}
+					normalise(xr, xi);
+					for (int r = 0; r < n; r ++) {
+						vr[r*n+p] = xr[r];
+						vi[r*n+p] = xi[r];
+						if (top > p) {
+							vr[r*n+p+1] = xr[r];
+							vi[r*n+p+1] = -xi[r];
+						}
+					}
+				}
+			}
+		});
+		return new double[][] {vr, vi};
+	}
+
+
+
+	/*
+	 * Helpers for Arnoldi iteration.
+	 */
+
+	private static void orthogonalise(final double[] w, final double[][] v, final int j,
+			double[] h, int col, int m) {	// take v[0] through v[j-1] out of w twice, adding the coefficients to column col of h
+		final int n = w.length;
+		for (int pass = 0; pass < 2; pass ++) {
+			final double[] c = new double[j];
+			LinearAlgebra.inParallel(j, (long) j*n, new Range() {
+				public void over(int i0, int i1) {
+					for (int i = i0; i < i1; i ++) {
+						double sum = 0;
+						for (int l = 0; l < n; l ++)
+							sum += v[i][l]*w[l];
+						c[i] = sum;
+					}
+				}
+			});
+			LinearAlgebra.inParallel(n, (long) j*n, new Range() {
+				public void over(int l0, int l1) {
+					for (int i = 0; i < j; i ++)
+						for (int l = l0; l < l1; l ++)
+							w[l] -= c[i]*v[i][l];
+				}
+			});
+			if (h != null)
+				for (int i = 0; i < j; i ++)
+					h[i*m+col] += c[i];
+		}
+	}
+
+
+	private static double[] randomUnit(Random rng, double[][] v, int j, int n) {	// a random unit vector orthogonal to the first j of v
+		final double[] x = new double[n];
+		for (int i = 0; i < n; i ++)
+			x[i] = rng.nextDouble() - .5;
+		orthogonalise(x, v, j, null, 0, 0);
+		return LinearAlgebra.scale(x, 1/norm(x));
+	}
+
+
+	private static double[] realBasis(double[][] ritz, int m, int keep) {	// an orthonormal basis for the first keep Ritz vectors, as columns of an m*keep matrix
+		final double[][] cols = new double[keep][];
+		for (int c = 0; c < keep; c ++) {
+			final double[] x = new double[m];
+			final boolean imag = c > 0 && ritz[1][c] < 0;	// the second of a conjugate pair stands for the imaginary part
+			for (int i = 0; i < m; i ++)
+				x[i] = imag ? ritz[3][i*m+c] : ritz[2][i*m+c];
+			orthogonalise(x, cols, c, null, 0, 0);
+			final double norm = norm(x);
+			cols[c] = (norm > 0) ? LinearAlgebra.scale(x, 1/norm) : x;
+		}
+		final double[] w = new double[m*keep];
+		for (int c = 0; c < keep; c ++)
+			for (int i = 0; i < m; i ++)
+				w[i*keep+c] = cols[c][i];
+		return w;
+	}
+
+
+	private static double[][] ritzPairs(double[][] ritz, double[][] v, int n, int m, int k,
+			double[] residual, double tol) {	// put together the first k Ritz values and vectors, and how far off any unconverged ones might be
+		final double[] wr = Arrays.copyOf(ritz[0], k), wi = Arrays.copyOf(ritz[1], k), err = new double[k];
+		final double[] vr = new double[n*k], vi = new double[n*k];
+		for (int c = 0; c < k; c ++) {
+			final double[] xr = new double[n], xi = new double[n];
+			for (int j = 0; j < m; j ++) {
+				axpy(ritz[2][j*m+c], v[j], xr);
+				if (ritz[3] != null)
+					axpy(ritz[3][j*m+c], v[j], xi);
+			}
+			normalise(xr, xi);
+			for (int i = 0; i < n; i ++) {
+				vr[i*k+c] = xr[i];
+				vi[i*k+c] = xi[i];
+			}
+			err[c] = (residual[c] > tol) ? residual[c] : 0;
+		}
+		return new double[][] {wr, wi, vr, LinearAlgebra.isZero(vi) ? null : vi, err};
+	}
+
+
+	private static boolean isClustered(double[][] ritz, int from, int k, double scale) {	// are any of the Ritz values we still want too close to their neighbours?
+		for (int i = from; i < k && i+1 < ritz[0].length; i ++)
+			if (Math.hypot(ritz[0][i] - ritz[0][i+1], ritz[1][i] - ritz[1][i+1]) < CLUSTER*scale
+					&& ritz[1][i] <= 0)	// (the two halves of a conjugate pair don't count)
+				return true;
+		return false;
+	}
+
+
+
+	private static double[][] sorted(final double[] wr, final double[] wi,
+			double[] vr, double[] vi, double[] err, int n, int cols, int k) {	// put the eigenpairs in order of decreasing magnitude, and keep the first k
+		final Integer[] order = new Integer[cols];
+		for (int i = 0; i < cols; i ++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer i, Integer j) {
+				final int byMag = Double.compare(Math.hypot(wr[j], wi[j]), Math.hypot(wr[i], wi[i]));
+				if (byMag != 0)	return byMag;
+				final int byRe = Double.compare(wr[j], wr[i]);
+				if (byRe != 0)	return byRe;
+				return Double.compare(wi[j], wi[i]);
+			}
+		});
+
+		final double[] sr = new double[k], si = new double[k];
+		final double[] se = (err == null) ? null : new double[k];
+		final double[] svr = (vr == null) ? null : new double[n*k];
+		final double[] svi = (vi == null) ? null : new double[n*k];
+		for (int c = 0; c < k; c ++) {
+			sr[c] = wr[order[c]];
+			si[c] = wi[order[c]];
+			if (err != null)
+				se[c] = err[order[c]];
+			if (vr != null) {
+				final double[] xr = new double[n], xi = new double[n];
+				for (int i = 0; i < n; i ++) {
+					xr[i] = vr[i*cols+order[c]];
+					xi[i] = (vi == null) ? 0 : vi[i*cols+order[c]];
+				}
+				normalise(xr, xi);
+				for (int i = 0; i < n; i ++) {
+					svr[i*k+c] = xr[i];
+					if (svi != null)
+						svi[i*k+c] = xi[i];
+				}
+			}
+		}
+		return new double[][] {sr, si, svr, svi, se};
+	}
+
+
+	private static void normalise(double[] xr, double[] xi) {	// scale to unit length, with the biggest component real and positive
+		int big = 0;
+		double norm = 0;
+		for (int i = 0; i < xr.length; i ++) {
+			final double mag = Math.hypot(xr[i], xi[i]);
+			norm = Math.hypot(norm, mag);
+			if (mag > Math.hypot(xr[big], xi[big]))
+				big = i;
+		}
+		if (norm == 0)	return;
+		final double mag = Math.hypot(xr[big], xi[big]);
+		final double cr = xr[big]/mag/norm, ci = -xi[big]/mag/norm;
+		for (int i = 0; i < xr.length; i ++) {
+			final double t = xr[i]*cr - xi[i]*ci;
+			xi[i] = xr[i]*ci + xi[i]*cr;
+			xr[i] = t;
+		}
+		xi[big] = 0;
+	}
+
+
+	private static void axpy(double a, double[] x, double[] y) {	// y += ax
+		axpy(a, x, 0, y);
+	}
+
+
+	private static void axpy(double a, double[] x, int offset, double[] y) {	// y += ax, starting partway through x
+		if (a == 0)	return;
+		for (int i = 0; i < y.length; i ++)
+			y[i] += a*x[offset+i];
+	}
+
+
+	private static double norm(double[] x) {
+		double sum = 0;
+		for (double xi: x)
+			sum += xi*xi;
+		return Math.sqrt(sum);
+	}
+
+}
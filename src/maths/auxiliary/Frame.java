@@ -0,0 +1,277 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import maths.Constant;
+
+/**
+ * A set of registers on which to play a Tape. Frames are cheap to make,
+ * but not thread-safe, so every thread should have its own. A Tape that is
+ * wide gets played by a WideFrame instead, and rounded back to doubles at the
+ * end, though its outputs keep both words; either way, the derivatives come
+ * from a Linearization of whatever the registers hold.
+ *
+ * @author jkunimune
+ */
+public class Frame {
+
+	private final Tape tape;
+	private final int[] ops, lft, rgt, outputs;
+	private final double[] cRe, cIm;
+
+	private final double[] re, im;
+	private final double[] point;	// where to look things up in a LookupTable
+	private final WideFrame wide;	// the double-double registers, if there are any
+	private Linearization linear;	// how each register depends on its operands, once someone asks
+
+
+
+	Frame(Tape tape) {
+		this.tape = tape;
+		this.ops = tape.ops;
+		this.lft = tape.lft;
+		this.rgt = tape.rgt;
+		this.outputs = tape.outputs;
+		this.cRe = tape.cRe;
+		this.cIm = tape.cIm;
+		this.re = new double[tape.size()];
+		this.im = new double[tape.size()];
+		this.point = new double[LookupTable.MAX_DIMS];
+		this.wide = tape.isWide() ? new WideFrame(tape) : null;
+	}
+
+
+
+	public Frame evaluate(double... x) {	// run the Tape with the given inputs
+		return play(x, true);
+	}
+
+
+	Frame evaluateExactly(double... x) {	// run the Tape without any LookupTables, so that every register gets set
+		return play(x, false);
+	}
+
+
+	private Frame play(double[] x, boolean lookup) {
+		if (wide != null) {
+			wide.play(x, re, im);
+			return this;
+		}
+		final double[] re = this.re, im = this.im;
+		for (int k = 0; k < re.length; k ++) {
+			final int a = lft[k], b = rgt[k];
+			switch (ops[k]) {
+			case Tape.CONST:
+				re[k] = cRe[k];
+				im[k] = cIm[k];
+				break;
+			case Tape.INPUT:
+				re[k] = x[a];
+				im[k] = 0;
+				break;
+			case Tape.ADD:
+				re[k] = re[a] + re[b];
+				im[k] = im[a] + im[b];
+				break;
+			case Tape.ERR:
+				re[k] = ComplexFunctions.roundoff(re[a], re[b]);
+				im[k] = ComplexFunctions.roundoff(im[a], im[b]);
+				break;
+			case Tape.SUB:
+				re[k] = re[a] - re[b];
+				im[k] = im[a] - im[b];
+				break;
+			case Tape.NEG:
+				re[k] = -re[a];
+				im[k] = -im[a];
+				break;
+			case Tape.MUL:
+				re[k] = re[a]*re[b] - im[a]*im[b];
+				im[k] = re[a]*im[b] + im[a]*re[b];
+				break;
+			case Tape.DIV:
+				ComplexFunctions.div(re[a], im[a], re[b], im[b], re, im, k);
+				break;
+			case Tape.MOD:
+				ComplexFunctions.mod(re[a], im[a], re[b], im[b], re, im, k);
+				break;
+			case Tape.POW:
+				ComplexFunctions.pow(re[a], im[a], re[b], im[b], re, im, k);
+				break;
+			case Tape.RECIP:
+				ComplexFunctions.div(1, 0, re[a], im[a], re, im, k);
+				break;
+			case Tape.EXP:
+				ComplexFunctions.exp(re[a], im[a], re, im, k);
+				break;
+			case Tape.LN:
+				ComplexFunctions.ln(re[a], im[a], re, im, k);
+				break;
+			case Tape.SQRT:
+				ComplexFunctions.sqrt(re[a], im[a], re, im, k);
+				break;
+			case Tape.ABS:
+				re[k] = Math.hypot(re[a], im[a]);
+				im[k] = 0;
+				break;
+			case Tape.ARG:
+				re[k] = ComplexFunctions.arg(re[a], im[a]);
+				im[k] = 0;
+				break;
+			case Tape.RE:
+				re[k] = re[a];
+				im[k] = 0;
+				break;
+			case Tape.IM:
+				re[k] = im[a];
+				im[k] = 0;
+				break;
+			case Tape.SIN:
+				re[k] = Math.sin(re[a])*Math.cosh(im[a]);
+				im[k] = Math.cos(re[a])*Math.sinh(im[a]);
+				break;
+			case Tape.COS:
+				re[k] = Math.cos(re[a])*Math.cosh(im[a]);
+				im[k] = -Math.sin(re[a])*Math.sinh(im[a]);
+				break;
+			case Tape.SINH:
+				re[k] = Math.sinh(re[a])*Math.cos(im[a]);
+				im[k] = Math.cosh(re[a])*Math.sin(im[a]);
+				break;
+			case Tape.COSH:
+				re[k] = Math.cosh(re[a])*Math.cos(im[a]);
+				im[k] = Math.sinh(re[a])*Math.sin(im[a]);
+				break;
+			case Tape.ASIN:	// asin(z) = -i*asinh(iz), same as Constant
+				ComplexFunctions.asinh(-im[a], re[a], re, im, k);
+				ComplexFunctions.rotNeg90(re, im, k);
+				break;
+			case Tape.ACOS:
+				ComplexFunctions.acosh(re[a], im[a], re, im, k);
+				ComplexFunctions.rotNeg90(re, im, k);
+				break;
+			case Tape.ATAN:
+				ComplexFunctions.atanh(-im[a], re[a], re, im, k);
+				ComplexFunctions.rotNeg90(re, im, k);
+				break;
+			case Tape.ASINH:
+				ComplexFunctions.asinh(re[a], im[a], re, im, k);
+				break;
+			case Tape.ACOSH:
+				ComplexFunctions.acosh(re[a], im[a], re, im, k);
+				break;
+			case Tape.ATANH:
+				ComplexFunctions.atanh(re[a], im[a], re, im, k);
+				break;
+			case Tape.ERF:
+			case Tape.ERFC:
+			case Tape.ERFI:
+			case Tape.GAMMA:
+			case Tape.LGAMMA:
+			case Tape.AIRY_AI:
+			case Tape.AIRY_BI:
+				ComplexFunctions.special(ops[k], re[a], im[a], 0, 0, re, im, k);
+				break;
+			case Tape.BETA:
+			case Tape.BESSEL_J:
+			case Tape.BESSEL_Y:
+			case Tape.BESSEL_I:
+			case Tape.BESSEL_K:
+				ComplexFunctions.special(ops[k], re[a], im[a], re[b], im[b], re, im, k);
+				break;
+			case Tape.TABLE:
+				if (lookup)
+					k = lookUp(tape.tables.get(k), k);
+				break;
+			case Tape.COPY:
+				re[k] = re[a];
+				im[k] = im[a];
+				break;
+			}
+		}
+		return this;
+	}
+
+
+	private int lookUp(Tape.Lookup look, int k) {	// interpolate, if we can, and say which instruction to go on from
+		for (int d = 0; d < look.inputs.length; d ++) {
+			if (im[look.inputs[d]] != 0)
+				return k;	// the table only knows about real numbers
+			point[d] = re[look.inputs[d]];
+		}
+		if (!look.table.contains(point))
+			return k;
+		look.table.get(point, re, im, look.end);
+		return look.end;
+	}
+
+
+	public double getReal(int i) {	// the real part of the ith output
+		return re[outputs[i]];
+	}
+
+
+	public double getImag(int i) {	// the imaginary part of the ith output
+		return im[outputs[i]];
+	}
+
+
+	public Constant get(int i) {	// the ith output, with every digit the registers hold
+		final BigComplex z = (wide != null) ? wide.get(outputs[i]) : null;
+		if (z != null)
+			return new Constant(z);
+		return new Constant(getReal(i), getImag(i));
+	}
+
+
+	double registerReal(int k) {	// the real part of register k, not just the outputs
+		return re[k];
+	}
+
+
+	double registerImag(int k) {
+		return im[k];
+	}
+
+
+	public Frame differentiate(double... x) {	// run the Tape, and find the local derivatives of every register
+		evaluateExactly(x);	// a table's derivatives would need every register it skips
+		if (linear == null)
+			linear = new Linearization(tape, re, im);
+		linear.update();
+		return this;
+	}
+
+
+	public void jvp(double[] v, double[] tRe, double[] tIm, double[] outRe, double[] outIm) {	// the derivative of the outputs along v
+		linear.jvp(v, tRe, tIm, outRe, outIm);
+	}
+
+
+	public CSRMatrix jacobian(double... x) {	// the derivative of every output by every input, carried forward as sparse rows
+		differentiate(x);
+		return linear.jacobian();
+	}
+
+}
@@ -0,0 +1,215 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import maths.Constant;
+
+/**
+ * The factorisation PA = LU of a square matrix, done with partial pivoting.
+ * L and U are stored together in one flat array, with L's unit diagonal left
+ * implicit.
+ *
+ * @author jkunimune
+ */
+public class LUDecomposition {
+
+	private final int n;
+	private final double[] re, im;	// L below the diagonal, U on and above it
+	private final int[] perm;	// perm[i] is the row of A that ended up in row i
+	private final boolean odd;	// was there an odd number of row swaps?
+	private final boolean singular;
+
+
+
+	public LUDecomposition(int n, double[] aRe, double[] aIm) {
+		this.n = n;
+		this.re = aRe.clone();
+		this.im = (aIm == null) ? null : aIm.clone();
+		this.perm = new int[n];
+		for (int i = 0; i < n; i ++)
+			perm[i] = i;
+
+		boolean odd = false, singular = false;
+		for (int k = 0; k < n; k ++) {
+			int p = k;	// find the biggest pivot in this column
+			double max = magnitude(k*n+k);
+			for (int i = k+1; i < n; i ++) {
+				if (magnitude(i*n+k) > max) {
+					max = magnitude(i*n+k);
+					p = i;
+				}
+			}
+			if (max == 0) {
+				singular = true;
+				continue;
+			}
+			if (p != k) {
+				swapRows(p, k);
+				odd = !odd;
+			}
+
+			if (im == null)
+				eliminateReal(k);
+			else
+				eliminateComplex(k);
+		}
+		this.odd = odd;
+		this.singular = singular;
+	}
+
+
+
+	public boolean isSingular() {
+		return singular;
+	}
+
+
+	public Constant determinant() {	// the product of the pivots
+		double dr = odd ? -1 : 1, di = 0;
+		if (im == null) {	// don't let an overflow turn into NaN through the imaginary part
+			for (int k = 0; k < n; k ++)
+				dr *= re[k*n+k];
+			return new Constant(dr);
+		}
+		for (int k = 0; k < n; k ++) {
+			final double pr = re[k*n+k], pi = im[k*n+k];
+			final double t = dr*pr - di*pi;
+			di = dr*pi + di*pr;
+			dr = t;
+		}
+		return new Constant(dr, di);
+	}
+
+
+	public double[][] solve(double[] bRe, double[] bIm, int m) throws ArithmeticException {	// solve AX = B for an n*m B
+		if (singular)
+			throw new ArithmeticException("This matrix is singular.");
+
+		final double[] xr = new double[n*m];
+		final boolean complex = im != null || bIm != null;
+		final double[] xi = complex ? new double[n*m] : null;
+		for (int i = 0; i < n; i ++) {	// permute the right-hand side
+			System.arraycopy(bRe, perm[i]*m, xr, i*m, m);
+			if (bIm != null)
+				System.arraycopy(bIm, perm[i]*m, xi, i*m, m);
+		}
+
+		for (int i = 0; i < n; i ++) {	// forward-substitute through L
+			for (int k = 0; k < i; k ++) {
+				final double lr = re[i*n+k], li = (im == null) ? 0 : im[i*n+k];
+				if (lr == 0 && li == 0)	continue;
+				for (int j = 0; j < m; j ++) {
+					xr[i*m+j] -= lr*xr[k*m+j] - (complex ? li*xi[k*m+j] : 0);
+					if (complex)
+						xi[i*m+j] -= lr*xi[k*m+j] + li*xr[k*m+j];
+				}
+			}
+		}
+
+		for (int i = n-1; i >= 0; i --) {	// then back-substitute through U
+			for (int k = i+1; k < n; k ++) {
+				final double ur = re[i*n+k], ui = (im == null) ? 0 : im[i*n+k];
+				if (ur == 0 && ui == 0)	continue;
+				for (int j = 0; j < m; j ++) {
+					xr[i*m+j] -= ur*xr[k*m+j] - (complex ? ui*xi[k*m+j] : 0);
+					if (complex)
+						xi[i*m+j] -= ur*xi[k*m+j] + ui*xr[k*m+j];
+				}
+			}
+			final double dr = re[i*n+i], di = (im == null) ? 0 : im[i*n+i];
+			final double d2 = dr*dr + di*di;
+			for (int j = 0; j < m; j ++) {
+				if (complex) {
+					final double t = (xr[i*m+j]*dr + xi[i*m+j]*di)/d2;
+					xi[i*m+j] = (xi[i*m+j]*dr - xr[i*m+j]*di)/d2;
+					xr[i*m+j] = t;
+				}
+				else
+					xr[i*m+j] /= dr;
+			}
+		}
+		return new double[][] {xr, xi};
+	}
+
+
+	public double[][] inverse() throws ArithmeticException {
+		return solve(LinearAlgebra.identity(n), null, n);
+	}
+
+
+
+	private double magnitude(int idx) {
+		if (im == null)
+			return Math.abs(re[idx]);
+		else
+			return Math.hypot(re[idx], im[idx]);
+	}
+
+
+	private void swapRows(int p, int k) {
+		for (int j = 0; j < n; j ++) {
+			final double t = re[p*n+j];
+			re[p*n+j] = re[k*n+j];
+			re[k*n+j] = t;
+			if (im != null) {
+				final double s = im[p*n+j];
+				im[p*n+j] = im[k*n+j];
+				im[k*n+j] = s;
+			}
+		}
+		final int t = perm[p];
+		perm[p] = perm[k];
+		perm[k] = t;
+	}
+
+
+	private void eliminateReal(int k) {	// subtract row k from everything below it
+		final double pivot = re[k*n+k];
+		for (int i = k+1; i < n; i ++) {
+			final double l = re[i*n+k]/pivot;
+			re[i*n+k] = l;
+			if (l == 0)	continue;
+			for (int j = k+1; j < n; j ++)
+				re[i*n+j] -= l*re[k*n+j];
+		}
+	}
+
+
+	private void eliminateComplex(int k) {
+		final double pr = re[k*n+k], pi = im[k*n+k];
+		final double p2 = pr*pr + pi*pi;
+		for (int i = k+1; i < n; i ++) {
+			final double lr = (re[i*n+k]*pr + im[i*n+k]*pi)/p2;
+			final double li = (im[i*n+k]*pr - re[i*n+k]*pi)/p2;
+			re[i*n+k] = lr;
+			im[i*n+k] = li;
+			if (lr == 0 && li == 0)	continue;
+			for (int j = k+1; j < n; j ++) {
+				re[i*n+j] -= lr*re[k*n+j] - li*im[k*n+j];
+				im[i*n+j] -= lr*im[k*n+j] + li*re[k*n+j];
+			}
+		}
+	}
+
+}
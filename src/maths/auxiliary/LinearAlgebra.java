@@ -0,0 +1,201 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A class full of static methods that do arithmetic on dense matrices stored
+ * as flat, row-major arrays of doubles. Complex matrices are stored as a pair
+ * of arrays, where a null imaginary array means the matrix is real.
+ *
+ * @author jkunimune
+ */
+public class LinearAlgebra {
+
+	public static final int BLOCK = 64;	// the side length of the tiles that should fit in cache
+	private static final long PARALLEL_WORK = 1<<20;	// the number of flops worth splitting between threads
+
+
+
+	/**
+	 * A loop body that can be run over any contiguous part of its range.
+	 *
+	 * @author jkunimune
+	 */
+	public interface Range {
+		public void over(int i0, int i1);	// do iterations i0 through i1-1
+	}
+
+
+
+	public static void inParallel(int n, long work, final Range body) {	// split a loop between threads if it is worth it
+		final int chunks = Math.min(n, 4*ForkJoinPool.getCommonPoolParallelism());
+		if (work < PARALLEL_WORK || chunks < 2) {
+			body.over(0, n);
+			return;
+		}
+		final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+		for (int t = 0; t < chunks; t ++) {
+			final int i0 = (int) ((long) t*n/chunks), i1 = (int) ((long) (t+1)*n/chunks);
+			tasks.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+				protected void compute() {
+					body.over(i0, i1);
+				}
+			});
+		}
+		ForkJoinTask.invokeAll(tasks);
+	}
+
+
+	public static void gemv(final double[] a, final double[] x, final double[] y, int n, final int m) {	// y = ax for an n*m a, by rows
+		inParallel(n, (long) n*m, new Range() {
+			public void over(int i0, int i1) {
+				for (int i = i0; i < i1; i ++) {
+					double sum = 0;
+					for (int j = 0; j < m; j ++)
+						sum += a[i*m+j]*x[j];
+					y[i] = sum;
+				}
+			}
+		});
+	}
+
+
+	public static double[][] multiply(double[] ar, double[] ai,
+			double[] br, double[] bi, int n, int k, int m) {	// the product of an n*k and a k*m matrix
+		final double[] cr = new double[n*m];
+		gemm(ar, br, cr, n, k, m, 1);
+		if (ai == null && bi == null)
+			return new double[][] {cr, null};
+
+		final double[] ci = new double[n*m];
+		if (ai != null && bi != null)
+			gemm(ai, bi, cr, n, k, m, -1);
+		if (bi != null)
+			gemm(ar, bi, ci, n, k, m, 1);
+		if (ai != null)
+			gemm(ai, br, ci, n, k, m, 1);
+		return new double[][] {cr, ci};
+	}
+
+
+	public static void gemm(double[] a, double[] b, double[] c,
+			int n, int k, int m, double alpha) {	// c += alpha*a*b, tile by tile
+		if ((long) n*k*m < PARALLEL_WORK || n <= BLOCK) {
+			gemm(a, b, c, n, k, m, alpha, 0, n);
+			return;
+		}
+
+		final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();	// each thread gets its own rows of c
+		for (int i = 0; i < n; i += BLOCK) {
+			final int i0 = i, i1 = Math.min(n, i+BLOCK);
+			tasks.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+				protected void compute() {
+					gemm(a, b, c, n, k, m, alpha, i0, i1);
+				}
+			});
+		}
+		ForkJoinTask.invokeAll(tasks);
+	}
+
+
+	private static void gemm(double[] a, double[] b, double[] c,
+			int n, int k, int m, double alpha, int i0, int i1) {
+		for (int ii = i0; ii < i1; ii += BLOCK) {
+			final int iMax = Math.min(i1, ii+BLOCK);
+			for (int pp = 0; pp < k; pp += BLOCK) {
+				final int pMax = Math.min(k, pp+BLOCK);
+				for (int jj = 0; jj < m; jj += BLOCK) {
+					final int jMax = Math.min(m, jj+BLOCK);
+					for (int i = ii; i < iMax; i ++) {
+						final int cRow = i*m;
+						for (int p = pp; p < pMax; p ++) {
+							final double aip = alpha*a[i*k+p];
+							if (aip == 0)	continue;
+							final int bRow = p*m;
+							for (int j = jj; j < jMax; j ++)	// the innermost loop runs along rows of b and c
+								c[cRow+j] += aip*b[bRow+j];
+						}
+					}
+				}
+			}
+		}
+	}
+
+
+	public static double[] transpose(double[] a, int n, int m) {	// flip an n*m matrix, tile by tile
+		if (a == null)	return null;
+		final double[] t = new double[n*m];
+		for (int ii = 0; ii < n; ii += BLOCK)
+			for (int jj = 0; jj < m; jj += BLOCK)
+				for (int i = ii; i < Math.min(n, ii+BLOCK); i ++)
+					for (int j = jj; j < Math.min(m, jj+BLOCK); j ++)
+						t[j*n+i] = a[i*m+j];
+		return t;
+	}
+
+
+	public static double[] add(double[] a, double[] b, double beta) {	// a + beta*b, where either may be null (zero)
+		if (a == null && b == null)	return null;
+		if (b == null)	return a.clone();
+		final double[] c = (a == null) ? new double[b.length] : a.clone();
+		for (int i = 0; i < c.length; i ++)
+			c[i] += beta*b[i];
+		return c;
+	}
+
+
+	public static double[] scale(double[] a, double alpha) {
+		if (a == null)	return null;
+		final double[] c = new double[a.length];
+		for (int i = 0; i < c.length; i ++)
+			c[i] = alpha*a[i];
+		return c;
+	}
+
+
+	public static double[] identity(int n) {
+		final double[] eye = new double[n*n];
+		for (int i = 0; i < n; i ++)
+			eye[i*n+i] = 1;
+		return eye;
+	}
+
+
+	public static boolean isZero(double[] a) {
+		if (a == null)	return true;
+		for (double x: a)
+			if (x != 0)
+				return false;
+		return true;
+	}
+
+}
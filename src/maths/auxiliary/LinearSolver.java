@@ -0,0 +1,401 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.util.Arrays;
+
+import gui.Workspace;
+import maths.Constant;
+import maths.Expression;
+
+/**
+ * Solves systems of linear equations (and hands nonlinear ones off to
+ * NewtonSolver). The coefficients come straight off of a
+ * Tape by forward differentiation, so the equations never have to be
+ * rearranged symbolically, and the matrix is kept sparse until we know it
+ * isn't. Small or full systems get a dense LU factorisation, narrow ones get
+ * banded Gaussian elimination, and anything else goes to restarted GMRES with
+ * an incomplete LU preconditioner.
+ *
+ * @author jkunimune
+ */
+public class LinearSolver {
+
+	private static final int DENSE_SIZE = 200;	// systems this small always get dense LU
+	private static final double DENSE_FILL = .05;	// as do systems at least this full
+	private static final int MAX_DENSE = 3000;	// the biggest system we are willing to factor densely if GMRES fails
+	private static final int BAND_FACTOR = 16;	// use banded elimination if the band width squared is less than this times n
+	private static final int RESTART = 50;	// the number of GMRES steps before a restart
+	private static final double TOLERANCE = 1e-12;	// the relative residual GMRES aims for
+	private static final double LINEARITY_TOL = 1e-8;	// how far from linear an equation can be before we complain
+	private static final double RESTART_SCALE = -1.618;	// a second Newton start is the first, flipped and stretched by this
+	private static final double RESTART_SHIFT = .577;	// and shifted by this much more for each unknown
+
+
+
+	/**
+	 * Anything that can multiply a vector, like a matrix or a Jacobian that we
+	 * never actually write down.
+	 *
+	 * @author jkunimune
+	 */
+	public interface LinearMap {
+		public void apply(double[] x, double[] y);	// set y to this times x
+	}
+
+
+
+	public static Constant[] solve(Expression[] equations, String[] unknowns, Workspace heap)
+			throws ArithmeticException {	// find the unknowns that make all of these zero
+		final int n = unknowns.length;
+		if (equations.length != n)
+			throw new ArithmeticException("There must be one equation for each unknown ("
+					+String.join(", ", unknowns)+").");
+
+		final Tape tape = new Tape(unknowns, heap);
+		final int[] outs = new int[n];
+		for (int i = 0; i < n; i ++)
+			outs[i] = equations[i].compile(tape);
+		tape.output(outs);
+
+		final Frame frame = tape.newFrame();
+		final CSRMatrix a = frame.jacobian(new double[n]);	// the equations are Ax - b, so b is minus their value at zero
+		final double[] bRe = new double[n], bIm = new double[n];
+		for (int i = 0; i < n; i ++) {
+			bRe[i] = -frame.getReal(i);
+			bIm[i] = -frame.getImag(i);
+		}
+		if (!isLinear(frame, a, bRe, bIm)) {	// nonlinear systems go to Newton, starting from wherever the unknowns were
+			final double[] start = new double[n];
+			for (int j = 0; j < n; j ++) {
+				if (heap != null && heap.get(unknowns[j]) instanceof Constant)
+					start[j] = ((Constant) heap.get(unknowns[j])).getReal();
+				else
+					start[j] = 1 + (double) j/n;	// all different, so that a symmetric system isn't singular right where it starts
+			}
+			try {
+				return NewtonSolver.solve(tape, start);
+			} catch (ArithmeticException e) {	// if Newton gets stranded, try once more from somewhere else
+				for (int j = 0; j < n; j ++)
+					start[j] = RESTART_SCALE*start[j] + RESTART_SHIFT*(j+1);
+				return NewtonSolver.solve(tape, start);
+			}
+		}
+
+		final double[][] x = solve(a, bRe, LinearAlgebra.isZero(bIm) ? null : bIm);
+		final Constant[] output = new Constant[n];
+		for (int i = 0; i < n; i ++)
+			output[i] = new Constant(x[0][i], (x[1] == null) ? 0 : x[1][i]);
+		return output;
+	}
+
+
+	public static double[][] solve(CSRMatrix a, double[] bRe, double[] bIm)
+			throws ArithmeticException {	// solve Ax = b with whichever method suits A best
+		final int n = a.getHeight();
+		if (n <= DENSE_SIZE || !a.isReal() || bIm != null || a.nonzeros() > DENSE_FILL*n*n)
+			return dense(a, bRe, bIm);
+
+		final double[] x = new double[n];
+		if (isBanded(a)) {
+			bandedInverse(a, 0).apply(bRe, x);
+			return new double[][] {x, null};
+		}
+
+		if (gmres(matrix(a), incompleteLU(a), bRe, x, TOLERANCE, Math.max(1000, 2*n)) <= TOLERANCE)
+			return new double[][] {x, null};
+		else if (n <= MAX_DENSE)
+			return dense(a, bRe, bIm);
+		else
+			throw new ArithmeticException("The solution did not converge.");
+	}
+
+
+
+	private static boolean isLinear(Frame frame, CSRMatrix a, double[] bRe, double[] bIm) {	// check Ax - b against the equations somewhere else
+		final int n = a.getWidth();
+		final double[] x = new double[n];
+		for (int j = 0; j < n; j ++)
+			x[j] = 1 + .618034*(j%7) - .381966*(j%5);	// somewhere arbitrary, but not symmetric
+		frame.evaluate(x);
+
+		final int[] rowStart = a.getRowStart(), cols = a.getCols();
+		final double[] re = a.getReal(), im = a.getImag();
+		for (int i = 0; i < a.getHeight(); i ++) {
+			double pr = -bRe[i], pi = -bIm[i], scale = Math.hypot(bRe[i], bIm[i]) + 1;
+			for (int p = rowStart[i]; p < rowStart[i+1]; p ++) {
+				pr += re[p]*x[cols[p]];
+				pi += (im == null) ? 0 : im[p]*x[cols[p]];
+				scale += Math.hypot(re[p], (im == null) ? 0 : im[p])*Math.abs(x[cols[p]]);
+			}
+			final double err = Math.hypot(frame.getReal(i) - pr, frame.getImag(i) - pi);
+			if (!(err <= LINEARITY_TOL*scale))	// (NaNs count as nonlinear, too)
+				return false;
+		}
+		return true;
+	}
+
+
+	private static double[][] dense(CSRMatrix a, double[] bRe, double[] bIm) {
+		final double[][] d = a.toDense();
+		return new LUDecomposition(a.getHeight(), d[0], d[1]).solve(bRe, bIm, 1);
+	}
+
+
+	public static boolean isBanded(CSRMatrix a) {	// is A narrow enough for banded elimination to beat everything else?
+		final long w = 2*a.lowerBandwidth() + a.upperBandwidth() + 1;
+		return w*w <= (long) BAND_FACTOR*a.getHeight();
+	}
+
+
+	public static LinearMap bandedInverse(CSRMatrix a, double shift)
+			throws ArithmeticException {	// factor A - shift*I within its band once, to solve with it as often as we like
+		final int n = a.getHeight(), kl = a.lowerBandwidth(), ku = a.upperBandwidth();
+		final int w = 2*kl + ku + 1;	// pivoting can push each row kl further right
+		final double[] band = new double[n*w];	// element (i,j) lives at i*w + j-i+kl, with the multipliers left below the diagonal
+		final int[] rowStart = a.getRowStart(), cols = a.getCols();
+		final double[] re = a.getReal();
+		for (int i = 0; i < n; i ++) {
+			for (int p = rowStart[i]; p < rowStart[i+1]; p ++)
+				band[i*w + cols[p]-i+kl] = re[p];
+			band[i*w+kl] -= shift;
+		}
+
+		final int[] pivots = new int[n];
+		for (int k = 0; k < n; k ++) {	// Gaussian elimination with partial pivoting
+			final int iMax = Math.min(n-1, k+kl), jMax = Math.min(n-1, k+kl+ku);
+			int piv = k;
+			for (int i = k+1; i <= iMax; i ++)
+				if (Math.abs(band[i*w + k-i+kl]) > Math.abs(band[piv*w + k-piv+kl]))
+					piv = i;
+			if (band[piv*w + k-piv+kl] == 0)
+				throw new ArithmeticException("This matrix is singular.");
+			pivots[k] = piv;
+			if (piv != k) {
+				for (int j = k; j <= jMax; j ++) {
+					final double t = band[piv*w + j-piv+kl];
+					band[piv*w + j-piv+kl] = band[k*w + j-k+kl];
+					band[k*w + j-k+kl] = t;
+				}
+			}
+
+			final double pivot = band[k*w+kl];
+			for (int i = k+1; i <= iMax; i ++) {
+				final double l = band[i*w + k-i+kl]/pivot;
+				band[i*w + k-i+kl] = l;
+				if (l == 0)	continue;
+				for (int j = k+1; j <= jMax; j ++)
+					band[i*w + j-i+kl] -= l*band[k*w + j-k+kl];
+			}
+		}
+
+		return new LinearMap() {
+			public void apply(double[] b, double[] x) {
+				System.arraycopy(b, 0, x, 0, n);
+				for (int k = 0; k < n; k ++) {	// go through the same swaps and eliminations
+					final double t = x[pivots[k]];
+					x[pivots[k]] = x[k];
+					x[k] = t;
+					for (int i = k+1; i <= Math.min(n-1, k+kl); i ++)
+						x[i] -= band[i*w + k-i+kl]*x[k];
+				}
+				for (int i = n-1; i >= 0; i --) {	// and back-substitute through what is left
+					double sum = x[i];
+					for (int j = i+1; j <= Math.min(n-1, i+kl+ku); j ++)
+						sum -= band[i*w + j-i+kl]*x[j];
+					x[i] = sum/band[i*w+kl];
+				}
+			}
+		};
+	}
+
+
+	public static double gmres(LinearMap a, LinearMap m, double[] b, double[] x,
+			double tol, int maxIter) {	// restarted GMRES, right-preconditioned by m; returns the relative residual
+		final int n = b.length;
+		final double bNorm = norm(b);
+		if (bNorm == 0) {
+			Arrays.fill(x, 0);
+			return 0;
+		}
+
+		final double[][] v = new double[RESTART+1][];
+		final double[][] h = new double[RESTART+1][RESTART];
+		final double[] cs = new double[RESTART], sn = new double[RESTART], g = new double[RESTART+1];
+		final double[] r = new double[n], z = new double[n];
+
+		int iter = 0;
+		residual(a, b, x, r);
+		double beta = norm(r);
+		while (beta > tol*bNorm && iter < maxIter) {
+			Arrays.fill(g, 0);
+			g[0] = beta;
+			v[0] = LinearAlgebra.scale(r, 1/beta);
+			int k = 0;
+			while (k < RESTART && iter < maxIter) {
+				precondition(m, v[k], z);
+				final double[] w = new double[n];
+				a.apply(z, w);
+				for (int i = 0; i <= k; i ++) {	// modified Gram-Schmidt
+					h[i][k] = dot(w, v[i]);
+					for (int l = 0; l < n; l ++)
+						w[l] -= h[i][k]*v[i][l];
+				}
+				h[k+1][k] = norm(w);
+				v[k+1] = (h[k+1][k] == 0) ? w : LinearAlgebra.scale(w, 1/h[k+1][k]);
+
+				for (int i = 0; i < k; i ++) {	// rotate the new column of the Hessenberg matrix
+					final double t = cs[i]*h[i][k] + sn[i]*h[i+1][k];
+					h[i+1][k] = -sn[i]*h[i][k] + cs[i]*h[i+1][k];
+					h[i][k] = t;
+				}
+				final double rho = Math.hypot(h[k][k], h[k+1][k]);
+				if (rho == 0)
+					break;
+				cs[k] = h[k][k]/rho;
+				sn[k] = h[k+1][k]/rho;
+				h[k][k] = rho;
+				h[k+1][k] = 0;
+				g[k+1] = -sn[k]*g[k];
+				g[k] = cs[k]*g[k];
+				k ++;
+				iter ++;
+				if (Math.abs(g[k]) <= tol*bNorm)
+					break;
+			}
+			if (k == 0)
+				break;	// we are stuck
+
+			final double[] y = new double[k];	// back-substitute for the best combination of vectors
+			for (int i = k-1; i >= 0; i --) {
+				double sum = g[i];
+				for (int j = i+1; j < k; j ++)
+					sum -= h[i][j]*y[j];
+				y[i] = sum/h[i][i];
+			}
+			final double[] u = new double[n];
+			for (int i = 0; i < k; i ++)
+				for (int l = 0; l < n; l ++)
+					u[l] += y[i]*v[i][l];
+			precondition(m, u, z);
+			for (int l = 0; l < n; l ++)
+				x[l] += z[l];
+
+			residual(a, b, x, r);
+			beta = norm(r);
+			if (!(beta < Double.POSITIVE_INFINITY))
+				break;
+		}
+		return beta/bNorm;
+	}
+
+
+	private static LinearMap incompleteLU(final CSRMatrix a) {	// ILU(0), or null if it breaks down
+		final int n = a.getHeight();
+		final int[] rowStart = a.getRowStart(), cols = a.getCols();
+		final double[] lu = a.getReal().clone();
+		final int[] diag = new int[n];
+		final int[] where = new int[n];
+		Arrays.fill(where, -1);
+		for (int i = 0; i < n; i ++) {
+			diag[i] = -1;
+			for (int p = rowStart[i]; p < rowStart[i+1]; p ++)
+				if (cols[p] == i)
+					diag[i] = p;
+			if (diag[i] < 0)
+				return null;
+		}
+
+		for (int i = 0; i < n; i ++) {
+			for (int p = rowStart[i]; p < rowStart[i+1]; p ++)
+				where[cols[p]] = p;
+			for (int p = rowStart[i]; p < diag[i]; p ++) {	// eliminate using each earlier row, but only where row i already has entries
+				final int k = cols[p];
+				lu[p] /= lu[diag[k]];
+				for (int q = diag[k]+1; q < rowStart[k+1]; q ++)
+					if (where[cols[q]] >= 0)
+						lu[where[cols[q]]] -= lu[p]*lu[q];
+			}
+			for (int p = rowStart[i]; p < rowStart[i+1]; p ++)
+				where[cols[p]] = -1;
+			if (lu[diag[i]] == 0)
+				return null;
+		}
+
+		return new LinearMap() {	// z = (LU)^-1 v
+			public void apply(double[] v, double[] z) {
+				for (int i = 0; i < n; i ++) {
+					double sum = v[i];
+					for (int p = rowStart[i]; p < diag[i]; p ++)
+						sum -= lu[p]*z[cols[p]];
+					z[i] = sum;
+				}
+				for (int i = n-1; i >= 0; i --) {
+					double sum = z[i];
+					for (int p = diag[i]+1; p < rowStart[i+1]; p ++)
+						sum -= lu[p]*z[cols[p]];
+					z[i] = sum/lu[diag[i]];
+				}
+			}
+		};
+	}
+
+
+	private static void precondition(LinearMap m, double[] v, double[] z) {
+		if (m == null)
+			System.arraycopy(v, 0, z, 0, v.length);
+		else
+			m.apply(v, z);
+	}
+
+
+	private static void residual(LinearMap a, double[] b, double[] x, double[] r) {	// r = b - Ax
+		a.apply(x, r);
+		for (int i = 0; i < r.length; i ++)
+			r[i] = b[i] - r[i];
+	}
+
+
+	private static LinearMap matrix(final CSRMatrix a) {
+		return new LinearMap() {
+			public void apply(double[] x, double[] y) {
+				a.multiply(x, y);
+			}
+		};
+	}
+
+
+	static double dot(double[] u, double[] v) {
+		double sum = 0;
+		for (int i = 0; i < u.length; i ++)
+			sum += u[i]*v[i];
+		return sum;
+	}
+
+
+	static double norm(double[] v) {
+		return Math.sqrt(dot(v, v));
+	}
+
+}
@@ -0,0 +1,378 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.util.Arrays;
+
+/**
+ * The derivatives of each register of a Frame by its operands, at whatever
+ * values the Frame last found, and the forward-mode products that carry
+ * derivatives of the inputs through the Tape with them: along one direction
+ * at a time, or along every input at once as sparse rows. The few registers
+ * that aren't complex-differentiable, like abs and arg, keep their operand in
+ * place of a derivative, since they need it to be carried along real
+ * directions.
+ *
+ * @author jkunimune
+ */
+public class Linearization {
+
+	private static final int HOLOMORPHIC = 0, REAL_PART = 1, IMAG_PART = 2,
+			MODULUS = 3, ARGUMENT = 4;	// the ways a register can depend on its operands
+
+	private static final double TWO_OVER_SQRT_PI = 1.1283791670955126;
+	private static final double ORDER_STEP = 1e-5;	// how far to step the order of a Bessel function to differentiate it
+
+
+
+	private final Tape tape;
+	private final int size;
+	private final int[] ops, lft, rgt, outputs;
+
+	private final double[] re, im;	// the Frame's registers
+	private final int[] kinds;	// how each register depends on its operands
+	private final double[] partials;	// and the derivatives by those operands, four to a register
+
+
+
+	Linearization(Tape tape, double[] re, double[] im) {
+		this.tape = tape;
+		this.size = tape.size();
+		this.ops = tape.ops;
+		this.lft = tape.lft;
+		this.rgt = tape.rgt;
+		this.outputs = tape.outputs;
+		this.re = re;
+		this.im = im;
+		this.kinds = new int[size];
+		this.partials = new double[4*size];
+	}
+
+
+
+	void update() {	// find the local derivatives of every register, at the values the Frame has now
+		final double[] p = new double[4];
+		for (int k = 0; k < size; k ++) {
+			if (ops[k] == Tape.CONST || ops[k] == Tape.INPUT || ops[k] == Tape.TABLE)	continue;
+			kinds[k] = linearize(k, p);
+			System.arraycopy(p, 0, partials, 4*k, 4);
+		}
+	}
+
+
+	void jvp(double[] v, double[] tRe, double[] tIm, double[] outRe, double[] outIm) {	// the derivative of the outputs along v
+		for (int k = 0; k < size; k ++) {	// tRe and tIm are scratch space, so that threads can share a Frame
+			final int a = lft[k], b = rgt[k];
+			switch (ops[k]) {
+			case Tape.CONST:
+			case Tape.TABLE:
+				tRe[k] = tIm[k] = 0;
+				break;
+			case Tape.INPUT:
+				tRe[k] = v[a];
+				tIm[k] = 0;
+				break;
+			default:
+				chain(kinds[k], partials, 4*k, tRe[a], tIm[a],
+						(b >= 0) ? tRe[b] : 0, (b >= 0) ? tIm[b] : 0, tRe, tIm, k);
+			}
+		}
+		for (int i = 0; i < outputs.length; i ++) {
+			outRe[i] = tRe[outputs[i]];
+			if (outIm != null)
+				outIm[i] = tIm[outputs[i]];
+		}
+	}
+
+
+	CSRMatrix jacobian() {	// the derivative of every output by every input, carried forward as sparse rows
+		final int[] lastUse = tape.lastUses();
+		final int[][] cols = new int[size][];
+		final double[][] dRe = new double[size][], dIm = new double[size][];
+		final double[] d = new double[2], dd = new double[2];
+		for (int k = 0; k < size; k ++) {
+			final int a = lft[k], b = rgt[k];
+			if (ops[k] == Tape.CONST || ops[k] == Tape.TABLE) {
+				cols[k] = new int[0];
+				dRe[k] = dIm[k] = new double[0];
+				continue;
+			}
+			if (ops[k] == Tape.INPUT) {
+				cols[k] = new int[] {a};
+				dRe[k] = new double[] {1};
+				dIm[k] = new double[] {0};
+				continue;
+			}
+
+			final int[] ca = cols[a], cb = (b >= 0) ? cols[b] : new int[0];
+			final int[] ck = new int[ca.length + cb.length];
+			final double[] rk = new double[ck.length], ik = new double[ck.length];
+			int i = 0, j = 0, l = 0;
+			while (i < ca.length || j < cb.length) {	// merge the two sorted rows
+				final int col;
+				double ar = 0, ai = 0, br = 0, bi = 0;
+				if (j >= cb.length || (i < ca.length && ca[i] <= cb[j]))
+					col = ca[i];
+				else
+					col = cb[j];
+				if (i < ca.length && ca[i] == col) {
+					ar = dRe[a][i];
+					ai = dIm[a][i];
+					i ++;
+				}
+				if (j < cb.length && cb[j] == col) {
+					br = dRe[b][j];
+					bi = dIm[b][j];
+					j ++;
+				}
+				chain(kinds[k], partials, 4*k, ar, ai, br, bi, d, dd, 0);
+				ck[l] = col;
+				rk[l] = d[0];
+				ik[l] = dd[0];
+				l ++;
+			}
+			cols[k] = Arrays.copyOf(ck, l);
+			dRe[k] = Arrays.copyOf(rk, l);
+			dIm[k] = Arrays.copyOf(ik, l);
+
+			if (lastUse[a] == k) {	// let go of rows nobody needs any more
+				cols[a] = null;
+				dRe[a] = dIm[a] = null;
+			}
+			if (b >= 0 && lastUse[b] == k) {
+				cols[b] = null;
+				dRe[b] = dIm[b] = null;
+			}
+		}
+
+		final int[][] rowCols = new int[outputs.length][];
+		final double[][] rowRe = new double[outputs.length][], rowIm = new double[outputs.length][];
+		for (int i = 0; i < outputs.length; i ++) {
+			rowCols[i] = cols[outputs[i]];
+			rowRe[i] = dRe[outputs[i]];
+			rowIm[i] = dIm[outputs[i]];
+		}
+		return CSRMatrix.fromRows(tape.getInputs().length, rowCols, rowRe, rowIm);
+	}
+
+
+	private int linearize(int k, double[] p) {	// the derivatives of register k by its operands, at the current values
+		final int a = lft[k], b = rgt[k];
+		final double ar = re[a], ai = im[a];
+		final double[] tr = new double[2], ti = new double[2];
+		p[0] = 1;
+		p[1] = p[2] = p[3] = 0;
+		switch (ops[k]) {
+		case Tape.ADD:
+			p[2] = 1;
+			break;
+		case Tape.ERR:	// roundoff is flat almost everywhere
+			p[0] = 0;
+			break;
+		case Tape.SUB:
+			p[2] = -1;
+			break;
+		case Tape.NEG:
+			p[0] = -1;
+			break;
+		case Tape.MUL:
+			p[0] = re[b];
+			p[1] = im[b];
+			p[2] = ar;
+			p[3] = ai;
+			break;
+		case Tape.DIV:	// 1/b and -(a/b)/b
+			ComplexFunctions.div(1, 0, re[b], im[b], tr, ti, 0);
+			p[0] = tr[0];
+			p[1] = ti[0];
+			p[2] = -(re[k]*tr[0] - im[k]*ti[0]);
+			p[3] = -(re[k]*ti[0] + im[k]*tr[0]);
+			break;
+		case Tape.MOD:	// 1 and -floor(a/b)
+			ComplexFunctions.div(ar - re[k], ai - im[k], re[b], im[b], tr, ti, 0);
+			p[2] = -tr[0];
+			p[3] = -ti[0];
+			break;
+		case Tape.POW:	// b*a^(b-1) and a^b*ln(a)
+			ComplexFunctions.pow(ar, ai, re[b] - 1, im[b], tr, ti, 0);
+			p[0] = re[b]*tr[0] - im[b]*ti[0];
+			p[1] = re[b]*ti[0] + im[b]*tr[0];
+			if (re[k] != 0 || im[k] != 0) {
+				ComplexFunctions.ln(ar, ai, tr, ti, 0);
+				p[2] = re[k]*tr[0] - im[k]*ti[0];
+				p[3] = re[k]*ti[0] + im[k]*tr[0];
+			}
+			break;
+		case Tape.RECIP:
+			p[0] = -(re[k]*re[k] - im[k]*im[k]);
+			p[1] = -2*re[k]*im[k];
+			break;
+		case Tape.EXP:
+			p[0] = re[k];
+			p[1] = im[k];
+			break;
+		case Tape.LN:
+			ComplexFunctions.div(1, 0, ar, ai, tr, ti, 0);
+			p[0] = tr[0];
+			p[1] = ti[0];
+			break;
+		case Tape.SQRT:
+			ComplexFunctions.div(.5, 0, re[k], im[k], tr, ti, 0);
+			p[0] = tr[0];
+			p[1] = ti[0];
+			break;
+		case Tape.SIN:
+			p[0] = Math.cos(ar)*Math.cosh(ai);
+			p[1] = -Math.sin(ar)*Math.sinh(ai);
+			break;
+		case Tape.COS:
+			p[0] = -Math.sin(ar)*Math.cosh(ai);
+			p[1] = -Math.cos(ar)*Math.sinh(ai);
+			break;
+		case Tape.SINH:
+			p[0] = Math.cosh(ar)*Math.cos(ai);
+			p[1] = Math.sinh(ar)*Math.sin(ai);
+			break;
+		case Tape.COSH:
+			p[0] = Math.sinh(ar)*Math.cos(ai);
+			p[1] = Math.cosh(ar)*Math.sin(ai);
+			break;
+		case Tape.ASIN:	// 1/sqrt(1-a^2)
+		case Tape.ACOS:
+			ComplexFunctions.sqrt(1 - ar*ar + ai*ai, -2*ar*ai, tr, ti, 0);
+			ComplexFunctions.div((ops[k] == Tape.ASIN) ? 1 : -1, 0, tr[0], ti[0], tr, ti, 0);
+			p[0] = tr[0];
+			p[1] = ti[0];
+			break;
+		case Tape.ATAN:	// 1/(1+a^2)
+			ComplexFunctions.div(1, 0, 1 + ar*ar - ai*ai, 2*ar*ai, tr, ti, 0);
+			p[0] = tr[0];
+			p[1] = ti[0];
+			break;
+		case Tape.ASINH:	// 1/sqrt(a^2+1)
+		case Tape.ACOSH:	// 1/sqrt(a^2-1)
+			ComplexFunctions.sqrt(ar*ar - ai*ai + ((ops[k] == Tape.ASINH) ? 1 : -1), 2*ar*ai, tr, ti, 0);
+			ComplexFunctions.div(1, 0, tr[0], ti[0], tr, ti, 0);
+			p[0] = tr[0];
+			p[1] = ti[0];
+			break;
+		case Tape.ATANH:	// 1/(1-a^2)
+			ComplexFunctions.div(1, 0, 1 - ar*ar + ai*ai, -2*ar*ai, tr, ti, 0);
+			p[0] = tr[0];
+			p[1] = ti[0];
+			break;
+		case Tape.ERF:	// 2/sqrt(pi) e^-a^2
+		case Tape.ERFC:
+		case Tape.ERFI:	// 2/sqrt(pi) e^a^2
+			final double sign = (ops[k] == Tape.ERFI) ? 1 : -1;
+			ComplexFunctions.exp(sign*(ar*ar - ai*ai), sign*2*ar*ai, tr, ti, 0);
+			p[0] = ((ops[k] == Tape.ERFC) ? -TWO_OVER_SQRT_PI : TWO_OVER_SQRT_PI)*tr[0];
+			p[1] = ((ops[k] == Tape.ERFC) ? -TWO_OVER_SQRT_PI : TWO_OVER_SQRT_PI)*ti[0];
+			break;
+		case Tape.GAMMA:	// gamma(a)*psi(a)
+			SpecialFunctions.digamma(ar, ai, tr, ti, 0);
+			p[0] = re[k]*tr[0] - im[k]*ti[0];
+			p[1] = re[k]*ti[0] + im[k]*tr[0];
+			break;
+		case Tape.LGAMMA:	// psi(a)
+			SpecialFunctions.digamma(ar, ai, tr, ti, 0);
+			p[0] = tr[0];
+			p[1] = ti[0];
+			break;
+		case Tape.BETA:	// B(a,b)*(psi(a) - psi(a+b)) and B(a,b)*(psi(b) - psi(a+b))
+			SpecialFunctions.digamma(ar + re[b], ai + im[b], tr, ti, 1);
+			SpecialFunctions.digamma(ar, ai, tr, ti, 0);
+			p[0] = re[k]*(tr[0] - tr[1]) - im[k]*(ti[0] - ti[1]);
+			p[1] = re[k]*(ti[0] - ti[1]) + im[k]*(tr[0] - tr[1]);
+			SpecialFunctions.digamma(re[b], im[b], tr, ti, 0);
+			p[2] = re[k]*(tr[0] - tr[1]) - im[k]*(ti[0] - ti[1]);
+			p[3] = re[k]*(ti[0] - ti[1]) + im[k]*(tr[0] - tr[1]);
+			break;
+		case Tape.BESSEL_J:	// by the argument, from the recurrences, like (J[nu-1] - J[nu+1])/2
+		case Tape.BESSEL_Y:
+		case Tape.BESSEL_I:
+		case Tape.BESSEL_K:
+			ComplexFunctions.special(ops[k], ar - 1, ai, re[b], im[b], tr, ti, 0);
+			ComplexFunctions.special(ops[k], ar + 1, ai, re[b], im[b], tr, ti, 1);
+			final double s = (ops[k] == Tape.BESSEL_J || ops[k] == Tape.BESSEL_Y) ? -1 : 1;
+			final double half = (ops[k] == Tape.BESSEL_K) ? -.5 : .5;
+			p[2] = half*(tr[0] + s*tr[1]);
+			p[3] = half*(ti[0] + s*ti[1]);
+			final double h = ORDER_STEP*Math.max(1, Math.abs(ar));	// and by the order, which has no formula, numerically
+			ComplexFunctions.special(ops[k], ar - h, ai, re[b], im[b], tr, ti, 0);
+			ComplexFunctions.special(ops[k], ar + h, ai, re[b], im[b], tr, ti, 1);
+			p[0] = (tr[1] - tr[0])/(2*h);
+			p[1] = (ti[1] - ti[0])/(2*h);
+			break;
+		case Tape.AIRY_AI:
+			SpecialFunctions.airyAiPrime(ar, ai, tr, ti, 0);
+			p[0] = tr[0];
+			p[1] = ti[0];
+			break;
+		case Tape.AIRY_BI:
+			SpecialFunctions.airyBiPrime(ar, ai, tr, ti, 0);
+			p[0] = tr[0];
+			p[1] = ti[0];
+			break;
+		case Tape.ABS:	// these last few are not complex-differentiable, so they need the operand itself
+			p[0] = ar;
+			p[1] = ai;
+			return MODULUS;
+		case Tape.ARG:
+			p[0] = ar;
+			p[1] = ai;
+			return ARGUMENT;
+		case Tape.RE:
+			return REAL_PART;
+		case Tape.IM:
+			return IMAG_PART;
+		}
+		return HOLOMORPHIC;
+	}
+
+
+	private static void chain(int kind, double[] p, int o, double ar, double ai,
+			double br, double bi, double[] dRe, double[] dIm, int k) {	// the derivative of a register from those of its operands
+		switch (kind) {
+		case HOLOMORPHIC:
+			dRe[k] = p[o]*ar - p[o+1]*ai + p[o+2]*br - p[o+3]*bi;
+			dIm[k] = p[o]*ai + p[o+1]*ar + p[o+2]*bi + p[o+3]*br;
+			return;
+		case REAL_PART:
+			dRe[k] = ar;
+			break;
+		case IMAG_PART:
+			dRe[k] = ai;
+			break;
+		case MODULUS:	// re(conj(z)*dz)/|z|
+			dRe[k] = (p[o]*ar + p[o+1]*ai)/Math.hypot(p[o], p[o+1]);
+			break;
+		case ARGUMENT:	// im(dz/z)
+			dRe[k] = (p[o]*ai - p[o+1]*ar)/(p[o]*p[o] + p[o+1]*p[o+1]);
+			break;
+		}
+		dIm[k] = 0;	// the rest are all real
+	}
+
+}
@@ -0,0 +1,260 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import maths.Constant;
+
+/**
+ * A grid of values of some Tape over a box, for functions that are too
+ * expensive to evaluate everywhere they're needed. Between the nodes, it is
+ * a tensor product of cubic Hermite interpolants, with slopes from centered
+ * differences or, if it should be monotone, from harmonic means
+ * (Fritsch-Carlson). The grid is made finer until the interpolant agrees
+ * with the Tape at a bunch of random points. The values live off the Java
+ * heap, and every Tape that does the same thing over the same box shares
+ * the same table, so plots of the same function don't each need their own.
+ *
+ * @author jkunimune
+ */
+public class LookupTable {
+
+	public static final int MAX_DIMS = 3;	// the most inputs a table can have
+	public static final int MAX_NODES = 1 << 22;	// the most values a table can hold
+
+	private static final int MIN_NODES = 17;	// the nodes along each side of the first grid
+	private static final int SPOT_CHECKS = 64;	// how many points to check the interpolant at
+	private static final int MAX_TABLES = 16;	// how many tables to keep around
+
+	private static final Map<String, LookupTable> TABLES = new LinkedHashMap<String, LookupTable>(16, .75f, true) {	// the tables we have made so far, least recently used first
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, LookupTable> eldest) {
+			return size() > MAX_TABLES;
+		}
+	};
+
+
+
+	private final double[] low, upp;
+	private final boolean monotone;
+	private final int n;	// the nodes along each side
+	private final int[] stride;
+	private final DoubleBuffer re, im;	// the values at the nodes, with the first input changing slowest (im is null if they're all real)
+
+
+
+	private LookupTable(double[] low, double[] upp, boolean monotone, int n, DoubleBuffer re, DoubleBuffer im) {
+		this.low = low;
+		this.upp = upp;
+		this.monotone = monotone;
+		this.n = n;
+		this.re = re;
+		this.im = im;
+		this.stride = new int[low.length];
+		for (int d = low.length-1, s = 1; d >= 0; d --, s *= n)
+			stride[d] = s;
+	}
+
+
+	public static LookupTable of(Tape tape, double[] low, double[] upp, double tol,
+			boolean monotone) throws ArithmeticException {	// the table for this Tape in this box, made now if we don't have it
+		final String key = tape.signature()+"@"+Arrays.toString(low)+Arrays.toString(upp)+tol+monotone;
+		synchronized (TABLES) {
+			LookupTable table = TABLES.get(key);
+			if (table == null) {
+				table = build(tape, low, upp, tol, monotone);
+				TABLES.put(key, table);
+			}
+			return table;
+		}
+	}
+
+
+	public boolean contains(double... x) {	// is this point in the box?
+		for (int d = 0; d < low.length; d ++)
+			if (!(x[d] >= low[d] && x[d] <= upp[d]))
+				return false;
+		return true;
+	}
+
+
+	public int size() {	// the number of nodes
+		return re.capacity();
+	}
+
+
+	public Constant get(double... x) {	// the interpolated value at a point in the box
+		final double[] re = new double[1], im = new double[1];
+		get(x, re, im, 0);
+		return new Constant(re[0], im[0]);
+	}
+
+
+	void get(double[] x, double[] re, double[] im, int k) {	// the same, straight into a Frame's registers
+		final int[] cell = new int[low.length];
+		final double[] t = new double[low.length];
+		for (int d = 0; d < low.length; d ++) {
+			final double u = (x[d] - low[d])/(upp[d] - low[d])*(n - 1);
+			cell[d] = Math.max(0, Math.min(n - 2, (int) Math.floor(u)));
+			t[d] = u - cell[d];
+		}
+		re[k] = interpolate(this.re, 0, 0, cell, t);
+		im[k] = (this.im == null) ? 0 : interpolate(this.im, 0, 0, cell, t);
+	}
+
+
+	private double interpolate(DoubleBuffer v, int d, int base, int[] cell, double[] t) {	// interpolate along input d and all the ones after it
+		if (d == low.length)
+			return v.get(base);
+		final int i = cell[d];
+		final double[] w = new double[4];	// the values at nodes i-1 through i+2
+		for (int k = -1; k <= 2; k ++)
+			if (i + k >= 0 && i + k < n)
+				w[k+1] = interpolate(v, d+1, base + (i + k)*stride[d], cell, t);
+		return hermite(w, i > 0, i + 2 < n, t[d], monotone);
+	}
+
+
+	private static double hermite(double[] w, boolean hasLeft, boolean hasRight, double t, boolean monotone) {	// the cubic between w[1] and w[2], with slopes from their neighbors
+		final double a = w[1] - w[0], b = w[2] - w[1], c = w[3] - w[2];	// the secants, which are only there if the nodes are
+		final double d1, d2;
+		if (monotone) {
+			d1 = hasLeft ? harmonic(a, b) : endSlope(b, c);
+			d2 = hasRight ? harmonic(b, c) : endSlope(b, a);
+		}
+		else {
+			d1 = hasLeft ? (a + b)/2 : (3*b - c)/2;
+			d2 = hasRight ? (b + c)/2 : (3*b - a)/2;
+		}
+		final double t2 = t*t, t3 = t2*t;
+		return (2*t3 - 3*t2 + 1)*w[1] + (t3 - 2*t2 + t)*d1 + (3*t2 - 2*t3)*w[2] + (t3 - t2)*d2;
+	}
+
+
+	private static double harmonic(double a, double b) {	// a slope between two secants that can't overshoot
+		if (a*b <= 0)
+			return 0;
+		return 2*a*b/(a + b);
+	}
+
+
+	private static double endSlope(double near, double far) {	// a slope at the end of the grid that can't overshoot
+		final double d = (3*near - far)/2;
+		if (d*near <= 0)
+			return 0;
+		if (near*far <= 0 && Math.abs(d) > Math.abs(3*near))
+			return 3*near;
+		return d;
+	}
+
+
+	@Override
+	public String toString() {	// everything that decides what comes out of it, besides the Tape it came from
+		return n+"^"+low.length+" nodes on "+Arrays.toString(low)+" to "+Arrays.toString(upp)+(monotone ? ", monotone" : "");
+	}
+
+
+	private static LookupTable build(final Tape tape, final double[] low, final double[] upp, double tol,
+			boolean monotone) throws ArithmeticException {	// keep doubling the grid until the spot checks pass
+		final int dims = low.length;
+		final Random rng = new Random(0);
+		final double[][] spots = new double[SPOT_CHECKS][dims];
+		final Constant[] exact = new Constant[SPOT_CHECKS];
+		final Frame frame = tape.newFrame();
+		for (int s = 0; s < SPOT_CHECKS; s ++) {
+			for (int d = 0; d < dims; d ++)
+				spots[s][d] = low[d] + (upp[d] - low[d])*rng.nextDouble();
+			exact[s] = frame.evaluate(spots[s]).get(0);
+		}
+		
+		LookupTable table = null;
+		for (int n = MIN_NODES; Math.pow(n, dims) <= MAX_NODES; n = 2*n - 1) {
+			table = sample(tape, low, upp, monotone, n, table);
+			double scale = Double.MIN_NORMAL, error = 0;
+			for (int k = 0; k < table.size(); k ++)
+				scale = Math.max(scale, Math.hypot(table.re.get(k), (table.im == null) ? 0 : table.im.get(k)));
+			for (int s = 0; s < SPOT_CHECKS; s ++) {
+				final Constant y = table.get(spots[s]);
+				error = Math.max(error, Math.hypot(y.getReal() - exact[s].getReal(), y.getImag() - exact[s].getImag()));
+			}
+			if (error <= tol*scale)
+				return table;
+		}
+		throw new ArithmeticException("I couldn't tabulate that to within "+new Constant(tol)+" with "+MAX_NODES+" values.");
+	}
+
+
+	private static LookupTable sample(final Tape tape, final double[] low, final double[] upp, boolean monotone,
+			final int n, final LookupTable old) throws ArithmeticException {	// play the Tape at every node of an n*n*... grid, reusing every other one from the last grid
+		final int dims = low.length;
+		int size = 1;
+		for (int d = 0; d < dims; d ++)
+			size *= n;
+		final DoubleBuffer re = ByteBuffer.allocateDirect(8*size).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+		final DoubleBuffer im = ByteBuffer.allocateDirect(8*size).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+		final int total = size, oldN = (n + 1)/2;
+		LinearAlgebra.inParallel(size, (long) size*tape.size(), new LinearAlgebra.Range() {
+			public void over(int k0, int k1) {
+				final Frame frame = tape.newFrame();
+				final double[] x = new double[dims];
+				for (int k = k0; k < k1; k ++) {
+					boolean reused = old != null;
+					int oldK = 0;
+					for (int d = 0, rest = k, s = total/n; d < dims; d ++, s /= n) {	// find this node's place on both grids
+						final int i = rest/s;
+						rest %= s;
+						x[d] = low[d] + (upp[d] - low[d])*i/(n - 1);
+						reused &= i%2 == 0;
+						oldK = oldK*oldN + i/2;
+					}
+					if (reused) {
+						re.put(k, old.re.get(oldK));
+						im.put(k, (old.im == null) ? 0 : old.im.get(oldK));
+					}
+					else {
+						frame.evaluate(x);
+						re.put(k, frame.getReal(0));
+						im.put(k, frame.getImag(0));
+					}
+				}
+			}
+		});
+		boolean real = true;
+		for (int k = 0; k < size; k ++) {
+			if (Double.isNaN(re.get(k)) || Double.isInfinite(re.get(k)) || Double.isNaN(im.get(k)) || Double.isInfinite(im.get(k)))
+				throw new ArithmeticException("That isn't finite everywhere in that region.");
+			real &= im.get(k) == 0;
+		}
+		return new LookupTable(low, upp, monotone, n, re, real ? null : im);
+	}
+}
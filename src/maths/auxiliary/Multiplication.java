@@ -0,0 +1,428 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Multiplication of very big integers with a floating-point fast Fourier
+ * transform, for when BigInteger's own Toom-Cook starts to drag. The integers
+ * get cut into limbs of a few bits each, small enough that every coefficient
+ * of the convolution stays well inside the 53 bits a double holds exactly, and
+ * then the answer gets checked against its remainder mod a prime, so that a
+ * rounding error could never slip through (it would just fall back to
+ * BigInteger). A product never shuffles its points into bit-reversed order,
+ * since the forward transform can just as well leave them that way and the
+ * inverse takes them from there. Writing such integers in decimal leans on
+ * the same multiplication: they are split in half by powers of ten, and the
+ * divisions are done as multiplications by reciprocals from Newton's method.
+ *
+ * @author jkunimune
+ */
+public final class Multiplication {
+
+	private static final int THRESHOLD = 1 << 19;	// how many bits both factors need before the FFT is worth it
+	private static final int MAX_COEFFICIENT_BITS = 44;	// how big a convolution can get before roundoff might matter
+	private static final int TWIDDLE_RUN = 16;	// how many roots of unity to get by rotation between each one computed from scratch
+	private static final int BLOCK = 1 << 12;	// how many points of a transform fit in cache at once
+	private static final BigInteger CHECK = BigInteger.valueOf(2147483647);	// the prime to check the product against
+	private static final int LEAF_DIGITS = 1000;	// how many digits the smallest power of ten to split by has
+	private static final int GUARD_BITS = 64;	// how many more bits than it needs a reciprocal gets
+	private static final double LOG10_2 = 0.30102999566398120;
+
+
+
+	private Multiplication() {}
+
+
+
+	public static BigInteger times(BigInteger a, BigInteger b) {	// a*b, by whichever way is fastest
+		if (a.bitLength() < THRESHOLD || b.bitLength() < THRESHOLD)
+			return a.multiply(b);
+		final BigInteger product = convolve(a.abs(), b.abs());
+		if (product == null || !product.mod(CHECK).equals(a.abs().mod(CHECK).multiply(b.abs().mod(CHECK)).mod(CHECK)))
+			return a.multiply(b);	// this won't happen unless something went badly wrong
+		return (a.signum()*b.signum() < 0) ? product.negate() : product;
+	}
+
+
+
+	public static String toString(BigInteger x) {	// x in base ten, split in half over and over by powers of ten
+		if (x.bitLength() < 2*THRESHOLD)	// BigInteger does its own splitting, which is just as good until the FFT kicks in
+			return x.toString();
+		final List<BigInteger> powers = new ArrayList<BigInteger>();	// 10^(LEAF_DIGITS*2^k), up to about the square root of x
+		final List<BigInteger> inverses = new ArrayList<BigInteger>();
+		powers.add(BigInteger.TEN.pow(LEAF_DIGITS));
+		inverses.add(null);
+		while (2*powers.get(powers.size()-1).bitLength() - 1 <= x.bitLength()) {
+			final BigInteger last = powers.get(powers.size()-1);
+			final BigInteger next = times(last, last);
+			if (next.bitLength() < THRESHOLD)	// the small ones get divided by BigInteger, so they need no reciprocal
+				inverses.add(null);
+			else if (inverses.get(inverses.size()-1) == null)
+				inverses.add(BigInteger.ONE.shiftLeft(2*next.bitLength()).divide(next));
+			else	// and each reciprocal after the first comes from the one before, since the powers are each other's squares
+				inverses.add(reciprocal(next, last, inverses.get(inverses.size()-1)));
+			powers.add(next);
+		}
+		final StringBuilder out = new StringBuilder((int) (x.bitLength()*LOG10_2) + 2);
+		if (x.signum() < 0)
+			out.append('-');
+		digits(x.abs(), powers.size()-1, powers, inverses, false, out);
+		return out.toString();
+	}
+
+
+	private static void digits(BigInteger x, int k, List<BigInteger> powers, List<BigInteger> inverses,
+			boolean padded, StringBuilder out) {	// write x < powers[k]^2, with all of its leading zeros if it is padded
+		if (k < 0) {
+			final String leaf = x.toString();
+			for (int i = leaf.length(); padded && i < LEAF_DIGITS; i ++)
+				out.append('0');
+			out.append(leaf);
+			return;
+		}
+		final BigInteger[] qr = (inverses.get(k) == null) ?
+				x.divideAndRemainder(powers.get(k)) : divide(x, powers.get(k), inverses.get(k));	// the small ones are no faster by reciprocal
+		if (!padded && qr[0].signum() == 0)	// the top half is only leading zeros
+			digits(qr[1], k-1, powers, inverses, false, out);
+		else {
+			digits(qr[0], k-1, powers, inverses, padded, out);
+			digits(qr[1], k-1, powers, inverses, true, out);
+		}
+	}
+
+
+	private static BigInteger[] divide(BigInteger x, BigInteger p, BigInteger inverse) {	// {x/p, x%p} for 0 <= x < p^2, given about 4^s/p where p has s bits
+		final int s = p.bitLength();
+		BigInteger q = times(x.shiftRight(s-1), inverse).shiftRight(s+1);	// this is within a few of the answer
+		BigInteger r = x.subtract(times(q, p));
+		while (r.signum() < 0) {
+			q = q.subtract(BigInteger.ONE);
+			r = r.add(p);
+		}
+		while (r.compareTo(p) >= 0) {
+			q = q.add(BigInteger.ONE);
+			r = r.subtract(p);
+		}
+		return new BigInteger[] {q, r};
+	}
+
+
+	private static BigInteger reciprocal(BigInteger p, BigInteger root, BigInteger inverse) {	// about 4^s/p, where p = root^2 has s bits, given about 4^s'/root where root has s' bits
+		final int s = p.bitLength(), s0 = root.bitLength();
+		final BigInteger y0 = shifted(times(inverse, inverse), 2*s - 4*s0);	// this has about s' good bits
+		final BigInteger e = BigInteger.ONE.shiftLeft(2*s).subtract(times(p, y0));
+		final int keep = s - s0 + GUARD_BITS;	// and one step of Newton's method doubles that, which only takes the leading bits of each
+		final int t1 = Math.max(0, y0.bitLength() - keep), t2 = Math.max(0, e.bitLength() - keep);
+		final BigInteger step = shifted(times(y0.shiftRight(t1), e.shiftRight(t2)), t1 + t2 - 2*s);
+		final int small = Math.max(0, step.bitLength() + e.bitLength() - 2*s) + GUARD_BITS;	// the step comes up short by step*e/4^s, which would square the error every time if it were left out
+		final int t3 = Math.max(0, step.bitLength() - small), t4 = Math.max(0, e.bitLength() - small);
+		return y0.add(step).add(shifted(step.shiftRight(t3).multiply(e.shiftRight(t4)), t3 + t4 - 2*s));
+	}
+
+
+	private static BigInteger shifted(BigInteger x, int bits) {	// x*2^bits, rounded down
+		return (bits >= 0) ? x.shiftLeft(bits) : x.shiftRight(-bits);
+	}
+
+
+
+	private static BigInteger convolve(BigInteger a, BigInteger b) {	// a*b for nonnegative a and b, or null if it can't be done precisely
+		final int totalBits = a.bitLength() + b.bitLength();
+		int limb = 16;	// the biggest limbs whose products can all be added up exactly
+		while (limb > 1 && 2*limb + 64 - Long.numberOfLeadingZeros(totalBits/limb + 1) > MAX_COEFFICIENT_BITS)
+			limb --;
+		final int limbs = totalBits/limb + 1;
+		int n = 1;
+		while (n < limbs)
+			n *= 2;
+		if (n > 1 << 26)
+			return null;
+
+		final double[] re = new double[n], im = new double[n];
+		split(a, limb, re);	// a goes in the real part and b in the imaginary part
+		split(b, limb, im);
+		final double[][] forward = twiddles(n, false);
+		decimate(re, im, forward[0], forward[1], 0, n);	// this leaves the transform in bit-reversed order
+		multiply(re, im, 0, 0);
+		multiply(re, im, 1, 1);
+		for (int m = 2; m < n; m *= 2)	// where each frequency's negative is its mirror image in the same octave
+			for (int j = m; j < m + m/2; j ++)
+				multiply(re, im, j, 3*m - 1 - j);
+		final double[][] backward = twiddles(n, true);
+		butterflies(re, im, backward[0], backward[1], 0, n);	// which is just the order the inverse wants
+		return join(re, limb, totalBits);
+	}
+
+
+	private static void multiply(double[] re, double[] im, int j, int k) {	// take the transforms of a and b apart again at two opposite frequencies, and multiply
+		final double ar = (re[j] + re[k])/2, ai = (im[j] - im[k])/2;	// the transform of a
+		final double br = (im[j] + im[k])/2, bi = (re[k] - re[j])/2;	// the transform of b
+		re[j] = ar*br - ai*bi;
+		im[j] = ar*bi + ai*br;
+		re[k] = re[j];	// the product is real, so its transform at -j is the conjugate
+		im[k] = -im[j];
+	}
+
+
+	private static void split(BigInteger x, int limb, double[] out) {	// cut x into limbs, least significant first
+		final byte[] bytes = x.toByteArray();	// big-endian
+		final long mask = (1L << limb) - 1;
+		long buffer = 0;
+		int buffered = 0, j = 0;
+		for (int i = bytes.length - 1; i >= 0; i --) {
+			buffer |= (bytes[i] & 0xFFL) << buffered;
+			buffered += 8;
+			while (buffered >= limb) {
+				out[j ++] = buffer & mask;
+				buffer >>>= limb;
+				buffered -= limb;
+			}
+		}
+		if (buffered > 0 && buffer != 0)
+			out[j] = buffer;
+	}
+
+
+	private static BigInteger join(double[] coefficients, int limb, int totalBits) {	// round and carry the coefficients back into an integer
+		final byte[] bytes = new byte[totalBits/8 + 2];	// big-endian
+		final int n = coefficients.length;
+		long carry = 0, buffer = 0;
+		int buffered = 0, i = bytes.length - 1;
+		for (int j = 0; j < n; j ++) {
+			final double c = coefficients[j]/n;
+			final long rounded = Math.round(c);
+			if (Math.abs(c - rounded) > 0.25 || rounded < 0)
+				return null;	// that's too close to call
+			carry += rounded;
+			buffer |= (carry & ((1L << limb) - 1)) << buffered;
+			carry >>>= limb;
+			buffered += limb;
+			for (; buffered >= 8; buffered -= 8) {
+				if (i < 0 && (buffer & 0xFF) != 0)
+					return null;	// there's no room for this, so something went wrong
+				if (i >= 0)
+					bytes[i --] = (byte) buffer;
+				buffer >>>= 8;
+			}
+		}
+		if (carry != 0 || buffer != 0)
+			return null;
+		return new BigInteger(1, bytes);
+	}
+
+
+	static void transform(double[] re, double[] im, boolean inverse) {	// an in-place radix-2 FFT, of a power-of-two length
+		final int n = re.length;
+		for (int i = 1, j = 0; i < n; i ++) {	// put everything in bit-reversed order
+			int bit = n >> 1;
+			for (; (j & bit) != 0; bit >>= 1)
+				j ^= bit;
+			j ^= bit;
+			if (i < j) {
+				double t = re[i];	re[i] = re[j];	re[j] = t;
+				t = im[i];	im[i] = im[j];	im[j] = t;
+			}
+		}
+		final double[][] roots = twiddles(n, inverse);
+		butterflies(re, im, roots[0], roots[1], 0, n);
+	}
+
+
+	private static double[][] twiddles(int n, boolean inverse) {	// the cosines and sines of the first half of the nth roots of unity, clockwise unless it's inverse
+		final double[] cos = new double[n/2], sin = new double[n/2];
+		final double stepCos = Math.cos(2*Math.PI/n), stepSin = (inverse ? 1 : -1)*Math.sin(2*Math.PI/n);
+		for (int k = 0; k < n/2; k ++) {
+			if (k%TWIDDLE_RUN == 0) {	// compute some of them directly, so the recurrence can't drift far
+				cos[k] = Math.cos(2*Math.PI*k/n);
+				sin[k] = (inverse ? 1 : -1)*Math.sin(2*Math.PI*k/n);
+			}
+			else {	// and rotate the rest from those
+				cos[k] = cos[k-1]*stepCos - sin[k-1]*stepSin;
+				sin[k] = cos[k-1]*stepSin + sin[k-1]*stepCos;
+			}
+		}
+		return new double[][] {cos, sin};
+	}
+
+
+	private static void butterflies(double[] re, double[] im, double[] cos, double[] sin,
+			int start, int len) {	// transform one block that is in bit-reversed order, depth first so the small passes stay in cache
+		if (len >= 4*BLOCK) {	// two passes at a time, so each point only comes out of memory once for both
+			for (int q = 0; q < 4; q ++)
+				butterflies(re, im, cos, sin, start + q*len/4, len/4);
+			combineTwice(re, im, cos, sin, start, len);
+		}
+		else if (len > BLOCK) {
+			butterflies(re, im, cos, sin, start, len/2);
+			butterflies(re, im, cos, sin, start + len/2, len/2);
+			combine(re, im, cos, sin, start, len);
+		}
+		else {
+			for (int u = start; u < start + len; u += 2) {	// the first pass needs no twiddles
+				final double xr = re[u+1], xi = im[u+1];
+				re[u+1] = re[u] - xr;
+				im[u+1] = im[u] - xi;
+				re[u] += xr;
+				im[u] += xi;
+			}
+			int l = 4;
+			for (; 2*l <= len; l *= 4)	// and the rest go two at a time too
+				for (int b = start; b < start + len; b += 2*l)
+					combineTwice(re, im, cos, sin, b, 2*l);
+			if (l <= len)	// but for the last one, if there's an odd number
+				for (int b = start; b < start + len; b += l)
+					combine(re, im, cos, sin, b, l);
+		}
+	}
+
+
+	private static void combineTwice(double[] re, double[] im, double[] cos, double[] sin,
+			int start, int len) {	// put together the transforms of the four quarters of a block, as if by combine() on both halves and then the whole
+		final int step = 2*cos.length/len, quarter = len/4;
+		for (int k = 0; k < quarter; k ++) {
+			final int a = start + k, b = a + quarter, c = b + quarter, d = c + quarter;
+			final double w1r = cos[2*k*step], w1i = sin[2*k*step];	// the halves' twiddle
+			final double w2r = cos[k*step], w2i = sin[k*step];	// and the whole's, for a and c
+			final double w3r = cos[(k + quarter)*step], w3i = sin[(k + quarter)*step];	// and for b and d
+
+			double xr = re[b]*w1r - im[b]*w1i, xi = re[b]*w1i + im[b]*w1r;
+			final double a1r = re[a] + xr, a1i = im[a] + xi, b1r = re[a] - xr, b1i = im[a] - xi;
+			xr = re[d]*w1r - im[d]*w1i;
+			xi = re[d]*w1i + im[d]*w1r;
+			final double c1r = re[c] + xr, c1i = im[c] + xi, d1r = re[c] - xr, d1i = im[c] - xi;
+
+			xr = c1r*w2r - c1i*w2i;
+			xi = c1r*w2i + c1i*w2r;
+			re[a] = a1r + xr;
+			im[a] = a1i + xi;
+			re[c] = a1r - xr;
+			im[c] = a1i - xi;
+			xr = d1r*w3r - d1i*w3i;
+			xi = d1r*w3i + d1i*w3r;
+			re[b] = b1r + xr;
+			im[b] = b1i + xi;
+			re[d] = b1r - xr;
+			im[d] = b1i - xi;
+		}
+	}
+
+
+	private static void combine(double[] re, double[] im, double[] cos, double[] sin,
+			int start, int len) {	// put together the transforms of the two halves of a block
+		final int step = 2*cos.length/len;
+		for (int k = 0; k < len/2; k ++) {
+			final int u = start + k, v = u + len/2;
+			final double wr = cos[k*step], wi = sin[k*step];
+			final double xr = re[v]*wr - im[v]*wi, xi = re[v]*wi + im[v]*wr;
+			re[v] = re[u] - xr;
+			im[v] = im[u] - xi;
+			re[u] += xr;
+			im[u] += xi;
+		}
+	}
+
+
+	private static void decimate(double[] re, double[] im, double[] cos, double[] sin,
+			int start, int len) {	// the mirror image of butterflies(): transform one block in order, and leave it in bit-reversed order
+		if (len >= 4*BLOCK) {
+			separateTwice(re, im, cos, sin, start, len);
+			for (int q = 0; q < 4; q ++)
+				decimate(re, im, cos, sin, start + q*len/4, len/4);
+		}
+		else if (len > BLOCK) {
+			separate(re, im, cos, sin, start, len);
+			decimate(re, im, cos, sin, start, len/2);
+			decimate(re, im, cos, sin, start + len/2, len/2);
+		}
+		else {
+			int l = len;
+			if (Integer.numberOfTrailingZeros(len)%2 == 0) {	// the first pass goes alone if there's an odd number of them
+				separate(re, im, cos, sin, start, len);
+				l /= 2;
+			}
+			for (; l >= 8; l /= 4)	// and the rest but the last go two at a time
+				for (int b = start; b < start + len; b += l)
+					separateTwice(re, im, cos, sin, b, l);
+			for (int u = start; u < start + len; u += 2) {	// and the last needs none
+				final double xr = re[u+1], xi = im[u+1];
+				re[u+1] = re[u] - xr;
+				im[u+1] = im[u] - xi;
+				re[u] += xr;
+				im[u] += xi;
+			}
+		}
+	}
+
+
+	private static void separateTwice(double[] re, double[] im, double[] cos, double[] sin,
+			int start, int len) {	// the mirror image of combineTwice(): separate() on the whole block and then on both halves
+		final int step = 2*cos.length/len, quarter = len/4;
+		for (int k = 0; k < quarter; k ++) {
+			final int a = start + k, b = a + quarter, c = b + quarter, d = c + quarter;
+			final double w1r = cos[2*k*step], w1i = sin[2*k*step];	// the halves' twiddle
+			final double w2r = cos[k*step], w2i = sin[k*step];	// and the whole's, for a and c
+			final double w3r = cos[(k + quarter)*step], w3i = sin[(k + quarter)*step];	// and for b and d
+
+			final double a1r = re[a] + re[c], a1i = im[a] + im[c], b1r = re[b] + re[d], b1i = im[b] + im[d];
+			double xr = re[a] - re[c], xi = im[a] - im[c];
+			final double c1r = xr*w2r - xi*w2i, c1i = xr*w2i + xi*w2r;
+			xr = re[b] - re[d];
+			xi = im[b] - im[d];
+			final double d1r = xr*w3r - xi*w3i, d1i = xr*w3i + xi*w3r;
+
+			re[a] = a1r + b1r;
+			im[a] = a1i + b1i;
+			xr = a1r - b1r;
+			xi = a1i - b1i;
+			re[b] = xr*w1r - xi*w1i;
+			im[b] = xr*w1i + xi*w1r;
+			re[c] = c1r + d1r;
+			im[c] = c1i + d1i;
+			xr = c1r - d1r;
+			xi = c1i - d1i;
+			re[d] = xr*w1r - xi*w1i;
+			im[d] = xr*w1i + xi*w1r;
+		}
+	}
+
+
+	private static void separate(double[] re, double[] im, double[] cos, double[] sin,
+			int start, int len) {	// the mirror image of combine(): mix the two halves of a block, so each can be transformed on its own
+		final int step = 2*cos.length/len;
+		for (int k = 0; k < len/2; k ++) {
+			final int u = start + k, v = u + len/2;
+			final double wr = cos[k*step], wi = sin[k*step];
+			final double xr = re[u] - re[v], xi = im[u] - im[v];
+			re[u] += re[v];
+			im[u] += im[v];
+			re[v] = xr*wr - xi*wi;
+			im[v] = xr*wi + xi*wr;
+		}
+	}
+
+}
@@ -0,0 +1,290 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import maths.Constant;
+
+/**
+ * Solves systems of nonlinear equations by Newton's method with a backtracking
+ * line search. If the Jacobian is sparse enough, it is assembled from a few
+ * Jacobian-vector products, one for each group of columns that never share a
+ * row, and those products run in parallel; otherwise it is never written down
+ * at all, and each Newton step is solved by GMRES, one Jacobian-vector product
+ * per iteration.
+ *
+ * @author jkunimune
+ */
+public class NewtonSolver {
+
+	private static final int MAX_ITER = 100;	// the most Newton steps we will take
+	private static final double TOLERANCE = 1e-12;	// the residual we want, relative to where we started
+	private static final double ARMIJO = 1e-4;	// the fraction of the predicted decrease a step must achieve
+	private static final double MIN_STEP = 1e-10;	// the shortest step the line search will try
+	private static final int MAX_COLORS = 256;	// Jacobians that need more products than this are left matrix-free
+	private static final int MIN_PARALLEL = 8;	// the fewest products worth splitting between threads
+
+	private static Monitor monitor = null;
+
+
+
+	/**
+	 * Something that wants to hear about every Newton iteration.
+	 *
+	 * @author jkunimune
+	 */
+	public interface Monitor {
+		public void report(int iteration, double residual, double step, int linearIterations);
+	}
+
+
+
+	public static synchronized void setMonitor(Monitor m) {	// listen to the solver (or pass null to stop)
+		monitor = m;
+	}
+
+
+	private static synchronized void report(int iteration, double residual, double step, int linearIterations) {
+		if (monitor != null)
+			monitor.report(iteration, residual, step, linearIterations);
+	}
+
+
+	public static Constant[] solve(Tape tape, double[] start) throws ArithmeticException {	// find real inputs that make every output zero
+		final int n = start.length;
+		final Frame frame = tape.newFrame();
+
+		final CSRMatrix pattern = tape.sparsity();
+		final int[] color = new int[n];
+		final int numColors = color(pattern, color);
+		final boolean matrixFree = numColors > MAX_COLORS;
+
+		double[] x = start.clone();
+		double[] f = residual(frame.differentiate(x), n);
+		double fNorm = LinearSolver.norm(f), lastNorm = fNorm, eta = .5;
+		final double goal = TOLERANCE*Math.max(1, fNorm);
+		final double floor = Math.sqrt(TOLERANCE)*Math.max(1, fNorm);	// what we'll settle for if roundoff stops us
+		double step = 0;
+		int linIter = 0;
+		for (int iter = 0; iter <= MAX_ITER; iter ++) {
+			report(iter, fNorm, step, linIter);
+			if (fNorm <= goal)
+				return toConstants(frame.evaluate(x), x, goal);
+			if (iter == MAX_ITER)
+				break;
+
+			final double[] minusF = LinearAlgebra.scale(f, -1);
+			final double[] dx = new double[n];
+			if (!matrixFree) {	// write down the Jacobian and solve it directly
+				final CSRMatrix jac = assemble(frame, tape.size(), pattern, color, numColors);
+				try {
+					System.arraycopy(LinearSolver.solve(jac, minusF, null)[0], 0, dx, 0, n);
+				} catch (ArithmeticException e) {	// if it is singular, just go downhill
+					steepestDescent(jac, f, dx);
+				}
+				linIter = 0;
+			}
+			else {	// or only ever multiply by it
+				if (iter > 0)	// Eisenstat and Walker's forcing term
+					eta = Math.max(Math.min(.9*Math.pow(fNorm/lastNorm, 2), .9), .9*eta*eta);
+				eta = Math.max(eta, .5*goal/fNorm);
+				linIter = gmres(frame, tape.size(), minusF, dx, eta);
+			}
+
+			double t = 1, newNorm;	// now back off until the step actually helps
+			double[] newX;
+			while (true) {
+				newX = x.clone();
+				for (int j = 0; j < n; j ++)
+					newX[j] += t*dx[j];
+				newNorm = LinearSolver.norm(residual(frame.evaluate(newX), n));
+				if (newNorm*newNorm <= (1 - 2*ARMIJO*t)*fNorm*fNorm)
+					break;
+				if (t < MIN_STEP) {
+					if (fNorm <= floor)
+						return toConstants(frame.evaluate(x), x, floor);
+					throw new ArithmeticException("The solution did not converge.");
+				}
+				final double fit = t*t*fNorm*fNorm/(newNorm*newNorm - fNorm*fNorm + 2*t*fNorm*fNorm);	// fit a parabola to the residual
+				t = (fit < Double.POSITIVE_INFINITY) ? Math.min(.5*t, Math.max(.1*t, fit)) : .1*t;
+			}
+
+			x = newX;
+			step = t*LinearSolver.norm(dx);
+			lastNorm = fNorm;
+			f = residual(frame.differentiate(x), n);
+			fNorm = LinearSolver.norm(f);
+		}
+		throw new ArithmeticException("The solution did not converge.");
+	}
+
+
+
+	private static double[] residual(Frame frame, int n) {	// the real parts of the outputs
+		final double[] f = new double[n];
+		for (int i = 0; i < n; i ++)
+			f[i] = frame.getReal(i);
+		return f;
+	}
+
+
+	private static Constant[] toConstants(Frame frame, double[] x, double goal) {
+		double imag = 0;
+		for (int i = 0; i < x.length; i ++)
+			imag += Math.pow(frame.getImag(i), 2);
+		if (Math.sqrt(imag) > goal)
+			throw new ArithmeticException("I could not find a real solution.");
+
+		final Constant[] output = new Constant[x.length];
+		for (int j = 0; j < x.length; j ++)
+			output[j] = new Constant(x[j]);
+		return output;
+	}
+
+
+	private static int color(CSRMatrix pattern, int[] color) {	// group columns that never share a row, greedily
+		final int n = pattern.getWidth();
+		final int[] rowStart = pattern.getRowStart(), cols = pattern.getCols();
+		for (int i = 0; i < pattern.getHeight(); i ++) {	// the widest row needs that many colors anyway
+			if (rowStart[i+1] - rowStart[i] > MAX_COLORS) {
+				for (int j = 0; j < n; j ++)
+					color[j] = j;
+				return n;
+			}
+		}
+
+		final int[] colStart = new int[n+1], rows = new int[pattern.nonzeros()];	// find the rows in each column
+		for (int p = 0; p < rows.length; p ++)
+			colStart[cols[p]+1] ++;
+		for (int j = 0; j < n; j ++)
+			colStart[j+1] += colStart[j];
+		final int[] fill = Arrays.copyOf(colStart, n);
+		for (int i = 0; i < pattern.getHeight(); i ++)
+			for (int p = rowStart[i]; p < rowStart[i+1]; p ++)
+				rows[fill[cols[p]] ++] = i;
+
+		Arrays.fill(color, -1);
+		final int[] taken = new int[n+1];	// taken[c] == j+1 if column j can't have color c
+		int numColors = 0;
+		for (int j = 0; j < n; j ++) {
+			for (int q = colStart[j]; q < colStart[j+1]; q ++) {
+				final int i = rows[q];
+				for (int p = rowStart[i]; p < rowStart[i+1]; p ++)
+					if (color[cols[p]] >= 0)
+						taken[color[cols[p]]] = j+1;
+			}
+			int c = 0;
+			while (taken[c] == j+1)
+				c ++;
+			color[j] = c;
+			numColors = Math.max(numColors, c+1);
+		}
+		return numColors;
+	}
+
+
+	private static CSRMatrix assemble(final Frame frame, final int size,
+			CSRMatrix pattern, final int[] color, final int numColors) {	// fill in the Jacobian one color at a time
+		final int n = pattern.getWidth(), m = pattern.getHeight();
+		final int[] rowStart = pattern.getRowStart(), cols = pattern.getCols();
+		final int[] row = new int[pattern.nonzeros()];
+		final int[] count = new int[numColors+1];
+		for (int i = 0; i < m; i ++) {
+			for (int p = rowStart[i]; p < rowStart[i+1]; p ++) {
+				row[p] = i;
+				count[color[cols[p]]+1] ++;
+			}
+		}
+		for (int c = 0; c < numColors; c ++)	// sort the entries by color
+			count[c+1] += count[c];
+		final int[] byColor = new int[row.length], start = count.clone();
+		for (int p = 0; p < row.length; p ++)
+			byColor[count[color[cols[p]]] ++] = p;
+
+		final double[] values = new double[row.length];
+		final int chunks = (numColors < MIN_PARALLEL) ? 1 :
+				Math.min(numColors, ForkJoinPool.getCommonPoolParallelism());
+		final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+		for (int t = 0; t < chunks; t ++) {
+			final int c0 = t*numColors/chunks, c1 = (t+1)*numColors/chunks;
+			tasks.add(new RecursiveAction() {	// each thread has its own scratch space, but they all share the Frame
+				private static final long serialVersionUID = 1L;
+				protected void compute() {
+					final double[] tRe = new double[size], tIm = new double[size];
+					final double[] v = new double[n], out = new double[m];
+					for (int c = c0; c < c1; c ++) {
+						for (int j = 0; j < n; j ++)
+							v[j] = (color[j] == c) ? 1 : 0;
+						frame.jvp(v, tRe, tIm, out, null);
+						for (int q = start[c]; q < start[c+1]; q ++)
+							values[byColor[q]] = out[row[byColor[q]]];
+					}
+				}
+			});
+		}
+		if (chunks == 1)
+			tasks.get(0).invoke();
+		else
+			ForkJoinTask.invokeAll(tasks);
+		return new CSRMatrix(m, n, rowStart, cols, values, null);
+	}
+
+
+	private static void steepestDescent(CSRMatrix jac, double[] f, double[] dx) {	// the Cauchy point: -(|g|^2/|Jg|^2) g, where g = J^T f
+		final int[] rowStart = jac.getRowStart(), cols = jac.getCols();
+		final double[] re = jac.getReal();
+		final double[] g = new double[dx.length];
+		for (int i = 0; i < f.length; i ++)
+			for (int p = rowStart[i]; p < rowStart[i+1]; p ++)
+				g[cols[p]] += re[p]*f[i];
+		final double[] jg = new double[f.length];
+		jac.multiply(g, jg);
+		final double jgNorm = LinearSolver.norm(jg), gNorm = LinearSolver.norm(g);
+		if (jgNorm == 0)
+			throw new ArithmeticException("The solution did not converge.");
+		for (int j = 0; j < dx.length; j ++)
+			dx[j] = -gNorm*gNorm/(jgNorm*jgNorm)*g[j];
+	}
+
+
+	private static int gmres(final Frame frame, final int size,
+			double[] b, double[] dx, double tol) {	// solve J dx = b using nothing but Jacobian-vector products
+		final double[] tRe = new double[size], tIm = new double[size];
+		final int[] count = {0};
+		LinearSolver.gmres(new LinearSolver.LinearMap() {
+			public void apply(double[] v, double[] jv) {
+				frame.jvp(v, tRe, tIm, jv, null);
+				count[0] ++;
+			}
+		}, null, b, dx, tol, Math.max(100, b.length));
+		return count[0];
+	}
+
+}
@@ -23,6 +23,7 @@
  */
 package maths.auxiliary;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -32,6 +33,7 @@ import maths.Constant;
 import maths.Expression;
 import maths.Function;
 import maths.Locus;
+import maths.Matrix;
 import maths.Operation;
 import maths.Set;
 import maths.Statement;
@@ -140,13 +142,15 @@ public class Notation {
 		if (n == 1) {
 			if (isSymbol(tokens.get(0).charAt(0)))
 				return new Operation(Operator.ERROR);
+			else if (isDigit(tokens.get(0).charAt(0)) && isWhole(tokens.get(0)))
+				return new Constant(Rational.of(new BigInteger(tokens.get(0))));	// whole numbers are exact, however long they are
 			else if (isDigit(tokens.get(0).charAt(0)))
 				return new Constant(Double.parseDouble(tokens.get(0)));
 			else
 				return new Variable(tokens.get(0));
 		}
 		
-		for (byte rank = 0; rank < 4; rank ++) {	// in order of operations
+		for (byte rank = 0; rank < 5; rank ++) {	// in order of operations
 			String nest = "";
 			boolean inParentheses = true; // is it completely in parentheses?
 			for (int i = n-1; i >= 0; i --) {
@@ -160,14 +164,21 @@ public class Notation {
 				if (i > 0 && nest.isEmpty())	inParentheses = false;
 				
 				if (nest.isEmpty()) {
-					if (rank == 0) {	// vectors
+					if (rank == 0) {	// matrix rows
+						if (s.equals(";")) {
+							return Matrix.stack(
+									parEx(tokens.subList(0, i)),
+									parEx(tokens.subList(i+1, n)));
+						}
+					}
+					if (rank == 1) {	// vectors
 						if (s.equals(",")) {
 							return Vector.concat(
 									parEx(tokens.subList(0, i)),
 									parEx(tokens.subList(i+1, n)));
 						}
 					}
-					if (rank == 1) {	// arithmetic
+					if (rank == 2) {	// arithmetic
 						if (s.equals("+"))
 							return new Operation(Operator.ADD,
 									parEx(tokens.subList(0, i)),
@@ -178,7 +189,7 @@ public class Notation {
 										parEx(tokens.subList(0, i)),
 										parEx(tokens.subList(i+1,n)));
 					}
-					if (rank == 2) {	// geometric
+					if (rank == 3) {	// geometric
 						if (s.equals("*") || s.equals("\u2217"))
 							return new Operation(Operator.MULTIPLY,
 									parEx(tokens.subList(0, i)),
@@ -205,8 +216,8 @@ public class Notation {
 									parEx(tokens.subList(0, i)),
 									parEx(tokens.subList(i, n)));
 					}
-					if (rank == 3) {	// exponential
-						if (s.equals("^"))
+					if (rank == 4) {	// exponential
+						if (s.equals("^"))	// (A^T is a transverse, but that depends on what A and T are, so Operation decides)
 							return new Operation(Operator.POWER,
 									parEx(tokens.subList(0, i)),
 									parEx(tokens.subList(i+1,n)));
@@ -214,7 +225,7 @@ public class Notation {
 				}
 			}
 			
-			if (rank == 1 && tokens.get(0).equals("-"))	// the special negation operator
+			if (rank == 2 && tokens.get(0).equals("-"))	// the special negation operator
 				return new Operation(Operator.NEGATE,
 						parEx(tokens.subList(1, tokens.size())));
 			
@@ -226,6 +237,11 @@ public class Notation {
 						return parSet(tokens.subList(1, n-1));
 				}
 				
+				if (tokens.get(0).equalsIgnoreCase("solve("))	// systems of equations hold Comparisons
+					return new BuiltInFunction("solve", parSystem(tokens.subList(1, n-1)));
+				if (tokens.get(0).equalsIgnoreCase("diag("))	// diag(v, k) must not flatten v into k
+					return new BuiltInFunction("diag", parArguments(tokens.subList(1, n-1)));
+				
 				final Expression interior = parEx(tokens.subList(1, n-1));
 				
 				if (tokens.get(0).equals("|"))
@@ -235,7 +251,9 @@ public class Notation {
 						tokens.get(0).length()-1);
 				
 				if (funcString.isEmpty()) {
-					if (interior instanceof Vector &&
+					if (interior instanceof Matrix)	// matrices bring their own brackets
+						return interior;
+					else if (interior instanceof Vector &&
 							!((Vector)interior).getParenthetic())	// vectors ignore parentheses
 						return new Vector(
 								true, ((Vector)interior).getComponents());
@@ -267,6 +285,54 @@ public class Notation {
 	}
 	
 	
+	private static final Vector parSystem(List<String> tokens) throws IllegalArgumentException {	// parse a list of equations
+		final List<Expression> residuals = new ArrayList<Expression>();
+		int level = 0;
+		int lastComma = 0;
+		for (int i = 0; i <= tokens.size(); i ++) {
+			if (i < tokens.size()) {
+				final String s = tokens.get(i);
+				if (isOpenP(s.charAt(s.length()-1)))
+					level ++;
+				else if (isCloseP(s.charAt(s.length()-1)))
+					level --;
+				if (level != 0 || !s.equals(","))
+					continue;
+			}
+			final Statement eq = parse(tokens.subList(lastComma, i));
+			if (eq instanceof Comparison)
+				residuals.add(((Comparison) eq).residual());	// each equation becomes something that should be zero
+			else
+				residuals.add((Expression) eq);
+			lastComma = i+1;
+		}
+		return new Vector(residuals.toArray(new Expression[0]));
+	}
+	
+	
+	private static final Expression parArguments(List<String> tokens) throws IllegalArgumentException {	// parse a list of arguments without concatenating them
+		final List<Expression> args = new ArrayList<Expression>();
+		String nest = "";
+		int lastComma = 0;
+		for (int i = 0; i <= tokens.size(); i ++) {
+			if (i < tokens.size()) {
+				final char p = tokens.get(i).charAt(tokens.get(i).length()-1);
+				if (isCloseP(p) && !nest.isEmpty() && p == nest.charAt(0))	// absolute value bars both open and close
+					nest = nest.substring(1);
+				else if (isOpenP(p))
+					nest = correspondingP(p)+nest;
+				if (!nest.isEmpty() || !tokens.get(i).equals(","))
+					continue;
+			}
+			args.add(parEx(tokens.subList(lastComma, i)));
+			lastComma = i+1;
+		}
+		if (args.size() == 1)
+			return args.get(0);
+		return new Vector(args.toArray(new Expression[0]));
+	}
+	
+	
 	private static final Expression parSet(List<String> tokens) throws IllegalArgumentException {	// parse a set
 		int numColon = 0, numBars = 0;
 		int colonIdx = -1, barIdx = -1;
@@ -357,6 +423,14 @@ public class Notation {
 	}
 	
 	
+	private static final boolean isWhole(String s) {	// is this a number with no decimal point?
+		for (int i = 0; i < s.length(); i ++)
+			if (s.charAt(i) < '0' || s.charAt(i) > '9')
+				return false;
+		return true;
+	}
+	
+	
 	private static final boolean isSymbol(char c) {
 		return isComparator(c) || isOperator(c) || isOpenP(c) || isCloseP(c) ||
 				c == ' ';
@@ -373,7 +447,7 @@ public class Notation {
 	
 	
 	private static final boolean isOperator(char c) {
-		final char[] ops = {'+','-','*','\u2217','\u00D7','/','\\','%','^',',',':'};
+		final char[] ops = {'+','-','*','\u2217','\u00D7','/','\\','%','^',',',':',';'};
 		for (char o: ops)
 			if (c == o)
 				return true;
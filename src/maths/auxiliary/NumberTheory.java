@@ -0,0 +1,320 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Primality, factorisation, and the other things you can do with one integer.
+ * Small numbers get looked up in the shared sieve from Primes; bigger ones go
+ * through Miller-Rabin, and get split up with Brent's variant of Pollard's rho.
+ * Anything that fits in a long does its modular arithmetic in Montgomery form,
+ * so that it never has to divide.
+ *
+ * @author jkunimune
+ */
+public final class NumberTheory {
+
+	private static final long SIEVE_LOOKUP = 1L << 26;	// anything below this gets looked up in the sieve
+	private static final int TRIAL = 1 << 16;	// how far to trial-divide before bringing out the rho
+	private static final long MAX_MONTGOMERY = 1L << 62;	// the biggest modulus the long arithmetic can handle
+	private static final long[] DETERMINISTIC = {2, 325, 9375, 28178, 450775, 9780504, 1795265022};	// Miller-Rabin bases that are never wrong below 2^64
+	private static final int BIG_BASES = 24;	// how many prime bases to test bigger numbers against
+	private static final int BATCH = 128;	// how many rho steps to take between gcds
+	private static final long MAX_STEPS = 1L << 24;	// how long to let the rho run before giving up (a second or so)
+	private static final long MAX_BIG_STEPS = 1L << 20;	// and the same for BigIntegers, which are slower
+
+	private static final BigInteger LONG_LIMIT = BigInteger.valueOf(MAX_MONTGOMERY);
+
+
+
+	private NumberTheory() {}
+
+
+
+	public static boolean isPrime(BigInteger n) {
+		if (n.signum() <= 0)
+			return false;
+		if (n.compareTo(LONG_LIMIT) < 0)
+			return isPrime(n.longValue());
+		for (int p: Primes.upTo(TRIAL))
+			if (n.mod(BigInteger.valueOf(p)).signum() == 0)
+				return false;
+		final BigInteger nMinusOne = n.subtract(BigInteger.ONE);
+		final int s = nMinusOne.getLowestSetBit();
+		final BigInteger d = nMinusOne.shiftRight(s);
+		final int[] bases = Primes.upTo(100);
+		for (int i = 0; i < BIG_BASES; i ++) {	// this has less than a 4^-24 chance of being wrong
+			BigInteger x = BigInteger.valueOf(bases[i]).modPow(d, n);
+			if (x.equals(BigInteger.ONE) || x.equals(nMinusOne))
+				continue;
+			boolean witness = true;
+			for (int r = 1; r < s && witness; r ++) {
+				x = x.multiply(x).mod(n);
+				if (x.equals(nMinusOne))
+					witness = false;
+			}
+			if (witness)
+				return false;
+		}
+		return true;
+	}
+
+
+	public static BigInteger nextPrime(BigInteger n) {	// the smallest prime bigger than n
+		if (n.compareTo(BigInteger.valueOf(2)) < 0)
+			return BigInteger.valueOf(2);
+		BigInteger p = n.add(n.testBit(0) ? BigInteger.valueOf(2) : BigInteger.ONE);
+		while (!isPrime(p))
+			p = p.add(BigInteger.valueOf(2));
+		return p;
+	}
+
+
+	public static List<BigInteger> factor(BigInteger n) throws ArithmeticException {	// the prime factors, smallest first, with -1 first if it's negative
+		if (n.signum() == 0)
+			throw new ArithmeticException("0 has no prime factorisation.");
+		final List<BigInteger> factors = new ArrayList<BigInteger>();
+		if (n.signum() < 0)
+			factors.add(BigInteger.ONE.negate());
+		n = n.abs();
+
+		for (int p: Primes.upTo(TRIAL)) {	// get the small ones out of the way first
+			final BigInteger bigP = BigInteger.valueOf(p);
+			if (bigP.multiply(bigP).compareTo(n) > 0)
+				break;
+			BigInteger[] qr = n.divideAndRemainder(bigP);
+			while (qr[1].signum() == 0) {
+				factors.add(bigP);
+				n = qr[0];
+				qr = n.divideAndRemainder(bigP);
+			}
+		}
+		if (!n.equals(BigInteger.ONE))
+			split(n, factors);
+		Collections.sort(factors);
+		return factors;
+	}
+
+
+	public static BigInteger totient(BigInteger n) throws ArithmeticException {	// how many numbers up to n are coprime to it
+		if (n.signum() <= 0)
+			throw new ArithmeticException("The totient is only defined for positive integers.");
+		BigInteger phi = n;
+		BigInteger last = BigInteger.ZERO;
+		for (BigInteger p: factor(n)) {
+			if (!p.equals(last))	// n times the product of 1 - 1/p
+				phi = phi.divide(p).multiply(p.subtract(BigInteger.ONE));
+			last = p;
+		}
+		return phi;
+	}
+
+
+
+	private static void split(BigInteger n, List<BigInteger> factors) {	// add the prime factors of n (which has no small ones) to the list
+		if (n.equals(BigInteger.ONE))
+			return;
+		if (isPrime(n)) {
+			factors.add(n);
+			return;
+		}
+		final BigInteger d = (n.compareTo(LONG_LIMIT) < 0) ? BigInteger.valueOf(rho(n.longValue())) : rho(n);
+		split(d, factors);
+		split(n.divide(d), factors);
+	}
+
+
+	private static boolean isPrime(long n) {
+		if (n < SIEVE_LOOKUP)
+			return Primes.isPrime(n);
+		if (n%2 == 0)
+			return false;
+		final Montgomery m = new Montgomery(n);
+		final long one = m.one, minusOne = n - m.one;
+		final long d = (n - 1) >> Long.numberOfTrailingZeros(n - 1);
+		for (long base: DETERMINISTIC) {
+			if (base%n == 0)
+				continue;
+			long x = m.pow(m.from(base%n), d);
+			if (x == one || x == minusOne)
+				continue;
+			boolean witness = true;
+			for (long e = d; e < (n - 1)/2 && witness; e *= 2) {
+				x = m.times(x, x);
+				if (x == minusOne)
+					witness = false;
+			}
+			if (witness)
+				return false;
+		}
+		return true;
+	}
+
+
+	private static long rho(long n) {	// a nontrivial factor of odd composite n
+		final Montgomery m = new Montgomery(n);
+		for (long c = 1; ; c ++) {
+			final long cc = m.from(c);
+			long x, y = m.from(2), ys = y, q = m.one, g = 1;
+			for (long r = 1; g == 1; r *= 2) {	// Brent's cycle finding: x stays put while y runs ahead
+				if (r > MAX_STEPS)
+					throw new ArithmeticException("I couldn't find the factors of "+n+".");
+				x = y;
+				for (long i = 0; i < r; i ++)
+					y = m.plus(m.times(y, y), cc);
+				for (long k = 0; k < r && g == 1; k += BATCH) {
+					ys = y;
+					for (long i = 0; i < Math.min(BATCH, r - k); i ++) {
+						y = m.plus(m.times(y, y), cc);
+						q = m.times(q, Math.abs(x - y));	// batch up the differences so there's only one gcd
+					}
+					g = gcd(q, n);
+				}
+				if (g == n) {	// the batch overshot, so step back through it one at a time
+					do {
+						ys = m.plus(m.times(ys, ys), cc);
+						g = gcd(Math.abs(x - ys), n);
+					} while (g == 1);
+				}
+			}
+			if (g != n)
+				return g;
+		}
+	}
+
+
+	private static BigInteger rho(BigInteger n) {	// the same thing, for numbers too big for longs
+		final BigInteger two = BigInteger.valueOf(2);
+		for (BigInteger c = BigInteger.ONE; ; c = c.add(BigInteger.ONE)) {
+			BigInteger x, y = two, ys = y, q = BigInteger.ONE, g = BigInteger.ONE;
+			for (long r = 1; g.equals(BigInteger.ONE); r *= 2) {
+				if (r > MAX_BIG_STEPS)
+					throw new ArithmeticException("I couldn't find the factors of "+n+".");
+				x = y;
+				for (long i = 0; i < r; i ++)
+					y = y.multiply(y).add(c).mod(n);
+				for (long k = 0; k < r && g.equals(BigInteger.ONE); k += BATCH) {
+					ys = y;
+					for (long i = 0; i < Math.min(BATCH, r - k); i ++) {
+						y = y.multiply(y).add(c).mod(n);
+						q = q.multiply(x.subtract(y).abs()).mod(n);
+					}
+					g = q.gcd(n);
+				}
+				if (g.equals(n)) {
+					do {
+						ys = ys.multiply(ys).add(c).mod(n);
+						g = x.subtract(ys).abs().gcd(n);
+					} while (g.equals(BigInteger.ONE));
+				}
+			}
+			if (!g.equals(n))
+				return g;
+		}
+	}
+
+
+	private static long gcd(long a, long b) {
+		while (b != 0) {
+			final long t = a%b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+
+
+	/**
+	 * Arithmetic mod an odd n below 2^62, with every residue x stored as xR mod n
+	 * for R = 2^64. Multiplication then only needs the high half of a 128-bit
+	 * product, and never has to divide by n.
+	 *
+	 * @author jkunimune
+	 */
+	private static final class Montgomery {
+
+		private final long n;
+		private final long negInv;	// -1/n mod 2^64
+		private final long one;	// R mod n, which is 1 in Montgomery form
+		private final long rSquared;	// R^2 mod n, for getting numbers into Montgomery form
+
+		private Montgomery(long n) {
+			this.n = n;
+			long inv = n;	// Newton's method doubles the correct bits of 1/n each time
+			for (int i = 0; i < 5; i ++)
+				inv *= 2 - n*inv;
+			this.negInv = -inv;
+			this.one = Long.remainderUnsigned(-n, n);
+			long r2 = one;
+			for (int i = 0; i < 64; i ++) {	// double it 64 more times
+				r2 <<= 1;
+				if (r2 >= n)
+					r2 -= n;
+			}
+			this.rSquared = r2;
+		}
+
+		private long from(long x) {	// put x (which should be less than n) into Montgomery form
+			return times(x, rSquared);
+		}
+
+		private long times(long a, long b) {	// abR^-1 mod n
+			final long hi = multiplyHigh(a, b), lo = a*b;
+			final long m = lo*negInv;
+			long t = hi + multiplyHigh(m, n) + ((lo != 0) ? 1 : 0);	// (ab + mn)/R, since the low half cancels exactly
+			if (t >= n)
+				t -= n;
+			return t;
+		}
+
+		private long plus(long a, long b) {
+			final long s = a + b;
+			return (s >= n) ? s - n : s;
+		}
+
+		private long pow(long a, long e) {
+			long result = one;
+			for (; e > 0; e >>= 1) {
+				if ((e & 1) != 0)
+					result = times(result, a);
+				a = times(a, a);
+			}
+			return result;
+		}
+
+		private static long multiplyHigh(long x, long y) {	// the top 64 bits of the unsigned 128-bit product
+			final long x0 = x & 0xFFFFFFFFL, x1 = x >>> 32, y0 = y & 0xFFFFFFFFL, y1 = y >>> 32;
+			final long p01 = x0*y1, p10 = x1*y0;
+			final long middle = ((x0*y0) >>> 32) + (p01 & 0xFFFFFFFFL) + (p10 & 0xFFFFFFFFL);
+			return x1*y1 + (p01 >>> 32) + (p10 >>> 32) + (middle >>> 32);
+		}
+
+	}
+
+}
@@ -0,0 +1,625 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A class full of static methods for the greatest common divisors of
+ * polynomials with integer coefficients, in any number of variables. Terms
+ * are packed the way SparsePolynomial packs them, with each exponent in a
+ * field of the same number of bits and the first variable highest, so
+ * sorting them from biggest to smallest puts them in lexicographic order.
+ * Small problems go to the heuristic algorithm of Char, Geddes, and Gonnet:
+ * one variable gets replaced by a big enough integer, the GCD of what's left
+ * is found the same way, and its digits in that base are read back off as
+ * the coefficients of the powers of that variable. That makes integers with
+ * as many digits as the product of the degrees, so anything bigger goes to
+ * Brown's modular algorithm instead, which finds the GCD modulo a prime by
+ * evaluating and interpolating one variable at a time, and puts primes
+ * together by the Chinese remainder theorem until the answer stops changing.
+ * Either way, trial division checks the answer, so it can't be wrong, but it
+ * can give up. Neither has to do Euclid's algorithm on polynomials with
+ * integer coefficients, where the coefficients blow up.
+ *
+ * @author jkunimune
+ */
+public class PolynomialGCD {
+
+	private static final int MAX_TRIES = 6;	// how many evaluation points the heuristic tries before giving up
+	private static final long HEURISTIC_BITS = 1 << 12;	// the biggest integers worth making for the heuristic
+	private static final int MAX_PRIMES = 64;	// how many primes the modular algorithm tries before giving up
+	private static final int MAX_DEGREE = 1 << 12;	// the highest power the modular algorithm will write out densely
+	private static final long[] PRIMES = new long[MAX_PRIMES];	// the biggest primes whose residues can be multiplied in a long
+	static {
+		long p = 1L << 31;
+		for (int t = 0; t < MAX_PRIMES; t ++) {
+			do {
+				p --;
+			} while (!BigInteger.valueOf(p).isProbablePrime(32));
+			PRIMES[t] = p;
+		}
+	}
+
+
+
+	/**
+	 * A polynomial with integer coefficients, as a list of packed exponents
+	 * from the biggest down, and their coefficients, none of which are zero.
+	 *
+	 * @author jkunimune
+	 */
+	public static class Terms {
+		public final long[] exps;
+		public final BigInteger[] coefs;
+		
+		public Terms(long[] exps, BigInteger[] coefs) {
+			this.exps = exps;
+			this.coefs = coefs;
+		}
+		
+		public boolean isConstant() {
+			return exps.length == 0 || (exps.length == 1 && exps[0] == 0);
+		}
+	}
+
+
+
+	/**
+	 * The same, but with its coefficients modulo some prime, from 0 to p-1.
+	 *
+	 * @author jkunimune
+	 */
+	private static class Residues {
+		final long[] exps;
+		final long[] coefs;
+		
+		Residues(long[] exps, long[] coefs) {
+			this.exps = exps;
+			this.coefs = coefs;
+		}
+	}
+
+
+
+	public static Terms gcd(Terms a, Terms b, int vars, int bits) {	// the primitive GCD with a positive leading coefficient, or null if both methods give up
+		if (a.exps.length == 0)
+			return primitive(b);
+		if (b.exps.length == 0)
+			return primitive(a);
+		final Terms pa = primitive(a), pb = primitive(b);
+		long size = norm(pa).min(norm(pb)).bitLength() + 2;	// about how big the heuristic's integers will get
+		for (int v = 0; v < vars && size <= HEURISTIC_BITS; v ++)
+			size *= Math.max(1, Math.max(degree(pa, v, vars, bits), degree(pb, v, vars, bits)));
+		final Terms g = (size <= HEURISTIC_BITS) ? heuristic(pa, pb, vars, bits, true) : null;
+		return (g != null) ? g : modular(pa, pb, vars, bits);
+	}
+
+
+	public static Terms quotient(Terms a, Terms b, int vars, int bits) {	// a/b, or null if b doesn't divide a
+		final TreeMap<Long, BigInteger> rem = new TreeMap<Long, BigInteger>(Collections.reverseOrder());
+		for (int k = 0; k < a.exps.length; k ++)
+			rem.put(a.exps[k], a.coefs[k]);
+		final TreeMap<Long, BigInteger> q = new TreeMap<Long, BigInteger>(Collections.reverseOrder());
+		while (!rem.isEmpty()) {	// take off the leading term again and again
+			final long e = rem.firstKey();
+			if (!divides(b.exps[0], e, vars, bits))
+				return null;
+			final BigInteger[] qr = rem.get(e).divideAndRemainder(b.coefs[0]);
+			if (qr[1].signum() != 0)
+				return null;
+			final long qe = e - b.exps[0];
+			q.put(qe, qr[0]);
+			for (int j = 0; j < b.exps.length; j ++)
+				add(rem, qe + b.exps[j], qr[0].multiply(b.coefs[j]).negate());
+		}
+		return of(q);
+	}
+
+
+	public static BigInteger content(Terms a) {	// the GCD of the coefficients, with the sign of the leading one
+		BigInteger c = BigInteger.ZERO;
+		for (BigInteger ck: a.coefs)
+			c = c.gcd(ck);
+		return (a.coefs.length > 0 && a.coefs[0].signum() < 0) ? c.negate() : c;
+	}
+
+
+	public static Terms divided(Terms a, BigInteger c) {	// divide every coefficient by an integer that goes into all of them
+		if (c.equals(BigInteger.ONE))
+			return a;
+		final BigInteger[] coefs = new BigInteger[a.coefs.length];
+		for (int k = 0; k < coefs.length; k ++)
+			coefs[k] = a.coefs[k].divide(c);
+		return new Terms(a.exps, coefs);
+	}
+
+
+
+	private static Terms gcd(Terms a, Terms b, int vars, int bits, boolean check) {	// the GCD with its content, which is only certain to be right if it was checked
+		if (a.exps.length == 0)
+			return primitive(b);
+		if (b.exps.length == 0)
+			return primitive(a);
+		final BigInteger c = content(a).gcd(content(b));
+		final Terms g = heuristic(divided(a, content(a)), divided(b, content(b)), vars, bits, check);
+		if (g == null)
+			return null;
+		return multiplied(g, c);
+	}
+
+
+	private static Terms heuristic(Terms a, Terms b, int vars, int bits, boolean check) {	// the GCD of two primitive polynomials, or null (only the outermost call needs to check by division, since a wrong guess inside will make it fail)
+		int v = -1;	// the variable to evaluate is the last one either of them uses
+		for (int u = vars-1; u >= 0 && v < 0; u --)
+			if (degree(a, u, vars, bits) > 0 || degree(b, u, vars, bits) > 0)
+				v = u;
+		if (v < 0)
+			return new Terms(new long[] {0}, new BigInteger[] {a.coefs[0].gcd(b.coefs[0])});
+		final int deg = Math.max(degree(a, v, vars, bits), degree(b, v, vars, bits));
+		
+		BigInteger xi = norm(a).min(norm(b)).shiftLeft(1).add(BigInteger.valueOf(2));
+		for (int t = 0; t < MAX_TRIES; t ++) {
+			if ((long) xi.bitLength()*deg > HEURISTIC_BITS)
+				return null;
+			final Terms gamma = gcd(evaluated(a, v, xi, vars, bits), evaluated(b, v, xi, vars, bits), vars, bits, false);
+			if (gamma != null) {
+				final Terms g = interpolated(gamma, v, xi, vars, bits);
+				if (g != null && (!check || (quotient(a, g, vars, bits) != null && quotient(b, g, vars, bits) != null)))
+					return g;
+			}
+			xi = xi.multiply(BigInteger.valueOf(73794)).divide(BigInteger.valueOf(27011));	// this ratio is not close to anything nice
+		}
+		return null;
+	}
+
+
+	private static Terms evaluated(Terms a, int v, BigInteger xi, int vars, int bits) {	// a with variable v set to xi
+		final int shift = bits*(vars-1-v);
+		final long field = ((1L << bits) - 1) << shift;
+		final BigInteger[] powers = new BigInteger[degree(a, v, vars, bits) + 1];
+		powers[0] = BigInteger.ONE;
+		for (int i = 1; i < powers.length; i ++)
+			powers[i] = powers[i-1].multiply(xi);
+		final TreeMap<Long, BigInteger> out = new TreeMap<Long, BigInteger>(Collections.reverseOrder());
+		for (int k = 0; k < a.exps.length; k ++)
+			add(out, a.exps[k] & ~field, a.coefs[k].multiply(powers[(int) ((a.exps[k] & field) >>> shift)]));
+		return of(out);
+	}
+
+
+	private static Terms interpolated(Terms gamma, int v, BigInteger xi, int vars, int bits) {	// the primitive polynomial in variable v whose values at xi make gamma, digit by symmetric digit
+		final int shift = bits*(vars-1-v);
+		final BigInteger half = xi.shiftRight(1);
+		final TreeMap<Long, BigInteger> out = new TreeMap<Long, BigInteger>(Collections.reverseOrder());
+		for (int k = 0; k < gamma.exps.length; k ++) {
+			BigInteger c = gamma.coefs[k];
+			for (long i = 0; c.signum() != 0; i ++) {
+				if (i >= 1L << bits)
+					return null;
+				BigInteger r = c.mod(xi);
+				if (r.compareTo(half) > 0)
+					r = r.subtract(xi);
+				if (r.signum() != 0)
+					out.put(gamma.exps[k] | (i << shift), r);
+				c = c.subtract(r).divide(xi);
+			}
+		}
+		return primitive(of(out));
+	}
+
+
+
+	private static Terms modular(Terms a, Terms b, int vars, int bits) {	// Brown's algorithm on two primitive polynomials, or null
+		for (int v = 0; v < vars; v ++)
+			if (degree(a, v, vars, bits) > MAX_DEGREE || degree(b, v, vars, bits) > MAX_DEGREE)
+				return null;
+		final BigInteger lead = a.coefs[0].gcd(b.coefs[0]);	// the GCD's leading coefficient goes into both of theirs
+		Terms c = null;	// the GCD times lead/its leading coefficient, modulo the product of the primes so far
+		BigInteger modulus = BigInteger.ONE;
+		for (long p: PRIMES) {
+			final BigInteger bigP = BigInteger.valueOf(p);
+			if (a.coefs[0].mod(bigP).signum() == 0 || b.coefs[0].mod(bigP).signum() == 0)
+				continue;	// this prime would change the leading terms
+			Residues g = gcd(reduced(a, p), reduced(b, p), vars, vars, bits, p);
+			if (g.exps[0] == 0)	// if they're relatively prime anywhere, they're relatively prime
+				return new Terms(new long[] {0}, new BigInteger[] {BigInteger.ONE});
+			g = scaled(g, lead.mod(bigP).longValue(), p);
+			if (c == null || g.exps[0] < c.exps[0]) {	// any prime with a smaller GCD means the ones before it were unlucky
+				c = combined(null, BigInteger.ONE, g, p);
+				modulus = bigP;
+				continue;
+			}
+			if (g.exps[0] > c.exps[0])	// and this prime is unlucky if its GCD is bigger
+				continue;
+			final Terms next = combined(c, modulus, g, p);
+			modulus = modulus.multiply(bigP);
+			if (same(next, c)) {	// once another prime doesn't change anything, check it
+				final Terms candidate = primitive(next);
+				if (quotient(a, candidate, vars, bits) != null && quotient(b, candidate, vars, bits) != null)
+					return candidate;
+			}
+			c = next;
+		}
+		return null;
+	}
+
+
+	private static Residues gcd(Residues a, Residues b, int k, int vars, int bits, long p) {	// the monic GCD mod p of polynomials in the first k variables, found by evaluating the kth
+		if (a.exps.length == 0)
+			return monic(b, p);
+		if (b.exps.length == 0)
+			return monic(a, p);
+		final int shift = bits*(vars-k);
+		final List<Long> aKeys = new ArrayList<Long>(), bKeys = new ArrayList<Long>();
+		final List<long[]> aPolys = split(a, shift, bits, aKeys), bPolys = split(b, shift, bits, bKeys);
+		if (k == 1)	// in one variable, this is just Euclid's algorithm
+			return join(new long[] {0}, new long[][] {gcd(aPolys.get(0), bPolys.get(0), p)}, shift, p);
+		
+		long[] aCont = new long[0], bCont = new long[0];	// the contents, as polynomials in the kth variable
+		for (long[] f: aPolys)
+			aCont = gcd(aCont, f, p);
+		for (long[] f: bPolys)
+			bCont = gcd(bCont, f, p);
+		for (int i = 0; i < aPolys.size(); i ++)
+			aPolys.set(i, divide(aPolys.get(i), aCont, p)[0]);
+		for (int i = 0; i < bPolys.size(); i ++)
+			bPolys.set(i, divide(bPolys.get(i), bCont, p)[0]);
+		final long[] cont = gcd(aCont, bCont, p);
+		final long[] lead = gcd(aPolys.get(0), bPolys.get(0), p);	// the leading coefficient of the GCD goes into this
+		int aDeg = 0, bDeg = 0;
+		for (long[] f: aPolys)
+			aDeg = Math.max(aDeg, f.length-1);
+		for (long[] f: bPolys)
+			bDeg = Math.max(bDeg, f.length-1);
+		final int bound = lead.length-1 + Math.min(aDeg, bDeg);	// the most the kth variable's power can be
+		
+		TreeMap<Long, long[]> c = null;	// the GCD times lead/its leading coefficient, interpolated through the points so far
+		long[] q = {1};	// the product of (x - alpha) for those points
+		for (long alpha = 0; alpha < p; alpha ++) {
+			final long l = value(lead, alpha, p);
+			if (l == 0 || value(aPolys.get(0), alpha, p) == 0 || value(bPolys.get(0), alpha, p) == 0)
+				continue;	// this point would change the leading terms
+			Residues g = gcd(evaluated(aKeys, aPolys, alpha, p), evaluated(bKeys, bPolys, alpha, p), k-1, vars, bits, p);
+			if (g.exps[0] == 0)	// if they're relatively prime anywhere, it's just the content
+				return monic(join(new long[] {0}, new long[][] {cont}, shift, p), p);
+			g = scaled(g, l, p);
+			if (c == null || g.exps[0] < c.firstKey()) {	// a smaller GCD means the points before were unlucky
+				c = new TreeMap<Long, long[]>(Collections.reverseOrder());
+				q = new long[] {1};
+			}
+			else if (g.exps[0] > c.firstKey())	// and a bigger one means this point is
+				continue;
+			
+			final long scale = inverse(value(q, alpha, p), p);	// Newton's interpolation: add a multiple of q that fixes the value at alpha
+			final TreeMap<Long, Long> target = new TreeMap<Long, Long>();
+			for (int j = 0; j < g.exps.length; j ++)
+				target.put(g.exps[j], g.coefs[j]);
+			final List<Long> keys = new ArrayList<Long>(c.keySet());
+			for (long key: target.keySet())
+				if (!c.containsKey(key))
+					keys.add(key);
+			for (long key: keys) {
+				final long[] f = c.containsKey(key) ? c.get(key) : new long[0];
+				final long want = target.containsKey(key) ? target.get(key) : 0;
+				final long fix = (want - value(f, alpha, p) + p)%p*scale%p;
+				final long[] fixed = plus(f, q, fix, p);
+				if (fixed.length == 0)
+					c.remove(key);
+				else
+					c.put(key, fixed);
+			}
+			q = plus(shifted(q), q, p - alpha, p);	// q*(x - alpha)
+			if (q.length-1 > bound) {
+				long[] cCont = new long[0];	// done: take out the content it picked up from lead, and put back the real one
+				for (long[] f: c.values())
+					cCont = gcd(cCont, f, p);
+				final long[] cKeys = new long[c.size()];
+				final long[][] cPolys = new long[c.size()][];
+				int i = 0;
+				for (Map.Entry<Long, long[]> entry: c.entrySet()) {
+					cKeys[i] = entry.getKey();
+					cPolys[i ++] = times(divide(entry.getValue(), cCont, p)[0], cont, p);
+				}
+				return monic(join(cKeys, cPolys, shift, p), p);
+			}
+		}
+		throw new ArithmeticException("I ran out of evaluation points.");
+	}
+
+
+	private static Residues reduced(Terms a, long p) {	// a mod p
+		final BigInteger bigP = BigInteger.valueOf(p);
+		final List<Long> exps = new ArrayList<Long>(), coefs = new ArrayList<Long>();
+		for (int k = 0; k < a.exps.length; k ++) {
+			final long c = a.coefs[k].mod(bigP).longValue();
+			if (c != 0) {
+				exps.add(a.exps[k]);
+				coefs.add(c);
+			}
+		}
+		return residues(exps, coefs);
+	}
+
+
+	private static Terms combined(Terms c, BigInteger m, Residues g, long p) {	// the coefficients that are c mod m and g mod p, from -mp/2 to mp/2
+		final BigInteger bigP = BigInteger.valueOf(p), mp = m.multiply(bigP), half = mp.shiftRight(1);
+		final BigInteger mInv = m.mod(bigP).modInverse(bigP);
+		final TreeMap<Long, BigInteger> out = new TreeMap<Long, BigInteger>(Collections.reverseOrder());
+		final TreeMap<Long, Long> residues = new TreeMap<Long, Long>();
+		for (int j = 0; j < g.exps.length; j ++)
+			residues.put(g.exps[j], g.coefs[j]);
+		final TreeMap<Long, BigInteger> olds = new TreeMap<Long, BigInteger>();
+		if (c != null)
+			for (int j = 0; j < c.exps.length; j ++)
+				olds.put(c.exps[j], c.coefs[j]);
+		final Set<Long> keys = new TreeSet<Long>(residues.keySet());
+		keys.addAll(olds.keySet());
+		for (long key: keys) {
+			final BigInteger old = olds.containsKey(key) ? olds.get(key) : BigInteger.ZERO;
+			final BigInteger res = BigInteger.valueOf(residues.containsKey(key) ? residues.get(key) : 0);
+			BigInteger x = old.add(m.multiply(res.subtract(old).multiply(mInv).mod(bigP))).mod(mp);
+			if (x.compareTo(half) > 0)
+				x = x.subtract(mp);
+			if (x.signum() != 0)
+				out.put(key, x);
+		}
+		return of(out);
+	}
+
+
+	private static boolean same(Terms a, Terms b) {
+		if (a.exps.length != b.exps.length)
+			return false;
+		for (int k = 0; k < a.exps.length; k ++)
+			if (a.exps[k] != b.exps[k] || !a.coefs[k].equals(b.coefs[k]))
+				return false;
+		return true;
+	}
+
+
+	private static List<long[]> split(Residues a, int shift, int bits, List<Long> keys) {	// a as polynomials in the variable at shift (the last one it can have), one for each monomial in the others
+		final long field = ((1L << bits) - 1) << shift;
+		final List<long[]> polys = new ArrayList<long[]>();
+		for (int j = 0; j < a.exps.length; ) {	// the terms for each monomial come together, biggest power first
+			final long key = a.exps[j] & ~field;
+			final long[] f = new long[(int) ((a.exps[j] & field) >>> shift) + 1];
+			for (; j < a.exps.length && (a.exps[j] & ~field) == key; j ++)
+				f[(int) ((a.exps[j] & field) >>> shift)] = a.coefs[j];
+			keys.add(key);
+			polys.add(f);
+		}
+		return polys;
+	}
+
+
+	private static Residues join(long[] keys, long[][] polys, int shift, long p) {	// the opposite of split
+		final List<Long> exps = new ArrayList<Long>(), coefs = new ArrayList<Long>();
+		for (int i = 0; i < keys.length; i ++) {
+			for (int d = polys[i].length-1; d >= 0; d --) {
+				if (polys[i][d] != 0) {
+					exps.add(keys[i] | ((long) d << shift));
+					coefs.add(polys[i][d]);
+				}
+			}
+		}
+		return residues(exps, coefs);
+	}
+
+
+	private static Residues evaluated(List<Long> keys, List<long[]> polys, long alpha, long p) {	// split polynomials, with their variable set to alpha
+		final List<Long> exps = new ArrayList<Long>(), coefs = new ArrayList<Long>();
+		for (int i = 0; i < keys.size(); i ++) {
+			final long c = value(polys.get(i), alpha, p);
+			if (c != 0) {
+				exps.add(keys.get(i));
+				coefs.add(c);
+			}
+		}
+		return residues(exps, coefs);
+	}
+
+
+	private static Residues monic(Residues a, long p) {
+		return (a.exps.length == 0) ? a : scaled(a, inverse(a.coefs[0], p), p);
+	}
+
+
+	private static Residues scaled(Residues a, long s, long p) {
+		final long[] coefs = new long[a.coefs.length];
+		for (int j = 0; j < coefs.length; j ++)
+			coefs[j] = a.coefs[j]*s%p;
+		return new Residues(a.exps, coefs);
+	}
+
+
+	private static Residues residues(List<Long> exps, List<Long> coefs) {
+		final long[] e = new long[exps.size()], c = new long[coefs.size()];
+		for (int j = 0; j < e.length; j ++) {
+			e[j] = exps.get(j);
+			c[j] = coefs.get(j);
+		}
+		return new Residues(e, c);
+	}
+
+
+	private static long[] gcd(long[] f, long[] g, long p) {	// the monic GCD of two polynomials in one variable, lowest power first, mod p
+		f = trimmed(f);
+		g = trimmed(g);
+		while (g.length > 0) {
+			final long[] r = divide(f, g, p)[1];
+			f = g;
+			g = r;
+		}
+		if (f.length == 0)
+			return f;
+		final long s = inverse(f[f.length-1], p);
+		final long[] out = new long[f.length];
+		for (int i = 0; i < f.length; i ++)
+			out[i] = f[i]*s%p;
+		return out;
+	}
+
+
+	private static long[][] divide(long[] f, long[] g, long p) {	// {quotient, remainder}
+		f = trimmed(f);
+		g = trimmed(g);
+		if (f.length < g.length)
+			return new long[][] {new long[0], f};
+		final long[] r = f.clone(), q = new long[f.length - g.length + 1];
+		final long s = inverse(g[g.length-1], p);
+		for (int i = q.length-1; i >= 0; i --) {
+			q[i] = r[i + g.length-1]*s%p;
+			if (q[i] != 0)
+				for (int j = 0; j < g.length; j ++)
+					r[i+j] = (r[i+j] + (p - q[i])*g[j])%p;
+		}
+		return new long[][] {trimmed(q), trimmed(r)};
+	}
+
+
+	private static long[] times(long[] f, long[] g, long p) {
+		if (f.length == 0 || g.length == 0)
+			return new long[0];
+		final long[] h = new long[f.length + g.length - 1];
+		for (int i = 0; i < f.length; i ++)
+			for (int j = 0; j < g.length; j ++)
+				h[i+j] = (h[i+j] + f[i]*g[j])%p;
+		return trimmed(h);
+	}
+
+
+	private static long[] plus(long[] f, long[] g, long s, long p) {	// f + s*g
+		final long[] h = new long[Math.max(f.length, g.length)];
+		for (int i = 0; i < h.length; i ++)
+			h[i] = ((i < f.length ? f[i] : 0) + s*(i < g.length ? g[i] : 0))%p;
+		return trimmed(h);
+	}
+
+
+	private static long[] shifted(long[] f) {	// f*x
+		final long[] h = new long[f.length + 1];
+		System.arraycopy(f, 0, h, 1, f.length);
+		return h;
+	}
+
+
+	private static long value(long[] f, long x, long p) {	// Horner's rule, mod p
+		long sum = 0;
+		for (int i = f.length-1; i >= 0; i --)
+			sum = (sum*x + f[i])%p;
+		return sum;
+	}
+
+
+	private static long[] trimmed(long[] f) {	// without any zeros at the top
+		int n = f.length;
+		while (n > 0 && f[n-1] == 0)
+			n --;
+		return (n == f.length) ? f : Arrays.copyOf(f, n);
+	}
+
+
+	private static long inverse(long a, long p) {	// by the extended Euclidean algorithm
+		long r0 = p, r1 = a%p, s0 = 0, s1 = 1;
+		while (r1 != 0) {
+			final long q = r0/r1, r = r0 - q*r1, t = s0 - q*s1;
+			r0 = r1;
+			r1 = r;
+			s0 = s1;
+			s1 = t;
+		}
+		return (s0%p + p)%p;
+	}
+
+
+
+	private static Terms primitive(Terms a) {	// divided by its content, so the leading coefficient is positive
+		return (a.exps.length == 0) ? a : divided(a, content(a));
+	}
+
+
+	private static Terms multiplied(Terms a, BigInteger c) {
+		final BigInteger[] coefs = new BigInteger[a.coefs.length];
+		for (int k = 0; k < coefs.length; k ++)
+			coefs[k] = a.coefs[k].multiply(c);
+		return new Terms(a.exps, coefs);
+	}
+
+
+	private static BigInteger norm(Terms a) {	// the biggest coefficient
+		BigInteger max = BigInteger.ZERO;
+		for (BigInteger c: a.coefs)
+			max = max.max(c.abs());
+		return max;
+	}
+
+
+	private static int degree(Terms a, int v, int vars, int bits) {	// the highest power of variable v
+		int max = 0;
+		for (long e: a.exps)
+			max = Math.max(max, (int) ((e >>> (bits*(vars-1-v))) & ((1L << bits) - 1)));
+		return max;
+	}
+
+
+	private static boolean divides(long small, long big, int vars, int bits) {	// is every exponent in small no more than the one in big?
+		for (int v = 0; v < vars; v ++) {
+			final int shift = bits*(vars-1-v);
+			if (((small >>> shift) & ((1L << bits) - 1)) > ((big >>> shift) & ((1L << bits) - 1)))
+				return false;
+		}
+		return true;
+	}
+
+
+	private static void add(Map<Long, BigInteger> terms, long e, BigInteger c) {	// add a term into a map, taking out anything that cancels
+		final BigInteger sum = terms.containsKey(e) ? terms.get(e).add(c) : c;
+		if (sum.signum() == 0)
+			terms.remove(e);
+		else
+			terms.put(e, sum);
+	}
+
+
+	private static Terms of(TreeMap<Long, BigInteger> terms) {	// a sorted map, as a list of terms
+		final long[] exps = new long[terms.size()];
+		final BigInteger[] coefs = new BigInteger[terms.size()];
+		int k = 0;
+		for (Map.Entry<Long, BigInteger> term: terms.entrySet()) {
+			exps[k] = term.getKey();
+			coefs[k ++] = term.getValue();
+		}
+		return new Terms(exps, coefs);
+	}
+
+}
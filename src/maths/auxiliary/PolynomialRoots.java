@@ -0,0 +1,300 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import maths.Constant;
+
+/**
+ * A class full of static methods for the complex roots of polynomials. They
+ * all get found at once by Aberth-Ehrlich iteration, where each guess takes a
+ * Newton step that is pushed away from all of the other guesses, starting
+ * from circles sized by the Newton polygon of the coefficients. Each root
+ * comes with the radius of a disk that must contain it (a Gershgorin-type
+ * bound from the Weierstrass corrections, with the roundoff in the residual
+ * counted in), and disks that touch get merged, since their roots could be
+ * shuffled among them. If the iteration stalls, it starts over from the
+ * eigenvalues of the companion matrix.
+ *
+ * @author jkunimune
+ */
+public class PolynomialRoots {
+
+	private static final double EPS = Math.ulp(1.);
+	private static final int MAX_ITERATIONS = 100;	// how many Aberth steps the roots get to settle down
+	private static final int MAX_COMPANION = 400;	// the biggest companion matrix worth finding the eigenvalues of
+	private static final double OFFSET = 0.7;	// how far to rotate the starting circles, so they don't line up with anything
+
+
+
+	public static double[][] roots(double[] re, double[] im) throws ArithmeticException {	// {real parts, imaginary parts, error radii} of every root, counted with multiplicity and in order, of the polynomial with these coefficients, lowest power first
+		int top = re.length - 1, bottom = 0;
+		while (top >= 0 && re[top] == 0 && im[top] == 0)
+			top --;
+		if (top < 0)
+			throw new ArithmeticException("Every point is a root of that.");
+		while (re[bottom] == 0 && im[bottom] == 0)	// zero roots come off exactly
+			bottom ++;
+		final int m = top - bottom;
+		final double[] ar = Arrays.copyOfRange(re, bottom, top+1), ai = Arrays.copyOfRange(im, bottom, top+1);
+		boolean real = true;
+		for (double a: ai)
+			real &= a == 0;
+		
+		final double[][] z = initial(ar, ai);
+		if (!iterate(ar, ai, z) && real && m <= MAX_COMPANION) {	// if that got stuck, start again from the eigenvalues
+			final double[] companion = new double[m*m];
+			for (int j = 0; j < m; j ++)
+				companion[j] = -ar[m-1-j]/ar[m];
+			for (int i = 1; i < m; i ++)
+				companion[i*m + i-1] = 1;
+			final double[][] eig = Eigensolver.eigen(companion, m, false);
+			z[0] = eig[0];
+			z[1] = eig[1];
+			iterate(ar, ai, z);
+		}
+		final double[] radius = radii(ar, ai, z, real);
+		
+		final Integer[] order = new Integer[m];
+		for (int i = 0; i < m; i ++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer i, Integer j) {
+				if (z[0][i] != z[0][j])
+					return Double.compare(z[0][i], z[0][j]);
+				return Double.compare(z[1][i], z[1][j]);
+			}
+		});
+		final double[][] out = new double[3][bottom + m];
+		for (int i = 0; i < m; i ++) {
+			out[0][bottom+i] = z[0][order[i]];
+			out[1][bottom+i] = z[1][order[i]];
+			out[2][bottom+i] = radius[order[i]];
+		}
+		return out;
+	}
+
+
+	public static Constant bounded(double re, double im, double radius) throws ArithmeticException {	// a root, rounded to the leading decimal place of its error radius
+		if (!(radius < Double.POSITIVE_INFINITY))
+			throw new ArithmeticException("I couldn't pin down the roots of that.");
+		if (radius == 0)
+			return (im == 0) ? new Constant(re) : new Constant(re, im);
+		final double scale = Math.pow(10, -Math.floor(Math.log10(radius)));
+		return new Constant(rounded(re, scale), rounded(im, scale));
+	}
+
+
+	private static double rounded(double x, double scale) {	// to the nearest multiple of 1/scale, unless it has no digits to spare
+		if (Math.abs(x*scale) >= 1L << 52)
+			return x;
+		return Math.round(x*scale)/scale;
+	}
+
+
+	private static double[][] initial(double[] ar, double[] ai) {	// starting guesses on circles whose radii come from the upper convex hull of log|a_k|
+		final int m = ar.length - 1;
+		final double[] logA = new double[m+1];
+		for (int k = 0; k <= m; k ++)
+			logA[k] = Math.log(Math.hypot(ar[k], ai[k]));
+		final int[] hull = new int[m+1];
+		int h = 0;
+		for (int k = 0; k <= m; k ++) {
+			if (logA[k] == Double.NEGATIVE_INFINITY)
+				continue;
+			while (h >= 2 && (logA[hull[h-1]] - logA[hull[h-2]])*(k - hull[h-2]) <=
+					(logA[k] - logA[hull[h-2]])*(hull[h-1] - hull[h-2]))	// pop anything under the line
+				h --;
+			hull[h ++] = k;
+		}
+		
+		final double[][] z = new double[2][m];
+		for (int s = 0; s+1 < h; s ++) {
+			final int k0 = hull[s], k1 = hull[s+1];
+			final double u = Math.exp((logA[k0] - logA[k1])/(k1 - k0));
+			for (int l = 0; l < k1 - k0; l ++) {
+				final double theta = 2*Math.PI*l/(k1 - k0) + 2*Math.PI*k0/m + OFFSET;
+				z[0][k0+l] = u*Math.cos(theta);
+				z[1][k0+l] = u*Math.sin(theta);
+			}
+		}
+		return z;
+	}
+
+
+	private static boolean iterate(final double[] ar, final double[] ai, final double[][] z) {	// Aberth steps, all updated at once, until every residual is down to roundoff; false if it runs out of steps
+		final int m = ar.length - 1;
+		final boolean[] done = new boolean[m];
+		for (int it = 0; it < MAX_ITERATIONS; it ++) {
+			final double[][] next = {z[0].clone(), z[1].clone()};
+			LinearAlgebra.inParallel(m, 16L*m*m, new LinearAlgebra.Range() {
+				public void over(int i0, int i1) {
+					final double[] e = new double[4];
+					for (int i = i0; i < i1; i ++) {
+						if (done[i])
+							continue;
+						evaluate(ar, ai, z[0][i], z[1][i], e);
+						if (e[2] <= e[3]) {
+							done[i] = true;
+							continue;
+						}
+						double sr = 0, si = 0;	// the sum of 1/(z_i - z_j)
+						for (int j = 0; j < m; j ++) {
+							if (j == i)
+								continue;
+							final double dr = z[0][i] - z[0][j], di = z[1][i] - z[1][j];
+							final double d2 = dr*dr + di*di;
+							sr += dr/d2;
+							si -= di/d2;
+						}
+						final double br = 1 - (e[0]*sr - e[1]*si), bi = -(e[0]*si + e[1]*sr);	// w = N/(1 - N*S)
+						final double b2 = br*br + bi*bi;
+						final double wr = (e[0]*br + e[1]*bi)/b2, wi = (e[1]*br - e[0]*bi)/b2;
+						next[0][i] = z[0][i] - wr;
+						next[1][i] = z[1][i] - wi;
+						if (Math.hypot(wr, wi) <= EPS*Math.hypot(z[0][i], z[1][i]) || !(b2 > 0))
+							done[i] = true;
+					}
+				}
+			});
+			z[0] = next[0];
+			z[1] = next[1];
+			boolean finished = true;
+			for (boolean d: done)
+				finished &= d;
+			if (finished)
+				return true;
+		}
+		return false;
+	}
+
+
+	private static void evaluate(double[] ar, double[] ai, double zr, double zi, double[] out) {	// {Newton correction p/p' (real, imaginary), log|p|, log of its roundoff} at z, by Horner's rule on the reversed polynomial if |z| > 1, so nothing overflows
+		final int m = ar.length - 1;
+		final double abs = Math.hypot(zr, zi);
+		double pr, pi, dr = 0, di = 0, s;
+		if (abs <= 1) {
+			pr = ar[m];
+			pi = ai[m];
+			s = Math.hypot(pr, pi);
+			for (int k = m-1; k >= 0; k --) {
+				final double tr = dr*zr - di*zi + pr;
+				di = dr*zi + di*zr + pi;
+				dr = tr;
+				final double ur = pr*zr - pi*zi + ar[k];
+				pi = pr*zi + pi*zr + ai[k];
+				pr = ur;
+				s = s*abs + Math.hypot(ar[k], ai[k]);
+			}
+			final double d2 = dr*dr + di*di;
+			out[0] = (pr*dr + pi*di)/d2;
+			out[1] = (pi*dr - pr*di)/d2;
+			out[2] = Math.log(Math.hypot(pr, pi));
+			out[3] = Math.log(2*m*EPS*s);
+		}
+		else {
+			final double wr = zr/(abs*abs), wi = -zi/(abs*abs);
+			pr = ar[0];
+			pi = ai[0];
+			s = Math.hypot(pr, pi);
+			for (int k = 1; k <= m; k ++) {
+				final double tr = dr*wr - di*wi + pr;
+				di = dr*wi + di*wr + pi;
+				dr = tr;
+				final double ur = pr*wr - pi*wi + ar[k];
+				pi = pr*wi + pi*wr + ai[k];
+				pr = ur;
+				s = s/abs + Math.hypot(ar[k], ai[k]);
+			}
+			final double cr = m*pr - (wr*dr - wi*di), ci = m*pi - (wr*di + wi*dr);	// p/p' = q/(w*(m*q - w*q'))
+			final double er = wr*cr - wi*ci, ei = wr*ci + wi*cr;
+			final double e2 = er*er + ei*ei;
+			out[0] = (pr*er + pi*ei)/e2;
+			out[1] = (pi*er - pr*ei)/e2;
+			out[2] = m*Math.log(abs) + Math.log(Math.hypot(pr, pi));
+			out[3] = m*Math.log(abs) + Math.log(2*m*EPS*s);
+		}
+	}
+
+
+	private static double[] radii(double[] ar, double[] ai, double[][] z, boolean real) {	// how far each root might be from its guess
+		final int m = ar.length - 1;
+		final double logLead = Math.log(Math.hypot(ar[m], ai[m]));
+		final double[] r = new double[m];
+		final double[] e = new double[4];
+		for (int i = 0; i < m; i ++) {	// m*|p(z_i)|/|a_m*prod(z_i - z_j)| bounds the distance to a root
+			evaluate(ar, ai, z[0][i], z[1][i], e);
+			final double big = Math.max(e[2], e[3]), small = Math.min(e[2], e[3]);
+			double log = Math.log(m) + big + Math.log1p(Math.exp(small - big)) - logLead;
+			int cluster = 1;
+			for (int j = 0; j < m; j ++) {
+				if (j == i)
+					continue;
+				final double d = Math.hypot(z[0][i] - z[0][j], z[1][i] - z[1][j]);
+				if (d == 0)
+					cluster ++;	// guesses that landed on top of each other are a multiple root, and share the bound
+				else
+					log -= Math.log(d);
+			}
+			r[i] = Math.exp(log/cluster);
+		}
+		
+		final int[] group = new int[m];	// disks that overlap could have their roots swapped, so they get merged
+		for (int i = 0; i < m; i ++)
+			group[i] = i;
+		for (int i = 0; i < m; i ++)
+			for (int j = i+1; j < m; j ++)
+				if (Math.hypot(z[0][i] - z[0][j], z[1][i] - z[1][j]) <= r[i] + r[j])
+					union(group, i, j);
+		final double[] out = new double[m];
+		for (int i = 0; i < m; i ++) {
+			boolean alone = true;
+			out[i] = r[i];
+			for (int j = 0; j < m; j ++) {
+				if (j != i && root(group, i) == root(group, j)) {
+					out[i] = Math.max(out[i], Math.hypot(z[0][i] - z[0][j], z[1][i] - z[1][j]) + r[j]);
+					alone = false;
+				}
+			}
+			if (real && alone && Math.abs(z[1][i]) <= r[i])	// a lone disk across the real line holds a real root, or its conjugate would be in there too
+				z[1][i] = 0;
+		}
+		return out;
+	}
+
+
+	private static int root(int[] group, int i) {
+		while (group[i] != i)
+			i = group[i] = group[group[i]];
+		return i;
+	}
+
+
+	private static void union(int[] group, int i, int j) {
+		group[root(group, i)] = root(group, j);
+	}
+
+}
@@ -0,0 +1,337 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A set of arbitrary-precision registers on which to play a Tape. Nothing
+ * gets worked out until someone asks for an output to some number of
+ * digits, and then each register only gets as many digits as the error
+ * bounds of the registers that read it call for. Those bounds are first
+ * guessed from a double-precision run; if it turns out a register needed
+ * more digits than that, only it and the registers under it get redone.
+ *
+ * @author jkunimune
+ */
+public class PreciseFrame {
+
+	private static final int MAX_PASSES = 16;	// how many times it can go back for more digits
+	private static final int UNKNOWN = Integer.MIN_VALUE/4;	// the scale of a register that hasn't been worked out
+
+
+
+	private final int[] ops, lft, rgt, outputs;
+	private final double[] cRe, cIm;
+	private final Map<Integer, BigComplex> exact;	// any constants that have more digits than doubles can hold
+
+	private final double[] x;
+	private final Frame rough;	// the whole Tape in double precision, to guess how big everything is
+	private final BigComplex[] val;
+	private final int[] have, need;	// each register is within 10^-have of the truth, and must get within 10^-need
+
+
+
+	PreciseFrame(Tape tape, double... x) {
+		this.ops = tape.ops;
+		this.lft = tape.lft;
+		this.rgt = tape.rgt;
+		this.outputs = tape.outputs;
+		this.cRe = tape.cRe;
+		this.cIm = tape.cIm;
+		this.exact = tape.exact;
+		this.x = x;
+		this.rough = tape.newFrame().evaluateExactly(x);
+		this.val = new BigComplex[tape.size()];
+		this.have = new int[tape.size()];
+		this.need = new int[tape.size()];
+		Arrays.fill(have, UNKNOWN);
+		Arrays.fill(need, UNKNOWN);
+	}
+
+
+
+	public BigComplex get(int i, int digits) throws ArithmeticException {	// the ith output, correctly rounded to some significant digits
+		final int out = outputs[i];
+		final double guess = Math.log10(Math.hypot(rough.registerReal(out), rough.registerImag(out)));
+		int s = digits + 1 - (int) Math.floor((guess > -300 && guess < 300) ? guess : 0);
+		final int limit = s + 4*digits + 500;	// if it still looks like zero by here, it's probably zero
+		final MathContext mc = new MathContext(digits);
+		while (true) {
+			final BigComplex z = at(out, s);
+			final double mag = z.log10Abs();
+			final int known = Double.isInfinite(mag) ? 0 : (int) Math.floor(mag) + s;	// how many significant digits we have
+			if (known <= digits) {	// not enough, which means there was some cancellation
+				if (s >= limit)
+					return (known < 1) ? BigComplex.ZERO : z.round(new MathContext(known));
+				s = Math.min(limit, s + ((known < 1) ? Math.max(digits + 1, s) : digits + 1 - known));
+				continue;
+			}
+			final BigDecimal e = BigDecimal.ONE.scaleByPowerOfTen(-s);
+			final BigComplex lo = z.minus(new BigComplex(e, e)).round(mc);
+			final BigComplex hi = z.plus(new BigComplex(e, e)).round(mc);
+			if ((lo.getReal().compareTo(hi.getReal()) == 0 && lo.getImag().compareTo(hi.getImag()) == 0)
+					|| s >= limit)
+				return z.round(mc);
+			s += 8;	// it's too close to a tie to tell which way it rounds, so get a few more digits
+		}
+	}
+
+
+	private BigComplex at(int out, int s) throws ArithmeticException {	// register out, to within 10^-s
+		need[out] = Math.max(need[out], s);
+		for (int pass = 0; pass < MAX_PASSES; pass ++) {
+			for (int k = out; k >= 0; k --)	// hand the requirements down to the operands, going by the values we have
+				if (need[k] > have[k])
+					require(k, false);
+			boolean done = true;
+			for (int k = 0; k <= out; k ++) {	// then work out everything that isn't known well enough yet
+				if (need[k] <= have[k])	continue;
+				if (ops[k] != Tape.CONST && ops[k] != Tape.INPUT && ops[k] != Tape.TABLE && (need[lft[k]] > have[lft[k]]
+						|| (rgt[k] >= 0 && need[rgt[k]] > have[rgt[k]]))) {
+					done = false;	// one of its operands didn't make it this time
+					continue;
+				}
+				val[k] = compute(k, need[k]);
+				if (require(k, true))	// now that we know how big everything really is, check the bound
+					done = false;
+				else
+					have[k] = need[k];
+			}
+			if (done)
+				return val[out];
+		}
+		throw new ArithmeticException("Could not find enough digits.");
+	}
+
+
+	private boolean require(int k, boolean actual) {	// tell k's operands how many digits they need; were any short?
+		final int s = need[k], a = lft[k], b = rgt[k];
+		switch (ops[k]) {
+		case Tape.ADD:
+		case Tape.SUB:
+			return raise(a, s+1) | raise(b, s+1);
+		case Tape.NEG:
+		case Tape.RE:
+		case Tape.IM:
+		case Tape.COPY:
+			return raise(a, s);
+		case Tape.ABS:
+			return raise(a, s+1);
+		case Tape.MUL:	// |a|db + |b|da
+			return raise(a, s + 1 + up(size(b, s, actual))) | raise(b, s + 1 + up(size(a, s, actual)));
+		case Tape.DIV:	// da/|b| + |a/b|db/|b|
+			return raise(a, s + 1 - down(size(b, s, actual), s))
+					| raise(b, s + 1 + up(size(k, s, actual)) - down(size(b, s, actual), s));
+		case Tape.RECIP:
+			return raise(a, s + 1 + up(size(k, s, actual)) - down(size(a, s, actual), s));
+		case Tape.MOD:
+			return raise(a, s+1) | raise(b, s + 1 + up(size(a, s, actual) - size(b, s, actual)));
+		case Tape.POW:	// |a^b|(|b|da/|a| + |ln a|db)
+			return raise(a, s + 1 + up(size(k, s, actual)) + up(size(b, s, actual)) - down(size(a, s, actual), s))
+					| raise(b, s + 1 + up(size(k, s, actual)) + up(Math.log10(2.31*Math.abs(size(a, s, actual)) + 7)));
+		case Tape.EXP:
+			return raise(a, s + 1 + up(size(k, s, actual)));
+		case Tape.LN:
+		case Tape.ARG:
+			return raise(a, s + 1 - down(size(a, s, actual), s));
+		case Tape.SQRT:
+			return raise(a, s + 1 - down(size(k, s, actual), s));
+		case Tape.SIN:	// the derivatives of these are never much bigger than the functions themselves
+		case Tape.COS:
+		case Tape.SINH:
+		case Tape.COSH:
+			return raise(a, s + 2 + up(size(k, s, actual)));
+		case Tape.ASIN:	// but these ones blow up at their branch points
+		case Tape.ACOS:
+			return raise(a, s + 1 - down(gap(a, -1, s, actual), s)/2);
+		case Tape.ASINH:
+			return raise(a, s + 1 - down(gap(a, 1, s, actual), s)/2);
+		case Tape.ACOSH:
+			return raise(a, s + 1 - down(gap(a, -1, s, actual), s)/2);
+		case Tape.ATAN:
+			return raise(a, s + 1 - down(gap(a, 1, s, actual), s));
+		case Tape.ATANH:
+			return raise(a, s + 1 - down(gap(a, -1, s, actual), s));
+		default:	// constants, inputs, and roundoff errors (which are exactly zero here)
+			return false;
+		}
+	}
+
+
+	private boolean raise(int k, int s) {	// make sure register k gets at least s digits; is that more than it has?
+		need[k] = Math.max(need[k], s);
+		return need[k] > have[k];
+	}
+
+
+	private double size(int k, int s, boolean actual) {	// about log10 of the size of register k
+		double mag = (val[k] != null) ? val[k].log10Abs() : Math.log10(Math.hypot(rough.registerReal(k), rough.registerImag(k)));
+		if (Double.isNaN(mag))
+			mag = 0;
+		if (mag == Double.POSITIVE_INFINITY)	// a double overflow; the real size turns up once it's been worked out
+			mag = 308;
+		if (!actual)	// a guess of zero is more likely something small that cancelled
+			mag = Math.max(mag, -s - 30);
+		return mag;
+	}
+
+
+	private double gap(int k, int sign, int s, boolean actual) {	// about log10|1 + sign*z^2|, how far z is from a branch point
+		double mag;
+		if (val[k] != null) {
+			final BigComplex z2 = val[k].times(val[k]);
+			mag = ((sign > 0) ? BigComplex.ONE.plus(z2) : BigComplex.ONE.minus(z2)).log10Abs();
+		}
+		else {
+			final double zr = rough.registerReal(k), zi = rough.registerImag(k);
+			mag = Math.log10(Math.hypot(1 + sign*(zr*zr - zi*zi), sign*2*zr*zi));
+		}
+		if (Double.isNaN(mag))
+			mag = 0;
+		if (!actual)
+			mag = Math.max(mag, -s - 30);
+		return Math.min(mag, 0);	// far from the branch points, the derivative is small anyway
+	}
+
+
+	private BigComplex compute(int k, int s) throws ArithmeticException {	// register k, to within 10^-s
+		final BigComplex a = (ops[k] != Tape.CONST && ops[k] != Tape.INPUT && ops[k] != Tape.TABLE) ? val[lft[k]] : null;
+		final BigComplex b = (rgt[k] >= 0) ? val[rgt[k]] : null;
+		switch (ops[k]) {
+		case Tape.CONST:
+			return constant(k, s+1);
+		case Tape.INPUT:
+			return new BigComplex(x[lft[k]], 0);
+		case Tape.ADD:
+			return a.plus(b).rounded(s+1);
+		case Tape.ERR:	// arbitrary-precision sums don't need compensating
+		case Tape.TABLE:	// and arbitrary-precision values don't need tables
+			return BigComplex.ZERO;
+		case Tape.COPY:
+			return a;
+		case Tape.SUB:
+			return a.minus(b).rounded(s+1);
+		case Tape.NEG:
+			return a.negate();
+		case Tape.MUL:
+			return a.times(b).rounded(s+1);
+		case Tape.DIV:
+			return a.divide(b, s+1);
+		case Tape.MOD:
+			return a.mod(b, s+1);
+		case Tape.POW:
+			return a.pow(b, s+1);
+		case Tape.RECIP:
+			return BigComplex.ONE.divide(a, s+1);
+		case Tape.EXP:
+			return a.exp(s+1);
+		case Tape.LN:
+			return a.log(s+1);
+		case Tape.SQRT:
+			return a.sqrt(s+1);
+		case Tape.ABS:
+			return a.abs(s+1);
+		case Tape.ARG:
+			return a.arg(s+1);
+		case Tape.RE:
+			return new BigComplex(a.getReal(), BigDecimal.ZERO);
+		case Tape.IM:
+			return new BigComplex(a.getImag(), BigDecimal.ZERO);
+		case Tape.SIN:
+			return a.sin(s+1);
+		case Tape.COS:
+			return a.cos(s+1);
+		case Tape.SINH:
+			return a.sinh(s+1);
+		case Tape.COSH:
+			return a.cosh(s+1);
+		case Tape.ASIN:
+			return a.asin(s+1);
+		case Tape.ACOS:
+			return a.acos(s+1);
+		case Tape.ATAN:
+			return a.atan(s+1);
+		case Tape.ASINH:
+			return a.asinh(s+1);
+		case Tape.ACOSH:
+			return a.acosh(s+1);
+		case Tape.ATANH:
+			return a.atanh(s+1);
+		case Tape.ERF:
+		case Tape.ERFC:
+		case Tape.ERFI:
+		case Tape.GAMMA:
+		case Tape.LGAMMA:
+		case Tape.BETA:
+		case Tape.BESSEL_J:
+		case Tape.BESSEL_Y:
+		case Tape.BESSEL_I:
+		case Tape.BESSEL_K:
+		case Tape.AIRY_AI:
+		case Tape.AIRY_BI:
+			throw new ArithmeticException("I can only do special functions to double precision.");
+		default:
+			throw new IllegalArgumentException("Unknown instruction: "+ops[k]);
+		}
+	}
+
+
+	private BigComplex constant(int k, int s) throws ArithmeticException {	// a number that was typed in, or a famous one
+		final BigComplex z = exact.get(k);
+		if (z != null)
+			return z;
+		return new BigComplex(literal(cRe[k], s), literal(cIm[k], s));
+	}
+
+
+
+	private static int up(double mag) {	// how many digits are in front of the point, if any
+		return (mag > 0) ? (int) Math.ceil(Math.min(mag, 1e6)) : 0;
+	}
+
+
+	private static int down(double mag, int s) {	// a power of ten that mag is at least, treating zero as very small
+		return (mag < -s - 30) ? -s - 30 : (int) Math.floor(Math.min(mag, 1e6));
+	}
+
+
+	private static BigDecimal literal(double x, int s) throws ArithmeticException {	// the number someone meant when they typed x
+		if (Double.isNaN(x) || Double.isInfinite(x))
+			throw new ArithmeticException(x+" has no digits to find.");
+		if (x == Math.PI)
+			return BigComplex.pi(s);
+		if (x == 2*Math.PI)
+			return BigComplex.pi(s+1).add(BigComplex.pi(s+1));
+		if (x == Math.PI/2)
+			return BigComplex.pi(s+1).divide(BigDecimal.valueOf(2));
+		if (x == Math.E)
+			return BigComplex.exp(BigDecimal.ONE, s);
+		return new BigDecimal(Double.toString(x));
+	}
+
+}
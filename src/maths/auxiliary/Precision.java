@@ -0,0 +1,88 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import gui.Workspace;
+
+/**
+ * How many digits numerical evaluation carries. DOUBLE is plain Java doubles,
+ * and DOUBLE_DOUBLE runs every Tape recorded while it is in effect in about
+ * 32 significant digits, which is enough to survive most catastrophic
+ * cancellation. Like Summation, the mode can be set for the whole session
+ * from the command line, or just for one expression by wrapping it in a
+ * function of the same name, which carries the mode along in its Workspace to
+ * every Tape recorded inside it.
+ *
+ * @author jkunimune
+ */
+public enum Precision {
+
+	DOUBLE("double"), DOUBLE_DOUBLE("dd");
+
+
+
+	private static volatile Precision mode = DOUBLE;	// the mode for this session, which only the command line changes
+
+
+	private final String code;	// the name of the function that picks this mode
+
+
+
+	private Precision(String code) {
+		this.code = code;
+	}
+
+
+
+	public static Precision getMode() {
+		return mode;
+	}
+
+
+	public static void setMode(Precision newMode) {
+		mode = newMode;
+	}
+
+
+	public static Precision of(Workspace heap) {	// the mode in effect for this heap: whatever it was put in, or else the session's
+		if (heap != null && heap.getPrecision() != null)
+			return heap.getPrecision();
+		return mode;
+	}
+
+
+	public static Precision forName(String name) {	// the mode with this function name, if there is one
+		for (Precision p: values())
+			if (p.code.equalsIgnoreCase(name))
+				return p;
+		return null;
+	}
+
+
+
+	public String getCode() {
+		return code;
+	}
+
+}
@@ -0,0 +1,110 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.util.Arrays;
+
+/**
+ * A sieve of Eratosthenes shared by the whole session. It only stores odd
+ * numbers, one bit each, and it grows lazily: whenever someone asks about a
+ * number past the end, it sieves the new stretch a segment at a time, using
+ * the primes it already knows.
+ *
+ * @author jkunimune
+ */
+public final class Primes {
+
+	private static final int SEGMENT = 1 << 19;	// how many numbers to sieve at a time (32 kB of bits)
+	private static final long MAX_SIEVE = 1L << 30;	// the sieve won't grow past this (that's 64 MB)
+
+	private static long[] composite = {1L};	// bit i says whether 2i+1 is composite (1 doesn't count as prime)
+	private static long limit = 9;	// every number below this has been sieved (there are no odd composites below 9)
+
+
+
+	private Primes() {}
+
+
+
+	public static boolean isSieved(long n) {	// could the sieve answer questions about n, if it had to?
+		return n >= 0 && n < MAX_SIEVE;
+	}
+
+
+	public static synchronized boolean isPrime(long n) throws ArithmeticException {	// look n up in the sieve
+		if (n < 2 || n%2 == 0)
+			return n == 2;
+		ensure(n+1);
+		return !isSet(n);
+	}
+
+
+	public static synchronized int[] upTo(long n) throws ArithmeticException {	// all of the primes no bigger than n
+		if (n < 2)
+			return new int[0];
+		ensure(n+1);
+		int[] out = new int[(int) Math.max(16, 1.26*n/Math.log(n))];	// a bit more than pi(n)
+		int count = 0;
+		out[count ++] = 2;
+		for (long i = 1; 2*i+1 <= n; i ++) {
+			if ((composite[(int) (i >>> 6)] & (1L << i)) == 0) {
+				if (count == out.length)
+					out = Arrays.copyOf(out, 2*count);
+				out[count ++] = (int) (2*i+1);
+			}
+		}
+		return Arrays.copyOf(out, count);
+	}
+
+
+
+	private static void ensure(long n) throws ArithmeticException {	// sieve everything below n
+		if (n <= limit)
+			return;
+		if (n > MAX_SIEVE)
+			throw new ArithmeticException(n+" is too big for the sieve.");
+		final long end = Math.min(MAX_SIEVE, Math.max(n, 2*limit));	// grow geometrically so the copying doesn't add up
+		final long root = (long) Math.sqrt(end) + 1;
+		ensure(root);	// the primes that sieve this stretch have to be known first
+		composite = Arrays.copyOf(composite, (int) ((end/2 >>> 6) + 1));
+		for (long from = limit; from < end; from += SEGMENT) {
+			final long to = Math.min(end, from + SEGMENT);
+			for (long p = 3; p*p < to; p += 2) {
+				if (isSet(p))	continue;
+				long m = Math.max(p*p, (from + p - 1)/p*p);	// the first multiple of p in this segment
+				if (m%2 == 0)
+					m += p;	// and odd
+				for (; m < to; m += 2*p)
+					composite[(int) (m >>> 7)] |= 1L << (m >>> 1);
+			}
+		}
+		limit = end;
+	}
+
+
+	private static boolean isSet(long n) {	// is odd n marked composite?
+		return (composite[(int) (n >>> 7)] & (1L << (n >>> 1))) != 0;
+	}
+
+}
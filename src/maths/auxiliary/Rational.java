@@ -0,0 +1,350 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * An exact ratio of two integers, kept in lowest terms with a positive
+ * denominator. Small ones live in a pair of longs, and only get promoted to
+ * BigIntegers when some piece of arithmetic would overflow them; anything that
+ * comes back down small enough gets demoted again.
+ *
+ * @author jkunimune
+ */
+public final class Rational {
+
+	public static final Rational ZERO = new Rational(0, 1);
+	public static final Rational ONE = new Rational(1, 1);
+
+	private static final long MAX_EXACT = 1L << 53;	// the biggest long that doubles can hold every integer up to
+	private static final double BITS_PER_DIGIT = 3.3219280948873623;	// log2(10)
+
+
+
+	private final long num, den;	// the numerator and denominator, if they fit (den is 0 if they don't)
+	private final BigInteger bigNum, bigDen;	// otherwise, the numerator and denominator
+
+
+
+	private Rational(long num, long den) {
+		this.num = num;
+		this.den = den;
+		this.bigNum = null;
+		this.bigDen = null;
+	}
+
+
+	private Rational(BigInteger num, BigInteger den) {
+		this.num = 0;
+		this.den = 0;
+		this.bigNum = num;
+		this.bigDen = den;
+	}
+
+
+
+	public static Rational of(long n) {
+		if (n == Long.MIN_VALUE)	// it can't be negated as a long, so don't let it in
+			return of(BigInteger.valueOf(n), BigInteger.ONE);
+		return new Rational(n, 1);
+	}
+
+
+	public static Rational of(long n, long d) throws ArithmeticException {
+		if (d == 0)
+			throw new ArithmeticException("Division by zero.");
+		if (n == Long.MIN_VALUE || d == Long.MIN_VALUE)
+			return of(BigInteger.valueOf(n), BigInteger.valueOf(d));
+		final long g = gcd(Math.abs(n), Math.abs(d));
+		return (d < 0) ? new Rational(-n/g, -d/g) : new Rational(n/g, d/g);
+	}
+
+
+	public static Rational of(BigInteger n) {
+		return of(n, BigInteger.ONE);
+	}
+
+
+	public static Rational of(BigInteger n, BigInteger d) throws ArithmeticException {
+		if (d.signum() == 0)
+			throw new ArithmeticException("Division by zero.");
+		final BigInteger g = n.gcd(d);
+		if (!g.equals(BigInteger.ONE)) {
+			n = n.divide(g);
+			d = d.divide(g);
+		}
+		if (d.signum() < 0) {
+			n = n.negate();
+			d = d.negate();
+		}
+		if (n.bitLength() < 63 && d.bitLength() < 63)	// if it fits, go back to longs
+			return new Rational(n.longValue(), d.longValue());
+		return new Rational(n, d);
+	}
+
+
+	public static Rational of(double x) {	// the ratio a double is exactly, or null if it's not a whole number we can trust
+		if (x != Math.rint(x) || Math.abs(x) > MAX_EXACT)
+			return null;
+		return new Rational((long) x, 1);
+	}
+
+
+
+	public BigInteger getNumerator() {
+		return isSmall() ? BigInteger.valueOf(num) : bigNum;
+	}
+
+
+	public BigInteger getDenominator() {
+		return isSmall() ? BigInteger.valueOf(den) : bigDen;
+	}
+
+
+	public boolean isInteger() {
+		return isSmall() ? den == 1 : bigDen.equals(BigInteger.ONE);
+	}
+
+
+	public int signum() {
+		return isSmall() ? Long.signum(num) : bigNum.signum();
+	}
+
+
+	public int compareTo(Rational that) {
+		return this.minus(that).signum();
+	}
+
+
+	public double doubleValue() {
+		if (isSmall() && Math.abs(num) <= MAX_EXACT && den <= MAX_EXACT)
+			return (double) num / den;	// both of these are exact, so the division rounds correctly
+		final BigInteger n = getNumerator(), d = getDenominator();
+		if (d.equals(BigInteger.ONE))
+			return n.doubleValue();
+		final int shift = 64 - (n.bitLength() - d.bitLength());	// scale it so the quotient has about 64 bits
+		final BigInteger q = (shift > 0) ? n.shiftLeft(shift).divide(d) : n.divide(d.shiftLeft(-shift));
+		return Math.scalb(q.doubleValue(), -shift);
+	}
+
+
+	public BigDecimal toBigDecimal(int digits) {	// this to so many significant digits, without working out all of the others
+		if (signum() == 0)
+			return BigDecimal.ZERO;
+		final int bits = (int) (digits*BITS_PER_DIGIT) + 64;	// the leading bits of each half are all that matter
+		final BigInteger n = getNumerator().abs(), d = getDenominator();
+		final int nShift = Math.max(0, n.bitLength() - bits), dShift = Math.max(0, d.bitLength() - bits);
+		final int s = digits + 20;
+		final BigDecimal lead = new BigDecimal(n.shiftRight(nShift)).divide(new BigDecimal(d.shiftRight(dShift)),
+				new MathContext(s));
+		final BigDecimal ln = BigComplex.ln(lead, s).add(
+				BigComplex.ln(BigDecimal.valueOf(2), s).multiply(BigDecimal.valueOf((long) nShift - dShift)));	// the natural log of the whole thing
+		final BigDecimal ln10 = BigComplex.ln(BigDecimal.TEN, s);
+		final BigDecimal exponent = ln.divide(ln10, 0, RoundingMode.FLOOR);
+		final BigDecimal mantissa = BigComplex.exp(ln.subtract(ln10.multiply(exponent)), s)
+				.round(new MathContext(digits));
+		final BigDecimal x = mantissa.scaleByPowerOfTen(exponent.intValueExact());
+		return (signum() < 0) ? x.negate() : x;
+	}
+
+
+	public Rational plus(Rational that) {
+		if (this.isSmall() && that.isSmall()) {
+			try {
+				final long g = gcd(this.den, that.den);
+				return of(Math.addExact(Math.multiplyExact(this.num, that.den/g), Math.multiplyExact(that.num, this.den/g)),
+						Math.multiplyExact(this.den/g, that.den));
+			} catch (ArithmeticException e) {	// it overflowed, so try it again bigger
+				return bigPlus(that);
+			}
+		}
+		return bigPlus(that);
+	}
+
+
+	public Rational minus(Rational that) {
+		return this.plus(that.negate());
+	}
+
+
+	public Rational negate() {
+		return isSmall() ? new Rational(-num, den) : of(bigNum.negate(), bigDen);
+	}
+
+
+	public Rational abs() {
+		return (signum() < 0) ? negate() : this;
+	}
+
+
+	public Rational times(Rational that) {
+		if (this.isSmall() && that.isSmall()) {
+			try {
+				final long g = gcd(Math.abs(this.num), that.den), h = gcd(Math.abs(that.num), this.den);	// cancel across first, to put off overflowing
+				return of(Math.multiplyExact(this.num/g, that.num/h), Math.multiplyExact(this.den/h, that.den/g));
+			} catch (ArithmeticException e) {
+				return bigTimes(that);
+			}
+		}
+		return bigTimes(that);
+	}
+
+
+	public Rational reciprocal() throws ArithmeticException {
+		if (isSmall())
+			return of(den, num);
+		return of(bigDen, bigNum);
+	}
+
+
+	public Rational pow(int n) throws ArithmeticException {	// by squaring, staying small as long as it can
+		if (n < 0)
+			return this.pow(-n).reciprocal();
+		if (isSmall()) {
+			try {
+				long p = 1, q = 1, bn = num, bd = den;
+				for (int k = n; k > 0; k >>= 1) {
+					if ((k&1) == 1) {
+						p = Math.multiplyExact(p, bn);
+						q = Math.multiplyExact(q, bd);
+					}
+					if (k > 1) {
+						bn = Math.multiplyExact(bn, bn);
+						bd = Math.multiplyExact(bd, bd);
+					}
+				}
+				return of(p, q);
+			} catch (ArithmeticException e) {
+				return of(getNumerator().pow(n), getDenominator().pow(n));
+			}
+		}
+		return of(bigNum.pow(n), bigDen.pow(n));
+	}
+
+
+	public Rational truncate() {	// round toward zero
+		if (isSmall())
+			return new Rational(num/den, 1);
+		return of(bigNum.divide(bigDen));
+	}
+
+
+	public Rational mod(Rational that) throws ArithmeticException {	// this - trunc(this/that)*that, like Constant.mod
+		return this.minus(this.times(that.reciprocal()).truncate().times(that));
+	}
+
+
+	public Rational sqrt() {	// the square root, if it's rational; otherwise null
+		if (signum() < 0)
+			return null;
+		final BigInteger p = isqrt(getNumerator()), q = isqrt(getDenominator());
+		if (p == null || q == null)
+			return null;
+		return of(p, q);
+	}
+
+
+	public int bitLength() {	// about how many bits it takes to write this, counting the bigger of the numerator and denominator
+		if (isSmall())
+			return 64 - Long.numberOfLeadingZeros(Math.max(Math.abs(num), den));
+		return Math.max(bigNum.bitLength(), bigDen.bitLength());
+	}
+
+
+	@Override
+	public boolean equals(Object obj) {	// ratios are kept in lowest terms, so equal values have equal parts
+		if (this == obj)	return true;
+		if (!(obj instanceof Rational))	return false;
+		final Rational that = (Rational) obj;
+		if (this.isSmall() && that.isSmall())
+			return this.num == that.num && this.den == that.den;
+		return this.getNumerator().equals(that.getNumerator()) && this.getDenominator().equals(that.getDenominator());
+	}
+
+
+	@Override
+	public int hashCode() {	// anything that fits in longs hashes the same whichever way it is stored
+		if (isSmall())
+			return 31*Long.hashCode(num) + Long.hashCode(den);
+		if (bigNum.bitLength() < 64 && bigDen.bitLength() < 64)
+			return 31*Long.hashCode(bigNum.longValue()) + Long.hashCode(bigDen.longValue());
+		return 31*bigNum.hashCode() + bigDen.hashCode();
+	}
+
+
+	@Override
+	public String toString() {
+		if (isInteger())
+			return Multiplication.toString(getNumerator());
+		return Multiplication.toString(getNumerator())+"/"+Multiplication.toString(getDenominator());
+	}
+
+
+
+	private boolean isSmall() {
+		return den != 0;
+	}
+
+
+	private Rational bigPlus(Rational that) {
+		return of(this.getNumerator().multiply(that.getDenominator()).add(that.getNumerator().multiply(this.getDenominator())),
+				this.getDenominator().multiply(that.getDenominator()));
+	}
+
+
+	private Rational bigTimes(Rational that) {
+		return of(this.getNumerator().multiply(that.getNumerator()), this.getDenominator().multiply(that.getDenominator()));
+	}
+
+
+	private static long gcd(long a, long b) {	// for nonnegative a and b
+		while (b != 0) {
+			final long t = a%b;
+			a = b;
+			b = t;
+		}
+		return (a == 0) ? 1 : a;
+	}
+
+
+	private static BigInteger isqrt(BigInteger n) {	// the square root of n, if it's a perfect square; otherwise null
+		if (n.bitLength() < 52) {
+			final long r = Math.round(Math.sqrt(n.doubleValue()));
+			return (r*r == n.longValue()) ? BigInteger.valueOf(r) : null;
+		}
+		BigInteger x = BigInteger.ONE.shiftLeft(n.bitLength()/2 + 1);	// Newton's method, from above
+		while (true) {
+			final BigInteger y = x.add(n.divide(x)).shiftRight(1);
+			if (y.compareTo(x) >= 0)
+				break;
+			x = y;
+		}
+		return x.multiply(x).equals(n) ? x : null;
+	}
+
+}
@@ -0,0 +1,1096 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import maths.Constant;
+
+/**
+ * The special functions that aren't just combinations of exp and ln, in
+ * double precision for any complex argument. Everything here works on the
+ * real and imaginary parts separately rather than building Constants, since
+ * it all takes a lot of steps, and the versions the Tape calls write straight
+ * into its registers. Each function switches between a few approximations
+ * depending on where its argument is, since no one series is both fast and
+ * accurate everywhere: Maclaurin series near zero, Weideman's rational
+ * approximation and Laplace's continued fraction for the error functions,
+ * Temme's method in the middle and Hankel's expansions far out for the Bessel
+ * functions, and the Bessel functions again for the Airy functions.
+ *
+ * @author jkunimune
+ */
+public final class SpecialFunctions {
+
+	private static final double G = 7;	// Lanczos's g, for his approximation of the gamma function
+	private static final double[] LANCZOS = {0.99999999999980993, 676.5203681218851, -1259.1392167224028,
+			771.32342877765313, -176.61502916214059, 12.507343278686905, -0.13857109526572012,
+			9.9843695780195716e-6, 1.5056327351493116e-7};
+	private static final double LN_SQRT_TAU = 0.91893853320467274;	// ln(sqrt(2pi))
+	private static final double LN_PI = 1.1447298858494002;
+	private static final double EULER = 0.57721566490153286;	// the Euler-Mascheroni constant
+	private static final double SQRT_PI = 1.7724538509055160;
+	private static final double TWO_OVER_SQRT_PI = 1.1283791670955126;
+
+	private static final double EPSILON = 0x1p-53;	// the most precision a double has to give
+	private static final double FPMIN = 1e-150;	// a stand-in for zero when dividing, which can still be squared
+	private static final int MAX_ITERATIONS = 100000;	// how long to let a continued fraction go before giving up on it
+
+	private static final double ERF_SERIES = 1.5;	// the radius within which erf uses its Maclaurin series
+	private static final double[] ERF_TAYLOR = erfTaylor(32);	// the coefficients of that series, in z^2
+	private static final double ERF_SATURATED = 6;	// the real number past which erf rounds to 1
+	private static final int ERF_TERMS = 60;	// the most terms any other power series here gets
+	private static final int WEIDEMAN_N = 40;	// the degree of Weideman's approximation of the Faddeeva function
+	private static final double WEIDEMAN_L = Math.sqrt(WEIDEMAN_N/Math.sqrt(2));
+	private static final double[] WEIDEMAN = weideman(WEIDEMAN_N);
+	private static final double LAPLACE = 7;	// the radius outside of which the Faddeeva function uses Laplace's continued fraction
+	private static final double LAPLACE_TERMS = 100;	// about how many terms that needs, times the radius
+
+	private static final double[] RECIPROCAL_GAMMA = reciprocalGamma(26);	// the Maclaurin series of 1/gamma(1+x)
+	private static final double DIGAMMA_ASYMPTOTIC = 15;	// the radius outside of which psi uses its asymptotic series
+	private static final double HURWITZ_SHIFT = 10;	// how far past s the Hurwitz zeta function shifts z before using Euler-Maclaurin
+	private static final double[] BERNOULLI = {1/12., -1/720., 1/30240., -1/1209600., 1/47900160.,
+			-691/1307674368000., 1/74724249600., -3617/10670622842880000.,
+			43867/5109094217170944000., -174611/802857662698291200000.};	// B_2j/(2j)!
+
+	private static final double TEMME = 2;	// the radius within which K uses Temme's series rather than Steed's continued fraction
+	private static final double HANKEL = 20;	// the radius outside of which the Bessel functions try Hankel's expansions
+	private static final int HANKEL_TERMS = 80;
+
+	private static final double AIRY_SERIES = 1;	// the radius within which the Airy functions use their Maclaurin series
+	private static final double AI_0 = 0.35502805388781724, AI_PRIME_0 = -0.25881940379280680;	// Ai(0) and Ai'(0)
+	private static final double SQRT_3 = 1.7320508075688773;
+
+
+
+	private SpecialFunctions() {}
+
+
+
+	public static Constant gamma(Constant z) throws ArithmeticException {
+		final double x = z.getReal(), y = z.getImag();
+		if (y == 0) {
+			checkPole(x);
+			return new Constant(gamma(x));
+		}
+		final double[] l = lgamma(x, y);
+		final double mag = Math.exp(l[0]);
+		return new Constant(mag*Math.cos(l[1]), mag*Math.sin(l[1]));
+	}
+
+
+	public static Constant lgamma(Constant z) throws ArithmeticException {	// ln|gamma| for real numbers, and the principal ln(gamma) otherwise
+		final double x = z.getReal(), y = z.getImag();
+		checkPole((y == 0) ? x : 1);
+		final double[] l = lgamma(x, y);
+		return new Constant(l[0], (y == 0) ? 0 : l[1]);
+	}
+
+
+	public static Constant gammaRatio(Constant[] num, Constant[] den) throws ArithmeticException {	// the product of gamma(num) over the product of gamma(den)
+		final double direct = realGammaRatio(num, den);
+		if (direct != 0 && !Double.isInfinite(direct) && !Double.isNaN(direct))
+			return new Constant(direct);
+		
+		double lnRe = 0, lnIm = 0;
+		for (int j = 0; j < num.length + den.length; j ++) {
+			final boolean top = j < num.length;
+			final Constant z = top ? num[j] : den[j - num.length];
+			final double x = z.getReal(), y = z.getImag();
+			if (y == 0 && x <= 0 && x == Math.rint(x)) {
+				if (top)
+					checkPole(x);
+				return Constant.ZERO;	// 1/gamma is 0 at the poles
+			}
+			final double[] l = lgamma(x, y);
+			if (y == 0 && x < 0 && Math.floor(x)%2 != 0)
+				l[1] = Math.PI;	// the real gamma function is negative here
+			lnRe += top ? l[0] : -l[0];
+			lnIm += top ? l[1] : -l[1];
+		}
+		final double mag = Math.exp(lnRe);
+		lnIm = Math.IEEEremainder(lnIm, 2*Math.PI);
+		if (lnIm == 0 || Math.abs(lnIm) == Math.PI)
+			return new Constant((lnIm == 0) ? mag : -mag);
+		return new Constant(mag*Math.cos(lnIm), mag*Math.sin(lnIm));
+	}
+
+
+
+	public static double lgamma(double x) {	// ln|gamma(x)|, for counting things too big to count exactly
+		return lgamma(x, 0)[0];
+	}
+
+
+
+	public static void erf(double x, double y, double[] re, double[] im, int k) {	// the error function 2/sqrt(pi) int_0^z e^-t^2 dt
+		if (x*x + y*y < ERF_SERIES*ERF_SERIES) {
+			erfSeries(x, y, re, im, k);
+		}
+		else if (x == 0) {	// on the imaginary axis, 1 - erfc would leave roundoff in the real part
+			re[k] = 0;
+			im[k] = erfi(y);
+		}
+		else if (y == 0 && Math.abs(x) >= ERF_SATURATED) {
+			re[k] = Math.signum(x);
+			im[k] = 0;
+		}
+		else {	// 1 - erfc(z), using erf(-z) = -erf(z) to stay on the right
+			final double s = Math.signum(x);
+			erfcRight(s*x, s*y, re, im, k);
+			re[k] = s*(1 - re[k]);
+			im[k] = -s*im[k];
+		}
+	}
+
+
+	public static void erfc(double x, double y, double[] re, double[] im, int k) {	// the complementary error function 1 - erf(z)
+		if (x*x + y*y < ERF_SERIES*ERF_SERIES) {
+			erfSeries(x, y, re, im, k);
+			re[k] = 1 - re[k];
+			im[k] = -im[k];
+		}
+		else if (x == 0) {
+			re[k] = 1;
+			im[k] = -erfi(y);
+		}
+		else if (x > 0) {
+			erfcRight(x, y, re, im, k);
+		}
+		else {	// erfc(-z) = 2 - erfc(z)
+			erfcRight(-x, -y, re, im, k);
+			re[k] = 2 - re[k];
+			im[k] = -im[k];
+		}
+	}
+
+
+	public static void erfi(double x, double y, double[] re, double[] im, int k) {	// the imaginary error function -i erf(iz)
+		erf(-y, x, re, im, k);
+		final double t = re[k];
+		re[k] = im[k];
+		im[k] = -t;
+	}
+
+
+	public static void gamma(double x, double y, double[] re, double[] im, int k) {	// the gamma function, with NaN at the poles
+		if (y == 0) {
+			re[k] = (x <= 0 && x == Math.rint(x)) ? Double.NaN : gamma(x);
+			im[k] = 0;
+			return;
+		}
+		lgamma(x, y, re, im, k);
+		final double mag = Math.exp(re[k]), arg = im[k];
+		re[k] = mag*Math.cos(arg);
+		im[k] = mag*Math.sin(arg);
+	}
+
+
+	public static void lgamma(double x, double y, double[] re, double[] im, int k) {	// ln|gamma| for real numbers, and the principal ln(gamma) otherwise
+		if (y == 0 && x <= 0 && x == Math.rint(x)) {
+			re[k] = Double.POSITIVE_INFINITY;
+			im[k] = 0;
+			return;
+		}
+		logGamma(x, y, re, im, k);
+		if (y == 0)
+			im[k] = 0;
+	}
+
+
+	public static void digamma(double x, double y, double[] re, double[] im, int k) {	// the logarithmic derivative of gamma
+		if (x < 0.5) {	// psi(1-z) - pi cot(pi z)
+			digamma(1 - x, -y, re, im, k);
+			final double den = Math.cosh(2*Math.PI*y) - cosPi(2*x);
+			re[k] -= Math.PI*sinPi(2*x)/den;
+			im[k] += Math.PI*Math.sinh(2*Math.PI*y)/den;
+			return;
+		}
+		double sr = 0, si = 0;
+		while (x*x + y*y < DIGAMMA_ASYMPTOTIC*DIGAMMA_ASYMPTOTIC) {	// psi(z) = psi(z+1) - 1/z
+			final double d2 = x*x + y*y;
+			sr -= x/d2;
+			si += y/d2;
+			x ++;
+		}
+		final double d2 = x*x + y*y, wr = x/d2, wi = -y/d2;	// then ln(z) - 1/2z - sum B_2n/(2n z^2n)
+		final double w2r = wr*wr - wi*wi, w2i = 2*wr*wi;
+		double tr = -1/132., ti = 0;
+		for (double c: new double[] {1/240., -1/252., 1/120., -1/12.}) {
+			final double t = tr*w2r - ti*w2i + c;
+			ti = tr*w2i + ti*w2r;
+			tr = t;
+		}
+		re[k] = Math.log(Math.sqrt(d2)) - wr/2 + (tr*w2r - ti*w2i) + sr;
+		im[k] = Math.atan2(y, x) - wi/2 + (tr*w2i + ti*w2r) + si;
+	}
+
+
+	public static void hurwitzZeta(int s, double x, double y, double[] re, double[] im, int k) {	// the sum of 1/(z+n)^s over n >= 0, for an integer s >= 2
+		double sr = 0, si = 0;
+		final double r = s + HURWITZ_SHIFT;
+		while (x*x + y*y < r*r) {	// add up the first few terms directly
+			final double mag = Math.pow(x*x + y*y, -s/2.), angle = -s*Math.atan2(y, x);
+			sr += mag*Math.cos(angle);
+			si += mag*Math.sin(angle);
+			x ++;
+		}
+		final double d2 = x*x + y*y, ur = x/d2, ui = -y/d2;	// then the rest with Euler-Maclaurin, in powers of u = 1/z
+		final double u2r = ur*ur - ui*ui, u2i = 2*ur*ui;
+		final double mag = Math.pow(d2, -s/2.), angle = -s*Math.atan2(y, x);
+		final double pr = mag*Math.cos(angle), pi = mag*Math.sin(angle);	// z^-s
+		sr += (x*pr - y*pi)/(s - 1) + pr/2;
+		si += (x*pi + y*pr)/(s - 1) + pi/2;
+		double tr = pr*ur - pi*ui, ti = pr*ui + pi*ur;	// z^(-s-2j+1)
+		double rising = s;	// s(s+1)...(s+2j-2)
+		for (int j = 1; j <= BERNOULLI.length; j ++) {
+			sr += BERNOULLI[j-1]*rising*tr;
+			si += BERNOULLI[j-1]*rising*ti;
+			final double t = tr*u2r - ti*u2i;
+			ti = tr*u2i + ti*u2r;
+			tr = t;
+			rising *= (s + 2*j - 1.)*(s + 2*j);
+		}
+		re[k] = sr;
+		im[k] = si;
+	}
+
+
+	public static void beta(double ax, double ay, double bx, double by, double[] re, double[] im, int k) {	// gamma(a) gamma(b)/gamma(a+b)
+		final double cx = ax + bx, cy = ay + by;
+		if (ay == 0 && by == 0) {
+			if (isPole(ax) || isPole(bx)) {
+				re[k] = isPole(cx) ? Double.NaN : Double.POSITIVE_INFINITY;
+				im[k] = 0;
+				return;
+			}
+			if (isPole(cx)) {
+				re[k] = im[k] = 0;
+				return;
+			}
+			if (Math.abs(ax) <= 170 && Math.abs(bx) <= 170 && Math.abs(cx) <= 170) {	// small enough to multiply directly
+				re[k] = gamma(ax)*(gamma(bx)/gamma(cx));
+				im[k] = 0;
+				if (re[k] != 0 && !Double.isInfinite(re[k]))
+					return;
+			}
+			final boolean negative = (gammaNegative(ax) ^ gammaNegative(bx)) ^ gammaNegative(cx);
+			logGamma(ax, 0, re, im, k);
+			double l = re[k];
+			logGamma(bx, 0, re, im, k);
+			l += re[k];
+			logGamma(cx, 0, re, im, k);
+			l -= re[k];
+			re[k] = negative ? -Math.exp(l) : Math.exp(l);
+			im[k] = 0;
+			return;
+		}
+		logGamma(ax, ay, re, im, k);
+		double lr = re[k], li = im[k];
+		logGamma(bx, by, re, im, k);
+		lr += re[k];
+		li += im[k];
+		logGamma(cx, cy, re, im, k);
+		lr -= re[k];
+		li -= im[k];
+		final double mag = Math.exp(lr);
+		re[k] = mag*Math.cos(li);
+		im[k] = mag*Math.sin(li);
+	}
+
+
+	public static void besselJ(double nu, double x, double y, double[] re, double[] im, int k) {	// the Bessel function of the first kind
+		final double[] o = new double[4];
+		besselJY(nu, x, y, o);
+		re[k] = o[0];
+		im[k] = o[1];
+	}
+
+
+	public static void besselY(double nu, double x, double y, double[] re, double[] im, int k) {	// the Bessel function of the second kind
+		final double[] o = new double[4];
+		besselJY(nu, x, y, o);
+		re[k] = o[2];
+		im[k] = o[3];
+	}
+
+
+	public static void besselI(double nu, double x, double y, double[] re, double[] im, int k) {	// the modified Bessel function of the first kind
+		final double[] o = new double[4];
+		besselIK(nu, x, y, o);
+		re[k] = o[0];
+		im[k] = o[1];
+	}
+
+
+	public static void besselK(double nu, double x, double y, double[] re, double[] im, int k) {	// the modified Bessel function of the second kind
+		final double[] o = new double[4];
+		besselIK(nu, x, y, o);
+		re[k] = o[2];
+		im[k] = o[3];
+	}
+
+
+	public static void airyAi(double x, double y, double[] re, double[] im, int k) {
+		airy(false, false, x, y, re, im, k);
+	}
+
+
+	public static void airyBi(double x, double y, double[] re, double[] im, int k) {
+		airy(true, false, x, y, re, im, k);
+	}
+
+
+	public static void airyAiPrime(double x, double y, double[] re, double[] im, int k) {
+		airy(false, true, x, y, re, im, k);
+	}
+
+
+	public static void airyBiPrime(double x, double y, double[] re, double[] im, int k) {
+		airy(true, true, x, y, re, im, k);
+	}
+
+
+
+	private static double realGammaRatio(Constant[] num, Constant[] den) {	// multiply the gamma functions themselves, if they're small and real
+		double ratio = 1;
+		for (int j = 0; j < num.length + den.length; j ++) {
+			final Constant z = (j < num.length) ? num[j] : den[j - num.length];
+			if (z.getImag() != 0 || Math.abs(z.getReal()) > 170 || (z.getReal() == Math.rint(z.getReal()) && z.getReal() <= 0))
+				return Double.NaN;
+			ratio = (j < num.length) ? ratio*gamma(z.getReal()) : ratio/gamma(z.getReal());
+		}
+		return ratio;
+	}
+
+
+	static double gamma(double x) {	// directly, rather than through lgamma, so it doesn't lose digits
+		if (x < 0.5)
+			return Math.PI/(sinPi(x)*gamma(1 - x));	// reflect
+		if (x > 171.7)
+			return Double.POSITIVE_INFINITY;
+		final double t = x + G - 0.5;
+		final double half = Math.pow(t, (x - 0.5)/2);	// split up the power so it doesn't overflow before e^-t comes in
+		double sum = LANCZOS[0];
+		for (int k = 1; k < LANCZOS.length; k ++)
+			sum += LANCZOS[k]/(x - 1 + k);
+		return Math.sqrt(2*Math.PI)*half*(half*Math.exp(-t))*sum;
+	}
+
+
+	static double[] lgamma(double x, double y) {	// the real and imaginary parts of ln(gamma(x + iy)) (with ln|gamma| for real x)
+		final double[] re = new double[1], im = new double[1];
+		logGamma(x, y, re, im, 0);
+		return new double[] {re[0], im[0]};
+	}
+
+
+	private static void logGamma(double x, double y, double[] re, double[] im, int k) {	// Lanczos's approximation, reflected for the left half
+		if (x < 0.5) {	// ln(pi) - ln(sin(pi z)) - ln(gamma(1 - z))
+			lnSinPi(x, y, re, im, k);
+			final double sr = re[k], si = im[k];
+			logGamma(1 - x, -y, re, im, k);
+			re[k] = LN_PI - sr - re[k];
+			im[k] = Math.IEEEremainder(-si - im[k], 2*Math.PI);
+			return;
+		}
+		double ar = LANCZOS[0], ai = 0;	// the sum in Lanczos's approximation
+		for (int j = 1; j < LANCZOS.length; j ++) {
+			final double dx = x - 1 + j, d2 = dx*dx + y*y;
+			ar += LANCZOS[j]*dx/d2;
+			ai -= LANCZOS[j]*y/d2;
+		}
+		final double tx = x + G - 0.5, ty = y;
+		final double lnT = Math.log(Math.hypot(tx, ty)), argT = Math.atan2(ty, tx);
+		re[k] = LN_SQRT_TAU + (x - 0.5)*lnT - y*argT - tx + Math.log(Math.hypot(ar, ai));
+		im[k] = Math.IEEEremainder((x - 0.5)*argT + y*lnT - ty + Math.atan2(ai, ar), 2*Math.PI);
+	}
+
+
+	private static void lnSinPi(double x, double y, double[] re, double[] im, int k) {	// ln(sin(pi z)), without letting sin overflow far from the real line
+		if (y == 0) {
+			re[k] = Math.log(Math.abs(sinPi(x)));
+			im[k] = 0;
+			return;
+		}
+		final double s = Math.signum(y);	// sin(pi z) = e^(-i pi z s) (1 - e^(2i pi z s))/(2is)
+		final double wMag = Math.exp(-2*Math.PI*Math.abs(y)), wArg = 2*Math.PI*Math.IEEEremainder(x, 1)*s;
+		final double oneMinusRe = 1 - wMag*Math.cos(wArg), oneMinusIm = -wMag*Math.sin(wArg);
+		re[k] = Math.PI*y*s - Math.log(2) + Math.log(Math.hypot(oneMinusRe, oneMinusIm));
+		im[k] = -Math.PI*Math.IEEEremainder(x, 2)*s + s*Math.PI/2 + Math.atan2(oneMinusIm, oneMinusRe);
+	}
+
+
+	private static boolean gammaNegative(double x) {	// is the real gamma function negative here?
+		return x < 0 && Math.floor(x)%2 != 0;
+	}
+
+
+	private static boolean isPole(double x) {
+		return x <= 0 && x == Math.rint(x);
+	}
+
+
+	private static void checkPole(double x) throws ArithmeticException {
+		if (isPole(x))
+			throw new ArithmeticException("The gamma function is undefined at "+(long) x+".");
+	}
+
+
+	private static double[] reciprocalGamma(int n) {	// the first n coefficients of 1/gamma(1+x), from the series for its logarithm
+		final double[] zeta = new double[n+1];
+		final int m = 1000;
+		for (int j = 2; j <= n; j ++) {	// zeta(j), summed backwards with an Euler-Maclaurin tail
+			double sum = Math.pow(m, 1-j)/(j-1) + Math.pow(m, -j)/2 + j*Math.pow(m, -j-1)/12
+					- j*(j+1.)*(j+2.)*Math.pow(m, -j-3)/720;
+			for (int i = m-1; i >= 1; i --)
+				sum += Math.pow(i, -j);
+			zeta[j] = sum;
+		}
+		final double[] c = new double[n];	// ln(1/gamma(1+x)) = gamma x - sum (-1)^j zeta(j) x^j/j
+		c[0] = 1;
+		for (int i = 0; i+1 < n; i ++) {
+			double sum = EULER*c[i];
+			for (int j = 2; j <= i+1; j ++)
+				sum -= ((j%2 == 0) ? 1 : -1)*zeta[j]*c[i+1-j];
+			c[i+1] = sum/(i+1);
+		}
+		return c;
+	}
+
+
+
+	private static void erfSeries(double x, double y, double[] re, double[] im, int k) {	// 2/sqrt(pi) sum (-1)^n z^(2n+1)/(n!(2n+1)), by Horner's rule
+		final double z2r = x*x - y*y, z2i = 2*x*y;
+		final int n = Math.min(ERF_TAYLOR.length, 10 + (int) (9*(x*x + y*y)));	// enough terms to get down to roundoff
+		double sr = 0, si = 0;
+		for (int j = n-1; j >= 0; j --) {
+			final double t = sr*z2r - si*z2i + ERF_TAYLOR[j];
+			si = sr*z2i + si*z2r;
+			sr = t;
+		}
+		re[k] = TWO_OVER_SQRT_PI*(sr*x - si*y);
+		im[k] = TWO_OVER_SQRT_PI*(sr*y + si*x);
+	}
+
+
+	private static double erfi(double y) {	// the imaginary error function of a real number, e^y^2 Im(w(y))
+		final double[] re = new double[1], im = new double[1];
+		if (Math.abs(y) < ERF_SERIES) {
+			erfSeries(0, y, re, im, 0);
+			return im[0];
+		}
+		faddeeva(Math.abs(y), 0, re, im, 0);
+		return Math.signum(y)*Math.exp(y*y)*im[0];
+	}
+
+
+	private static void erfcRight(double x, double y, double[] re, double[] im, int k) {	// erfc(z) = e^-z^2 w(iz), for x >= 0
+		faddeeva(-y, x, re, im, k);
+		if (y == 0) {
+			re[k] *= Math.exp(-x*x);
+			return;
+		}
+		final double wr = re[k], wi = im[k];
+		final double mag = Math.exp(y*y - x*x), c = Math.cos(2*x*y), s = -Math.sin(2*x*y);
+		re[k] = mag*(c*wr - s*wi);
+		im[k] = mag*(c*wi + s*wr);
+	}
+
+
+	private static void faddeeva(double x, double y, double[] re, double[] im, int k) {	// w(z) = e^-z^2 erfc(-iz), for y >= 0
+		final double r2 = x*x + y*y;
+		final int n = 4 + (int) (LAPLACE_TERMS/Math.sqrt(r2));
+		if (x == 0) {	// on the imaginary axis it's all real, which is where erfc of real numbers ends up
+			if (r2 >= LAPLACE*LAPLACE) {	// 1/(sqrt(pi) (y - 1/2/(y + 1/(y + 3/2/(y + ...
+				double r = 0;
+				for (int j = n; j >= 1; j --)
+					r = -j/2./(y - r);
+				re[k] = 1/(SQRT_PI*(y - r));
+			}
+			else {
+				final double d = WEIDEMAN_L + y, z = (WEIDEMAN_L - y)/d;
+				double p = 0;
+				for (int j = WEIDEMAN.length-1; j >= 0; j --)
+					p = p*z + WEIDEMAN[j];
+				re[k] = (2*p/d + 1/SQRT_PI)/d;
+			}
+			im[k] = 0;
+			return;
+		}
+		if (r2 >= LAPLACE*LAPLACE) {	// Laplace's continued fraction (i/sqrt(pi))/(z - 1/2/(z - 1/(z - 3/2/(z - ...
+			double rr = 0, ri = 0;
+			for (int j = n; j >= 1; j --) {
+				final double dr = x - rr, di = y - ri, d2 = dr*dr + di*di;	// this far out there's no danger of overflow
+				rr = j/2.*dr/d2;
+				ri = -j/2.*di/d2;
+			}
+			div(1/SQRT_PI, 0, x - rr, y - ri, re, im, k);
+			final double t = re[k];
+			re[k] = -im[k];
+			im[k] = t;
+			return;
+		}
+		final double dr = WEIDEMAN_L + y, di = -x;	// otherwise, Weideman's polynomial in Z = (L + iz)/(L - iz)
+		div(WEIDEMAN_L - y, x, dr, di, re, im, k);
+		final double zr = re[k], zi = im[k];
+		double pr = 0, pi = 0;
+		for (int j = WEIDEMAN.length-1; j >= 0; j --) {
+			final double t = pr*zr - pi*zi + WEIDEMAN[j];
+			pi = pr*zi + pi*zr;
+			pr = t;
+		}
+		div(2*pr, 2*pi, dr, di, re, im, k);	// w = (2p/(L - iz) + 1/sqrt(pi))/(L - iz)
+		div(re[k] + 1/SQRT_PI, im[k], dr, di, re, im, k);
+	}
+
+
+	private static double[] erfTaylor(int n) {	// (-1)^n/(n!(2n+1))
+		final double[] c = new double[n];
+		double term = 1;
+		for (int i = 0; i < n; i ++) {
+			c[i] = term/(2*i+1);
+			term /= -(i+1);
+		}
+		return c;
+	}
+
+
+	private static double[] weideman(int n) {	// the coefficients of Weideman's approximation, from a small cosine transform
+		final int m = 2*n;
+		final double l = WEIDEMAN_L;
+		final double[] f = new double[m];	// e^-t^2 (L^2 + t^2) at t = L tan(j pi/2m), which is even in j
+		for (int j = 0; j < m; j ++) {
+			final double t = l*Math.tan(j*Math.PI/(2*m));
+			f[j] = Math.exp(-t*t)*(l*l + t*t);
+		}
+		final double[] a = new double[n];
+		for (int i = 1; i <= n; i ++) {
+			double sum = f[0];
+			for (int j = 1; j < m; j ++)
+				sum += 2*f[j]*Math.cos(Math.PI*i*j/m);
+			a[i-1] = sum/(2*m);
+		}
+		return a;
+	}
+
+
+
+	private static void besselJY(double nu, double x, double y, double[] o) {	// J_nu and Y_nu anywhere, from the ones of positive order on the right
+		final double mu = Math.abs(nu);
+		if (x == 0 && y == 0) {
+			o[0] = (nu == 0) ? 1 : (nu > 0 || nu == Math.rint(nu)) ? 0 : Double.NaN;
+			o[2] = Double.NaN;
+			o[1] = o[3] = 0;
+			return;
+		}
+		if (x >= 0)
+			rightJY(mu, x, y, o);
+		else {	// J(z e^(m pi i)) = e^(m nu pi i) J(z), Y(z e^(m pi i)) = e^(-m nu pi i) Y(z) + 2i m cos(nu pi) J(z)
+			rightJY(mu, -x, -y, o);
+			final double m = (y >= 0) ? 1 : -1;
+			final double c = cosPi(mu), s = m*sinPi(mu);
+			final double jr = o[0], ji = o[1], yr = o[2], yi = o[3];
+			o[0] = c*jr - s*ji;
+			o[1] = c*ji + s*jr;
+			o[2] = c*yr + s*yi - 2*m*c*ji;
+			o[3] = c*yi - s*yr + 2*m*c*jr;
+		}
+		if (nu < 0) {	// J_-nu = cos(nu pi) J_nu - sin(nu pi) Y_nu, Y_-nu = sin(nu pi) J_nu + cos(nu pi) Y_nu
+			final double c = cosPi(mu), s = sinPi(mu);
+			final double jr = o[0], ji = o[1], yr = o[2], yi = o[3];
+			o[0] = c*jr - s*yr;
+			o[1] = c*ji - s*yi;
+			o[2] = s*jr + c*yr;
+			o[3] = s*ji + c*yi;
+		}
+		if (y == 0 && x > 0)	// make sure real numbers come out real
+			o[1] = o[3] = 0;
+		else if (y == 0 && nu == Math.rint(nu))
+			o[1] = 0;
+	}
+
+
+	private static void besselIK(double nu, double x, double y, double[] o) {	// I_nu and K_nu anywhere, from the ones of positive order on the right
+		final double mu = Math.abs(nu);
+		if (x == 0 && y == 0) {
+			o[0] = (nu == 0) ? 1 : (nu > 0 || nu == Math.rint(nu)) ? 0 : Double.NaN;
+			o[2] = Double.POSITIVE_INFINITY;
+			o[1] = o[3] = 0;
+			return;
+		}
+		if (x >= 0)
+			rightIK(mu, x, y, o);
+		else {	// I(z e^(m pi i)) = e^(m nu pi i) I(z), K(z e^(m pi i)) = e^(-m nu pi i) K(z) - m pi i I(z)
+			rightIK(mu, -x, -y, o);
+			final double m = (y >= 0) ? 1 : -1;
+			final double c = cosPi(mu), s = m*sinPi(mu);
+			final double ir = o[0], ii = o[1], kr = o[2], ki = o[3];
+			o[0] = c*ir - s*ii;
+			o[1] = c*ii + s*ir;
+			o[2] = c*kr + s*ki + m*Math.PI*ii;
+			o[3] = c*ki - s*kr - m*Math.PI*ir;
+		}
+		if (nu < 0) {	// I_-nu = I_nu + 2/pi sin(nu pi) K_nu
+			final double s = 2/Math.PI*sinPi(mu);
+			o[0] += s*o[2];
+			o[1] += s*o[3];
+		}
+		if (y == 0 && x > 0)
+			o[1] = o[3] = 0;
+		else if (y == 0 && nu == Math.rint(nu))
+			o[1] = 0;
+	}
+
+
+	private static void rightJY(double nu, double x, double y, double[] o) {	// J_nu and Y_nu for nu >= 0 and x >= 0
+		if (hankel(nu, x, y, o)) {	// J = (H1 + H2)/2, Y = (H1 - H2)/2i
+			final double h1r = o[0], h1i = o[1], h2r = o[2], h2i = o[3];
+			o[0] = (h1r + h2r)/2;
+			o[1] = (h1i + h2i)/2;
+			o[2] = (h1i - h2i)/2;
+			o[3] = (h2r - h1r)/2;
+			return;
+		}
+		final double s = (y >= 0) ? 1 : -1;	// otherwise rotate to I and K at -isz, which is also on the right
+		temme(nu, s*y, -s*x, o);
+		final double c = cosPi(nu/2), sn = s*sinPi(nu/2);
+		final double ir = o[0], ii = o[1], kr = o[2], ki = o[3];
+		final double jr = c*ir - sn*ii, ji = c*ii + sn*ir;	// J = e^(i s nu pi/2) I(-isz)
+		final double pr = c*kr + sn*ki, pi = c*ki - sn*kr;	// H1 or H2 = 2s/(pi i) e^(-i s nu pi/2) K(-isz)
+		final double hr = 2*s/Math.PI*pi, hi = -2*s/Math.PI*pr;
+		o[0] = jr;	// and Y = s(H - J)/i
+		o[1] = ji;
+		o[2] = s*(hi - ji);
+		o[3] = -s*(hr - jr);
+	}
+
+
+	private static void rightIK(double nu, double x, double y, double[] o) {	// I_nu and K_nu for nu >= 0 and x >= 0
+		if (x*x + y*y >= HANKEL*HANKEL) {
+			final double s = (y >= 0) ? 1 : -1;	// I = e^(i s nu pi/2) J(-isz), with the J from Hankel's expansions
+			if (hankel(nu, s*y, -s*x, o)) {
+				final double jr = (o[0] + o[2])/2, ji = (o[1] + o[3])/2;
+				final double c = cosPi(nu/2), sn = s*sinPi(nu/2);
+				if (asymptotic(nu, x, y, 1, 0, o, 2)) {	// and K = sqrt(pi/2z) e^-z sum a_k/z^k
+					final double r = Math.hypot(x, y), th = Math.atan2(y, x);
+					final double mag = Math.sqrt(Math.PI/(2*r))*Math.exp(-x), arg = -th/2 - y;
+					final double c2 = mag*Math.cos(arg), s2 = mag*Math.sin(arg), sr = o[2], si = o[3];
+					o[0] = c*jr - sn*ji;
+					o[1] = c*ji + sn*jr;
+					o[2] = c2*sr - s2*si;
+					o[3] = c2*si + s2*sr;
+					return;
+				}
+			}
+		}
+		temme(nu, x, y, o);
+	}
+
+
+	private static boolean hankel(double nu, double x, double y, double[] o) {	// H1 and H2 by Hankel's expansions, if they converge this close in
+		if (x*x + y*y < HANKEL*HANKEL)
+			return false;
+		if (!asymptotic(nu, x, y, 0, 1, o, 0) || !asymptotic(nu, x, y, 0, -1, o, 2))
+			return false;
+		final double r = Math.hypot(x, y), th = Math.atan2(y, x);
+		final double amp = Math.sqrt(2/(Math.PI*r));	// sqrt(2/pi z) e^(+-i(z - nu pi/2 - pi/4))
+		final double pc = cosPi(nu/2 + .25), ps = sinPi(nu/2 + .25), xc = Math.cos(x), xs = Math.sin(x);
+		final double phr = xc*pc + xs*ps, phi = xs*pc - xc*ps;	// e^(i(x - phi))
+		final double m1 = amp*Math.exp(-y), m2 = amp*Math.exp(y);
+		final double hc = Math.cos(th/2), hs = -Math.sin(th/2);	// 1/sqrt(z)'s phase
+		final double ar = m1*(phr*hc - phi*hs), ai = m1*(phr*hs + phi*hc);
+		final double br = m2*(phr*hc + phi*hs), bi = m2*(phr*hs - phi*hc);
+		final double s1r = o[0], s1i = o[1], s2r = o[2], s2i = o[3];
+		o[0] = ar*s1r - ai*s1i;
+		o[1] = ar*s1i + ai*s1r;
+		o[2] = br*s2r - bi*s2i;
+		o[3] = br*s2i + bi*s2r;
+		return true;
+	}
+
+
+	private static boolean asymptotic(double nu, double x, double y, double sr, double si, double[] o, int j) {	// sum (s)^k a_k(nu)/z^k, if it gets to full precision before it diverges
+		final double m = 4*nu*nu;
+		final double d2 = 8*(x*x + y*y), ur = x/d2, ui = -y/d2;	// 1/8z
+		final double vr = sr*ur - si*ui, vi = sr*ui + si*ur;
+		double tr = 1, ti = 0, sumR = 1, sumI = 0, last = Double.POSITIVE_INFINITY;
+		for (int i = 1; i < HANKEL_TERMS; i ++) {
+			final double f = (m - (2*i - 1.)*(2*i - 1.))/i;
+			final double t = f*(tr*vr - ti*vi);
+			ti = f*(tr*vi + ti*vr);
+			tr = t;
+			sumR += tr;
+			sumI += ti;
+			final double size = Math.abs(tr) + Math.abs(ti);
+			if (size <= EPSILON*(Math.abs(sumR) + Math.abs(sumI))) {
+				o[j] = sumR;
+				o[j+1] = sumI;
+				return true;
+			}
+			if (size > last)
+				return false;
+			last = size;
+		}
+		return false;
+	}
+
+
+	private static void temme(double nu, double x, double y, double[] o) {	// I_nu and K_nu for nu >= 0 and x >= 0, by Temme's method
+		final double[] t = new double[2];
+		final int nl = (int) (nu + 0.5);
+		final double mu = nu - nl, mu2 = mu*mu;	// K gets worked out at this order, |mu| <= 1/2, and then recurred up
+		div(1, 0, x, y, t, t, 0, 1);
+		final double xr = t[0], xi = t[1];	// 1/z
+
+		double hr = nu*xr, hi = nu*xi;	// I'_nu/I_nu, by Lentz's method on its continued fraction
+		if (Math.abs(hr) + Math.abs(hi) < FPMIN)
+			hr = FPMIN;	// (Lentz's method can't start from zero)
+		double br = 2*nu*xr, bi = 2*nu*xi, dr = 0, di = 0, cr = hr, ci = hi;
+		for (int i = 1; ; i ++) {
+			if (i > MAX_ITERATIONS) {
+				o[0] = o[1] = o[2] = o[3] = Double.NaN;
+				return;
+			}
+			br += 2*xr;
+			bi += 2*xi;
+			double er = br + dr, ei = bi + di, e2 = er*er + ei*ei;	// none of these get anywhere near overflowing
+			if (e2 == 0) {
+				er = FPMIN;
+				e2 = FPMIN*FPMIN;
+			}
+			dr = er/e2;
+			di = -ei/e2;
+			final double c2 = cr*cr + ci*ci;
+			cr = br + cr/c2;
+			ci = bi - ci/c2;
+			if (cr == 0 && ci == 0)
+				cr = FPMIN;
+			er = cr*dr - ci*di;
+			ei = cr*di + ci*dr;
+			final double h = hr*er - hi*ei;
+			hi = hr*ei + hi*er;
+			hr = h;
+			if (Math.abs(er - 1) + Math.abs(ei) < EPSILON)
+				break;
+		}
+
+		double ilr = FPMIN, ili = 0, iplr = hr*FPMIN, ipli = hi*FPMIN;	// then recur I and I' down to mu, unnormalised
+		double i1r = ilr, i1i = ili;
+		double fr = nu*xr, fi = nu*xi;
+		for (int l = nl; l >= 1; l --) {
+			final double tr = fr*ilr - fi*ili + iplr, ti = fr*ili + fi*ilr + ipli;
+			fr -= xr;
+			fi -= xi;
+			iplr = fr*tr - fi*ti + ilr;
+			ipli = fr*ti + fi*tr + ili;
+			ilr = tr;
+			ili = ti;
+			if (Math.abs(ilr) + Math.abs(ili) > 1e250) {	// don't let it overflow on the way
+				ilr *= 1e-250;
+				ili *= 1e-250;
+				iplr *= 1e-250;
+				ipli *= 1e-250;
+				i1r *= 1e-250;
+				i1i *= 1e-250;
+			}
+		}
+		div(iplr, ipli, ilr, ili, t, t, 0, 1);
+		final double gr = t[0], gi = t[1];	// I'_mu/I_mu
+
+		double kr, ki, k1r, k1i;	// K_mu and K_mu+1
+		if (x*x + y*y < TEMME*TEMME) {	// Temme's series
+			final double x2r = x/2, x2i = y/2;
+			final double pimu = Math.PI*mu;
+			final double fact = (Math.abs(pimu) < EPSILON) ? 1 : pimu/Math.sin(pimu);
+			final double lr = -Math.log(Math.hypot(x2r, x2i)), li = -Math.atan2(x2i, x2r);	// -ln(z/2)
+			final double er = mu*lr, ei = mu*li;
+			final double shr = Math.sinh(er)*Math.cos(ei), shi = Math.cosh(er)*Math.sin(ei);
+			final double chr = Math.cosh(er)*Math.cos(ei), chi = Math.sinh(er)*Math.sin(ei);
+			double f2r = 1, f2i = 0;	// sinh(e)/e
+			if (Math.abs(er) + Math.abs(ei) >= EPSILON) {
+				div(shr, shi, er, ei, t, t, 0, 1);
+				f2r = t[0];
+				f2i = t[1];
+			}
+			final double gampl = reciprocalGamma(mu), gammi = reciprocalGamma(-mu);	// 1/gamma(1+mu) and 1/gamma(1-mu)
+			double gam1 = 0, power = 1;	// (1/gamma(1-mu) - 1/gamma(1+mu))/2mu, from the odd terms of the series
+			for (int i = 1; i < RECIPROCAL_GAMMA.length; i += 2) {
+				gam1 -= RECIPROCAL_GAMMA[i]*power;
+				power *= mu2;
+			}
+			final double gam2 = (gammi + gampl)/2;
+			double ffr = fact*(gam1*chr + gam2*(f2r*lr - f2i*li)), ffi = fact*(gam1*chi + gam2*(f2r*li + f2i*lr));
+			double sumR = ffr, sumI = ffi;
+			final double eer = Math.exp(er)*Math.cos(ei), eei = Math.exp(er)*Math.sin(ei);
+			double pr = eer/(2*gampl), pi = eei/(2*gampl);
+			div(1/(2*gammi), 0, eer, eei, t, t, 0, 1);
+			double qr = t[0], qi = t[1];
+			double cr2 = 1, ci2 = 0;
+			final double ddr = x2r*x2r - x2i*x2i, ddi = 2*x2r*x2i;
+			double sum1R = pr, sum1I = pi;
+			for (int i = 1; i < MAX_ITERATIONS; i ++) {
+				final double den = i*i - mu2;
+				ffr = (i*ffr + pr + qr)/den;
+				ffi = (i*ffi + pi + qi)/den;
+				final double c = (cr2*ddr - ci2*ddi)/i;
+				ci2 = (cr2*ddi + ci2*ddr)/i;
+				cr2 = c;
+				pr /= i - mu;
+				pi /= i - mu;
+				qr /= i + mu;
+				qi /= i + mu;
+				final double delR = cr2*ffr - ci2*ffi, delI = cr2*ffi + ci2*ffr;
+				sumR += delR;
+				sumI += delI;
+				final double ar = pr - i*ffr, ai = pi - i*ffi;
+				sum1R += cr2*ar - ci2*ai;
+				sum1I += cr2*ai + ci2*ar;
+				if (Math.abs(delR) + Math.abs(delI) < EPSILON*(Math.abs(sumR) + Math.abs(sumI)))
+					break;
+			}
+			kr = sumR;
+			ki = sumI;
+			k1r = 2*(sum1R*xr - sum1I*xi);
+			k1i = 2*(sum1R*xi + sum1I*xr);
+		}
+		else {	// Steed's method on the continued fraction for K_mu+1/K_mu
+			double bbr = 2*(1 + x), bbi = 2*y;
+			div(1, 0, bbr, bbi, t, t, 0, 1);
+			double ddr = t[0], ddi = t[1];
+			double hhr = ddr, hhi = ddi, delhr = ddr, delhi = ddi;
+			double q1r = 0, q1i = 0, q2r = 1, q2i = 0;
+			final double a1 = 0.25 - mu2;
+			double qr = a1, qi = 0, c = a1, a = -a1;
+			double sr = 1 + qr*delhr, si = qr*delhi;
+			for (int i = 2; i < MAX_ITERATIONS; i ++) {
+				a -= 2*(i - 1);
+				c = -a*c/i;
+				final double nr = (q1r - (bbr*q2r - bbi*q2i))/a, ni = (q1i - (bbr*q2i + bbi*q2r))/a;
+				q1r = q2r;
+				q1i = q2i;
+				q2r = nr;
+				q2i = ni;
+				qr += c*nr;
+				qi += c*ni;
+				bbr += 2;
+				final double er = bbr + a*ddr, ei = bbi + a*ddi, e2 = er*er + ei*ei;
+				ddr = er/e2;
+				ddi = -ei/e2;
+				final double mr = bbr*ddr - bbi*ddi - 1, mi = bbr*ddi + bbi*ddr;
+				final double dh = mr*delhr - mi*delhi;
+				delhi = mr*delhi + mi*delhr;
+				delhr = dh;
+				hhr += delhr;
+				hhi += delhi;
+				final double dsr = qr*delhr - qi*delhi, dsi = qr*delhi + qi*delhr;
+				sr += dsr;
+				si += dsi;
+				if (Math.abs(dsr) + Math.abs(dsi) < EPSILON*(Math.abs(sr) + Math.abs(si)))
+					break;
+			}
+			hhr *= a1;
+			hhi *= a1;
+			final double r = Math.hypot(x, y), th = Math.atan2(y, x);	// K_mu = sqrt(pi/2z) e^-z/s
+			final double mag = Math.sqrt(Math.PI/(2*r))*Math.exp(-x), arg = -th/2 - y;
+			div(mag*Math.cos(arg), mag*Math.sin(arg), sr, si, t, t, 0, 1);
+			kr = t[0];
+			ki = t[1];
+			final double wr = mu + x + 0.5 - hhr, wi = y - hhi;	// K_mu+1 = K_mu (mu + z + 1/2 - h)/z
+			final double vr = kr*wr - ki*wi, vi = kr*wi + ki*wr;
+			k1r = vr*xr - vi*xi;
+			k1i = vr*xi + vi*xr;
+		}
+
+		final double kpr = mu*(xr*kr - xi*ki) - k1r, kpi = mu*(xr*ki + xi*kr) - k1i;	// K'_mu
+		div(xr, xi, gr*kr - gi*ki - kpr, gr*ki + gi*kr - kpi, t, t, 0, 1);	// I_mu from the Wronskian
+		final double imr = t[0], imi = t[1];
+		div(imr*i1r - imi*i1i, imr*i1i + imi*i1r, ilr, ili, t, t, 0, 1);
+		o[0] = t[0];
+		o[1] = t[1];
+		for (int i = 1; i <= nl; i ++) {	// and recur K up to nu
+			final double fr2 = 2*(mu + i)*xr, fi2 = 2*(mu + i)*xi;
+			final double nr = fr2*k1r - fi2*k1i + kr, ni = fr2*k1i + fi2*k1r + ki;
+			kr = k1r;
+			ki = k1i;
+			k1r = nr;
+			k1i = ni;
+		}
+		o[2] = kr;
+		o[3] = ki;
+	}
+
+
+	private static double reciprocalGamma(double x) {	// 1/gamma(1+x), for |x| <= 1/2
+		double sum = 0;
+		for (int i = RECIPROCAL_GAMMA.length-1; i >= 0; i --)
+			sum = sum*x + RECIPROCAL_GAMMA[i];
+		return sum;
+	}
+
+
+
+	private static void airy(boolean bi, boolean prime, double x, double y, double[] re, double[] im, int k) {	// Ai, Bi, or their derivatives
+		if (y < 0) {	// they're all real on the real line, so they're symmetric across it
+			airy(bi, prime, x, -y, re, im, k);
+			im[k] = -im[k];
+			return;
+		}
+		if (x*x + y*y < AIRY_SERIES*AIRY_SERIES) {
+			airySeries(bi, prime, x, y, re, im, k);
+			return;
+		}
+		final double c = -0.5, s = SQRT_3/2;	// e^(2pi i/3)
+		if (bi) {	// Bi(z) = i Ai(z) + 2e^(-pi i/6) Ai(z e^(-2pi i/3)), and Bi' = i Ai'(z) + 2e^(-5pi i/6) Ai'(z e^(-2pi i/3))
+			airySector(prime, c*x + s*y, c*y - s*x, re, im, k);
+			final double ur = re[k], ui = im[k];
+			airy(false, prime, x, y, re, im, k);
+			final double fr = prime ? -SQRT_3 : SQRT_3, fi = -1;
+			final double ar = re[k], ai = im[k];
+			re[k] = -ai + fr*ur - fi*ui;
+			im[k] = ar + fr*ui + fi*ur;
+		}
+		else if (Math.atan2(y, x) > 2*Math.PI/3) {	// Ai(z) = -e^(2pi i/3) Ai(z e^(2pi i/3)) - e^(-2pi i/3) Ai(z e^(-2pi i/3)), with one more e^(2pi i/3) for Ai'
+			airySector(prime, c*x - s*y, c*y + s*x, re, im, k);
+			final double ur = re[k], ui = im[k];
+			airySector(prime, c*x + s*y, c*y - s*x, re, im, k);
+			final double vr = re[k], vi = im[k];
+			final double pi = prime ? -s : s, qi = -pi;	// the coefficients are c + pi i and c + qi i
+			re[k] = -(c*ur - pi*ui) - (c*vr - qi*vi);
+			im[k] = -(c*ui + pi*ur) - (c*vi + qi*vr);
+		}
+		else {
+			airySector(prime, x, y, re, im, k);
+		}
+		if (y == 0)	// and exactly real on it
+			im[k] = 0;
+	}
+
+
+	private static void airySector(boolean prime, double x, double y, double[] re, double[] im, int k) {	// Ai(z) = sqrt(z/3) K_1/3(zeta)/pi and Ai'(z) = -z K_2/3(zeta)/(pi sqrt(3)), for |arg(z)| <= 2pi/3
+		if (x*x + y*y < AIRY_SERIES*AIRY_SERIES) {
+			airySeries(false, prime, x, y, re, im, k);
+			return;
+		}
+		final double r = Math.hypot(x, y);
+		final double th = Math.max(-2*Math.PI/3, Math.min(2*Math.PI/3, Math.atan2(y, x)));	// in case roundoff took it over the edge
+		final double zr = 2./3*Math.pow(r, 1.5)*Math.cos(1.5*th), zi = 2./3*Math.pow(r, 1.5)*Math.sin(1.5*th);
+		final double[] o = new double[4];
+		besselIK(prime ? 2./3 : 1./3, zr, zi, o);
+		final double ar, ai;
+		if (prime) {
+			ar = -x/(Math.PI*SQRT_3);
+			ai = -y/(Math.PI*SQRT_3);
+		}
+		else {
+			ar = Math.sqrt(r/3)*Math.cos(th/2)/Math.PI;
+			ai = Math.sqrt(r/3)*Math.sin(th/2)/Math.PI;
+		}
+		re[k] = ar*o[2] - ai*o[3];
+		im[k] = ar*o[3] + ai*o[2];
+	}
+
+
+	private static void airySeries(boolean bi, boolean prime, double x, double y, double[] re, double[] im, int k) {	// Ai = c1 f - c2 g and Bi = sqrt(3)(c1 f + c2 g)
+		final double z3r = x*(x*x - 3*y*y), z3i = y*(3*x*x - y*y);
+		double fr, fi, gr, gi;	// f and g, or their derivatives
+		double tr, ti, ur, ui;	// the current terms of each
+		if (prime) {
+			tr = (x*x - y*y)/2;
+			ti = x*y;
+			ur = 1;
+			ui = 0;
+		}
+		else {
+			tr = 1;
+			ti = 0;
+			ur = x;
+			ui = y;
+		}
+		fr = tr;
+		fi = ti;
+		gr = ur;
+		gi = ui;
+		for (int n = 1; n < ERF_TERMS; n ++) {
+			final double a = prime ? (3*n+2)*(3*n+3.)*n/(n+1) : (3*n-1)*(3*n);	// the ratios of consecutive coefficients
+			final double b = prime ? (3*n)*(3*n-2.) : (3*n)*(3*n+1.);
+			final double t = (tr*z3r - ti*z3i)/a;
+			ti = (tr*z3i + ti*z3r)/a;
+			tr = t;
+			final double u = (ur*z3r - ui*z3i)/b;
+			ui = (ur*z3i + ui*z3r)/b;
+			ur = u;
+			fr += tr;
+			fi += ti;
+			gr += ur;
+			gi += ui;
+			if (Math.abs(tr) + Math.abs(ti) + Math.abs(ur) + Math.abs(ui) < EPSILON*(Math.abs(fr) + Math.abs(fi) + Math.abs(gr) + Math.abs(gi)))
+				break;
+		}
+		final double c1 = AI_0, c2 = -AI_PRIME_0;
+		if (bi) {
+			re[k] = SQRT_3*(c1*fr + c2*gr);
+			im[k] = SQRT_3*(c1*fi + c2*gi);
+		}
+		else {
+			re[k] = c1*fr - c2*gr;
+			im[k] = c1*fi - c2*gi;
+		}
+	}
+
+
+
+	private static void div(double a, double b, double c, double d, double[] re, double[] im, int k) {	// (a + bi)/(c + di), by Smith's method
+		div(a, b, c, d, re, im, k, k);
+	}
+
+
+	private static void div(double a, double b, double c, double d, double[] re, double[] im, int j, int k) {	// the same, but with the parts at any indices
+		if (Math.abs(c) >= Math.abs(d)) {
+			final double r = d/c, den = c + d*r;
+			re[j] = (a + b*r)/den;
+			im[k] = (b - a*r)/den;
+		}
+		else {
+			final double r = c/d, den = c*r + d;
+			re[j] = (a*r + b)/den;
+			im[k] = (b*r - a)/den;
+		}
+	}
+
+
+	private static double sinPi(double x) {	// sin(pi x), exactly 0 at the integers
+		final double r = Math.IEEEremainder(x, 2);	// in [-1, 1]
+		if (Math.abs(r) > 0.5)
+			return Math.sin(Math.PI*(Math.signum(r) - r));
+		return Math.sin(Math.PI*r);
+	}
+
+
+	private static double cosPi(double x) {	// cos(pi x), exactly 0 at the half-integers
+		final double r = Math.abs(Math.IEEEremainder(x, 2));	// in [0, 1]
+		if (r > 0.5)
+			return -Math.sin(Math.PI*(r - 0.5));
+		return Math.sin(Math.PI*(0.5 - r));
+	}
+
+}
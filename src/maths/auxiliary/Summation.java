@@ -0,0 +1,207 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import gui.Workspace;
+
+/**
+ * The ways a long list of numbers can be added up. NAIVE goes left to right,
+ * so its error grows with the number of terms; PAIRWISE adds them as a
+ * balanced tree, so its error only grows with the log; and COMPENSATED
+ * carries the roundoff of every addition along in a second sum
+ * (Kahan-Neumaier), so its error doesn't really grow at all. The session's
+ * mode is shared by everything that sums numerically, and a function named
+ * for a mode puts its argument in that mode by passing it along in the
+ * Workspace, which reaches every Tape and reduction inside it (but not the
+ * Vector and Matrix arithmetic, which never sees a Workspace).
+ *
+ * @author jkunimune
+ */
+public enum Summation {
+
+	NAIVE, PAIRWISE, COMPENSATED;
+
+
+
+	private static final int BLOCK = 8;	// pairwise sums bottom out in plain loops this long
+
+	private static volatile Summation mode = COMPENSATED;	// the mode for this session, which only the command line changes
+
+
+
+	public static Summation getMode() {
+		return mode;
+	}
+
+
+	public static void setMode(Summation newMode) {
+		mode = newMode;
+	}
+
+
+	public static Summation of(Workspace heap) {	// the mode in effect for this heap: whatever it was put in, or else the session's
+		if (heap != null && heap.getSummation() != null)
+			return heap.getSummation();
+		return mode;
+	}
+
+
+	public static Summation forName(String name) {	// the mode with this name, if there is one
+		for (Summation s: values())
+			if (s.name().equalsIgnoreCase(name))
+				return s;
+		return null;
+	}
+
+
+	public static double sum(double[] x, int from, int to) {	// add up part of an array in the current mode
+		return mode.sum(x, from, to, true);
+	}
+
+
+	public static double sumOfSquares(double[] x, double scale) {	// the sum of (x/scale)^2, in the current mode
+		final Accumulator acc = mode.newAccumulator();
+		for (double xi: x)
+			acc.add((xi/scale)*(xi/scale), 0);
+		return acc.getReal();
+	}
+
+
+
+	public Accumulator newAccumulator() {
+		return new Accumulator(this);
+	}
+
+
+	private double sum(double[] x, int from, int to, boolean top) {
+		switch (this) {
+		case PAIRWISE:
+			if (to - from > BLOCK) {
+				final int mid = (from + to) >>> 1;
+				return sum(x, from, mid, false) + sum(x, mid, to, false);
+			}
+			break;
+		case COMPENSATED:
+			final Accumulator acc = newAccumulator();
+			for (int i = from; i < to; i ++)
+				acc.add(x[i], 0);
+			return acc.getReal();
+		default:
+			break;
+		}
+		double s = 0;
+		for (int i = from; i < to; i ++)
+			s += x[i];
+		return s;
+	}
+
+
+
+	/**
+	 * A running complex sum, to which terms can be added one at a time.
+	 *
+	 * @author jkunimune
+	 */
+	public static class Accumulator {
+
+		private final Summation mode;
+		private double re, im;	// the running sum (or, when pairwise, the current block)
+		private double cRe, cIm;	// the roundoff so far, when compensated
+		private double[] levRe, levIm;	// partial sums of 2^k blocks each, when pairwise
+		private int count;	// the number of terms in the current block
+		private long blocks;	// the number of finished blocks
+
+
+		private Accumulator(Summation mode) {
+			this.mode = mode;
+			if (mode == PAIRWISE) {
+				levRe = new double[64];
+				levIm = new double[64];
+			}
+		}
+
+
+		public void add(double xr, double xi) {
+			switch (mode) {
+			case COMPENSATED:
+				final double tr = re + xr, ti = im + xi;
+				cRe += (Math.abs(re) >= Math.abs(xr)) ? (re - tr) + xr : (xr - tr) + re;
+				cIm += (Math.abs(im) >= Math.abs(xi)) ? (im - ti) + xi : (xi - ti) + im;
+				re = tr;
+				im = ti;
+				break;
+			case PAIRWISE:
+				re += xr;
+				im += xi;
+				if (++ count == BLOCK) {	// carry the finished block up like a binary counter
+					double sr = re, si = im;
+					int l = 0;
+					for (long b = blocks; (b&1) == 1; b >>>= 1, l ++) {
+						sr += levRe[l];
+						si += levIm[l];
+						levRe[l] = levIm[l] = 0;
+					}
+					levRe[l] = sr;
+					levIm[l] = si;
+					blocks ++;
+					re = im = 0;
+					count = 0;
+				}
+				break;
+			default:
+				re += xr;
+				im += xi;
+			}
+		}
+
+
+		public double getReal() {
+			if (mode == COMPENSATED)
+				return Double.isInfinite(re) ? re : re + cRe;	// infinity has no roundoff to speak of
+			else if (mode == PAIRWISE) {
+				double s = re;
+				for (double l: levRe)
+					s += l;
+				return s;
+			}
+			else
+				return re;
+		}
+
+
+		public double getImag() {
+			if (mode == COMPENSATED)
+				return Double.isInfinite(im) ? im : im + cIm;
+			else if (mode == PAIRWISE) {
+				double s = im;
+				for (double l: levIm)
+					s += l;
+				return s;
+			}
+			else
+				return im;
+		}
+	}
+
+}
@@ -0,0 +1,496 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gui.Workspace;
+import maths.Expression;
+
+/**
+ * A flattened, numbers-only recording of an Expression. Every instruction
+ * writes one complex register, so the whole thing can be evaluated over and
+ * over again without building or simplifying any new Expressions. The Tape
+ * itself never changes once it is recorded, and each Frame has its own
+ * registers, so one Tape can be shared between threads. The Tape only does the
+ * recording; a Frame plays it in double (or, through a WideFrame,
+ * double-double) precision, a PreciseFrame to as many digits as anyone wants,
+ * and a TaylorSeries in truncated power series. A LookupTable gets recorded
+ * in front of the exact value it stands in for, so that a Frame playing
+ * doubles can skip the whole thing whenever the point is in the table; every
+ * other player just plays the exact value.
+ *
+ * @author jkunimune
+ */
+public class Tape {
+
+	static final int CONST = 0, INPUT = 1;
+	static final int ADD = 2, SUB = 3, NEG = 4, MUL = 5, DIV = 6,
+			MOD = 7, POW = 8, RECIP = 9;
+	static final int EXP = 10, LN = 11, SQRT = 12;
+	static final int ABS = 13, ARG = 14, RE = 15, IM = 16;
+	static final int SIN = 17, COS = 18, SINH = 19, COSH = 20;
+	static final int ASIN = 21, ACOS = 22, ATAN = 23,
+			ASINH = 24, ACOSH = 25, ATANH = 26;
+	static final int ERR = 27;	// the roundoff error of an ADD
+	static final int ERF = 28, ERFC = 29, ERFI = 30, GAMMA = 31, LGAMMA = 32,
+			BETA = 33;
+	static final int BESSEL_J = 34, BESSEL_Y = 35, BESSEL_I = 36, BESSEL_K = 37,
+			AIRY_AI = 38, AIRY_BI = 39;	// the special functions, which only come in double precision
+	static final int TABLE = 40, COPY = 41;	// a LookupTable, and the exact value that it stands in for
+
+	private static final int MAX_DEPTH = 256;	// how many function calls deep we can go
+
+
+
+	private final String[] inputs;
+	private final Workspace heap;
+	private final boolean wide;	// should this be played in double-double precision?
+	private Summation summation;	// how sums get recorded, which can change partway through
+
+	private int size;
+	int[] ops, lft, rgt;	// the players read these straight off, since the Tape is done changing by the time they're made
+	double[] cRe, cIm;
+	double[] cReLo, cImLo;	// the rest of each constant, for double-double precision
+	final Map<Integer, BigComplex> exact;	// any constants that have more digits than doubles can hold
+	int[] outputs;
+	final Map<Integer, Lookup> tables;	// the LookupTable behind each TABLE
+
+	private final List<Map<String, Integer>> scopes;	// the arguments of any functions we are inside of
+	private final Map<String, Integer> stored;	// the heap variables we have already recorded
+
+
+
+	public Tape(String[] inputNames, Workspace heap) {
+		this.inputs = inputNames;
+		this.heap = heap;
+		this.size = 0;
+		this.ops = new int[16];
+		this.lft = new int[16];
+		this.rgt = new int[16];
+		this.cRe = new double[16];
+		this.cIm = new double[16];
+		this.cReLo = new double[16];
+		this.cImLo = new double[16];
+		this.wide = Precision.of(heap) == Precision.DOUBLE_DOUBLE;	// the modes come with the heap
+		this.summation = Summation.of(heap);
+		this.outputs = new int[0];
+		this.scopes = new ArrayList<Map<String, Integer>>();
+		this.stored = new HashMap<String, Integer>();
+		this.exact = new HashMap<Integer, BigComplex>();
+		this.tables = new HashMap<Integer, Lookup>();
+	}
+
+
+
+	public Workspace getHeap() {
+		return heap;
+	}
+
+
+	public String[] getInputs() {
+		return inputs;
+	}
+
+
+	public int size() {
+		return size;
+	}
+
+
+	public boolean isWide() {
+		return wide;
+	}
+
+
+	public Summation getSummation() {
+		return summation;
+	}
+
+
+	public void setSummation(Summation newSummation) {	// record any sums from here on in another mode
+		summation = newSummation;
+	}
+
+
+	public int constant(double re, double im) {	// record a number
+		final int k = push(CONST, -1, -1);
+		cRe[k] = re;
+		cIm[k] = im;
+		if (wide) {
+			cReLo[k] = DoubleDouble.lowPart(re);
+			cImLo[k] = DoubleDouble.lowPart(im);
+		}
+		return k;
+	}
+
+
+	public int constant(BigComplex z) {	// record a number with all of its digits
+		final int k = constant(z.getReal().doubleValue(), z.getImag().doubleValue());
+		exact.put(k, z);
+		return k;
+	}
+
+
+	public int variable(String name) throws ArithmeticException {	// find the register that holds a name
+		if (!scopes.isEmpty() && scopes.get(scopes.size()-1).containsKey(name))
+			return scopes.get(scopes.size()-1).get(name);	// function arguments come first
+
+		for (int i = 0; i < inputs.length; i ++)
+			if (inputs[i].equals(name))
+				return push(INPUT, i, -1);	// then the inputs
+
+		if (heap != null && heap.containsKey(name)) {	// then anything in the heap
+			if (heap.getArgs(name) != null && heap.getArgs(name).length > 0)
+				throw new ArithmeticException(heap.getCall(name)+" needs arguments.");
+			if (scopes.isEmpty() && stored.containsKey(name))
+				return stored.get(name);
+			final int k = heap.get(name).compile(this);
+			if (scopes.isEmpty())
+				stored.put(name, k);
+			return k;
+		}
+
+		throw new ArithmeticException(name+" is undefined.");
+	}
+
+
+	public void enter(String[] names, int[] regs) {	// start recording the body of a function
+		if (scopes.size() >= MAX_DEPTH)
+			throw new ArithmeticException("Too much recursion!");
+		final Map<String, Integer> scope = new HashMap<String, Integer>();
+		for (int i = 0; i < names.length; i ++)
+			scope.put(names[i], regs[i]);
+		scopes.add(scope);
+	}
+
+
+	public void exit() {	// finish recording the body of a function
+		scopes.remove(scopes.size()-1);
+	}
+
+
+	public int apply(Operator opr, int... r) throws ArithmeticException {	// record an Operation
+		switch (opr) {
+		case PARENTHESES:
+		case TRANSVERSE:	// scalars are their own transverse
+			return r[0];
+		case ABSOLUTE:
+			return push(ABS, r[0], -1);
+		case ADD:
+			return sum(summation, r, 0, r.length);
+		case SUBTRACT:
+			return push(SUB, r[0], r[1]);
+		case NEGATE:
+			return push(NEG, r[0], -1);
+		case MULTIPLY:
+		case CROSS:
+			int prod = r[0];
+			for (int i = 1; i < r.length; i ++)
+				prod = push(MUL, prod, r[i]);
+			return prod;
+		case DIVIDE:
+			return push(DIV, r[0], r[1]);
+		case MODULO:
+			return push(MOD, r[0], r[1]);
+		case POWER:
+			return push(POW, r[0], r[1]);
+		case INVERSE:
+			return push(RECIP, r[0], -1);
+		case ROOT:
+			return push(POW, r[0], push(RECIP, r[1], -1));
+		case LN:
+			return push(LN, r[0], -1);
+		case LOGBASE:
+			return push(DIV, push(LN, r[1], -1), push(LN, r[0], -1));
+		default:
+			throw new ArithmeticException("Cannot evaluate "+opr);
+		}
+	}
+
+
+	public int call(String code, int r) throws ArithmeticException {	// record a BuiltInFunction
+		switch (code) {
+		case "sin":
+			return push(SIN, r, -1);
+		case "cos":
+			return push(COS, r, -1);
+		case "tan":
+			return push(DIV, push(SIN, r, -1), push(COS, r, -1));
+		case "csc":
+			return push(RECIP, push(SIN, r, -1), -1);
+		case "sec":
+			return push(RECIP, push(COS, r, -1), -1);
+		case "cot":
+			return push(DIV, push(COS, r, -1), push(SIN, r, -1));
+		case "sinh":
+			return push(SINH, r, -1);
+		case "cosh":
+			return push(COSH, r, -1);
+		case "tanh":
+			return push(DIV, push(SINH, r, -1), push(COSH, r, -1));
+		case "csch":
+			return push(RECIP, push(SINH, r, -1), -1);
+		case "sech":
+			return push(RECIP, push(COSH, r, -1), -1);
+		case "coth":
+			return push(DIV, push(COSH, r, -1), push(SINH, r, -1));
+		case "asin":
+			return push(ASIN, r, -1);
+		case "acos":
+			return push(ACOS, r, -1);
+		case "atan":
+			return push(ATAN, r, -1);
+		case "acsc":
+			return push(ASIN, push(RECIP, r, -1), -1);
+		case "asec":
+			return push(ACOS, push(RECIP, r, -1), -1);
+		case "acot":
+			return push(ATAN, push(RECIP, r, -1), -1);
+		case "asinh":
+			return push(ASINH, r, -1);
+		case "acosh":
+			return push(ACOSH, r, -1);
+		case "atanh":
+			return push(ATANH, r, -1);
+		case "acsch":
+			return push(ASINH, push(RECIP, r, -1), -1);
+		case "asech":
+			return push(ACOSH, push(RECIP, r, -1), -1);
+		case "acoth":
+			return push(ATANH, push(RECIP, r, -1), -1);
+		case "re":
+			return push(RE, r, -1);
+		case "im":
+			return push(IM, r, -1);
+		case "abs":
+			return push(ABS, r, -1);
+		case "arg":
+			return push(ARG, r, -1);
+		case "sqrt":
+			return push(SQRT, r, -1);
+		case "exp":
+			return push(EXP, r, -1);
+		case "erf":
+			return push(ERF, r, -1);
+		case "erfc":
+			return push(ERFC, r, -1);
+		case "erfi":
+			return push(ERFI, r, -1);
+		case "gamma":
+			return push(GAMMA, r, -1);
+		case "lgamma":
+			return push(LGAMMA, r, -1);
+		case "factorial":
+			return push(GAMMA, push(ADD, r, constant(1, 0)), -1);
+		case "airyai":
+			return push(AIRY_AI, r, -1);
+		case "airybi":
+			return push(AIRY_BI, r, -1);
+		default:
+			throw new ArithmeticException("Cannot evaluate "+code+" numerically.");
+		}
+	}
+
+
+	public int call(String code, int r, int s) throws ArithmeticException {	// record a BuiltInFunction of two things
+		switch (code) {
+		case "beta":
+			return push(BETA, r, s);
+		case "besselj":	// the order goes first, as it's written
+			return push(BESSEL_J, r, s);
+		case "bessely":
+			return push(BESSEL_Y, r, s);
+		case "besseli":
+			return push(BESSEL_I, r, s);
+		case "besselk":
+			return push(BESSEL_K, r, s);
+		default:
+			throw new ArithmeticException("Cannot evaluate "+code+" numerically.");
+		}
+	}
+
+
+	public int lookup(LookupTable table, int[] regs, Expression exact) throws ArithmeticException {	// record a table of exact, with a way around it
+		final int k = push(TABLE, -1, -1);
+		final Map<String, Integer> before = new HashMap<String, Integer>(stored);
+		final int r = exact.compile(this);
+		stored.clear();	// a Frame that skips to the end won't have set anything in between, so nobody else can use it
+		stored.putAll(before);
+		final int end = push(COPY, r, -1);
+		tables.put(k, new Lookup(table, regs, end));
+		return end;
+	}
+
+
+	public void output(int... regs) {	// declare which registers are the answers
+		outputs = regs;
+	}
+
+
+	public Frame newFrame() {
+		return new Frame(this);
+	}
+
+
+	public PreciseFrame newPrecise(double... x) {	// get ready to play the Tape to as many digits as anyone wants
+		return new PreciseFrame(this, x);
+	}
+
+
+	public TaylorSeries series(double x) {	// the Taylor series of the first output about x, with any terms found for an identical Tape before
+		return TaylorSeries.about(this, x);
+	}
+
+
+	public String signature() {	// everything that decides what this Tape computes, which identical Tapes share
+		final StringBuilder s = new StringBuilder(wide+Arrays.toString(outputs));
+		for (int k = 0; k < size; k ++) {
+			s.append(';').append(ops[k]).append(',').append(lft[k]).append(',').append(rgt[k]);
+			if (ops[k] == CONST)
+				s.append(',').append(cRe[k]).append(',').append(cIm[k])
+						.append(',').append(cReLo[k]).append(',').append(cImLo[k]);
+			else if (ops[k] == TABLE)
+				s.append(',').append(tables.get(k).table).append(',').append(Arrays.toString(tables.get(k).inputs));
+		}
+		return s.toString();
+	}
+
+
+	public CSRMatrix sparsity() {	// which outputs could possibly depend on which inputs (every entry is 1)
+		final int[] lastUse = lastUses();
+		final int[][] cols = new int[size][];
+		for (int k = 0; k < size; k ++) {
+			final int a = lft[k], b = rgt[k];
+			if (ops[k] == CONST || ops[k] == TABLE)	// a TABLE's value never gets read (the COPY after it does)
+				cols[k] = new int[0];
+			else if (ops[k] == INPUT)
+				cols[k] = new int[] {a};
+			else {
+				final int[] ca = cols[a], cb = (b >= 0) ? cols[b] : new int[0];
+				final int[] ck = new int[ca.length + cb.length];
+				int i = 0, j = 0, l = 0;
+				while (i < ca.length || j < cb.length) {	// merge the two sorted rows
+					if (j >= cb.length || (i < ca.length && ca[i] < cb[j]))
+						ck[l ++] = ca[i ++];
+					else if (i >= ca.length || cb[j] < ca[i])
+						ck[l ++] = cb[j ++];
+					else {
+						ck[l ++] = ca[i ++];
+						j ++;
+					}
+				}
+				cols[k] = Arrays.copyOf(ck, l);
+				if (lastUse[a] == k)
+					cols[a] = null;
+				if (b >= 0 && lastUse[b] == k)
+					cols[b] = null;
+			}
+		}
+
+		final int[][] rowCols = new int[outputs.length][];
+		final double[][] rowRe = new double[outputs.length][], rowIm = new double[outputs.length][];
+		for (int i = 0; i < outputs.length; i ++) {
+			rowCols[i] = cols[outputs[i]];
+			rowRe[i] = new double[rowCols[i].length];
+			Arrays.fill(rowRe[i], 1);
+			rowIm[i] = new double[rowCols[i].length];
+		}
+		return CSRMatrix.fromRows(inputs.length, rowCols, rowRe, rowIm);
+	}
+
+
+	int[] lastUses() {	// the last instruction that reads each register (outputs are read at the very end)
+		final int[] last = new int[size];
+		for (int k = 0; k < size; k ++) {
+			if (ops[k] == CONST || ops[k] == INPUT || ops[k] == TABLE)	continue;
+			last[lft[k]] = k;
+			if (rgt[k] >= 0)
+				last[rgt[k]] = k;
+		}
+		for (int r: outputs)
+			last[r] = size;
+		return last;
+	}
+
+
+	private int sum(Summation mode, int[] r, int from, int to) {	// record an n-ary ADD in the given mode
+		if (mode == Summation.PAIRWISE && to - from > 2) {	// as a balanced tree
+			final int mid = (from + to) >>> 1;
+			return push(ADD, sum(mode, r, from, mid), sum(mode, r, mid, to));
+		}
+		else if (mode == Summation.COMPENSATED && to - from > 2) {	// with a second sum for the roundoff
+			int sum = r[from], err = -1;
+			for (int i = from+1; i < to; i ++) {
+				final int e = push(ERR, sum, r[i]);
+				err = (err < 0) ? e : push(ADD, err, e);
+				sum = push(ADD, sum, r[i]);
+			}
+			return push(ADD, sum, err);
+		}
+		int sum = r[from];
+		for (int i = from+1; i < to; i ++)
+			sum = push(ADD, sum, r[i]);
+		return sum;
+	}
+
+
+	private int push(int op, int a, int b) {
+		if (size == ops.length) {
+			ops = Arrays.copyOf(ops, 2*size);
+			lft = Arrays.copyOf(lft, 2*size);
+			rgt = Arrays.copyOf(rgt, 2*size);
+			cRe = Arrays.copyOf(cRe, 2*size);
+			cIm = Arrays.copyOf(cIm, 2*size);
+			cReLo = Arrays.copyOf(cReLo, 2*size);
+			cImLo = Arrays.copyOf(cImLo, 2*size);
+		}
+		ops[size] = op;
+		lft[size] = a;
+		rgt[size] = b;
+		return size ++;
+	}
+
+
+
+	static class Lookup {	// what a TABLE needs to skip straight to the end of its exact value
+
+		final LookupTable table;
+		final int[] inputs;	// the registers that hold the point to look up
+		final int end;	// the COPY of the exact value, which the table's value can take the place of
+
+
+		Lookup(LookupTable table, int[] inputs, int end) {
+			this.table = table;
+			this.inputs = inputs;
+			this.end = end;
+		}
+
+	}
+
+}
@@ -0,0 +1,679 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Taylor series of a Tape's first output in its one input, found by
+ * pushing truncated power series through each instruction in turn, the
+ * way a Frame pushes numbers through. Nothing is ever differentiated
+ * symbolically: every instruction has a recurrence that gives its next
+ * term from the terms before it, usually by way of the differential
+ * equation it satisfies. Each register keeps every term it has found, and
+ * any other series it needed to find them, so asking for more terms later
+ * only does the new ones.
+ *
+ * @author jkunimune
+ */
+public class TaylorSeries {
+
+	private static final int MAX_SERIES = 64;	// how many Taylor series to remember
+	private static final double TWO_OVER_SQRT_PI = 1.1283791670955126;
+	private static final double BESSEL_TAYLOR = 8;	// the radius within which J and I are expanded from their power series
+	private static final int BESSEL_TAYLOR_TERMS = 20;	// how many terms of that series to go past the one being found, plus 6 for every unit of radius
+
+	private static final Map<String, TaylorSeries> SERIES = new LinkedHashMap<String, TaylorSeries>(16, .75f, true) {	// the Taylor series we have found so far, least recently used first
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, TaylorSeries> eldest) {
+			return size() > MAX_SERIES;
+		}
+	};
+
+
+
+	private final int size;
+	private final int[] ops, lft, rgt, outputs;
+
+	private final double x;
+	private final Frame point;	// the value of every register at x, which is its zeroth term
+	private final boolean[] varies, needed;	// which registers depend on the input, and which lead to the output
+	private final double[][][] terms;	// the real and imaginary parts of each register's coefficients
+	private final double[][][][] aux;	// any other series each register needs along the way
+	private final Composite[][] composites;	// and any functions it has to compose with a series
+	private final List<double[][]> all;	// every series in here, so they can all grow together
+	private int order, cap;	// how many terms past the zeroth everything has, and how many there is room for
+
+
+
+	private TaylorSeries(Tape tape, double x) {
+		this.size = tape.size();
+		this.ops = tape.ops;
+		this.lft = tape.lft;
+		this.rgt = tape.rgt;
+		this.outputs = tape.outputs;
+		this.x = x;
+		this.point = tape.newFrame().evaluateExactly(x);
+		this.varies = new boolean[size];
+		this.needed = new boolean[size];
+		this.terms = new double[size][][];
+		this.aux = new double[size][][][];
+		this.composites = new Composite[size][];
+		this.all = new ArrayList<double[][]>();
+		this.order = -1;
+		this.cap = 1;
+		for (int k = 0; k < size; k ++)
+			varies[k] = ops[k] == Tape.INPUT || (ops[k] != Tape.CONST && ops[k] != Tape.TABLE
+					&& (varies[lft[k]] || (rgt[k] >= 0 && varies[rgt[k]])));
+		needed[outputs[0]] = true;
+		for (int k = size-1; k >= 0; k --) {
+			if (!needed[k] || ops[k] == Tape.CONST || ops[k] == Tape.INPUT || ops[k] == Tape.TABLE)	continue;
+			needed[lft[k]] = true;
+			if (rgt[k] >= 0)
+				needed[rgt[k]] = true;
+		}
+	}
+
+
+
+	static TaylorSeries about(Tape tape, double x) {	// the series of tape about x, with any terms found for an identical Tape before
+		final String key = tape.signature()+"@"+x;
+		synchronized (SERIES) {
+			TaylorSeries s = SERIES.get(key);
+			if (s == null) {
+				s = new TaylorSeries(tape, x);
+				SERIES.put(key, s);
+			}
+			return s;
+		}
+	}
+
+
+
+	public synchronized double[][] get(int n) throws ArithmeticException {	// the coefficients of the output up to (x-x0)^n
+		if (n > order)
+			extend(n);
+		final double[][] f = terms[outputs[0]];
+		return new double[][] {Arrays.copyOf(f[0], n+1), Arrays.copyOf(f[1], n+1)};
+	}
+
+
+	private void extend(int n) throws ArithmeticException {	// work out every register that leads to the output up to (x-x0)^n
+		if (n+1 > cap) {
+			cap = Math.max(n+1, 2*cap);
+			for (double[][] s: all) {
+				s[0] = Arrays.copyOf(s[0], cap);
+				s[1] = Arrays.copyOf(s[1], cap);
+			}
+		}
+		for (int k = 0; k < size; k ++) {
+			if (!needed[k])	continue;
+			if (terms[k] == null)
+				start(k);
+			if (!varies[k])	continue;	// constants have no more terms
+			if (ops[k] == Tape.POW && !varies[rgt[k]] && isZero(terms[lft[k]], 0))
+				zeroPower(k, n);	// powers of zero don't have a recurrence, so they are done all at once
+			else
+				for (int j = Math.max(order+1, 1); j <= n; j ++)
+					term(k, j);
+		}
+		order = n;
+	}
+
+
+	private void start(int k) throws ArithmeticException {	// set up register k and anything it needs with their zeroth terms
+		final double[][] f = series(point.registerReal(k), point.registerImag(k));
+		if (!varies[k]) {
+			terms[k] = f;
+			return;
+		}
+		if (Double.isNaN(f[0][0]) || Double.isNaN(f[1][0])
+				|| Double.isInfinite(f[0][0]) || Double.isInfinite(f[1][0]))
+			throw singular();
+		final int a = lft[k], b = rgt[k];
+		final double ar = point.registerReal(a), ai = point.registerImag(a);
+		final double[] tr = new double[2], ti = new double[2];
+		switch (ops[k]) {
+		case Tape.POW:	// a^b is exp(b ln(a)) unless b is constant
+			if (!varies[b])
+				break;
+			if (ar == 0 && ai == 0)
+				throw singular();
+			ComplexFunctions.ln(ar, ai, tr, ti, 0);
+			aux[k] = new double[][][] {series(tr[0], ti[0]), series(0, 0)};
+			break;
+		case Tape.LN:
+		case Tape.ARG:
+			if (ar == 0 && ai == 0)
+				throw singular();
+			ComplexFunctions.ln(ar, ai, tr, ti, 0);
+			aux[k] = new double[][][] {series(tr[0], ti[0])};
+			break;
+		case Tape.SQRT:
+			if (ar == 0 && ai == 0)
+				throw singular();
+			break;
+		case Tape.ABS:	// |a| is the square root of re(a)^2 + im(a)^2, since x is real
+			if (ar == 0 && ai == 0)
+				throw singular();
+			aux[k] = new double[][][] {series(ar*ar + ai*ai, 0)};
+			break;
+		case Tape.SIN:	// the sines and cosines each need the other
+			aux[k] = new double[][][] {series(Math.cos(ar)*Math.cosh(ai), -Math.sin(ar)*Math.sinh(ai))};
+			break;
+		case Tape.COS:
+			aux[k] = new double[][][] {series(Math.sin(ar)*Math.cosh(ai), Math.cos(ar)*Math.sinh(ai))};
+			break;
+		case Tape.SINH:
+			aux[k] = new double[][][] {series(Math.cosh(ar)*Math.cos(ai), Math.sinh(ar)*Math.sin(ai))};
+			break;
+		case Tape.COSH:
+			aux[k] = new double[][][] {series(Math.sinh(ar)*Math.cos(ai), Math.cosh(ar)*Math.sin(ai))};
+			break;
+		case Tape.ASIN:	// the inverse functions need the denominators of their derivatives, like sqrt(1-a^2)
+		case Tape.ACOS:
+		case Tape.ASINH:
+		case Tape.ACOSH:
+			final double sign = (ops[k] == Tape.ASIN || ops[k] == Tape.ACOS) ? -1 : 1;
+			final double wr = sign*(ar*ar - ai*ai) + ((ops[k] == Tape.ACOSH) ? -1 : 1), wi = sign*2*ar*ai;
+			ComplexFunctions.sqrt(wr, wi, tr, ti, 0);
+			if (tr[0] == 0 && ti[0] == 0)
+				throw singular();
+			aux[k] = new double[][][] {series(wr, wi), series(tr[0], ti[0])};
+			break;
+		case Tape.ATAN:
+		case Tape.ATANH:
+			final double hr = 1 + ((ops[k] == Tape.ATAN) ? 1 : -1)*(ar*ar - ai*ai);
+			final double hi = ((ops[k] == Tape.ATAN) ? 1 : -1)*2*ar*ai;
+			if (hr == 0 && hi == 0)
+				throw singular();
+			aux[k] = new double[][][] {series(hr, hi)};
+			break;
+		case Tape.ERF:	// the error functions need e^-a^2 or e^a^2
+		case Tape.ERFC:
+		case Tape.ERFI:
+			final double s = (ops[k] == Tape.ERFI) ? 1 : -1;
+			ComplexFunctions.exp(s*(ar*ar - ai*ai), s*2*ar*ai, tr, ti, 0);
+			aux[k] = new double[][][] {series(s*(ar*ar - ai*ai), s*2*ar*ai), series(tr[0], ti[0])};
+			break;
+		case Tape.GAMMA:	// ln(gamma) is composed with a, and gamma is its exponential
+		case Tape.LGAMMA:
+			composites[k] = new Composite[] {new Composite(Tape.LGAMMA, terms[a], 0)};
+			break;
+		case Tape.BETA:	// and ln(beta) is three of them
+			final double[][] sum = series(ar + point.registerReal(b), ai + point.registerImag(b));
+			composites[k] = new Composite[] {new Composite(Tape.LGAMMA, terms[a], 0),
+					new Composite(Tape.LGAMMA, terms[b], 0), new Composite(Tape.LGAMMA, sum, 0)};
+			aux[k] = new double[][][] {sum, series(0, 0)};
+			break;
+		case Tape.BESSEL_J:	// the Bessel functions solve z^2 y'' + z y' + (z^2 - nu^2) y = 0, so they need y' and z^2 too
+		case Tape.BESSEL_Y:
+		case Tape.BESSEL_I:
+		case Tape.BESSEL_K:
+			if (varies[a])
+				throw new ArithmeticException("I can't expand a Bessel function in its order.");
+			final double br = point.registerReal(b), bi = point.registerImag(b);
+			final boolean entire = ar == Math.rint(ar) && (ops[k] == Tape.BESSEL_J || ops[k] == Tape.BESSEL_I);
+			if (entire && Math.hypot(br, bi) < BESSEL_TAYLOR) {	// near zero, that equation would drag in the singular solution, so use the power series
+				composites[k] = new Composite[] {new Composite(ops[k], terms[b], ar)};
+				break;
+			}
+			if (br == 0 && bi == 0)
+				throw singular();
+			ComplexFunctions.special(ops[k], ar - 1, ai, br, bi, tr, ti, 0);
+			ComplexFunctions.special(ops[k], ar + 1, ai, br, bi, tr, ti, 1);
+			final double t = (ops[k] == Tape.BESSEL_J || ops[k] == Tape.BESSEL_Y) ? -1 : 1;
+			final double half = (ops[k] == Tape.BESSEL_K) ? -.5 : .5;
+			aux[k] = new double[][][] {series(half*(tr[0] + t*tr[1]), half*(ti[0] + t*ti[1])),
+					series(br*br - bi*bi, 2*br*bi), series(0, 0)};
+			break;
+		case Tape.AIRY_AI:	// and the Airy functions solve y'' = zy
+		case Tape.AIRY_BI:
+			if (ops[k] == Tape.AIRY_AI)
+				SpecialFunctions.airyAiPrime(ar, ai, tr, ti, 0);
+			else
+				SpecialFunctions.airyBiPrime(ar, ai, tr, ti, 0);
+			aux[k] = new double[][][] {series(tr[0], ti[0]), series(0, 0)};
+			break;
+		}
+		terms[k] = f;
+	}
+
+
+	private void term(int k, int j) {	// work out the jth term of register k, given all of the ones before it
+		final int a = lft[k], b = rgt[k];
+		final double[][] f = terms[k], u = terms[a], v = (b >= 0) ? terms[b] : null;
+		final double[][][] w = aux[k];
+		switch (ops[k]) {
+		case Tape.INPUT:
+			f[0][j] = (j == 1) ? 1 : 0;
+			break;
+		case Tape.ADD:
+			f[0][j] = u[0][j] + v[0][j];
+			f[1][j] = u[1][j] + v[1][j];
+			break;
+		case Tape.SUB:
+			f[0][j] = u[0][j] - v[0][j];
+			f[1][j] = u[1][j] - v[1][j];
+			break;
+		case Tape.NEG:
+			f[0][j] = -u[0][j];
+			f[1][j] = -u[1][j];
+			break;
+		case Tape.COPY:
+			f[0][j] = u[0][j];
+			f[1][j] = u[1][j];
+			break;
+		case Tape.ERR:	// roundoff only touches the zeroth term
+			break;
+		case Tape.MUL:
+			product(u, v, f, j);
+			break;
+		case Tape.DIV:
+			quotient(u, v, f, j);
+			break;
+		case Tape.RECIP:
+			quotient(null, u, f, j);
+			break;
+		case Tape.MOD:	// a - floor(a/b)*b, where the floor is locally constant
+			final double[] qr = new double[1], qi = new double[1];
+			ComplexFunctions.div(u[0][0] - f[0][0], u[1][0] - f[1][0], v[0][0], v[1][0], qr, qi, 0);
+			f[0][j] = u[0][j] - (qr[0]*v[0][j] - qi[0]*v[1][j]);
+			f[1][j] = u[1][j] - (qr[0]*v[1][j] + qi[0]*v[0][j]);
+			break;
+		case Tape.POW:
+			if (w == null)	// a^c solves a (a^c)' = c a' a^c
+				power(u, v[0][0], v[1][0], f, j);
+			else {
+				solve(u, null, u, w[0], j, 1);	// ln(a)
+				product(v, w[0], w[1], j);	// b ln(a)
+				solve(w[1], f, null, f, j, 1);	// and its exponential
+			}
+			break;
+		case Tape.EXP:
+			solve(u, f, null, f, j, 1);
+			break;
+		case Tape.LN:
+			solve(u, null, u, f, j, 1);
+			break;
+		case Tape.SQRT:
+			root(u, f, j);
+			break;
+		case Tape.ABS:
+			double sq = 0;
+			for (int i = 0; i <= j; i ++)
+				sq += u[0][i]*u[0][j-i] + u[1][i]*u[1][j-i];
+			w[0][0][j] = sq;
+			root(w[0], f, j);
+			break;
+		case Tape.ARG:	// the imaginary part of ln(a)
+			solve(u, null, u, w[0], j, 1);
+			f[0][j] = w[0][1][j];
+			break;
+		case Tape.RE:
+			f[0][j] = u[0][j];
+			break;
+		case Tape.IM:
+			f[0][j] = u[1][j];
+			break;
+		case Tape.SIN:
+		case Tape.SINH:
+			solve(u, w[0], null, f, j, 1);
+			solve(u, f, null, w[0], j, (ops[k] == Tape.SIN) ? -1 : 1);
+			break;
+		case Tape.COS:
+		case Tape.COSH:
+			solve(u, w[0], null, f, j, (ops[k] == Tape.COS) ? -1 : 1);
+			solve(u, f, null, w[0], j, 1);
+			break;
+		case Tape.ASIN:
+		case Tape.ACOS:
+		case Tape.ASINH:
+		case Tape.ACOSH:
+			final double sign = (ops[k] == Tape.ASIN || ops[k] == Tape.ACOS) ? -1 : 1;
+			product(u, u, w[0], j);
+			w[0][0][j] *= sign;
+			w[0][1][j] *= sign;
+			root(w[0], w[1], j);
+			solve(u, null, w[1], f, j, (ops[k] == Tape.ACOS) ? -1 : 1);
+			break;
+		case Tape.ATAN:
+		case Tape.ATANH:
+			product(u, u, w[0], j);
+			if (ops[k] == Tape.ATANH) {
+				w[0][0][j] *= -1;
+				w[0][1][j] *= -1;
+			}
+			solve(u, null, w[0], f, j, 1);
+			break;
+		case Tape.ERF:
+		case Tape.ERFC:
+		case Tape.ERFI:
+			product(u, u, w[0], j);
+			if (ops[k] != Tape.ERFI) {
+				w[0][0][j] *= -1;
+				w[0][1][j] *= -1;
+			}
+			solve(w[0], w[1], null, w[1], j, 1);
+			solve(u, w[1], null, f, j, (ops[k] == Tape.ERFC) ? -TWO_OVER_SQRT_PI : TWO_OVER_SQRT_PI);
+			break;
+		case Tape.GAMMA:
+			composites[k][0].term(j);
+			solve(composites[k][0].out, f, null, f, j, 1);
+			break;
+		case Tape.LGAMMA:
+			composites[k][0].term(j);
+			f[0][j] = composites[k][0].out[0][j];
+			f[1][j] = composites[k][0].out[1][j];
+			break;
+		case Tape.BETA:
+			w[0][0][j] = u[0][j] + v[0][j];
+			w[0][1][j] = u[1][j] + v[1][j];
+			for (Composite c: composites[k])
+				c.term(j);
+			for (int i = 0; i < 2; i ++)
+				w[1][i][j] = composites[k][0].out[i][j] + composites[k][1].out[i][j] - composites[k][2].out[i][j];
+			solve(w[1], f, null, f, j, 1);
+			break;
+		case Tape.BESSEL_J:
+		case Tape.BESSEL_Y:
+		case Tape.BESSEL_I:
+		case Tape.BESSEL_K:
+			if (composites[k] != null) {
+				composites[k][0].term(j);
+				f[0][j] = composites[k][0].out[0][j];
+				f[1][j] = composites[k][0].out[1][j];
+				break;
+			}
+			final double nu2 = u[0][0]*u[0][0];
+			final double sigma = (ops[k] == Tape.BESSEL_J || ops[k] == Tape.BESSEL_Y) ? 1 : -1;
+			product(v, v, w[1], j);	// z^2
+			double pr = nu2*f[0][j-1], pi = nu2*f[1][j-1];	// -(z y' + (z^2 - nu^2) y), one term behind
+			for (int i = 0; i < j; i ++) {
+				pr -= v[0][i]*w[0][0][j-1-i] - v[1][i]*w[0][1][j-1-i]
+						+ sigma*(w[1][0][i]*f[0][j-1-i] - w[1][1][i]*f[1][j-1-i]);
+				pi -= v[0][i]*w[0][1][j-1-i] + v[1][i]*w[0][0][j-1-i]
+						+ sigma*(w[1][0][i]*f[1][j-1-i] + w[1][1][i]*f[0][j-1-i]);
+			}
+			w[2][0][j-1] = pr;
+			w[2][1][j-1] = pi;
+			solve(v, w[0], null, f, j, 1);	// y' = y'(z) z'
+			solve(v, w[2], w[1], w[0], j, 1);	// z^2 y'' = -(z y' + (z^2 - nu^2) y) z'
+			break;
+		case Tape.AIRY_AI:
+		case Tape.AIRY_BI:
+			double zr = 0, zi = 0;	// zy, one term behind
+			for (int i = 0; i < j; i ++) {
+				zr += u[0][i]*f[0][j-1-i] - u[1][i]*f[1][j-1-i];
+				zi += u[0][i]*f[1][j-1-i] + u[1][i]*f[0][j-1-i];
+			}
+			w[1][0][j-1] = zr;
+			w[1][1][j-1] = zi;
+			solve(u, w[0], null, f, j, 1);
+			solve(u, w[1], null, w[0], j, 1);
+			break;
+		}
+	}
+
+
+	private void zeroPower(int k, int n) throws ArithmeticException {	// a^c where a starts at zero, which only works for whole c
+		final double cr = point.registerReal(rgt[k]), ci = point.registerImag(rgt[k]);
+		if (ci != 0 || cr != Math.rint(cr) || cr < 0 || cr > Integer.MAX_VALUE)
+			throw singular();
+		final double[][] f = terms[k];
+		double[][] base = new double[][] {Arrays.copyOf(terms[lft[k]][0], n+1), Arrays.copyOf(terms[lft[k]][1], n+1)};
+		double[][] result = new double[2][n+1];
+		result[0][0] = 1;
+		for (long e = (long) cr; e > 0; e >>= 1) {	// by squaring, since there's nothing to reuse anyway
+			if ((e&1) == 1)
+				result = truncatedProduct(result, base, n);
+			if (e > 1)
+				base = truncatedProduct(base, base, n);
+		}
+		System.arraycopy(result[0], 0, f[0], 0, n+1);
+		System.arraycopy(result[1], 0, f[1], 0, n+1);
+	}
+
+
+	private double[][] series(double re, double im) {	// a new series, with room for as many terms as anything else
+		final double[][] s = new double[2][cap];
+		s[0][0] = re;
+		s[1][0] = im;
+		all.add(s);
+		return s;
+	}
+
+
+	private ArithmeticException singular() {
+		return new ArithmeticException("That has no Taylor series about "+x+".");
+	}
+
+
+
+	/**
+	 * A function whose Taylor coefficients are known outright, composed
+	 * with some series s by adding up its coefficients times the powers
+	 * of s - s_0. That takes a lot more work than a recurrence, so it's
+	 * only for functions that don't satisfy a simple differential
+	 * equation, like ComplexFunctions.ln(gamma), or for places where the one they satisfy
+	 * can't be trusted, like the Bessel functions near zero.
+	 *
+	 * @author jkunimune
+	 */
+	private class Composite {
+
+		private final int kind;	// which function this is
+		private final double nu;	// and its order, if it's a Bessel function
+		private final double[][] source, out;
+		private final double[][] g;	// the function's own Taylor coefficients
+		private final List<double[][]> powers;	// (s - s_0)^m, for every m from 1 on
+
+
+		private Composite(int kind, double[][] source, double nu) {
+			this.kind = kind;
+			this.nu = nu;
+			this.source = source;
+			this.out = series(0, 0);
+			this.g = new double[2][0];
+			this.powers = new ArrayList<double[][]>();
+		}
+
+
+		private void term(int j) {	// the jth term of the composition
+			if (g[0].length <= j) {
+				final int old = g[0].length;
+				g[0] = Arrays.copyOf(g[0], cap);
+				g[1] = Arrays.copyOf(g[1], cap);
+				for (int m = old; m < cap; m ++)
+					coefficient(m);
+			}
+			if (powers.size() < j)
+				powers.add(series(0, 0));	// (s - s_0)^j starts at its jth term
+			double sr = 0, si = 0;
+			for (int m = 1; m <= j; m ++) {
+				final double[][] p = powers.get(m-1);
+				if (m == 1) {
+					p[0][j] = source[0][j];
+					p[1][j] = source[1][j];
+				}
+				else {
+					final double[][] q = powers.get(m-2);
+					double pr = 0, pi = 0;
+					for (int i = 1; i <= j-m+1; i ++) {
+						pr += source[0][i]*q[0][j-i] - source[1][i]*q[1][j-i];
+						pi += source[0][i]*q[1][j-i] + source[1][i]*q[0][j-i];
+					}
+					p[0][j] = pr;
+					p[1][j] = pi;
+				}
+				sr += g[0][m]*p[0][j] - g[1][m]*p[1][j];
+				si += g[0][m]*p[1][j] + g[1][m]*p[0][j];
+			}
+			out[0][j] = sr;
+			out[1][j] = si;
+		}
+
+
+		private void coefficient(int m) {	// the function's mth Taylor coefficient about s_0
+			if (kind == Tape.LGAMMA) {	// psi(s_0), and then (-1)^m zeta(m, s_0)/m
+				if (m == 0)
+					return;	// nobody needs the zeroth one
+				else if (m == 1)
+					SpecialFunctions.digamma(source[0][0], source[1][0], g[0], g[1], 1);
+				else {
+					SpecialFunctions.hurwitzZeta(m, source[0][0], source[1][0], g[0], g[1], m);
+					g[0][m] *= ((m%2 == 0) ? 1. : -1.)/m;
+					g[1][m] *= ((m%2 == 0) ? 1. : -1.)/m;
+				}
+			}
+			else {	// the power series of J_n(z) or I_n(z), moved over to s_0 with the binomial theorem
+				final double zr = source[0][0], zi = source[1][0];
+				final double lnR = Math.log(Math.hypot(zr, zi)), theta = Math.atan2(zi, zr);
+				final int end = m + BESSEL_TAYLOR_TERMS + (int) (6*Math.hypot(zr, zi));	// far enough that the terms have died off
+				double sr = 0, si = 0;
+				for (int i = m; i <= end; i ++) {
+					final double c = maclaurin(i);
+					if (c == 0)	continue;
+					if (i == m)
+						sr += c;
+					else {	// c (i choose m) s_0^(i-m)
+						final double mag = Math.abs(c)*Math.exp(SpecialFunctions.lgamma(i + 1.)
+								- SpecialFunctions.lgamma(m + 1.) - SpecialFunctions.lgamma(i - m + 1.) + (i - m)*lnR);
+						sr += Math.signum(c)*mag*Math.cos((i - m)*theta);
+						si += Math.signum(c)*mag*Math.sin((i - m)*theta);
+					}
+				}
+				g[0][m] = sr;
+				g[1][m] = si;
+			}
+		}
+
+
+		private double maclaurin(int i) {	// the coefficient of z^i in J_n(z) = sum (-1)^p/(p!(n+p)!) (z/2)^(n+2p), or I_n(z) without the (-1)^p
+			final int n = (int) Math.abs(nu);
+			if (i < n || (i - n)%2 != 0)
+				return 0;
+			double mag = 1;
+			for (int q = 1; q <= n; q ++)
+				mag /= 2*q;
+			for (int q = 1; q <= (i - n)/2; q ++)
+				mag /= 4*q*(q + n);
+			final int p = (i - n)/2;
+			final boolean negative = kind == Tape.BESSEL_J && (p%2 != 0) != (nu < 0 && n%2 != 0);	// J_-n = (-1)^n J_n
+			return negative ? -mag : mag;
+		}
+
+	}
+
+
+
+	private static void product(double[][] a, double[][] b, double[][] f, int j) {	// the jth term of a*b
+		double sr = 0, si = 0;
+		for (int i = 0; i <= j; i ++) {
+			sr += a[0][i]*b[0][j-i] - a[1][i]*b[1][j-i];
+			si += a[0][i]*b[1][j-i] + a[1][i]*b[0][j-i];
+		}
+		f[0][j] = sr;
+		f[1][j] = si;
+	}
+
+
+	private static double[][] truncatedProduct(double[][] a, double[][] b, int n) {	// a*b up to the nth term
+		final double[][] f = new double[2][n+1];
+		for (int j = 0; j <= n; j ++)
+			product(a, b, f, j);
+		return f;
+	}
+
+
+	private static void quotient(double[][] a, double[][] b, double[][] f, int j) {	// the jth term of a/b (or 1/b if a is null)
+		double sr = (a == null) ? 0 : a[0][j], si = (a == null) ? 0 : a[1][j];
+		for (int i = 1; i <= j; i ++) {
+			sr -= b[0][i]*f[0][j-i] - b[1][i]*f[1][j-i];
+			si -= b[0][i]*f[1][j-i] + b[1][i]*f[0][j-i];
+		}
+		ComplexFunctions.div(sr, si, b[0][0], b[1][0], f[0], f[1], j);
+	}
+
+
+	private static void root(double[][] a, double[][] f, int j) {	// the jth term of sqrt(a)
+		double sr = a[0][j], si = a[1][j];
+		for (int i = 1; i < j; i ++) {
+			sr -= f[0][i]*f[0][j-i] - f[1][i]*f[1][j-i];
+			si -= f[0][i]*f[1][j-i] + f[1][i]*f[0][j-i];
+		}
+		ComplexFunctions.div(sr, si, 2*f[0][0], 2*f[1][0], f[0], f[1], j);
+	}
+
+
+	private static void power(double[][] a, double cr, double ci, double[][] f, int j) {	// the jth term of a^c, from a (a^c)' = c a' a^c
+		double sr = 0, si = 0;
+		for (int i = 1; i <= j; i ++) {
+			final double pr = a[0][i]*f[0][j-i] - a[1][i]*f[1][j-i], pi = a[0][i]*f[1][j-i] + a[1][i]*f[0][j-i];
+			final double er = cr*i - (j - i), ei = ci*i;
+			sr += er*pr - ei*pi;
+			si += er*pi + ei*pr;
+		}
+		ComplexFunctions.div(sr, si, j*a[0][0], j*a[1][0], f[0], f[1], j);
+	}
+
+
+	private static void solve(double[][] a, double[][] g, double[][] h, double[][] f, int j, double scale) {	// the jth term of the f that solves f' h = scale g a' (where g or h is 1 if it's null)
+		double sr = 0, si = 0;
+		if (g == null) {
+			sr = j*a[0][j];
+			si = j*a[1][j];
+		}
+		else {
+			for (int i = 1; i <= j; i ++) {
+				sr += i*(a[0][i]*g[0][j-i] - a[1][i]*g[1][j-i]);
+				si += i*(a[0][i]*g[1][j-i] + a[1][i]*g[0][j-i]);
+			}
+		}
+		sr *= scale;
+		si *= scale;
+		if (h == null) {
+			f[0][j] = sr/j;
+			f[1][j] = si/j;
+			return;
+		}
+		for (int i = 1; i < j; i ++) {
+			sr -= i*(f[0][i]*h[0][j-i] - f[1][i]*h[1][j-i]);
+			si -= i*(f[0][i]*h[1][j-i] + f[1][i]*h[0][j-i]);
+		}
+		ComplexFunctions.div(sr, si, j*h[0][0], j*h[1][0], f[0], f[1], j);
+	}
+
+
+	private static boolean isZero(double[][] a, int j) {
+		return a[0][j] == 0 && a[1][j] == 0;
+	}
+
+}
@@ -0,0 +1,213 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2016 Justin Kunimune
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package maths.auxiliary;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * The double-double registers of a Frame whose Tape is wide: four doubles to a
+ * register, for the high and low parts of the real and imaginary parts, and
+ * one spare register and some scratch space for DoubleDouble to work in. The
+ * special functions only get double precision, even here, so once one of them
+ * has played, the outputs are only worth their doubles.
+ *
+ * @author jkunimune
+ */
+public class WideFrame {
+
+	private static final MathContext DIGITS = new MathContext(31);	// about how many digits 106 bits are worth
+
+	private final int size;
+	private final int[] ops, lft, rgt;
+	private final double[] cRe, cIm, cReLo, cImLo;
+
+	private final double[] w, t;	// the registers, four to a register and one spare, and some scratch space
+	private boolean narrow;	// did a special function round anything to a double?
+
+
+
+	WideFrame(Tape tape) {
+		this.size = tape.size();
+		this.ops = tape.ops;
+		this.lft = tape.lft;
+		this.rgt = tape.rgt;
+		this.cRe = tape.cRe;
+		this.cIm = tape.cIm;
+		this.cReLo = tape.cReLo;
+		this.cImLo = tape.cImLo;
+		this.w = new double[4*(size+1)];
+		this.t = new double[DoubleDouble.SCRATCH];
+	}
+
+
+
+	void play(double[] x, double[] re, double[] im) {	// run the Tape in double-double, and round everything back into re and im at the end
+		final double[] w = this.w, t = this.t;
+		final int spare = 4*size;
+		narrow = false;
+		for (int k = 0; k < size; k ++) {
+			final int a = 4*lft[k], b = 4*rgt[k], o = 4*k;
+			switch (ops[k]) {
+			case Tape.CONST:
+				w[o] = cRe[k];
+				w[o+1] = cReLo[k];
+				w[o+2] = cIm[k];
+				w[o+3] = cImLo[k];
+				break;
+			case Tape.INPUT:
+				w[o] = x[lft[k]];
+				w[o+1] = w[o+2] = w[o+3] = 0;
+				break;
+			case Tape.ADD:
+				DoubleDouble.add(w, a, b, o);
+				break;
+			case Tape.ERR:	// double-double sums don't need compensating
+				w[o] = w[o+1] = w[o+2] = w[o+3] = 0;
+				break;
+			case Tape.TABLE:	// tables are only good to double precision, so they don't get used here
+				w[o] = w[o+1] = w[o+2] = w[o+3] = 0;
+				break;
+			case Tape.COPY:
+				for (int i = 0; i < 4; i ++)
+					w[o+i] = w[a+i];
+				break;
+			case Tape.SUB:
+				DoubleDouble.subtract(w, a, b, o);
+				break;
+			case Tape.NEG:
+				for (int i = 0; i < 4; i ++)
+					w[o+i] = -w[a+i];
+				break;
+			case Tape.MUL:
+				DoubleDouble.multiply(w, a, b, o, t);
+				break;
+			case Tape.DIV:
+				DoubleDouble.divide(w, a, b, o, t);
+				break;
+			case Tape.MOD:
+				DoubleDouble.modulo(w, a, b, o, t);
+				break;
+			case Tape.POW:
+				DoubleDouble.power(w, a, b, o, t);
+				break;
+			case Tape.RECIP:
+				DoubleDouble.reciprocal(w, a, o, t);
+				break;
+			case Tape.EXP:
+				DoubleDouble.exp(w, a, o, t);
+				break;
+			case Tape.LN:
+				DoubleDouble.log(w, a, o, t);
+				break;
+			case Tape.SQRT:
+				DoubleDouble.sqrt(w, a, o, t);
+				break;
+			case Tape.ABS:
+				DoubleDouble.abs(w, a, o);
+				break;
+			case Tape.ARG:
+				DoubleDouble.arg(w[a], w[a+1], w[a+2], w[a+3], w, o);
+				w[o+2] = w[o+3] = 0;
+				break;
+			case Tape.RE:
+				w[o] = w[a];
+				w[o+1] = w[a+1];
+				w[o+2] = w[o+3] = 0;
+				break;
+			case Tape.IM:
+				w[o] = w[a+2];
+				w[o+1] = w[a+3];
+				w[o+2] = w[o+3] = 0;
+				break;
+			case Tape.SIN:
+				DoubleDouble.sin(w, a, o, t);
+				break;
+			case Tape.COS:
+				DoubleDouble.cos(w, a, o, t);
+				break;
+			case Tape.SINH:
+				DoubleDouble.sinh(w, a, o, t);
+				break;
+			case Tape.COSH:
+				DoubleDouble.cosh(w, a, o, t);
+				break;
+			case Tape.ASIN:
+				DoubleDouble.asin(w, a, o, spare, t);
+				break;
+			case Tape.ACOS:
+				DoubleDouble.acos(w, a, o, t);
+				break;
+			case Tape.ATAN:
+				DoubleDouble.atan(w, a, o, spare, t);
+				break;
+			case Tape.ASINH:
+				DoubleDouble.asinh(w, a, o, t);
+				break;
+			case Tape.ACOSH:
+				DoubleDouble.acosh(w, a, o, t);
+				break;
+			case Tape.ATANH:
+				DoubleDouble.atanh(w, a, o, t);
+				break;
+			case Tape.ERF:	// the special functions only get double precision, even here
+			case Tape.ERFC:
+			case Tape.ERFI:
+			case Tape.GAMMA:
+			case Tape.LGAMMA:
+			case Tape.BETA:
+			case Tape.BESSEL_J:
+			case Tape.BESSEL_Y:
+			case Tape.BESSEL_I:
+			case Tape.BESSEL_K:
+			case Tape.AIRY_AI:
+			case Tape.AIRY_BI:
+				ComplexFunctions.special(ops[k], w[a] + w[a+1], w[a+2] + w[a+3],
+						(rgt[k] >= 0) ? w[b] + w[b+1] : 0, (rgt[k] >= 0) ? w[b+2] + w[b+3] : 0, re, im, k);
+				w[o] = re[k];
+				w[o+2] = im[k];
+				w[o+1] = w[o+3] = 0;
+				narrow = true;
+				break;
+			}
+		}
+		for (int k = 0; k < size; k ++) {	// the derivatives and outputs all work off of the rounded values
+			re[k] = w[4*k] + w[4*k+1];
+			im[k] = w[4*k+2] + w[4*k+3];
+		}
+	}
+
+
+	BigComplex get(int k) {	// both words of register k, or null if they aren't worth more than the rounded value
+		final int o = 4*k;
+		if (narrow)
+			return null;
+		for (int j = o; j < o+4; j ++)
+			if (Double.isNaN(w[j]) || Double.isInfinite(w[j]))	// BigDecimal has no infinity
+				return null;
+		return new BigComplex(new BigDecimal(w[o]).add(new BigDecimal(w[o+1])).round(DIGITS),
+				new BigDecimal(w[o+2]).add(new BigDecimal(w[o+3])).round(DIGITS));
+	}
+
+}